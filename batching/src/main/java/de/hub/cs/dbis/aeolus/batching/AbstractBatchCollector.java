@@ -20,22 +20,30 @@ package de.hub.cs.dbis.aeolus.batching;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
 
+import org.json.simple.JSONValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import backtype.storm.Config;
+import backtype.storm.generated.Bolt;
 import backtype.storm.generated.GlobalStreamId;
 import backtype.storm.generated.Grouping;
+import backtype.storm.generated.StormTopology;
 import backtype.storm.grouping.CustomStreamGrouping;
 import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Fields;
 import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
 import backtype.storm.utils.Utils;
 
 
@@ -46,8 +54,9 @@ import backtype.storm.utils.Utils;
  * {@link AbstractBatchCollector} buffers emitted tuples in batches and emits full batches. It is used by
  * {@link BatchSpoutOutputCollector} and {@link BatchOutputCollector}.
  * 
- * {@link AbstractBatchCollector} uses {@code de.hub.cs.dbis.aeolus.batching.StormConnector} which is provided as
- * jar-file. This jar file need to be build manually (see folder aeolus/aeolus-storm-connector).
+ * For fields-grouping receivers, {@link AbstractBatchCollector} computes the receiver task of each tuple with a
+ * {@link FieldsGroupingPartitioner} that reproduces Storm's fields-grouping. Local-or-shuffle-grouping receivers only
+ * get tuples for their tasks in the same worker (if there are any), as in Storm.
  * 
  * @author Matthias J. Sax
  */
@@ -57,58 +66,88 @@ public abstract class AbstractBatchCollector {
 	/**
 	 * The sizes of the output batches for each output stream.
 	 */
-	private final Map<String, Integer> batchSizes;
+	private Map<String, Integer> batchSizes;
 	/**
 	 * The number of the attributes of the output schema.
 	 */
 	private final Map<String, Integer> numberOfAttributes = new HashMap<String, Integer>();
 	/**
-	 * The current runtime environment.
+	 * Chooses the first receiver task of emulated shuffle-like groupings.
 	 */
-	private final TopologyContext topologyContext;
+	private final Random random = new Random();
 	/**
 	 * The ID of the producer operator which output is buffered by this {@link AbstractBatchCollector}.
 	 */
 	private final String componentId;
 	/**
-	 * Maps output streams to their receivers.
+	 * The precomputed routing information of each output stream.
 	 */
-	private final Map<String, List<String>> receivers = new HashMap<String, List<String>>();
+	private final Map<String, StreamRoute> routes = new HashMap<String, StreamRoute>();
 	/**
-	 * Contains all receivers, that use fields-grouping.
+	 * The output stream of the last emitted tuple. Used to skip the lookup in {@link #routes} if consecutive tuples are
+	 * emitted to the same output stream.
 	 */
-	private final Set<String> fieldsGroupingReceivers = new HashSet<String>();
+	private String lastStreamId = null;
 	/**
-	 * Maps all receivers, that use custom-grouping, to the user defined grouping.
+	 * The routing information of {@link #lastStreamId}.
 	 */
-	private final Map<String, CustomStreamGrouping> customGroupingReceivers = new HashMap<String, CustomStreamGrouping>();
+	private StreamRoute lastRoute = null;
 	/**
-	 * Stores the dop of each receiver.
+	 * The maximum time (in milliseconds) for each output stream, a tuple can stay in an output buffer before the
+	 * (partially filled) buffer is emitted. Streams without an entry use {@link #defaultMaxLinger}.
 	 */
-	private final Map<String, Integer> numberOfReceiverTasks = new HashMap<String, Integer>();
+	private Map<String, Integer> maxLinger = new HashMap<String, Integer>();
 	/**
-	 * Maps each output stream to a task-id-to-batch-index map.
-	 * 
-	 * Task-IDs can have arbitrary values but we need values from 0 to number-of-batches. Thus, we assign an appropriate
-	 * index value to each task-ID.
+	 * The maximum linger time (in milliseconds) for all output streams without an entry in {@link #maxLinger}. Streams
+	 * with a non-positive value are only emitted if the buffer is full.
 	 */
-	private final Map<String, Map<Integer, Integer>> streamBatchIndexMapping = new HashMap<String, Map<Integer, Integer>>();
+	private int defaultMaxLinger = 0;
 	/**
-	 * Maps output streams to corresponding output buffers.
-	 * 
-	 * The number of outputBuffers depends on the number of logical receivers as well as each logical receiver's
-	 * distribution pattern and parallelism.
+	 * The earliest point in time (in milliseconds) at which any buffered batch exceeds its maximum linger time.
+	 */
+	private long nextExpiration = Long.MAX_VALUE;
+	/**
+	 * Adjusts the batch sizes at runtime ({@code null} if batch sizes are static).
+	 */
+	private AdaptiveBatchSizeController batchSizeController = null;
+	/**
+	 * The declared attribute types for each output stream. For output streams without declared types, the types of
+	 * each batch's first tuple are used.
+	 */
+	private final Map<String, Class<?>[]> columnTypes = new HashMap<String, Class<?>[]>();
+	/**
+	 * The index of the declared timestamp attribute for each output stream.
+	 */
+	private final Map<String, Integer> timestampIndexes = new HashMap<String, Integer>();
+	/**
+	 * Holds released output batches for each output stream (empty if batches are not recycled).
+	 */
+	private final Map<String, BatchPool> batchPools = new HashMap<String, BatchPool>();
+	/**
+	 * The maximum number of distinct anchors of an output batch (zero, if unlimited).
+	 */
+	private int maxAnchors = 0;
+	/**
+	 * The input tuples that anchor buffered output tuples.
+	 */
+	private final IdentityHashMap<Tuple, PendingAnchor> pendingAnchors = new IdentityHashMap<Tuple, PendingAnchor>();
+	/**
+	 * The IDs of all tasks that run in the same worker as the producer.
 	 */
-	private final Map<String, Batch[]> outputBuffers = new HashMap<String, Batch[]>();
+	private final Set<Integer> workerTasks = new HashSet<Integer>();
 	/**
-	 * Maps direct output streams to corresponding output buffers. Each consumer task has its own output buffer.
+	 * The maximum number of tuples in all output buffers together (zero, if unlimited).
 	 */
-	private final Map<String, Map<Integer, Batch>> directOutputBuffers = new HashMap<String, Map<Integer, Batch>>();
+	private int maxBufferedTuples = 0;
 	/**
-	 * Assigns a "weight" to each receiver the used fields-grouping. This weight is necessary to compute the correct
-	 * index within the list of output buffers.
+	 * The number of tuples in all output buffers.
 	 */
-	private final Map<String, Integer> weights = new HashMap<String, Integer>();
+	private int numberOfBufferedTuples = 0;
+	/**
+	 * The statistics of the emitted batches for each (user-defined) output stream ({@code null} if statistics are
+	 * disabled).
+	 */
+	private Map<String, BatchStatistics> statistics = null;
 	
 	
 	
@@ -140,12 +179,21 @@ public abstract class AbstractBatchCollector {
 		logger.trace("batchSizes: {}", batchSizes);
 		
 		this.batchSizes = batchSizes;
-		this.topologyContext = context;
 		this.componentId = context.getThisComponentId();
 		logger.trace("this-id: {}", this.componentId);
+		final List<Integer> localTasks = context.getThisWorkerTasks();
+		if(localTasks != null) {
+			this.workerTasks.addAll(localTasks);
+		}
+		
+		final Map<String, Map<String, Grouping>> targets = context.getThisTargets();
+		// custom-grouping receivers are looked up by the emulating direct output streams
+		final Map<String, CustomStreamGrouping> customGroupingReceivers = new HashMap<String, CustomStreamGrouping>();
+		final Map<String, Integer> numberOfReceiverTasks = new HashMap<String, Integer>();
+		final Map<String, List<String>> receivers = new HashMap<String, List<String>>();
 		
 		// StreamId -> ReceiverId -> Grouping
-		for(Entry<String, Map<String, Grouping>> outputStream : context.getThisTargets().entrySet()) {
+		for(Entry<String, Map<String, Grouping>> outputStream : targets.entrySet()) {
 			final String streamId = outputStream.getKey();
 			logger.trace("output-stream: {}", streamId);
 			
@@ -160,16 +208,29 @@ public abstract class AbstractBatchCollector {
 			Integer bS = this.batchSizes.get(streamId);
 			if(bS == null || bS.intValue() <= 0) {
 				logger.trace("batching disabled");
+				this.routes.put(streamId, new StreamRoute(streamId, false));
 				continue;
 			}
 			final Map<String, Grouping> streamReceivers = outputStream.getValue();
+			final StreamRoute route = new StreamRoute(streamId, true);
+			this.routes.put(streamId, route);
 			
-			final int numAttributes = context.getComponentOutputFields(this.componentId, streamId).size();
+			final Fields outputFields = context.getComponentOutputFields(this.componentId, streamId);
+			final int numAttributes = outputFields.size();
 			this.numberOfAttributes.put(streamId, new Integer(numAttributes));
 			
+			// projections are declared by the receivers for the user-defined stream
+			final String userStreamId = streamId.startsWith(BatchingOutputFieldsDeclarer.STREAM_PREFIX) ? streamId
+				.substring(BatchingOutputFieldsDeclarer.STREAM_PREFIX.length()) : streamId;
+			boolean[] projection = streamReceivers.isEmpty() ? null : new boolean[numAttributes];
+			final Map<Integer, boolean[]> directProjections = new HashMap<Integer, boolean[]>();
+			
 			int numberOfBatches = 1;
 			final ArrayList<String> receiverIds = new ArrayList<String>(streamReceivers.size());
-			this.receivers.put(streamId, receiverIds);
+			receivers.put(streamId, receiverIds);
+			final List<FieldsGroupingPartitioner> partitioners = new ArrayList<FieldsGroupingPartitioner>();
+			final List<Integer> fieldsWeights = new ArrayList<Integer>();
+			final List<Integer> directTasks = new ArrayList<Integer>();
 			
 			for(Entry<String, Grouping> receiver : streamReceivers.entrySet()) {
 				final String receiverId = receiver.getKey();
@@ -179,51 +240,46 @@ public abstract class AbstractBatchCollector {
 				
 				final Grouping receiverGrouping = receiver.getValue();
 				
+				final boolean[] receiverProjection = this.getProjection(context, receiverId, userStreamId, outputFields);
+				if(receiverProjection != null && receiverGrouping.is_set_fields()) {
+					// Storm partitions batches by the grouping attributes, even if the receiver does not read them
+					for(String attribute : receiverGrouping.get_fields()) {
+						receiverProjection[outputFields.fieldIndex(attribute)] = true;
+					}
+				}
+				projection = union(projection, receiverProjection);
+				
 				if(receiverGrouping.is_set_direct()) {
 					logger.trace("directGrouping");
 					
-					Map<Integer, Batch> outputBatches = this.directOutputBuffers.get(streamId);
-					if(outputBatches == null) {
-						outputBatches = new HashMap<Integer, Batch>();
-						this.directOutputBuffers.put(streamId, outputBatches);
-					}
+					directTasks.addAll(taskIds);
 					for(Integer taskId : taskIds) {
-						outputBatches.put(taskId, new Batch(this.batchSizes.get(streamId).intValue(), numAttributes));
+						directProjections.put(taskId, receiverProjection);
 					}
-					
 					numberOfBatches = 0; // mark as direct output stream
 				} else if(receiverGrouping.is_set_fields()) {
 					// do not consider as regular fields- or custom-Grouping if emulated by directGrouping
-					for(Entry<String, Map<String, Grouping>> outputStream2 : context.getThisTargets().entrySet()) {
-						if(outputStream2.getKey().equals(BatchingOutputFieldsDeclarer.STREAM_PREFIX + streamId)) {
-							final Map<String, Grouping> streamReceivers2 = outputStream2.getValue();
-							for(Entry<String, Grouping> receiver2 : streamReceivers2.entrySet()) {
-								if(receiver2.getKey().equals(receiverId)) {
-									assert (receiver2.getValue().is_set_direct());
-									numberOfBatches = 0; // mark as emulated via direct output stream
-								}
-							}
-						}
+					final Map<String, Grouping> directReceivers = targets.get(BatchingOutputFieldsDeclarer.STREAM_PREFIX
+						+ streamId);
+					if(directReceivers != null && directReceivers.containsKey(receiverId)) {
+						assert (directReceivers.get(receiverId).is_set_direct());
+						numberOfBatches = 0; // mark as emulated via direct output stream
 					}
 					
 					if(numberOfBatches != 0) {
-						// TODO we could reduce number of output buffers, if two logical consumers use the same
-						// output fields for partitioning AND have the same dop
 						logger.trace("fieldsGrouping");
 						
-						this.fieldsGroupingReceivers.add(receiverId);
-						this.weights.put(receiverId, new Integer(numberOfBatches));
-						numberOfBatches *= taskIds.size();
-						
-						Map<Integer, Integer> taskToIndex = this.streamBatchIndexMapping.get(streamId);
-						if(taskToIndex == null) {
-							taskToIndex = new HashMap<Integer, Integer>();
-							this.streamBatchIndexMapping.put(streamId, taskToIndex);
-						}
-						int i = 0;
-						for(Integer tId : taskIds) {
-							taskToIndex.put(tId, new Integer(i));
-							++i;
+						final FieldsGroupingPartitioner partitioner = new FieldsGroupingPartitioner(
+							context.getComponentOutputFields(this.componentId, streamId), receiverGrouping.get_fields(),
+							taskIds);
+						// receivers that partition all tuples equally (eg, same grouping attributes and same dop) share
+						// their output buffers; global-grouping receivers do not partition at all
+						if(partitioner.getNumberOfPartitions() > 1 && !containsEquivalent(partitioners, partitioner)) {
+							partitioners.add(partitioner);
+							fieldsWeights.add(new Integer(numberOfBatches));
+							numberOfBatches *= partitioner.getNumberOfPartitions();
+						} else {
+							logger.trace("sharing output buffers");
 						}
 					}
 				} else if(receiverGrouping.is_set_custom_serialized()) {
@@ -233,20 +289,228 @@ public abstract class AbstractBatchCollector {
 						.get_custom_serialized());
 					customGrouping.prepare(context, new GlobalStreamId(this.componentId, streamId), taskIds);
 					
-					this.customGroupingReceivers.put(receiverId, customGrouping);
-					this.numberOfReceiverTasks.put(receiverId, new Integer(taskIds.size()));
+					customGroupingReceivers.put(receiverId, customGrouping);
+					numberOfReceiverTasks.put(receiverId, new Integer(taskIds.size()));
 				}
 			}
 			
-			if(numberOfBatches > 0) { // otherwise, we got a direct output stream and this.directOutputBuffers is
-										// already set up
+			if(numberOfBatches > 0) {
 				Batch[] batches = new Batch[numberOfBatches];
 				for(int i = 0; i < numberOfBatches; ++i) {
-					batches[i] = new Batch(this.batchSizes.get(streamId).intValue(), numAttributes);
+					batches[i] = this.newBatch(streamId);
+				}
+				route.buffers = batches;
+				
+				route.partitioners = partitioners.toArray(new FieldsGroupingPartitioner[partitioners.size()]);
+				route.fieldsWeights = toIntArray(fieldsWeights);
+				route.projection = projectsAll(projection) ? null : projection;
+			} else if(directTasks.size() > 0) {
+				route.directTaskOffset = min(directTasks);
+				route.directBuffers = new Batch[max(directTasks) - route.directTaskOffset + 1];
+				route.directProjections = new boolean[route.directBuffers.length][];
+				for(Integer taskId : directTasks) {
+					final int index = taskId.intValue() - route.directTaskOffset;
+					route.directProjections[index] = directProjections.get(taskId);
+					if(route.directBuffers[index] == null) {
+						route.directBuffers[index] = this.newBatch(streamId);
+						++route.numberOfDirectBuffers;
+					}
+				}
+			}
+		}
+		
+		// link each user-defined output stream to its emulating Aeolus-defined direct output stream
+		for(StreamRoute route : this.routes.values()) {
+			if(!route.batched || route.streamId.startsWith(BatchingOutputFieldsDeclarer.STREAM_PREFIX)) {
+				continue;
+			}
+			final StreamRoute directRoute = this.routes.get(BatchingOutputFieldsDeclarer.STREAM_PREFIX + route.streamId);
+			if(directRoute == null || directRoute.directBuffers == null) {
+				continue;
+			}
+			
+			final List<String> directReceivers = receivers.get(directRoute.streamId);
+			final Map<String, Grouping> userGroupings = targets.get(route.streamId);
+			final int numberOfReceivers = directReceivers.size();
+			route.emulationRoute = directRoute;
+			route.emulatedPartitioners = new FieldsGroupingPartitioner[numberOfReceivers];
+			route.customGroupings = new CustomStreamGrouping[numberOfReceivers];
+			route.numberOfReceiverTasks = new int[numberOfReceivers];
+			route.emulatedTasks = new int[numberOfReceivers][];
+			route.broadcast = new boolean[numberOfReceivers];
+			route.broadcastBuffers = new Batch[numberOfReceivers];
+			route.broadcastProjections = new boolean[numberOfReceivers][];
+			route.broadcastTasks = new int[numberOfReceivers][];
+			route.localBroadcastTasks = new int[numberOfReceivers][];
+			route.nextTaskIndex = new int[numberOfReceivers];
+			for(int i = 0; i < numberOfReceivers; ++i) {
+				final String receiverId = directReceivers.get(i);
+				final List<Integer> taskIds = context.getComponentTasks(receiverId);
+				final CustomStreamGrouping customGrouping = customGroupingReceivers.get(receiverId);
+				final Grouping userGrouping = userGroupings.get(receiverId);
+				
+				if(customGrouping != null) {
+					route.customGroupings[i] = customGrouping;
+					route.numberOfReceiverTasks[i] = numberOfReceiverTasks.get(receiverId).intValue();
+				} else if(userGrouping != null && userGrouping.is_set_fields()) {
+					route.emulatedPartitioners[i] = new FieldsGroupingPartitioner(context.getComponentOutputFields(
+						this.componentId, route.streamId), userGrouping.get_fields(), taskIds);
+				} else {
+					// shuffle-, local-or-shuffle-, none-, or all-grouping
+					List<Integer> receiverTasks = taskIds;
+					if(userGrouping != null && userGrouping.is_set_local_or_shuffle()) {
+						final List<Integer> workerReceiverTasks = new ArrayList<Integer>();
+						for(Integer taskId : taskIds) {
+							if(this.workerTasks.contains(taskId)) {
+								workerReceiverTasks.add(taskId);
+							}
+						}
+						if(workerReceiverTasks.size() > 0) {
+							logger.trace("local receiver tasks: {}", workerReceiverTasks);
+							receiverTasks = workerReceiverTasks;
+						}
+					}
+					route.emulatedTasks[i] = toIntArray(receiverTasks);
+					route.broadcast[i] = userGrouping != null && userGrouping.is_set_all();
+					route.nextTaskIndex[i] = receiverTasks.size() > 0 ? this.random.nextInt(receiverTasks.size()) : 0;
+					
+					// all-grouping receivers get a single buffer that is emitted to all their tasks
+					if(route.broadcast[i] && taskIds.size() > 0) {
+						route.broadcastBuffers[i] = this.newBatch(directRoute.streamId);
+						route.broadcastTasks[i] = route.emulatedTasks[i];
+						route.broadcastProjections[i] = directRoute.getDirectProjection(route.broadcastTasks[i][0]);
+						++directRoute.numberOfBroadcastBuffers;
+					}
 				}
-				this.outputBuffers.put(streamId, batches);
+				
+				if(customGrouping != null) {
+					route.fanOut = true;
+				}
+			}
+			if(numberOfReceivers > 1) {
+				route.fanOut = true;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the attributes of an output stream that are read by the given receiver. Receivers declare the attributes
+	 * they read in their component configuration (see {@link #getProjectionConfigKey(String, String)}).
+	 * 
+	 * @param context
+	 *            The current runtime environment.
+	 * @param receiverId
+	 *            The ID of the receiver.
+	 * @param streamId
+	 *            The (user-defined) output stream.
+	 * @param outputFields
+	 *            The schema of the output stream.
+	 * 
+	 * @return the attributes that are read by the receiver or {@code null} if all attributes are read
+	 */
+	private boolean[] getProjection(TopologyContext context, String receiverId, String streamId, Fields outputFields) {
+		final StormTopology topology = context.getRawTopology();
+		if(topology == null || topology.get_bolts() == null) {
+			return null;
+		}
+		final Bolt receiver = topology.get_bolts().get(receiverId);
+		if(receiver == null || receiver.get_common().get_json_conf() == null) {
+			return null;
+		}
+		final Map<?, ?> conf = (Map<?, ?>)JSONValue.parse(receiver.get_common().get_json_conf());
+		final List<?> attributes = (List<?>)conf.get(getProjectionConfigKey(this.componentId, streamId));
+		if(attributes == null) {
+			return null;
+		}
+		
+		final boolean[] projection = new boolean[outputFields.size()];
+		for(Object attribute : attributes) {
+			projection[outputFields.fieldIndex((String)attribute)] = true;
+		}
+		logger.trace("projection of receiver {}: {}", receiverId, attributes);
+		return projectsAll(projection) ? null : projection;
+	}
+	
+	/**
+	 * Adds the attributes of {@code other} to {@code projection}.
+	 * 
+	 * @param projection
+	 *            The attributes read so far ({@code null} if all attributes are read).
+	 * @param other
+	 *            The attributes read by another receiver ({@code null} if all attributes are read).
+	 * 
+	 * @return the attributes read by both receivers
+	 */
+	private static boolean[] union(boolean[] projection, boolean[] other) {
+		if(projection == null || other == null) {
+			return null;
+		}
+		for(int i = 0; i < projection.length; ++i) {
+			projection[i] |= other[i];
+		}
+		return projection;
+	}
+	
+	/**
+	 * Checks if the given projection contains all attributes.
+	 * 
+	 * @param projection
+	 *            The projected attributes ({@code null} if all attributes are read).
+	 * 
+	 * @return {@code true} if all attributes are contained; {@code false} otherwise
+	 */
+	private static boolean projectsAll(boolean[] projection) {
+		if(projection == null) {
+			return true;
+		}
+		for(int i = 0; i < projection.length; ++i) {
+			if(!projection[i]) {
+				return false;
 			}
 		}
+		return true;
+	}
+	
+	/**
+	 * Returns the key of the component configuration entry, in which a receiver declares the attributes it reads from
+	 * the given output stream of the given producer. The value of the entry is the list of attribute names. Batches are
+	 * only emitted with the columns that are read by at least one of their receivers.
+	 * 
+	 * @param producerId
+	 *            The ID of the producer.
+	 * @param streamId
+	 *            The (user-defined) output stream of the producer.
+	 * 
+	 * @return the configuration key
+	 */
+	public static String getProjectionConfigKey(String producerId, String streamId) {
+		return "aeolus.batching.projection." + producerId + "::" + streamId;
+	}
+	
+	/**
+	 * Returns the routing information of the given output stream. Output streams that are unknown to the topology are
+	 * routed as if they had no receivers.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * 
+	 * @return the routing information of the given output stream
+	 */
+	private StreamRoute getRoute(String streamId) {
+		if(streamId == this.lastStreamId && this.lastRoute != null) {
+			return this.lastRoute;
+		}
+		
+		StreamRoute route = this.routes.get(streamId);
+		if(route == null) {
+			final Integer bS = this.batchSizes.get(streamId);
+			route = new StreamRoute(streamId, bS != null && bS.intValue() > 0);
+			this.routes.put(streamId, route);
+		}
+		
+		this.lastStreamId = streamId;
+		this.lastRoute = route;
+		return route;
 	}
 	
 	/**
@@ -266,57 +530,122 @@ public abstract class AbstractBatchCollector {
 	 *         inserted into an output batch but not actual emit happens
 	 */
 	public List<Integer> tupleEmit(String streamId, Collection<Tuple> anchors, List<Object> tuple, Object messageId) {
-		Integer bS = this.batchSizes.get(streamId);
-		if(bS == null || bS.intValue() <= 0) {
+		final StreamRoute route = this.getRoute(streamId);
+		if(!route.batched) {
+			if(route.punctuation && this.numberOfBufferedTuples > 0) {
+				this.flush(FlushCause.PUNCTUATION);
+			}
 			return this.doEmit(streamId, anchors, tuple, messageId);
 		}
 		
-		String directStream = BatchingOutputFieldsDeclarer.STREAM_PREFIX + streamId;
-		if(this.directOutputBuffers.containsKey(directStream)) { // emulate by direct emit
-			for(String receiverComponentId : this.receivers.get(directStream)) {
-				final CustomStreamGrouping customGrouping = this.customGroupingReceivers.get(receiverComponentId);
-				if(customGrouping != null) {
-					List<Integer> taskIds = customGrouping.chooseTasks(
-						this.numberOfReceiverTasks.get(receiverComponentId).intValue(), tuple);
+		this.bufferTuple(route, anchors, tuple, messageId);
+		this.enforceMaxBufferedTuples();
+		return null;
+	}
+	
+	/**
+	 * Captures multiple regular emit calls of an operator at once. All output tuples are added to their corresponding
+	 * output buffers and buffers are emitted if they get filled completely during this call. In contrast to calling
+	 * {@link #tupleEmit(String, Collection, List, Object)} for each tuple, the output stream is resolved only once and
+	 * the maximum number of buffered tuples is enforced after all tuples got inserted.
+	 * 
+	 * @param streamId
+	 *            The name of the output stream the tuples are appended.
+	 * @param anchors
+	 *            The anchor tuples of all emitted tuples (bolts only).
+	 * @param tuples
+	 *            The output tuples to be emitted.
+	 */
+	public void tuplesEmit(String streamId, Collection<Tuple> anchors, List<? extends List<Object>> tuples) {
+		final StreamRoute route = this.getRoute(streamId);
+		if(!route.batched) {
+			if(route.punctuation && this.numberOfBufferedTuples > 0) {
+				this.flush(FlushCause.PUNCTUATION);
+			}
+			for(List<Object> tuple : tuples) {
+				this.doEmit(streamId, anchors, tuple, null);
+			}
+			return;
+		}
+		
+		for(List<Object> tuple : tuples) {
+			this.bufferTuple(route, anchors, tuple, null);
+		}
+		this.enforceMaxBufferedTuples();
+	}
+	
+	/**
+	 * Adds the output tuple to the corresponding output buffer of a batched output stream, and emits the buffer if it
+	 * gets filled completely during this call.
+	 * 
+	 * @param route
+	 *            The routing information of the output stream.
+	 * @param anchors
+	 *            The anchor tuples of the emitted tuple (bolts only).
+	 * @param tuple
+	 *            The output tuple to be emitted.
+	 * @param messageId
+	 *            The ID of the output tuple (spouts only).
+	 */
+	private void bufferTuple(StreamRoute route, Collection<Tuple> anchors, List<Object> tuple, Object messageId) {
+		final String streamId = route.streamId;
+		final StreamRoute directRoute = route.emulationRoute;
+		if(directRoute != null) { // emulate by direct emit
+			// a tuple that is inserted into multiple batches must be acked after all batches got acked
+			final Object id = messageId != null && route.fanOut ? new FanOutMessageId(messageId) : messageId;
+			
+			for(int i = 0; i < route.customGroupings.length; ++i) {
+				final FieldsGroupingPartitioner partitioner = route.emulatedPartitioners[i];
+				final CustomStreamGrouping customGrouping = route.customGroupings[i];
+				if(partitioner != null) {
+					this.bufferDirect(directRoute, partitioner.getTaskId(tuple), anchors, tuple, id);
+				} else if(customGrouping != null) {
+					List<Integer> taskIds = customGrouping.chooseTasks(route.numberOfReceiverTasks[i], tuple);
 					
 					for(Integer taskId : taskIds) {
-						this.tupleEmitDirect(taskId.intValue(), directStream, anchors, tuple, messageId);
+						this.bufferDirect(directRoute, taskId.intValue(), anchors, tuple, id);
 					}
 				} else {
-					int taskId = StormConnector.getFieldsGroupingReceiverTaskId(this.topologyContext, this.componentId,
-						streamId, receiverComponentId, tuple).intValue();
-					this.tupleEmitDirect(taskId, directStream, anchors, tuple, messageId);
-				}
-			}
-		} else { // regular batching
-			int bufferIndex = 0;
-			
-			final Map<Integer, Integer> taskIndex = this.streamBatchIndexMapping.get(streamId);
-			if(taskIndex != null) { // fields grouping for at least one receiver
-				for(String receiverComponentId : this.receivers.get(streamId)) {
-					if(this.fieldsGroupingReceivers.contains(receiverComponentId)) {
-						Integer taskId = StormConnector.getFieldsGroupingReceiverTaskId(this.topologyContext,
-							this.componentId, streamId, receiverComponentId, tuple);
-						bufferIndex += (this.weights.get(receiverComponentId).intValue() * taskIndex.get(taskId)
-							.intValue());
+					final int[] taskIds = route.emulatedTasks[i];
+					if(route.broadcast[i]) {
+						this.bufferBroadcast(route, i, anchors, tuple, id);
+					} else if(taskIds.length > 0) {
+						final int index = route.nextTaskIndex[i];
+						route.nextTaskIndex[i] = index + 1 == taskIds.length ? 0 : index + 1;
+						this.bufferDirect(directRoute, taskIds[index], anchors, tuple, id);
 					}
 				}
 			}
-			
-			Batch[] streamBuffers = this.outputBuffers.get(streamId);
+		} else { // regular batching
+			final Batch[] streamBuffers = route.buffers;
 			if(streamBuffers != null) {
+				int bufferIndex = 0;
+				for(int i = 0; i < route.partitioners.length; ++i) {
+					bufferIndex += route.fieldsWeights[i] * route.partitioners[i].getTaskIndex(tuple);
+				}
+				
 				final Batch buffer = streamBuffers[bufferIndex];
+				final boolean firstInsert = buffer.isEmpty();
 				buffer.addTuple(tuple);
+				++this.numberOfBufferedTuples;
+				++route.numberOfBufferedTuples;
+				if(messageId != null) {
+					buffer.addMessageId(messageId);
+				}
+				if(anchors != null) {
+					this.addAnchors(buffer, anchors);
+				}
+				if(firstInsert) {
+					this.updateExpiration(streamId, buffer);
+				}
 				
-				if(buffer.isFull()) {
-					this.doEmit(streamId, null, buffer, null);
-					this.outputBuffers.get(streamId)[bufferIndex] = new Batch(this.batchSizes.get(streamId).intValue(),
-						this.numberOfAttributes.get(streamId).intValue());
+				if(this.isComplete(buffer)) {
+					this.adaptBatchSize(streamId, buffer);
+					this.emitBatch(route, buffer, FlushCause.FULL);
+					streamBuffers[bufferIndex] = this.newBatch(streamId);
 				}
 			}
 		}
-		
-		return null;
 	}
 	
 	/**
@@ -339,107 +668,1377 @@ public abstract class AbstractBatchCollector {
 	 *            The ID of the output tuple (spouts only).
 	 */
 	public void tupleEmitDirect(int taskId, String streamId, Collection<Tuple> anchors, List<Object> tuple, Object messageId) {
-		Integer bS = this.batchSizes.get(streamId);
-		if(bS == null || bS.intValue() <= 0) {
+		final StreamRoute route = this.getRoute(streamId);
+		if(!route.batched) {
+			if(route.punctuation && this.numberOfBufferedTuples > 0) {
+				this.flush(FlushCause.PUNCTUATION);
+			}
 			this.doEmitDirect(taskId, streamId, anchors, tuple, messageId);
+			return;
 		}
 		
-		Integer tid = new Integer(taskId);
-		final Map<Integer, Batch> streamBuffers = this.directOutputBuffers.get(streamId);
-		if(streamBuffers != null) {
-			final Batch buffer = streamBuffers.get(tid);
-			if(buffer != null) {
-				buffer.addTuple(tuple);
-				
-				if(buffer.isFull()) {
-					this.doEmitDirect(taskId, streamId, null, buffer, null);
-					this.directOutputBuffers.get(streamId).put(
-						tid,
-						new Batch(this.batchSizes.get(streamId).intValue(), this.numberOfAttributes.get(streamId)
-							.intValue()));
+		this.bufferDirect(route, taskId, anchors, tuple, messageId);
+		this.enforceMaxBufferedTuples();
+	}
+	
+	/**
+	 * Adds the output tuple to the output buffer of the given receiver task, and emits the buffer if it gets filled
+	 * completely during this call.
+	 * 
+	 * @param route
+	 *            The routing information of the direct output stream.
+	 * @param taskId
+	 *            The ID of the receiver task.
+	 * @param anchors
+	 *            The anchor tuples of the emitted tuple (bolts only).
+	 * @param tuple
+	 *            The output tuple to be emitted.
+	 * @param messageId
+	 *            The ID of the output tuple (spouts only).
+	 */
+	private void bufferDirect(StreamRoute route, int taskId, Collection<Tuple> anchors, List<Object> tuple,
+		Object messageId) {
+		if(route.isLocalTask(taskId)) {
+			this.emitLocal(route, taskId, anchors, tuple, messageId);
+			return;
+		}
+		
+		final Batch buffer = route.getDirectBuffer(taskId);
+		if(buffer != null) {
+			final boolean firstInsert = buffer.isEmpty();
+			buffer.addTuple(tuple);
+			++this.numberOfBufferedTuples;
+			++route.numberOfBufferedTuples;
+			if(messageId != null) {
+				if(messageId instanceof FanOutMessageId) {
+					++((FanOutMessageId)messageId).pending;
 				}
+				buffer.addMessageId(messageId);
+			}
+			if(anchors != null) {
+				this.addAnchors(buffer, anchors);
+			}
+			if(firstInsert) {
+				this.updateExpiration(route.streamId, buffer);
+			}
+			
+			if(this.isComplete(buffer)) {
+				this.adaptBatchSize(route.streamId, buffer);
+				this.emitBatchDirect(route, taskId, buffer, FlushCause.FULL);
+				route.directBuffers[taskId - route.directTaskOffset] = this.newBatch(route.streamId);
 			}
 		}
 	}
 	
 	/**
-	 * Emits all incomplete batches from the output buffer.
+	 * Emits the output tuple without batching to the given receiver task in the same worker.
+	 * 
+	 * @param route
+	 *            The routing information of the direct output stream.
+	 * @param taskId
+	 *            The ID of the receiver task.
+	 * @param anchors
+	 *            The anchor tuples of the emitted tuple (bolts only).
+	 * @param tuple
+	 *            The output tuple to be emitted.
+	 * @param messageId
+	 *            The ID of the output tuple (spouts only).
 	 */
-	public void flush() {
-		for(String streamId : this.outputBuffers.keySet()) {
-			Integer bS = this.batchSizes.get(streamId);
-			if(bS != null && bS.intValue() > 0) {
-				for(int i = 0; i < this.outputBuffers.get(streamId).length; ++i) {
-					Batch batch = this.outputBuffers.get(streamId)[i];
-					if(!batch.isEmpty()) {
-						this.doEmit(streamId, null, batch, null);
-						this.outputBuffers.get(streamId)[i] = new Batch(this.batchSizes.get(streamId).intValue(),
-							this.numberOfAttributes.get(streamId).intValue());
-					}
-				}
+	private void emitLocal(StreamRoute route, int taskId, Collection<Tuple> anchors, List<Object> tuple,
+		Object messageId) {
+		Object id = messageId;
+		if(messageId instanceof FanOutMessageId) {
+			// the tuple is acked like a batch containing only this tuple
+			++((FanOutMessageId)messageId).pending;
+			id = new BatchMessageId(Collections.singletonList(messageId));
+		}
+		this.doEmitDirect(taskId, route.streamId, anchors, tuple, id);
+	}
+	
+	/**
+	 * Adds the output tuple to the output buffer of the given all-grouping receiver, and emits the buffer to all tasks
+	 * of the receiver if it gets filled completely during this call.
+	 * 
+	 * @param route
+	 *            The routing information of the emulated output stream.
+	 * @param receiverIndex
+	 *            The index of the all-grouping receiver.
+	 * @param anchors
+	 *            The anchor tuples of the emitted tuple (bolts only).
+	 * @param tuple
+	 *            The output tuple to be emitted.
+	 * @param messageId
+	 *            The ID of the output tuple (spouts only).
+	 */
+	private void bufferBroadcast(StreamRoute route, int receiverIndex, Collection<Tuple> anchors, List<Object> tuple,
+		Object messageId) {
+		final int[] localTasks = route.localBroadcastTasks[receiverIndex];
+		if(localTasks != null) {
+			for(int i = 0; i < localTasks.length; ++i) {
+				this.emitLocal(route.emulationRoute, localTasks[i], anchors, tuple, messageId);
 			}
 		}
 		
-		for(String streamId : this.directOutputBuffers.keySet()) {
-			Integer bS = this.batchSizes.get(streamId);
-			if(bS != null && bS.intValue() > 0) {
-				for(Integer taskId : this.directOutputBuffers.get(streamId).keySet()) {
-					Batch batch = this.directOutputBuffers.get(streamId).get(taskId);
-					if(!batch.isEmpty()) {
-						this.doEmitDirect(taskId.intValue(), streamId, null, batch, null);
-						this.directOutputBuffers.get(streamId).put(
-							taskId,
-							new Batch(this.batchSizes.get(streamId).intValue(), this.numberOfAttributes.get(streamId)
-								.intValue()));
-					}
-					
+		final Batch buffer = route.broadcastBuffers[receiverIndex];
+		if(buffer != null && route.broadcastTasks[receiverIndex].length > 0) {
+			final String streamId = route.emulationRoute.streamId;
+			final boolean firstInsert = buffer.isEmpty();
+			buffer.addTuple(tuple);
+			++this.numberOfBufferedTuples;
+			++route.numberOfBufferedTuples;
+			if(messageId != null) {
+				if(messageId instanceof FanOutMessageId) {
+					++((FanOutMessageId)messageId).pending;
 				}
+				buffer.addMessageId(messageId);
+			}
+			if(anchors != null) {
+				this.addAnchors(buffer, anchors);
+			}
+			if(firstInsert) {
+				this.updateExpiration(streamId, buffer);
+			}
+			
+			if(this.isComplete(buffer)) {
+				this.adaptBatchSize(streamId, buffer);
+				this.emitBroadcast(route, receiverIndex, buffer, FlushCause.FULL);
+				route.broadcastBuffers[receiverIndex] = this.newBatch(streamId);
 			}
 		}
 	}
 	
 	/**
-	 * Registers the classes {@link Batch Batch.class} and {@link BatchColumn BatchColumn.class} for serialization and
-	 * deserialization.
+	 * Adds the given anchors to the given output buffer and registers them as pending, if the buffer did not contain
+	 * them yet.
 	 * 
-	 * @param stormConfig
-	 *            The storm config the which the classes should be registered to.
+	 * @param buffer
+	 *            The output buffer the anchored tuple was inserted into.
+	 * @param anchors
+	 *            The anchor tuples of the inserted tuple.
 	 */
-	public static void registerKryoClasses(Config stormConfig) {
-		stormConfig.registerSerialization(Batch.class);
-		stormConfig.registerSerialization(BatchColumn.class);
+	private void addAnchors(Batch buffer, Collection<Tuple> anchors) {
+		for(Tuple anchor : anchors) {
+			if(anchor != null && buffer.addAnchor(anchor)) {
+				PendingAnchor pending = this.pendingAnchors.get(anchor);
+				if(pending == null) {
+					pending = new PendingAnchor();
+					this.pendingAnchors.put(anchor, pending);
+				}
+				++pending.buffers;
+			}
+		}
 	}
 	
 	/**
-	 * Is called each time tuple or batch should be emitted.
+	 * Checks if the given output buffer must be emitted, ie, if it is full or reached the maximum number of anchors.
 	 * 
-	 * @param streamId
-	 *            The name of the output stream the batch is appended.
-	 * @param anchors
-	 *            The anchor tuples of the emitted batch (bolts only).
-	 * @param tupleOrBatch
-	 *            The output tuple or batch to be emitted.
-	 * @param messageId
-	 *            The ID of the output batch (spouts only).
+	 * @param buffer
+	 *            The output buffer.
 	 * 
-	 * @return the task IDs that received the batch
+	 * @return {@code true} if the buffer must be emitted; {@code false} otherwise
 	 */
-	protected abstract List<Integer> doEmit(String streamId, Collection<Tuple> anchors, Object tupleOrBatch, Object messageId);
+	private boolean isComplete(Batch buffer) {
+		return buffer.isFull() || (this.maxAnchors > 0 && buffer.getNumberOfAnchors() >= this.maxAnchors);
+	}
 	
 	/**
-	 * Is called each time tuple or batch should be emitted.
+	 * Releases the given anchors after the output batch containing them got emitted. Anchors that got acked by the bolt
+	 * in the meantime are acked if no other output buffer contains them.
 	 * 
-	 * @param taskId
-	 *            The ID of the receiver task.
-	 * @param streamId
-	 *            The name of the output stream the batch is appended.
 	 * @param anchors
-	 *            The anchor tuples of the emitted batch (bolts only).
-	 * @param tupleOrBatch
-	 *            The output tuple or batch to be emitted.
-	 * @param messageId
-	 *            The ID of the output batch (spouts only).
+	 *            The anchors of the emitted batch (may be {@code null}).
 	 */
-	protected abstract void doEmitDirect(int taskId, String streamId, Collection<Tuple> anchors, Object tupleOrBatch, Object messageId);
+	private void releaseAnchors(Collection<Tuple> anchors) {
+		if(anchors == null) {
+			return;
+		}
+		for(Tuple anchor : anchors) {
+			final PendingAnchor pending = this.pendingAnchors.get(anchor);
+			if(--pending.buffers == 0) {
+				this.pendingAnchors.remove(anchor);
+				if(pending.acked) {
+					this.doAck(anchor);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Captures an ack call of a bolt. If buffered output tuples are anchored to the given input tuple, the ack is
+	 * deferred until all output batches anchored to it got emitted. Otherwise, the ack must be performed by the caller.
+	 * 
+	 * @param input
+	 *            The input tuple to be acked.
+	 * 
+	 * @return {@code true} if the ack got deferred; {@code false} if the input tuple must be acked by the caller
+	 */
+	public boolean deferAck(Tuple input) {
+		final PendingAnchor pending = this.pendingAnchors.get(input);
+		if(pending == null) {
+			return false;
+		}
+		pending.acked = true;
+		return true;
+	}
+	
+	/**
+	 * Captures a fail call of a bolt. The given input tuple is removed from the anchors of all output buffers; thus,
+	 * buffered output tuples are not anchored to a failed input tuple when they get emitted later on. The fail itself
+	 * must be performed by the caller.
+	 * 
+	 * @param input
+	 *            The input tuple to be failed.
+	 */
+	public void removeFailedAnchor(Tuple input) {
+		final PendingAnchor pending = this.pendingAnchors.remove(input);
+		if(pending == null) {
+			return;
+		}
+		for(StreamRoute route : this.routes.values()) {
+			pending.buffers -= removeAnchor(route.buffers, input);
+			pending.buffers -= removeAnchor(route.directBuffers, input);
+			pending.buffers -= removeAnchor(route.broadcastBuffers, input);
+		}
+		assert (pending.buffers == 0);
+	}
+	
+	/**
+	 * Removes the given anchor from the given output buffers.
+	 * 
+	 * @param buffers
+	 *            The output buffers of a stream (may be {@code null}).
+	 * @param anchor
+	 *            The anchor to be removed.
+	 * 
+	 * @return the number of output buffers that contained the anchor
+	 */
+	private static int removeAnchor(Batch[] buffers, Tuple anchor) {
+		int removed = 0;
+		if(buffers != null) {
+			for(int i = 0; i < buffers.length; ++i) {
+				if(buffers[i] != null && buffers[i].removeAnchor(anchor)) {
+					++removed;
+				}
+			}
+		}
+		return removed;
+	}
+	
+	/**
+	 * Sets the maximum number of distinct anchors of an output batch. A batch is emitted (even if it is not full), as
+	 * soon as its tuples are anchored to {@code maxAnchors} distinct input tuples. Limiting the number of anchors bounds
+	 * the size of the emitted message IDs and the time acks of input tuples are deferred.
+	 * 
+	 * @param maxAnchors
+	 *            The maximum number of distinct anchors (a non-positive value disables the limit).
+	 */
+	public void setMaxAnchors(int maxAnchors) {
+		this.maxAnchors = maxAnchors;
+	}
+	
+	/**
+	 * Sets the maximum number of tuples in all output buffers together. If the limit is exceeded, the largest output
+	 * buffers are emitted (even if they are not full) until at most half of the limit is buffered (see
+	 * {@link #enforceMaxBufferedTuples()}). Limiting the number of buffered tuples bounds the memory used by an
+	 * operator with many output buffers (eg, many receiver tasks).
+	 * 
+	 * @param maxBufferedTuples
+	 *            The maximum number of buffered tuples (a non-positive value disables the limit).
+	 */
+	public void setMaxBufferedTuples(int maxBufferedTuples) {
+		this.maxBufferedTuples = maxBufferedTuples;
+	}
+	
+	/**
+	 * Returns the number of tuples in all output buffers.
+	 * 
+	 * @return the number of buffered tuples
+	 */
+	public int getNumberOfBufferedTuples() {
+		return this.numberOfBufferedTuples;
+	}
+	
+	/**
+	 * Emits output buffers (even if they are not full) if the number of buffered tuples exceeds
+	 * {@link #maxBufferedTuples}. In this case, the largest buffers of the output streams holding the most tuples are
+	 * emitted until at most half of {@link #maxBufferedTuples} tuples are buffered. Thus, the limit is not hit again by
+	 * the next emitted tuple.
+	 */
+	private void enforceMaxBufferedTuples() {
+		if(this.maxBufferedTuples <= 0 || this.numberOfBufferedTuples <= this.maxBufferedTuples) {
+			return;
+		}
+		
+		final int lowWatermark = this.maxBufferedTuples / 2;
+		while(this.numberOfBufferedTuples > lowWatermark) {
+			StreamRoute fullestRoute = null;
+			for(StreamRoute route : this.routes.values()) {
+				if(fullestRoute == null || route.numberOfBufferedTuples > fullestRoute.numberOfBufferedTuples) {
+					fullestRoute = route;
+				}
+			}
+			assert (fullestRoute != null && fullestRoute.numberOfBufferedTuples > 0);
+			logger.trace("flushing largest buffers of stream {} ({} tuples)", fullestRoute.streamId, new Integer(
+				fullestRoute.numberOfBufferedTuples));
+			this.flushLargeBuffers(fullestRoute);
+		}
+	}
+	
+	/**
+	 * Emits all output buffers of the given output stream that hold at least the average number of tuples of the
+	 * stream's buffers. At least one buffer is emitted if the stream holds any tuples.
+	 * 
+	 * @param route
+	 *            The routing information of the output stream.
+	 */
+	private void flushLargeBuffers(StreamRoute route) {
+		int numberOfBuffers = 0;
+		if(route.buffers != null) {
+			numberOfBuffers += route.buffers.length;
+		}
+		if(route.directBuffers != null) {
+			numberOfBuffers += route.numberOfDirectBuffers;
+		}
+		if(route.broadcastBuffers != null) {
+			numberOfBuffers += route.broadcastBuffers.length;
+		}
+		final int threshold = Math.max(1, route.numberOfBufferedTuples / Math.max(1, numberOfBuffers));
+		
+		if(route.buffers != null) {
+			for(int i = 0; i < route.buffers.length; ++i) {
+				final Batch batch = route.buffers[i];
+				if(batch.getNumberOfTuples() >= threshold) {
+					this.adaptBatchSize(route.streamId, batch);
+					this.emitBatch(route, batch, FlushCause.BUFFER_LIMIT);
+					route.buffers[i] = this.newBatch(route.streamId);
+				}
+			}
+		}
+		if(route.directBuffers != null) {
+			for(int i = 0; i < route.directBuffers.length; ++i) {
+				final Batch batch = route.directBuffers[i];
+				if(batch != null && batch.getNumberOfTuples() >= threshold) {
+					this.adaptBatchSize(route.streamId, batch);
+					this.emitBatchDirect(route, route.directTaskOffset + i, batch, FlushCause.BUFFER_LIMIT);
+					route.directBuffers[i] = this.newBatch(route.streamId);
+				}
+			}
+		}
+		if(route.broadcastBuffers != null) {
+			final String streamId = route.emulationRoute.streamId;
+			for(int i = 0; i < route.broadcastBuffers.length; ++i) {
+				final Batch batch = route.broadcastBuffers[i];
+				if(batch != null && batch.getNumberOfTuples() >= threshold) {
+					this.adaptBatchSize(streamId, batch);
+					this.emitBroadcast(route, i, batch, FlushCause.BUFFER_LIMIT);
+					route.broadcastBuffers[i] = this.newBatch(streamId);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Emits all incomplete batches from the output buffer.
+	 */
+	public void flush() {
+		this.flush(FlushCause.FLUSH);
+	}
+	
+	/**
+	 * Emits all incomplete batches from the output buffer.
+	 * 
+	 * @param cause
+	 *            The reason why the batches get emitted.
+	 */
+	private void flush(FlushCause cause) {
+		for(StreamRoute route : this.routes.values()) {
+			final Batch[] streamBuffers = route.buffers;
+			if(streamBuffers != null) {
+				for(int i = 0; i < streamBuffers.length; ++i) {
+					Batch batch = streamBuffers[i];
+					if(!batch.isEmpty()) {
+						this.emitBatch(route, batch, cause);
+						streamBuffers[i] = this.newBatch(route.streamId);
+					}
+				}
+			}
+		}
+		
+		for(StreamRoute route : this.routes.values()) {
+			final Batch[] streamBuffers = route.directBuffers;
+			if(streamBuffers != null) {
+				for(int i = 0; i < streamBuffers.length; ++i) {
+					Batch batch = streamBuffers[i];
+					if(batch != null && !batch.isEmpty()) {
+						this.emitBatchDirect(route, route.directTaskOffset + i, batch, cause);
+						streamBuffers[i] = this.newBatch(route.streamId);
+					}
+				}
+			}
+		}
+		
+		for(StreamRoute route : this.routes.values()) {
+			final Batch[] streamBuffers = route.broadcastBuffers;
+			if(streamBuffers != null) {
+				final String streamId = route.emulationRoute.streamId;
+				for(int i = 0; i < streamBuffers.length; ++i) {
+					Batch batch = streamBuffers[i];
+					if(batch != null && !batch.isEmpty()) {
+						this.emitBroadcast(route, i, batch, cause);
+						streamBuffers[i] = this.newBatch(streamId);
+					}
+				}
+			}
+		}
+		
+		this.nextExpiration = Long.MAX_VALUE;
+	}
+	
+	/**
+	 * Emits all incomplete batches that exceeded the maximum linger time of their output stream. Calling this method is
+	 * cheap if no buffered batch is expired; thus, it can be called frequently.
+	 */
+	public void flushExpired() {
+		if(this.nextExpiration == Long.MAX_VALUE) {
+			return;
+		}
+		final long now = this.currentTimeMillis();
+		if(now < this.nextExpiration) {
+			return;
+		}
+		logger.trace("flushing expired batches");
+		
+		long next = Long.MAX_VALUE;
+		
+		for(StreamRoute route : this.routes.values()) {
+			final String streamId = route.streamId;
+			final int linger = this.getMaxLinger(streamId);
+			if(linger <= 0) {
+				continue;
+			}
+			
+			final boolean direct = route.directBuffers != null;
+			final Batch[] streamBuffers = direct ? route.directBuffers : route.buffers;
+			if(streamBuffers == null) {
+				continue;
+			}
+			for(int i = 0; i < streamBuffers.length; ++i) {
+				final Batch batch = streamBuffers[i];
+				if(batch != null && !batch.isEmpty()) {
+					final long expiration = batch.getFirstInsertTimestamp() + linger;
+					if(expiration <= now) {
+						this.adaptBatchSize(streamId, batch);
+						if(direct) {
+							this.emitBatchDirect(route, route.directTaskOffset + i, batch, FlushCause.LINGER);
+						} else {
+							this.emitBatch(route, batch, FlushCause.LINGER);
+						}
+						streamBuffers[i] = this.newBatch(streamId);
+					} else if(expiration < next) {
+						next = expiration;
+					}
+				}
+			}
+		}
+		
+		for(StreamRoute route : this.routes.values()) {
+			final Batch[] streamBuffers = route.broadcastBuffers;
+			if(streamBuffers == null) {
+				continue;
+			}
+			final String streamId = route.emulationRoute.streamId;
+			final int linger = this.getMaxLinger(streamId);
+			if(linger <= 0) {
+				continue;
+			}
+			
+			for(int i = 0; i < streamBuffers.length; ++i) {
+				final Batch batch = streamBuffers[i];
+				if(batch != null && !batch.isEmpty()) {
+					final long expiration = batch.getFirstInsertTimestamp() + linger;
+					if(expiration <= now) {
+						this.adaptBatchSize(streamId, batch);
+						this.emitBroadcast(route, i, batch, FlushCause.LINGER);
+						streamBuffers[i] = this.newBatch(streamId);
+					} else if(expiration < next) {
+						next = expiration;
+					}
+				}
+			}
+		}
+		
+		this.nextExpiration = next;
+	}
+	
+	/**
+	 * Sets the maximum linger time for all output streams. A batch is emitted (even if it is not full), if its first
+	 * tuple was inserted {@code maxLinger} milliseconds ago. The check is performed by {@link #flushExpired()}.
+	 * 
+	 * @param maxLinger
+	 *            The maximum linger time in milliseconds (a non-positive value disables time-bounded flushing).
+	 */
+	public void setMaxLinger(int maxLinger) {
+		this.maxLinger = new HashMap<String, Integer>();
+		this.defaultMaxLinger = maxLinger;
+	}
+	
+	/**
+	 * Sets the maximum linger time for each output stream. A batch is emitted (even if it is not full), if its first
+	 * tuple was inserted the specified number of milliseconds ago. The check is performed by {@link #flushExpired()}.
+	 * 
+	 * @param maxLinger
+	 *            The maximum linger times in milliseconds for each output stream. Streams without an entry (or a
+	 *            non-positive value) are not flushed by {@link #flushExpired()}.
+	 */
+	public void setMaxLinger(Map<String, Integer> maxLinger) {
+		this.maxLinger = new HashMap<String, Integer>(maxLinger);
+		this.defaultMaxLinger = 0;
+	}
+	
+	/**
+	 * Declares the attribute types of an output stream. Batches of this stream store values of type {@link Long},
+	 * {@link Integer}, {@link Short}, {@link Double}, and {@link String} in specialized columns, even if the first tuple
+	 * of a batch contains {@code null} values. Must be called before the first tuple is emitted.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param types
+	 *            The type of each attribute of the output stream.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the number of types does not match the number of attributes of the output stream
+	 */
+	public void setColumnTypes(String streamId, Class<?>[] types) {
+		this.setColumnTypesInternal(streamId, types);
+		this.setColumnTypesInternal(BatchingOutputFieldsDeclarer.STREAM_PREFIX + streamId, types);
+	}
+	
+	/**
+	 * Declares an output stream as punctuation stream (eg, a stream of progress tuples that let downstream mergers
+	 * advance). Tuples of a punctuation stream are never batched. Before a punctuation tuple is emitted, all incomplete
+	 * batches of all output streams are emitted, such that the punctuation does not overtake buffered tuples. Must be
+	 * called before the first tuple is emitted.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 */
+	public void setPunctuationStream(String streamId) {
+		this.setPunctuationStreamInternal(streamId);
+		this.setPunctuationStreamInternal(BatchingOutputFieldsDeclarer.STREAM_PREFIX + streamId);
+	}
+	
+	private void setPunctuationStreamInternal(String streamId) {
+		final StreamRoute route = new StreamRoute(streamId, false);
+		route.punctuation = true;
+		this.routes.put(streamId, route);
+		this.numberOfAttributes.remove(streamId);
+		this.lastStreamId = null;
+		this.lastRoute = null;
+	}
+	
+	/**
+	 * Declares the timestamp attribute of an output stream. Batches of this stream track the smallest and largest
+	 * timestamp of their tuples, which are transferred together with the batch (see {@link Batch#hasTimestampRange()}
+	 * and {@link BatchColumn#hasTimestampRange()}). Must be called before the first tuple is emitted.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param index
+	 *            The index of the timestamp attribute (the attribute values must be of type {@link Number}).
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code index} is not a valid attribute index of the output stream
+	 */
+	public void setTimestampIndex(String streamId, int index) {
+		this.setTimestampIndexInternal(streamId, index);
+		this.setTimestampIndexInternal(BatchingOutputFieldsDeclarer.STREAM_PREFIX + streamId, index);
+	}
+	
+	/**
+	 * Enables the compression of output batches of an output stream. If an output batch is sent to a remote consumer,
+	 * each serialized column of the batch is compressed with {@code codec} if its serialized size is at least
+	 * {@code threshold} bytes (see {@link BatchColumnSerializer}). Batches for local consumers are not affected.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param codec
+	 *            The codec that compresses the serialized batches (or {@code null} to disable compression).
+	 * @param threshold
+	 *            The minimum size (in bytes) of a serialized column, for which the column gets compressed.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code threshold} is negative
+	 */
+	public void setCompression(String streamId, CompressionCodec codec, int threshold) {
+		if(threshold < 0) {
+			throw new IllegalArgumentException("Parameter <threshold> must not be negative.");
+		}
+		this.setCompressionInternal(streamId, codec, threshold);
+		this.setCompressionInternal(BatchingOutputFieldsDeclarer.STREAM_PREFIX + streamId, codec, threshold);
+	}
+	
+	/**
+	 * Enables the compression of output batches of a single (user- or Aeolus-defined) output stream.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param codec
+	 *            The codec that compresses the serialized batches (or {@code null} to disable compression).
+	 * @param threshold
+	 *            The minimum size (in bytes) of a serialized column, for which the column gets compressed.
+	 */
+	private void setCompressionInternal(String streamId, CompressionCodec codec, int threshold) {
+		final StreamRoute route = this.routes.get(streamId);
+		if(route == null || !route.batched) {
+			return; // stream is not batched
+		}
+		route.compressionCodec = codec;
+		route.compressionThreshold = threshold;
+	}
+	
+	/**
+	 * Applies the compression settings of the given output stream to the given output batch. Must be called right
+	 * before the batch is emitted.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param batch
+	 *            The output batch to be emitted.
+	 */
+	private void prepareCompression(String streamId, Batch batch) {
+		final StreamRoute route = this.routes.get(streamId);
+		if(route.compressionCodec != null) {
+			batch.setCompression(route.compressionCodec, route.compressionThreshold);
+		}
+	}
+	
+	/**
+	 * Declares the attribute types of a single (user- or Aeolus-defined) output stream.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param types
+	 *            The type of each attribute of the output stream.
+	 */
+	private void setColumnTypesInternal(String streamId, Class<?>[] types) {
+		final Integer numAttributes = this.numberOfAttributes.get(streamId);
+		if(numAttributes == null) {
+			return; // stream is not batched
+		}
+		if(types.length != numAttributes.intValue()) {
+			throw new IllegalArgumentException("Expected " + numAttributes + " types for output stream <" + streamId
+				+ "> but got " + types.length + ".");
+		}
+		this.columnTypes.put(streamId, types.clone());
+		
+		// replace (still empty) untyped buffers
+		this.replaceBuffers(streamId);
+	}
+	
+	/**
+	 * Declares the timestamp attribute of a single (user- or Aeolus-defined) output stream.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param index
+	 *            The index of the timestamp attribute.
+	 */
+	private void setTimestampIndexInternal(String streamId, int index) {
+		final Integer numAttributes = this.numberOfAttributes.get(streamId);
+		if(numAttributes == null) {
+			return; // stream is not batched
+		}
+		if(index < 0 || index >= numAttributes.intValue()) {
+			throw new IllegalArgumentException("Timestamp index " + index + " is out of range for output stream <"
+				+ streamId + "> with " + numAttributes + " attributes.");
+		}
+		this.timestampIndexes.put(streamId, new Integer(index));
+		
+		// replace (still empty) buffers that do not track timestamps
+		this.replaceBuffers(streamId);
+	}
+	
+	/**
+	 * Replaces all (still empty) output buffers of the given output stream by new output buffers.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 */
+	private void replaceBuffers(String streamId) {
+		final StreamRoute route = this.routes.get(streamId);
+		replaceBuffers(route.buffers, streamId);
+		replaceBuffers(route.directBuffers, streamId);
+		if(streamId.startsWith(BatchingOutputFieldsDeclarer.STREAM_PREFIX)) {
+			// broadcast buffers of the user-defined stream hold batches of the Aeolus-defined direct stream
+			final StreamRoute userRoute = this.routes.get(streamId.substring(BatchingOutputFieldsDeclarer.STREAM_PREFIX
+				.length()));
+			if(userRoute != null) {
+				replaceBuffers(userRoute.broadcastBuffers, streamId);
+			}
+		}
+	}
+	
+	/**
+	 * Replaces all (still empty) output buffers by new output buffers.
+	 * 
+	 * @param streamBuffers
+	 *            The output buffers to be replaced (may be {@code null} or contain {@code null} entries).
+	 * @param streamId
+	 *            The output stream the buffers belong to.
+	 */
+	private void replaceBuffers(Batch[] streamBuffers, String streamId) {
+		if(streamBuffers != null) {
+			for(int i = 0; i < streamBuffers.length; ++i) {
+				if(streamBuffers[i] != null) {
+					assert (streamBuffers[i].isEmpty());
+					streamBuffers[i] = this.newBatch(streamId);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Emits the given output batch. If batches are recycled, the batch is returned to the stream's pool after all
+	 * consumers released it.
+	 * 
+	 * @param route
+	 *            The routing information of the output stream.
+	 * @param batch
+	 *            The output batch to be emitted.
+	 * @param cause
+	 *            The reason why the batch is emitted.
+	 */
+	private void emitBatch(StreamRoute route, Batch batch, FlushCause cause) {
+		final String streamId = route.streamId;
+		final boolean[] projection = route.projection;
+		this.recordStatistics(streamId, batch, cause);
+		this.numberOfBufferedTuples -= batch.getNumberOfTuples();
+		route.numberOfBufferedTuples -= batch.getNumberOfTuples();
+		final Object batchMessageId = getBatchMessageId(batch);
+		final Collection<Tuple> anchors = batch.removeAnchors();
+		this.prepareCompression(streamId, batch);
+		final BatchPool pool = this.batchPools.get(streamId);
+		if(pool != null) {
+			batch.prepareRelease(pool);
+		}
+		final List<Integer> receiverTasks = this.doEmit(streamId, anchors, project(batch, projection), batchMessageId);
+		if(pool != null) {
+			final int deliveries = receiverTasks == null ? 0 : receiverTasks.size();
+			batch.setNumberOfDeliveries(deliveries);
+			releaseProjected(batch, projection, deliveries);
+		}
+		this.releaseAnchors(anchors);
+	}
+	
+	/**
+	 * Emits the given output batch to the given consumer task. If batches are recycled, the batch is returned to the
+	 * stream's pool after the consumer released it.
+	 * 
+	 * @param route
+	 *            The routing information of the direct output stream.
+	 * @param taskId
+	 *            The ID of the receiver task.
+	 * @param batch
+	 *            The output batch to be emitted.
+	 * @param cause
+	 *            The reason why the batch is emitted.
+	 */
+	private void emitBatchDirect(StreamRoute route, int taskId, Batch batch, FlushCause cause) {
+		final String streamId = route.streamId;
+		final boolean[] projection = route.getDirectProjection(taskId);
+		this.recordStatistics(streamId, batch, cause);
+		this.numberOfBufferedTuples -= batch.getNumberOfTuples();
+		route.numberOfBufferedTuples -= batch.getNumberOfTuples();
+		final Object batchMessageId = getBatchMessageId(batch);
+		final Collection<Tuple> anchors = batch.removeAnchors();
+		this.prepareCompression(streamId, batch);
+		final BatchPool pool = this.batchPools.get(streamId);
+		if(pool != null) {
+			batch.prepareRelease(pool);
+		}
+		this.doEmitDirect(taskId, streamId, anchors, project(batch, projection), batchMessageId);
+		if(pool != null) {
+			batch.setNumberOfDeliveries(1);
+			releaseProjected(batch, projection, 1);
+		}
+		this.releaseAnchors(anchors);
+	}
+	
+	/**
+	 * Emits the given output batch of an all-grouping receiver to all its tasks. The batch is emitted as a single object
+	 * to all tasks; thus, it is buffered once and serialized once for all remote tasks. If batches are recycled, the
+	 * batch is returned to the stream's pool after all tasks released it.
+	 * 
+	 * @param route
+	 *            The routing information of the emulated output stream.
+	 * @param receiverIndex
+	 *            The index of the all-grouping receiver.
+	 * @param batch
+	 *            The output batch to be emitted.
+	 * @param cause
+	 *            The reason why the batch is emitted.
+	 */
+	private void emitBroadcast(StreamRoute route, int receiverIndex, Batch batch, FlushCause cause) {
+		final int[] taskIds = route.broadcastTasks[receiverIndex];
+		final String streamId = route.emulationRoute.streamId;
+		final boolean[] projection = route.broadcastProjections[receiverIndex];
+		this.recordStatistics(streamId, batch, cause);
+		this.numberOfBufferedTuples -= batch.getNumberOfTuples();
+		route.numberOfBufferedTuples -= batch.getNumberOfTuples();
+		final BatchMessageId batchMessageId = getBatchMessageId(batch);
+		if(batchMessageId != null) {
+			batchMessageId.pendingDeliveries = taskIds.length;
+		}
+		final Collection<Tuple> anchors = batch.removeAnchors();
+		if(taskIds.length > 1) {
+			batch.prepareBroadcast();
+		}
+		this.prepareCompression(streamId, batch);
+		final BatchPool pool = this.batchPools.get(streamId);
+		if(pool != null) {
+			batch.prepareRelease(pool);
+		}
+		final Object values = project(batch, projection);
+		for(int i = 0; i < taskIds.length; ++i) {
+			this.doEmitDirect(taskIds[i], streamId, anchors, values, batchMessageId);
+		}
+		if(pool != null) {
+			batch.setNumberOfDeliveries(taskIds.length);
+			releaseProjected(batch, projection, taskIds.length);
+		}
+		this.releaseAnchors(anchors);
+	}
+	
+	/**
+	 * Returns the values that are emitted for the given output batch: either the batch itself, or a list that contains
+	 * only the projected columns and {@code null} for all other attributes.
+	 * 
+	 * @param batch
+	 *            The output batch.
+	 * @param projection
+	 *            The attributes that are read by the receivers ({@code null} if all attributes are read).
+	 * 
+	 * @return the emitted values
+	 */
+	private static Object project(Batch batch, boolean[] projection) {
+		if(projection == null) {
+			return batch;
+		}
+		final List<Object> values = new ArrayList<Object>(projection.length);
+		for(int i = 0; i < projection.length; ++i) {
+			values.add(projection[i] ? batch.get(i) : null);
+		}
+		return values;
+	}
+	
+	/**
+	 * Releases the columns of a recycled output batch that were not emitted because of a projection, once for each
+	 * delivery.
+	 * 
+	 * @param batch
+	 *            The emitted output batch.
+	 * @param projection
+	 *            The attributes that are read by the receivers ({@code null} if all attributes are read).
+	 * @param deliveries
+	 *            The number of consumer tasks the batch was delivered to.
+	 */
+	private static void releaseProjected(Batch batch, boolean[] projection, int deliveries) {
+		if(projection == null || deliveries <= 0) {
+			return;
+		}
+		for(int i = 0; i < projection.length; ++i) {
+			if(!projection[i]) {
+				for(int j = 0; j < deliveries; ++j) {
+					batch.release();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Records the given output batch in the statistics of its output stream. Batches of Aeolus-defined direct streams
+	 * are recorded for the corresponding user-defined stream.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param batch
+	 *            The output batch to be emitted.
+	 * @param cause
+	 *            The reason why the batch is emitted.
+	 */
+	private void recordStatistics(String streamId, Batch batch, FlushCause cause) {
+		if(this.statistics == null) {
+			return;
+		}
+		
+		this.getStreamStatistics(streamId).record(batch, cause, this.currentTimeMillis());
+	}
+	
+	/**
+	 * Returns the statistics of the given output stream. Aeolus-defined direct streams share the statistics of the
+	 * corresponding user-defined stream. Must only be called if statistics are enabled.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * 
+	 * @return the statistics of the (user-defined) output stream
+	 */
+	private BatchStatistics getStreamStatistics(String streamId) {
+		String userStreamId = streamId;
+		if(streamId.startsWith(BatchingOutputFieldsDeclarer.STREAM_PREFIX)) {
+			userStreamId = streamId.substring(BatchingOutputFieldsDeclarer.STREAM_PREFIX.length());
+		}
+		BatchStatistics streamStatistics = this.statistics.get(userStreamId);
+		if(streamStatistics == null) {
+			streamStatistics = new BatchStatistics();
+			this.statistics.put(userStreamId, streamStatistics);
+		}
+		return streamStatistics;
+	}
+	
+	/**
+	 * Enables or disables the collection of statistics about emitted batches (see {@link BatchStatistics}).
+	 * 
+	 * @param enabled
+	 *            {@code true} to collect statistics; {@code false} otherwise
+	 */
+	public void setStatisticsEnabled(boolean enabled) {
+		if(!enabled) {
+			this.statistics = null;
+		} else if(this.statistics == null) {
+			this.statistics = new HashMap<String, BatchStatistics>();
+		}
+	}
+	
+	/**
+	 * Returns the statistics of the emitted batches since the last report for each (user-defined) output stream.
+	 * Streams without emitted batches have no entry, unless they held buffered tuples at the last report.
+	 * 
+	 * @return the statistics for each output stream (empty, if statistics are disabled)
+	 */
+	public Map<String, BatchStatistics> getStatistics() {
+		if(this.statistics == null) {
+			return Collections.emptyMap();
+		}
+		return Collections.unmodifiableMap(this.statistics);
+	}
+	
+	/**
+	 * Creates the report tuples of the statistics of all output streams and resets the statistics (see
+	 * {@link BatchStatistics}). The reported number of buffered tuples of each stream is taken at report time.
+	 * 
+	 * @param ts
+	 *            The timestamp when this report is triggered.
+	 * 
+	 * @return the report tuples (empty, if statistics are disabled)
+	 */
+	public List<Values> reportStatistics(long ts) {
+		final List<Values> report = new ArrayList<Values>();
+		if(this.statistics != null) {
+			for(BatchStatistics streamStatistics : this.statistics.values()) {
+				streamStatistics.setNumberOfBufferedTuples(0);
+			}
+			for(StreamRoute route : this.routes.values()) {
+				if(route.numberOfBufferedTuples > 0) {
+					final BatchStatistics streamStatistics = this.getStreamStatistics(route.streamId);
+					streamStatistics.setNumberOfBufferedTuples(streamStatistics.getNumberOfBufferedTuples()
+						+ route.numberOfBufferedTuples);
+				}
+			}
+			for(Entry<String, BatchStatistics> streamStatistics : this.statistics.entrySet()) {
+				streamStatistics.getValue().report(ts, streamStatistics.getKey(), report);
+			}
+		}
+		return report;
+	}
+	
+	/**
+	 * Returns the message ID of the given output batch. The message ID contains the message IDs of all tuples of the
+	 * batch (see {@link BatchMessageId}).
+	 * 
+	 * @param batch
+	 *            The output batch to be emitted.
+	 * 
+	 * @return the message ID of the batch or {@code null} if no tuple of the batch has a message ID
+	 */
+	private static BatchMessageId getBatchMessageId(Batch batch) {
+		final List<Object> messageIds = batch.removeMessageIds();
+		if(messageIds == null) {
+			return null;
+		}
+		return new BatchMessageId(messageIds);
+	}
+	
+	/**
+	 * Enables or disables the local bypass. If enabled, tuples for receiver tasks that run in the same worker as the
+	 * producer are emitted directly instead of being batched, because Storm does not serialize those tuples anyway.
+	 * Only direct output streams and output streams that are emulated by direct emit (ie, receivers that are
+	 * connected via {@link de.hub.cs.dbis.aeolus.batching.api.BatchedDeclarer BatchedDeclarer}) are affected. Must be
+	 * called before the first tuple is emitted.
+	 * 
+	 * @param enabled
+	 *            {@code true} to emit tuples for local receiver tasks directly; {@code false} to batch all tuples
+	 */
+	public void setLocalBypass(boolean enabled) {
+		for(StreamRoute route : this.routes.values()) {
+			route.localTasks = null;
+			if(route.broadcastBuffers != null) {
+				this.splitBroadcastTasks(route, enabled);
+			}
+			if(!enabled || route.directBuffers == null) {
+				continue;
+			}
+			
+			final boolean[] localTasks = new boolean[route.directBuffers.length];
+			boolean anyLocal = false;
+			for(int i = 0; i < localTasks.length; ++i) {
+				if(route.directBuffers[i] != null
+					&& this.workerTasks.contains(new Integer(route.directTaskOffset + i))) {
+					localTasks[i] = true;
+					anyLocal = true;
+				}
+			}
+			if(anyLocal) {
+				route.localTasks = localTasks;
+			}
+		}
+	}
+	
+	/**
+	 * Splits the tasks of each all-grouping receiver of an emulated output stream into tasks that get the broadcast
+	 * output batches and tasks in the same worker that get their tuples without batching.
+	 * 
+	 * @param route
+	 *            The routing information of the emulated output stream.
+	 * @param enabled
+	 *            {@code true} if the local bypass is enabled
+	 */
+	private void splitBroadcastTasks(StreamRoute route, boolean enabled) {
+		for(int i = 0; i < route.broadcastBuffers.length; ++i) {
+			if(route.broadcastBuffers[i] == null) {
+				continue;
+			}
+			route.broadcastTasks[i] = route.emulatedTasks[i];
+			route.localBroadcastTasks[i] = null;
+			if(!enabled) {
+				continue;
+			}
+			
+			final List<Integer> remoteTasks = new ArrayList<Integer>();
+			final List<Integer> localTasks = new ArrayList<Integer>();
+			for(int taskId : route.emulatedTasks[i]) {
+				if(this.workerTasks.contains(new Integer(taskId))) {
+					localTasks.add(new Integer(taskId));
+				} else {
+					remoteTasks.add(new Integer(taskId));
+				}
+			}
+			if(localTasks.size() > 0) {
+				route.broadcastTasks[i] = toIntArray(remoteTasks);
+				route.localBroadcastTasks[i] = toIntArray(localTasks);
+				// a tuple is emitted to each local task and in a batch to the remote tasks
+				route.fanOut = true;
+			}
+		}
+	}
+	
+	/**
+	 * Enables or disables the recycling of emitted batches. If enabled, an emitted batch is reused as output buffer
+	 * after all consumers released all its columns (see {@link BatchColumn#release()}). Consumers release a batch, if
+	 * they are wrapped by an {@link de.hub.cs.dbis.aeolus.batching.api.InputDebatcher InputDebatcher} (local
+	 * consumers) or if the batch got serialized by {@link BatchColumnSerializer} (remote consumers). Batches that are
+	 * not released by all consumers are never reused; thus, recycling is safe for local and remote consumers.
+	 * 
+	 * @param enabled
+	 *            {@code true} to recycle emitted batches; {@code false} to allocate new batches after each emit
+	 */
+	public void setBatchRecycling(boolean enabled) {
+		this.batchPools.clear();
+		if(!enabled) {
+			return;
+		}
+		
+		// each buffer can be double buffered (ie, one batch is in-flight while the other one gets filled)
+		for(StreamRoute route : this.routes.values()) {
+			if(route.buffers != null) {
+				this.batchPools.put(route.streamId, new BatchPool(2 * route.buffers.length));
+			} else if(route.directBuffers != null) {
+				this.batchPools.put(route.streamId, new BatchPool(2 * Math.max(1, route.numberOfDirectBuffers
+					+ route.numberOfBroadcastBuffers)));
+			}
+		}
+	}
+	
+	/**
+	 * Creates a new (empty) output batch for the given output stream, using the stream's current batch size, declared
+	 * attribute types, and declared timestamp attribute. If batches are recycled, a released batch is reused if
+	 * available.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * 
+	 * @return a new output batch
+	 */
+	private Batch newBatch(String streamId) {
+		final int batchSize = this.batchSizes.get(streamId).intValue();
+		
+		Batch batch = null;
+		final BatchPool pool = this.batchPools.get(streamId);
+		if(pool != null) {
+			batch = pool.poll();
+		}
+		
+		if(batch != null) {
+			batch.reset(batchSize);
+		} else {
+			final Class<?>[] types = this.columnTypes.get(streamId);
+			if(types != null) {
+				batch = new Batch(batchSize, types);
+			} else {
+				batch = new Batch(batchSize, this.numberOfAttributes.get(streamId).intValue());
+			}
+		}
+		
+		final Integer timestampIndex = this.timestampIndexes.get(streamId);
+		if(timestampIndex != null) {
+			batch.setTimestampIndex(timestampIndex.intValue());
+		}
+		return batch;
+	}
+	
+	/**
+	 * Enables adaptive batch sizes. After each emitted batch, {@code controller} computes the batch size of the next
+	 * batch of the same output stream. The configured batch sizes are used as initial values. Output streams with
+	 * disabled batching are not affected.
+	 * 
+	 * @param controller
+	 *            The controller that adjusts the batch sizes (or {@code null} to disable adaptive batch sizes).
+	 */
+	public void setBatchSizeController(AdaptiveBatchSizeController controller) {
+		if(controller != null && this.batchSizes instanceof SingleBatchSizeHashMap) {
+			// a single batch size cannot be adjusted per stream
+			final Map<String, Integer> sizes = new HashMap<String, Integer>();
+			for(String streamId : this.numberOfAttributes.keySet()) {
+				sizes.put(streamId, this.batchSizes.get(streamId));
+			}
+			this.batchSizes = sizes;
+		}
+		this.batchSizeController = controller;
+	}
+	
+	/**
+	 * Returns the current batch size of the given output stream.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * 
+	 * @return the current batch size of the output stream ({@code null} or non-positive if batching is disabled)
+	 */
+	public Integer getBatchSize(String streamId) {
+		return this.batchSizes.get(streamId);
+	}
+	
+	/**
+	 * Updates the batch size of the given output stream if adaptive batch sizes are enabled. Must be called before
+	 * {@code batch} is emitted.
+	 * 
+	 * @param streamId
+	 *            The output stream the batch is emitted to.
+	 * @param batch
+	 *            The batch that is emitted.
+	 */
+	private void adaptBatchSize(String streamId, Batch batch) {
+		if(this.batchSizeController != null) {
+			final int current = this.batchSizes.get(streamId).intValue();
+			final int next = this.batchSizeController.computeBatchSize(streamId, current, batch.getNumberOfTuples(),
+				this.currentTimeMillis() - batch.getFirstInsertTimestamp());
+			if(next != current) {
+				this.batchSizes.put(streamId, new Integer(next));
+			}
+		}
+	}
+	
+	/**
+	 * Returns the maximum linger time of the given output stream. For Aeolus-defined direct streams, the value of the
+	 * corresponding user-defined stream is returned.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * 
+	 * @return the maximum linger time in milliseconds (zero, if not specified)
+	 */
+	private int getMaxLinger(String streamId) {
+		Integer linger = this.maxLinger.get(streamId);
+		if(linger == null && streamId.startsWith(BatchingOutputFieldsDeclarer.STREAM_PREFIX)) {
+			linger = this.maxLinger.get(streamId.substring(BatchingOutputFieldsDeclarer.STREAM_PREFIX.length()));
+		}
+		if(linger == null) {
+			return this.defaultMaxLinger;
+		}
+		return linger.intValue();
+	}
+	
+	/**
+	 * Returns the current time that is used to check for expired batches. Can be overwritten for testing.
+	 * 
+	 * @return the current time in milliseconds
+	 */
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+	
+	/**
+	 * Updates {@link #nextExpiration} after the first tuple was inserted into the given batch.
+	 * 
+	 * @param streamId
+	 *            The output stream the batch belongs to.
+	 * @param batch
+	 *            The batch that received its first tuple.
+	 */
+	private void updateExpiration(String streamId, Batch batch) {
+		final int linger = this.getMaxLinger(streamId);
+		if(linger > 0) {
+			final long expiration = batch.getFirstInsertTimestamp() + linger;
+			if(expiration < this.nextExpiration) {
+				this.nextExpiration = expiration;
+			}
+		}
+	}
+	
+	/**
+	 * Checks if the given list contains a {@link FieldsGroupingPartitioner} that is equivalent to the given one.
+	 * 
+	 * @param partitioners
+	 *            The partitioners of the already processed receivers.
+	 * @param partitioner
+	 *            The partitioner of the current receiver.
+	 * 
+	 * @return {@code true} if an equivalent partitioner is contained; {@code false} otherwise
+	 */
+	private static boolean containsEquivalent(List<FieldsGroupingPartitioner> partitioners,
+		FieldsGroupingPartitioner partitioner) {
+		for(FieldsGroupingPartitioner p : partitioners) {
+			if(p.isEquivalent(partitioner)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the smallest value of the given (non-empty) collection.
+	 */
+	private static int min(Collection<Integer> values) {
+		int min = Integer.MAX_VALUE;
+		for(Integer v : values) {
+			min = Math.min(min, v.intValue());
+		}
+		return min;
+	}
+	
+	/**
+	 * Returns the largest value of the given (non-empty) collection.
+	 */
+	private static int max(Collection<Integer> values) {
+		int max = Integer.MIN_VALUE;
+		for(Integer v : values) {
+			max = Math.max(max, v.intValue());
+		}
+		return max;
+	}
+	
+	/**
+	 * Copies the given values into a new {@code int} array.
+	 */
+	private static int[] toIntArray(Collection<Integer> values) {
+		final int[] array = new int[values.size()];
+		int i = 0;
+		for(Integer v : values) {
+			array[i++] = v.intValue();
+		}
+		return array;
+	}
+	
+	/**
+	 * Registers the classes {@link Batch Batch.class}, {@link BatchColumn BatchColumn.class}, and all specialized
+	 * {@link BatchColumn} classes for serialization and deserialization. The classes are registered with the custom
+	 * serializers {@link BatchSerializer} and {@link BatchColumnSerializer}.
+	 * 
+	 * @param stormConfig
+	 *            The storm config the which the classes should be registered to.
+	 */
+	public static void registerKryoClasses(Config stormConfig) {
+		registerKryoClasses(stormConfig, true);
+	}
+	
+	/**
+	 * Registers the classes {@link Batch Batch.class}, {@link BatchColumn BatchColumn.class}, and all specialized
+	 * {@link BatchColumn} classes for serialization and deserialization.
+	 * 
+	 * @param stormConfig
+	 *            The storm config the which the classes should be registered to.
+	 * @param useCustomSerializers
+	 *            If {@code true}, the custom serializers {@link BatchSerializer} and {@link BatchColumnSerializer} are
+	 *            used; otherwise, Kryo's default serializers are used.
+	 */
+	public static void registerKryoClasses(Config stormConfig, boolean useCustomSerializers) {
+		if(useCustomSerializers) {
+			stormConfig.registerSerialization(Batch.class, BatchSerializer.class);
+			stormConfig.registerSerialization(BatchColumn.class, BatchColumnSerializer.class);
+			stormConfig.registerSerialization(LongBatchColumn.class, BatchColumnSerializer.class);
+			stormConfig.registerSerialization(IntBatchColumn.class, BatchColumnSerializer.class);
+			stormConfig.registerSerialization(ShortBatchColumn.class, BatchColumnSerializer.class);
+			stormConfig.registerSerialization(DoubleBatchColumn.class, BatchColumnSerializer.class);
+			stormConfig.registerSerialization(StringBatchColumn.class, BatchColumnSerializer.class);
+		} else {
+			stormConfig.registerSerialization(Batch.class);
+			stormConfig.registerSerialization(BatchColumn.class);
+			stormConfig.registerSerialization(LongBatchColumn.class);
+			stormConfig.registerSerialization(IntBatchColumn.class);
+			stormConfig.registerSerialization(ShortBatchColumn.class);
+			stormConfig.registerSerialization(DoubleBatchColumn.class);
+			stormConfig.registerSerialization(StringBatchColumn.class);
+		}
+	}
+	
+	/**
+	 * Is called each time tuple or batch should be emitted.
+	 * 
+	 * @param streamId
+	 *            The name of the output stream the batch is appended.
+	 * @param anchors
+	 *            The anchor tuples of the emitted batch (bolts only).
+	 * @param tupleOrBatch
+	 *            The output tuple or batch to be emitted.
+	 * @param messageId
+	 *            The ID of the output batch (spouts only).
+	 * 
+	 * @return the task IDs that received the batch
+	 */
+	protected abstract List<Integer> doEmit(String streamId, Collection<Tuple> anchors, Object tupleOrBatch, Object messageId);
+	
+	/**
+	 * Is called each time tuple or batch should be emitted.
+	 * 
+	 * @param taskId
+	 *            The ID of the receiver task.
+	 * @param streamId
+	 *            The name of the output stream the batch is appended.
+	 * @param anchors
+	 *            The anchor tuples of the emitted batch (bolts only).
+	 * @param tupleOrBatch
+	 *            The output tuple or batch to be emitted.
+	 * @param messageId
+	 *            The ID of the output batch (spouts only).
+	 */
+	protected abstract void doEmitDirect(int taskId, String streamId, Collection<Tuple> anchors, Object tupleOrBatch, Object messageId);
+	
+	/**
+	 * Is called each time an input tuple is acked, after all output batches anchored to it got emitted (bolts only).
+	 * 
+	 * @param input
+	 *            The input tuple to be acked.
+	 */
+	protected abstract void doAck(Tuple input);
 	
 }
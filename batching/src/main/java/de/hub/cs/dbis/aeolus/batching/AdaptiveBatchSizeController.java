@@ -0,0 +1,177 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+
+
+
+/**
+ * {@link AdaptiveBatchSizeController} adjusts the batch size of each output stream at runtime. Each time a batch is
+ * emitted, the controller gets the number of tuples in the batch and the time it took to fill the batch. From these
+ * values, it estimates the (exponentially smoothed) emit rate per output buffer and computes the batch size that can
+ * be filled within the target latency. In order to avoid oscillation, the batch size changes by at most a factor of two
+ * per emitted batch and is not changed at all if the difference is small. The batch size always stays within the
+ * specified bounds.<br />
+ * <br />
+ * An {@link AdaptiveBatchSizeController} holds per-stream state and must not be shared among multiple
+ * {@link AbstractBatchCollector}s.
+ * 
+ * @author Matthias J. Sax
+ */
+public class AdaptiveBatchSizeController implements Serializable {
+	private final static long serialVersionUID = -2862402519962330829L;
+	
+	private final static Logger logger = LoggerFactory.getLogger(AdaptiveBatchSizeController.class);
+	
+	/**
+	 * The weight of a new observation for the exponentially smoothed emit rate.
+	 */
+	private final static double ALPHA = 0.25;
+	/**
+	 * The relative change of the batch size that is ignored.
+	 */
+	private final static double TOLERANCE = 0.1;
+	
+	/**
+	 * The minimum batch size.
+	 */
+	private final int minBatchSize;
+	/**
+	 * The maximum batch size.
+	 */
+	private final int maxBatchSize;
+	/**
+	 * The target latency in milliseconds, ie, the time a tuple should stay at most in an output buffer.
+	 */
+	private final int targetLatency;
+	/**
+	 * The smoothed emit rate (in tuples per millisecond) of each output stream.
+	 */
+	private final Map<String, double[]> emitRates = new HashMap<String, double[]>();
+	
+	
+	
+	/**
+	 * Instantiates a new {@link AdaptiveBatchSizeController}.
+	 *
+	 * @param minBatchSize
+	 *            The minimum batch size (must be positive).
+	 * @param maxBatchSize
+	 *            The maximum batch size (must not be smaller than {@code minBatchSize}).
+	 * @param targetLatency
+	 *            The target latency in milliseconds (must be positive).
+	 *
+	 * @throws IllegalArgumentException
+	 *             if any parameter does not meet its constraints
+	 */
+	public AdaptiveBatchSizeController(int minBatchSize, int maxBatchSize, int targetLatency) {
+		if(minBatchSize < 1) {
+			throw new IllegalArgumentException("Parameter <minBatchSize> must be greater than 0.");
+		}
+		if(maxBatchSize < minBatchSize) {
+			throw new IllegalArgumentException("Parameter <maxBatchSize> must not be smaller than <minBatchSize>.");
+		}
+		if(targetLatency < 1) {
+			throw new IllegalArgumentException("Parameter <targetLatency> must be greater than 0.");
+		}
+		this.minBatchSize = minBatchSize;
+		this.maxBatchSize = maxBatchSize;
+		this.targetLatency = targetLatency;
+	}
+	
+	
+	
+	/**
+	 * Returns the minimum batch size. It is used as the initial batch size of all output streams.
+	 *
+	 * @return the minimum batch size
+	 */
+	public int getMinBatchSize() {
+		return this.minBatchSize;
+	}
+	
+	/**
+	 * Returns the maximum batch size.
+	 *
+	 * @return the maximum batch size
+	 */
+	public int getMaxBatchSize() {
+		return this.maxBatchSize;
+	}
+	
+	/**
+	 * Returns the target latency in milliseconds.
+	 *
+	 * @return the target latency
+	 */
+	public int getTargetLatency() {
+		return this.targetLatency;
+	}
+	
+	/**
+	 * Computes the batch size of an output stream after a batch was emitted.
+	 *
+	 * @param streamId
+	 *            The output stream the batch was emitted to.
+	 * @param currentBatchSize
+	 *            The current batch size of the output stream.
+	 * @param numberOfTuples
+	 *            The number of tuples in the emitted batch.
+	 * @param fillTime
+	 *            The time in milliseconds between inserting the first tuple and emitting the batch.
+	 *
+	 * @return the batch size to be used for new batches of the output stream
+	 */
+	public int computeBatchSize(String streamId, int currentBatchSize, int numberOfTuples, long fillTime) {
+		// fill times below the clock resolution are treated as one millisecond
+		final double rate = numberOfTuples / (double)Math.max(fillTime, 1);
+		
+		double[] smoothedRate = this.emitRates.get(streamId);
+		if(smoothedRate == null) {
+			smoothedRate = new double[] {rate};
+			this.emitRates.put(streamId, smoothedRate);
+		} else {
+			smoothedRate[0] = ALPHA * rate + (1 - ALPHA) * smoothedRate[0];
+		}
+		
+		long target = Math.round(smoothedRate[0] * this.targetLatency);
+		// limit the change per step to avoid oscillation
+		target = Math.max(target, currentBatchSize / 2);
+		target = Math.min(target, 2L * currentBatchSize);
+		target = Math.max(target, this.minBatchSize);
+		target = Math.min(target, this.maxBatchSize);
+		
+		if(Math.abs(target - currentBatchSize) <= TOLERANCE * currentBatchSize && currentBatchSize >= this.minBatchSize
+			&& currentBatchSize <= this.maxBatchSize) {
+			return currentBatchSize;
+		}
+		
+		logger.trace("stream: {}; batch size {} -> {}", streamId, new Integer(currentBatchSize), new Long(target));
+		return (int)target;
+	}
+	
+}
@@ -19,11 +19,17 @@
 package de.hub.cs.dbis.aeolus.batching;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
 
 
@@ -53,6 +59,35 @@ public class Batch extends ArrayList<BatchColumn> {
 	 * The current number of tuples stored in this {@link Batch}.
 	 */
 	private int size;
+	/**
+	 * The point in time (in milliseconds) when the first tuple was inserted into this {@link Batch}.
+	 */
+	private long firstInsertTimestamp;
+	/**
+	 * The declared attribute types ({@code null} if the types of the first inserted tuple are used).
+	 */
+	private transient Class<?>[] columnTypes;
+	/**
+	 * The number of column releases that are outstanding before this {@link Batch} can be recycled.
+	 */
+	private transient AtomicInteger pendingReleases;
+	/**
+	 * The pool this {@link Batch} is returned to, after all consumers released it.
+	 */
+	private transient BatchPool pool;
+	/**
+	 * The message IDs of the buffered tuples that were emitted with a message ID ({@code null} if there are none).
+	 */
+	private transient ArrayList<Object> messageIds;
+	/**
+	 * The distinct anchors of the buffered tuples ({@code null} if no tuple is anchored).
+	 */
+	private transient Set<Tuple> anchors;
+	/**
+	 * The index of the timestamp attribute, for which the smallest and largest value is tracked ({@code -1} if no
+	 * timestamp attribute is declared).
+	 */
+	private transient int timestampIndex = -1;
 	
 	
 	
@@ -65,7 +100,8 @@ public class Batch extends ArrayList<BatchColumn> {
 	
 	/**
 	 * Instantiates a new {@link Batch} with size {@code batchSize}. All tuples that are inserted, must have the same
-	 * number of attributes as specified by {@code numberOfAttributes}.
+	 * number of attributes as specified by {@code numberOfAttributes}. The type of each {@link BatchColumn} is
+	 * determined by the first inserted tuple.
 	 * 
 	 * @param batchSize
 	 *            The number of tuples that can be stored in this {@link Batch} (must be largen than 0).
@@ -83,12 +119,45 @@ public class Batch extends ArrayList<BatchColumn> {
 		this.batchSize = batchSize;
 		this.numberOfAttributes = numberOfAttributes;
 		this.size = 0;
+		// columns are created on first insert (see addTuple(...))
+	}
+	
+	/**
+	 * Instantiates a new {@link Batch} with size {@code batchSize} and the given column types. All tuples that are
+	 * inserted, must have {@code columnTypes.length} attributes. If an inserted value does not match the declared type
+	 * of its column, the column falls back to a generic {@link BatchColumn}.
+	 * 
+	 * @param batchSize
+	 *            The number of tuples that can be stored in this {@link Batch} (must be largen than 0).
+	 * @param columnTypes
+	 *            The type of each attribute (must contain at least one element; elements may be {@code null}).
+	 */
+	public Batch(int batchSize, Class<?>[] columnTypes) {
+		this(batchSize, columnTypes.length);
 		
-		for(int i = 0; i < numberOfAttributes; ++i) {
-			this.add(new BatchColumn(batchSize));
+		this.columnTypes = columnTypes;
+		for(int i = 0; i < this.numberOfAttributes; ++i) {
+			this.add(BatchColumn.newInstance(columnTypes[i], batchSize));
 		}
 	}
 	
+	/**
+	 * Restores a {@link Batch} with the given state. Columns must be added by the caller. Used for deserialization.
+	 * 
+	 * @param batchSize
+	 *            The number of tuples that can be stored in this {@link Batch}.
+	 * @param numberOfAttributes
+	 *            The number of attributes of the tuples stored in this {@link Batch}.
+	 * @param numberOfTuples
+	 *            The number of tuples stored in this {@link Batch}.
+	 */
+	Batch(int batchSize, int numberOfAttributes, int numberOfTuples) {
+		super(numberOfAttributes);
+		this.batchSize = batchSize;
+		this.numberOfAttributes = numberOfAttributes;
+		this.size = numberOfTuples;
+	}
+	
 	
 	
 	/**
@@ -106,13 +175,319 @@ public class Batch extends ArrayList<BatchColumn> {
 		
 		logger.trace("tuple: {}; size before insert: {}", tuple, new Integer(this.size));
 		
+		if(this.size == 0) {
+			this.firstInsertTimestamp = System.currentTimeMillis();
+			
+			if(this.columnTypes == null) { // use the types of the first tuple
+				for(int i = 0; i < this.numberOfAttributes; ++i) {
+					final Object value = tuple.get(i);
+					final Class<?> type = value == null ? null : value.getClass();
+					if(i == super.size()) {
+						this.add(BatchColumn.newInstance(type, this.batchSize));
+					} else if(this.get(i).getClass() != BatchColumn.getColumnClass(type)) {
+						// recycled batch that was used for different types
+						this.set(i, BatchColumn.newInstance(type, this.batchSize));
+					}
+				}
+			}
+		}
+		
 		for(int i = 0; i < this.numberOfAttributes; ++i) {
-			this.get(i).add(tuple.get(i));
+			final Object value = tuple.get(i);
+			final BatchColumn column = this.get(i);
+			if(!column.append(value)) {
+				logger.trace("type mismatch in column #{}: {}", new Integer(i), value);
+				final BatchColumn genericColumn = new BatchColumn(this.batchSize);
+				genericColumn.addAll(column);
+				genericColumn.add(value);
+				if(column.hasTimestampRange()) {
+					genericColumn.setTimestampRange(column.getMinTimestamp(), column.getMaxTimestamp());
+				}
+				this.set(i, genericColumn);
+			}
+		}
+		if(this.timestampIndex != -1) {
+			this.get(this.timestampIndex).addTimestamp(((Number)tuple.get(this.timestampIndex)).longValue());
 		}
 		
 		++this.size;
 	}
 	
+	/**
+	 * Declares the timestamp attribute of this {@link Batch}. The smallest and largest timestamp of all inserted tuples
+	 * are tracked by the column of the timestamp attribute and are transferred together with the column (see
+	 * {@link BatchColumn#hasTimestampRange()}). Must be called while this {@link Batch} is empty.
+	 * 
+	 * @param index
+	 *            The index of the timestamp attribute ({@code -1} to disable timestamp tracking).
+	 */
+	void setTimestampIndex(int index) {
+		assert (this.size == 0);
+		assert (index >= -1 && index < this.numberOfAttributes);
+		
+		this.timestampIndex = index;
+	}
+	
+	/**
+	 * Returns {@code true} if a timestamp attribute is declared and this {@link Batch} is not empty.
+	 * 
+	 * @return {@code true} if {@link #getMinTimestamp()} and {@link #getMaxTimestamp()} are valid; {@code false}
+	 *         otherwise
+	 */
+	public boolean hasTimestampRange() {
+		return this.timestampIndex != -1 && this.size > 0;
+	}
+	
+	/**
+	 * Returns the smallest timestamp of all inserted tuples. Only valid if {@link #hasTimestampRange()} returns
+	 * {@code true}.
+	 * 
+	 * @return the smallest timestamp
+	 */
+	public long getMinTimestamp() {
+		return this.get(this.timestampIndex).getMinTimestamp();
+	}
+	
+	/**
+	 * Returns the largest timestamp of all inserted tuples. Only valid if {@link #hasTimestampRange()} returns
+	 * {@code true}.
+	 * 
+	 * @return the largest timestamp
+	 */
+	public long getMaxTimestamp() {
+		return this.get(this.timestampIndex).getMaxTimestamp();
+	}
+	
+	/**
+	 * Adds the message ID of a buffered tuple.
+	 * 
+	 * @param messageId
+	 *            The message ID of the tuple (must not be {@code null}).
+	 */
+	void addMessageId(Object messageId) {
+		assert (messageId != null);
+		
+		if(this.messageIds == null) {
+			this.messageIds = new ArrayList<Object>();
+		}
+		this.messageIds.add(messageId);
+	}
+	
+	/**
+	 * Removes and returns the message IDs of all buffered tuples. Must be called before this {@link Batch} is emitted,
+	 * because a recycled {@link Batch} might be reused before its message IDs are acked.
+	 * 
+	 * @return the message IDs of the buffered tuples or {@code null} if no tuple has a message ID
+	 */
+	List<Object> removeMessageIds() {
+		final List<Object> ids = this.messageIds;
+		this.messageIds = null;
+		return ids;
+	}
+	
+	/**
+	 * Adds the given anchor of a buffered tuple. Anchors are compared by identity; thus, each input tuple is contained
+	 * at most once.
+	 * 
+	 * @param anchor
+	 *            The anchor of a buffered tuple (must not be {@code null}).
+	 * 
+	 * @return {@code true} if the anchor was not contained yet; {@code false} otherwise
+	 */
+	boolean addAnchor(Tuple anchor) {
+		assert (anchor != null);
+		
+		if(this.anchors == null) {
+			this.anchors = Collections.newSetFromMap(new IdentityHashMap<Tuple, Boolean>());
+		}
+		return this.anchors.add(anchor);
+	}
+	
+	/**
+	 * Removes the given anchor from the anchors of the buffered tuples, eg, because the anchor tuple got failed.
+	 * 
+	 * @param anchor
+	 *            The anchor to be removed.
+	 * 
+	 * @return {@code true} if the anchor was contained; {@code false} otherwise
+	 */
+	boolean removeAnchor(Tuple anchor) {
+		if(this.anchors == null || !this.anchors.remove(anchor)) {
+			return false;
+		}
+		if(this.anchors.isEmpty()) {
+			this.anchors = null;
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the number of distinct anchors of all buffered tuples.
+	 * 
+	 * @return the number of distinct anchors
+	 */
+	int getNumberOfAnchors() {
+		return this.anchors == null ? 0 : this.anchors.size();
+	}
+	
+	/**
+	 * Removes and returns the distinct anchors of all buffered tuples. Must be called before this {@link Batch} is
+	 * emitted, because a recycled {@link Batch} might be reused right after it got emitted.
+	 * 
+	 * @return the anchors of the buffered tuples or {@code null} if no tuple is anchored
+	 */
+	Collection<Tuple> removeAnchors() {
+		final Collection<Tuple> a = this.anchors;
+		this.anchors = null;
+		return a;
+	}
+	
+	/**
+	 * Clears this {@link Batch} such that it can be reused with the given capacity. Columns that were replaced by a
+	 * generic {@link BatchColumn} because of a type mismatch, are recreated with their declared type.
+	 * 
+	 * @param newBatchSize
+	 *            The number of tuples that can be stored in this {@link Batch} (must be larger than 0).
+	 */
+	void reset(int newBatchSize) {
+		assert (newBatchSize > 0);
+		
+		this.batchSize = newBatchSize;
+		this.size = 0;
+		this.messageIds = null;
+		this.anchors = null;
+		for(int i = 0; i < super.size(); ++i) {
+			if(this.columnTypes != null
+				&& this.get(i).getClass() != BatchColumn.getColumnClass(this.columnTypes[i])) {
+				this.set(i, BatchColumn.newInstance(this.columnTypes[i], newBatchSize));
+			} else {
+				final BatchColumn column = this.get(i);
+				column.clear();
+				column.setSerializationCache(false);
+				column.clearTimestampRange();
+			}
+		}
+	}
+	
+	/**
+	 * Prepares this {@link Batch} to be emitted to multiple consumers. The serialized values of all columns are cached
+	 * such that each column is serialized only once for all remote consumers (see {@link BatchColumnSerializer}).
+	 */
+	void prepareBroadcast() {
+		for(int i = 0; i < super.size(); ++i) {
+			this.get(i).setSerializationCache(true);
+		}
+	}
+	
+	/**
+	 * Enables or disables the compression of the serialized columns of this {@link Batch} (see
+	 * {@link BatchColumnSerializer}). Must be called before this {@link Batch} is emitted, because columns might be
+	 * replaced while tuples are inserted.
+	 * 
+	 * @param codec
+	 *            The codec that compresses the serialized columns (or {@code null} to disable compression).
+	 * @param threshold
+	 *            The minimum size (in bytes) of a serialized column, for which the column gets compressed.
+	 */
+	void setCompression(CompressionCodec codec, int threshold) {
+		for(int i = 0; i < super.size(); ++i) {
+			this.get(i).setCompression(codec, threshold);
+		}
+	}
+	
+	/**
+	 * Prepares this {@link Batch} to be returned to {@code batchPool} after it got emitted and all consumers released
+	 * it. Must be called before this {@link Batch} is emitted and must be followed by a call to
+	 * {@link #setNumberOfDeliveries(int)} after this {@link Batch} got emitted.
+	 * 
+	 * @param batchPool
+	 *            The pool this {@link Batch} is returned to.
+	 */
+	void prepareRelease(BatchPool batchPool) {
+		this.pool = batchPool;
+		if(this.pendingReleases == null) {
+			this.pendingReleases = new AtomicInteger();
+		}
+		// consumers might release columns before the number of deliveries is known
+		// -> use a large offset to prevent a premature recycling
+		this.pendingReleases.set(Integer.MAX_VALUE);
+		for(int i = 0; i < super.size(); ++i) {
+			this.get(i).setOwner(this);
+		}
+	}
+	
+	/**
+	 * Sets the number of consumer tasks this {@link Batch} was delivered to. Each consumer task must release each
+	 * column once, before this {@link Batch} is returned to its pool. If the number of deliveries is unknown (ie, zero),
+	 * this {@link Batch} is never recycled.
+	 * 
+	 * @param deliveries
+	 *            The number of consumer tasks this {@link Batch} was delivered to.
+	 */
+	void setNumberOfDeliveries(int deliveries) {
+		if(deliveries <= 0) {
+			return;
+		}
+		if(this.pendingReleases.addAndGet(deliveries * super.size() - Integer.MAX_VALUE) == 0) {
+			this.pool.recycle(this);
+		}
+	}
+	
+	/**
+	 * Releases a single column of this {@link Batch}. If all columns are released by all consumers, this {@link Batch}
+	 * is returned to its pool.
+	 */
+	void release() {
+		if(this.pendingReleases.decrementAndGet() == 0) {
+			this.pool.recycle(this);
+		}
+	}
+	
+	/**
+	 * Retains a single column of this {@link Batch}, ie, an additional release of the column is required before this
+	 * {@link Batch} is returned to its pool.
+	 */
+	void retain() {
+		this.pendingReleases.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the point in time (in milliseconds) when the first tuple was inserted into this {@link Batch}. The
+	 * returned value is undefined, if this {@link Batch} is empty.
+	 * 
+	 * @return the point in time when the first tuple was inserted
+	 */
+	public long getFirstInsertTimestamp() {
+		return this.firstInsertTimestamp;
+	}
+	
+	/**
+	 * Returns the number of tuples that can be stored in this {@link Batch}.
+	 * 
+	 * @return the capacity of this {@link Batch}
+	 */
+	int getBatchSize() {
+		return this.batchSize;
+	}
+	
+	/**
+	 * Returns the number of attributes of the tuples stored in this {@link Batch}.
+	 * 
+	 * @return the number of attributes of the tuples stored in this {@link Batch}
+	 */
+	int getNumberOfAttributes() {
+		return this.numberOfAttributes;
+	}
+	
+	/**
+	 * Returns the number of tuples stored in this {@link Batch}.
+	 * 
+	 * @return the number of tuples stored in this {@link Batch}
+	 */
+	public int getNumberOfTuples() {
+		return this.size;
+	}
+	
 	/**
 	 * Returns {@code true} if this batch is full; {@code false} otherwise.
 	 * 
@@ -18,27 +18,88 @@
  */
 package de.hub.cs.dbis.aeolus.batching;
 
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
 
 
 
 
 
 /**
- * {@link BatchColumn} represent an attribute column of a {@link Batch}.
+ * {@link BatchColumn} represent an attribute column of a {@link Batch}. {@link BatchColumn} can store values of any
+ * type. For attributes of type {@link Long}, {@link Integer}, {@link Short}, {@link Double}, and {@link String},
+ * specialized subclasses store the values without boxing (see {@link #newInstance(Class, int)}).<br />
+ * <br />
+ * The typed getter methods (eg, {@link #getLong(int)}) can be used for any column. Specialized columns return the
+ * value of their own type without boxing.
  * 
  * @author Matthias J. Sax
  */
-public class BatchColumn extends ArrayList<Object> {
+public class BatchColumn extends AbstractList<Object> implements RandomAccess, Serializable {
 	private final static long serialVersionUID = -2215147192473477343L;
 	
+	/**
+	 * The initial capacity of a column that is created by the default constructor.
+	 */
+	final static int DEFAULT_CAPACITY = 10;
+	/**
+	 * Shared empty array for specialized columns which do not use {@link #values}.
+	 */
+	private final static Object[] EMPTY = new Object[0];
+	
+	/**
+	 * The stored values.
+	 */
+	private Object[] values;
+	/**
+	 * The number of stored values.
+	 */
+	private int size;
+	/**
+	 * The emitted {@link Batch} this column belongs to, if the batch is recycled after all consumers released it
+	 * ({@code null} otherwise).
+	 */
+	private transient Batch owner;
+	/**
+	 * {@code true} if the serialized values of this column are cached, because the column is sent to multiple
+	 * consumers.
+	 */
+	private transient boolean cacheSerialization;
+	/**
+	 * The cached serialized values of this column (see {@link BatchColumnSerializer}).
+	 */
+	private transient volatile byte[] serializedValues;
+	/**
+	 * The codec that compresses the serialized values of this column ({@code null} if compression is disabled).
+	 */
+	private transient CompressionCodec compressionCodec;
+	/**
+	 * The minimum size (in bytes) of the serialized values of this column, for which the values get compressed.
+	 */
+	private transient int compressionThreshold;
+	/**
+	 * {@code true} if this column holds the declared timestamp attribute of its batch and the range of its timestamps
+	 * is tracked.
+	 */
+	private boolean timestampRange;
+	/**
+	 * The smallest timestamp of this column (only valid if {@link #timestampRange} is {@code true}).
+	 */
+	private long minTimestamp;
+	/**
+	 * The largest timestamp of this column (only valid if {@link #timestampRange} is {@code true}).
+	 */
+	private long maxTimestamp;
+	
 	
 	
 	/**
 	 * Default constructor. Needed for serialization.
 	 */
 	public BatchColumn() {
-		super();
+		this.values = EMPTY;
 	}
 	
 	/**
@@ -48,8 +109,372 @@ public class BatchColumn extends ArrayList<Object> {
 	 *            The number of attributes that should be stored in this {@link BatchColumn}.
 	 */
 	public BatchColumn(int batchSize) {
-		super(batchSize);
 		assert (batchSize > 0);
+		this.values = new Object[batchSize];
+	}
+	
+	
+	
+	/**
+	 * Creates a new column that stores values of the given type. For {@link Long}, {@link Integer}, {@link Short},
+	 * {@link Double}, and {@link String} a specialized column is returned. For any other type (or {@code null}) a
+	 * generic {@link BatchColumn} is returned.
+	 * 
+	 * @param type
+	 *            The type of the values to be stored.
+	 * @param batchSize
+	 *            The number of attributes that should be stored in the column (must be larger than zero).
+	 * 
+	 * @return a new column for values of type {@code type}
+	 */
+	public static BatchColumn newInstance(Class<?> type, int batchSize) {
+		if(type == Long.class) {
+			return new LongBatchColumn(batchSize);
+		}
+		if(type == Integer.class) {
+			return new IntBatchColumn(batchSize);
+		}
+		if(type == Short.class) {
+			return new ShortBatchColumn(batchSize);
+		}
+		if(type == Double.class) {
+			return new DoubleBatchColumn(batchSize);
+		}
+		if(type == String.class) {
+			return new StringBatchColumn(batchSize);
+		}
+		return new BatchColumn(batchSize);
+	}
+	
+	/**
+	 * Returns the class of the column that {@link #newInstance(Class, int)} creates for values of the given type.
+	 * 
+	 * @param type
+	 *            The type of the values to be stored.
+	 * 
+	 * @return the column class for values of type {@code type}
+	 */
+	static Class<? extends BatchColumn> getColumnClass(Class<?> type) {
+		if(type == Long.class) {
+			return LongBatchColumn.class;
+		}
+		if(type == Integer.class) {
+			return IntBatchColumn.class;
+		}
+		if(type == Short.class) {
+			return ShortBatchColumn.class;
+		}
+		if(type == Double.class) {
+			return DoubleBatchColumn.class;
+		}
+		if(type == String.class) {
+			return StringBatchColumn.class;
+		}
+		return BatchColumn.class;
+	}
+	
+	/**
+	 * Appends the given value if this column can store it. In contrast to {@link #add(Object)}, specialized columns
+	 * return {@code false} instead of throwing an exception if the value has a different type.
+	 * 
+	 * @param value
+	 *            The value to be appended.
+	 * 
+	 * @return {@code true} if the value was appended; {@code false} otherwise
+	 */
+	boolean append(Object value) {
+		return this.add(value);
+	}
+	
+	@Override
+	public Object get(int index) {
+		this.checkIndex(index);
+		return this.values[index];
+	}
+	
+	@Override
+	public int size() {
+		return this.size;
+	}
+	
+	@Override
+	public boolean add(Object value) {
+		if(this.size == this.values.length) {
+			this.values = Arrays.copyOf(this.values, Math.max(2 * this.size, DEFAULT_CAPACITY));
+		}
+		this.values[this.size++] = value;
+		++this.modCount;
+		return true;
+	}
+	
+	@Override
+	public void clear() {
+		Arrays.fill(this.values, 0, this.size, null);
+		this.size = 0;
+		++this.modCount;
+	}
+	
+	/**
+	 * Returns the value at position {@code index} as {@code long}.
+	 * 
+	 * @param index
+	 *            The position of the value.
+	 * 
+	 * @return the value at position {@code index}
+	 * 
+	 * @throws ClassCastException
+	 *             if the value is not a {@link Number}
+	 */
+	public long getLong(int index) {
+		return ((Number)this.get(index)).longValue();
+	}
+	
+	/**
+	 * Returns the value at position {@code index} as {@code int}.
+	 * 
+	 * @param index
+	 *            The position of the value.
+	 * 
+	 * @return the value at position {@code index}
+	 * 
+	 * @throws ClassCastException
+	 *             if the value is not a {@link Number}
+	 */
+	public int getInt(int index) {
+		return ((Number)this.get(index)).intValue();
+	}
+	
+	/**
+	 * Returns the value at position {@code index} as {@code short}.
+	 * 
+	 * @param index
+	 *            The position of the value.
+	 * 
+	 * @return the value at position {@code index}
+	 * 
+	 * @throws ClassCastException
+	 *             if the value is not a {@link Number}
+	 */
+	public short getShort(int index) {
+		return ((Number)this.get(index)).shortValue();
+	}
+	
+	/**
+	 * Returns the value at position {@code index} as {@code double}.
+	 * 
+	 * @param index
+	 *            The position of the value.
+	 * 
+	 * @return the value at position {@code index}
+	 * 
+	 * @throws ClassCastException
+	 *             if the value is not a {@link Number}
+	 */
+	public double getDouble(int index) {
+		return ((Number)this.get(index)).doubleValue();
+	}
+	
+	/**
+	 * Returns the value at position {@code index} as {@link String}.
+	 * 
+	 * @param index
+	 *            The position of the value.
+	 * 
+	 * @return the value at position {@code index}
+	 * 
+	 * @throws ClassCastException
+	 *             if the value is not a {@link String}
+	 */
+	public String getString(int index) {
+		return (String)this.get(index);
+	}
+	
+	/**
+	 * Signals that a consumer finished reading this column. Must be called exactly once per received column (for
+	 * example, {@link de.hub.cs.dbis.aeolus.batching.api.InputDebatcher InputDebatcher} calls it after all tuples of a
+	 * batch are processed) plus once per call to {@link #retain()}. After all columns of an emitted batch are released
+	 * by all consumers, the producer may reuse the batch; thus, a released column must not be accessed any longer.
+	 * Calling this method has no effect if the batch is not recycled.
+	 */
+	public void release() {
+		final Batch batch = this.owner;
+		if(batch != null) {
+			batch.release();
+		}
+	}
+	
+	/**
+	 * Signals that a consumer keeps this column beyond the call it was handed over in (eg, to buffer it across multiple
+	 * {@code execute(...)} calls). The column stays valid until it got released by an additional call to
+	 * {@link #release()}. Must be called before the column is released regularly. Calling this method has no effect if
+	 * the batch is not recycled.
+	 */
+	public void retain() {
+		final Batch batch = this.owner;
+		if(batch != null) {
+			batch.retain();
+		}
+	}
+	
+	/**
+	 * Sets the {@link Batch} this column belongs to.
+	 * 
+	 * @param batch
+	 *            The batch this column belongs to.
+	 */
+	final void setOwner(Batch batch) {
+		this.owner = batch;
+	}
+	
+	/**
+	 * Enables or disables caching of the serialized values of this column. Any cached values are dropped.
+	 * 
+	 * @param enabled
+	 *            {@code true} if the column is sent to multiple consumers and must not be modified until it got
+	 *            released; {@code false} otherwise
+	 */
+	final void setSerializationCache(boolean enabled) {
+		this.cacheSerialization = enabled;
+		this.serializedValues = null;
+	}
+	
+	/**
+	 * Returns {@code true} if the serialized values of this column are cached.
+	 * 
+	 * @return {@code true} if the serialized values are cached; {@code false} otherwise
+	 */
+	final boolean isSerializationCached() {
+		return this.cacheSerialization;
+	}
+	
+	/**
+	 * Returns the cached serialized values of this column.
+	 * 
+	 * @return the serialized values or {@code null} if this column was not serialized yet
+	 */
+	final byte[] getSerializedValues() {
+		return this.serializedValues;
+	}
+	
+	/**
+	 * Caches the serialized values of this column.
+	 * 
+	 * @param values
+	 *            The serialized values.
+	 */
+	final void setSerializedValues(byte[] values) {
+		this.serializedValues = values;
+	}
+	
+	/**
+	 * Enables or disables the compression of the serialized values of this column.
+	 * 
+	 * @param codec
+	 *            The codec that compresses the serialized values (or {@code null} to disable compression).
+	 * @param threshold
+	 *            The minimum size (in bytes) of the serialized values, for which the values get compressed.
+	 */
+	final void setCompression(CompressionCodec codec, int threshold) {
+		this.compressionCodec = codec;
+		this.compressionThreshold = threshold;
+	}
+	
+	/**
+	 * Returns the codec that compresses the serialized values of this column.
+	 * 
+	 * @return the compression codec or {@code null} if compression is disabled
+	 */
+	final CompressionCodec getCompressionCodec() {
+		return this.compressionCodec;
+	}
+	
+	/**
+	 * Returns the minimum size (in bytes) of the serialized values of this column, for which the values get compressed.
+	 * 
+	 * @return the compression threshold
+	 */
+	final int getCompressionThreshold() {
+		return this.compressionThreshold;
+	}
+	
+	/**
+	 * Extends the timestamp range of this column by the given timestamp.
+	 * 
+	 * @param ts
+	 *            The timestamp of an appended value.
+	 */
+	final void addTimestamp(long ts) {
+		if(!this.timestampRange) {
+			this.timestampRange = true;
+			this.minTimestamp = ts;
+			this.maxTimestamp = ts;
+		} else if(ts < this.minTimestamp) {
+			this.minTimestamp = ts;
+		} else if(ts > this.maxTimestamp) {
+			this.maxTimestamp = ts;
+		}
+	}
+	
+	/**
+	 * Sets the timestamp range of this column.
+	 * 
+	 * @param min
+	 *            The smallest timestamp.
+	 * @param max
+	 *            The largest timestamp.
+	 */
+	final void setTimestampRange(long min, long max) {
+		this.timestampRange = true;
+		this.minTimestamp = min;
+		this.maxTimestamp = max;
+	}
+	
+	/**
+	 * Removes the timestamp range of this column.
+	 */
+	final void clearTimestampRange() {
+		this.timestampRange = false;
+	}
+	
+	/**
+	 * Returns {@code true} if this column holds the declared timestamp attribute of its batch (see
+	 * {@link AbstractBatchCollector#setTimestampIndex(String, int)}). In this case, the smallest and largest timestamp
+	 * of this column are available without scanning all values.
+	 * 
+	 * @return {@code true} if the timestamp range of this column is known; {@code false} otherwise
+	 */
+	public boolean hasTimestampRange() {
+		return this.timestampRange;
+	}
+	
+	/**
+	 * Returns the smallest timestamp of this column. Only valid if {@link #hasTimestampRange()} returns {@code true}.
+	 * 
+	 * @return the smallest timestamp
+	 */
+	public long getMinTimestamp() {
+		return this.minTimestamp;
+	}
+	
+	/**
+	 * Returns the largest timestamp of this column. Only valid if {@link #hasTimestampRange()} returns {@code true}.
+	 * 
+	 * @return the largest timestamp
+	 */
+	public long getMaxTimestamp() {
+		return this.maxTimestamp;
+	}
+	
+	/**
+	 * Throws an {@link IndexOutOfBoundsException} if {@code index} is not a valid position.
+	 * 
+	 * @param index
+	 *            The position to be checked.
+	 */
+	final void checkIndex(int index) {
+		if(index < 0 || index >= this.size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size());
+		}
 	}
 	
 	/**
@@ -58,7 +483,7 @@ public class BatchColumn extends ArrayList<Object> {
 	 * sent to the correct consumer tasks.
 	 * 
 	 * The considered attribute could be any of the stored one. This implementation uses the first attribute that is
-	 * inserted.
+	 * inserted. Specialized columns return the same hash value as the boxed attribute value.
 	 */
 	@Override
 	public int hashCode() {
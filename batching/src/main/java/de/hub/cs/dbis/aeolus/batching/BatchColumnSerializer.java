@@ -0,0 +1,408 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+
+
+
+
+/**
+ * {@link BatchColumnSerializer} is a Kryo serializer for {@link BatchColumn} and all its specialized subclasses. Each
+ * column is written with a small header (number of values and encoding) followed by the packed values:
+ * <ul>
+ * <li>{@link LongBatchColumn}, {@link IntBatchColumn}, and {@link ShortBatchColumn} use zig-zag encoded varints or
+ * fixed-width values, whatever is smaller for the given column</li>
+ * <li>{@link DoubleBatchColumn} uses fixed-width values</li>
+ * <li>{@link StringBatchColumn} writes its dictionary once followed by varint dictionary indexes</li>
+ * <li>{@link BatchColumn} writes the class of its values only once, if all values are non-null and of the same
+ * class</li>
+ * </ul>
+ * 
+ * If a column is sent to multiple remote consumers (see {@link Batch#prepareBroadcast()}), the values of specialized
+ * columns are encoded only once and the encoded bytes are reused for all consumers. Generic columns are always encoded,
+ * because the encoding of arbitrary objects depends on the state of the used {@link Kryo} instance.
+ * 
+ * If compression is enabled for a column (see {@link Batch#setCompression(CompressionCodec, int)}), its encoded values
+ * are compressed if they reach the configured size threshold. The used codec is written into the column header such
+ * that consumers can decompress the values without any configuration.
+ * 
+ * If a column holds the declared timestamp attribute of its batch (see {@link BatchColumn#hasTimestampRange()}), its
+ * smallest and largest timestamp are written in front of the header such that consumers can order batches without
+ * scanning the values.
+ * 
+ * @author Matthias J. Sax
+ */
+public class BatchColumnSerializer extends Serializer<BatchColumn> {
+	
+	/**
+	 * Encoding of numeric columns: fixed-width values.
+	 */
+	private final static byte FIXED = 0;
+	/**
+	 * Encoding of numeric columns: zig-zag encoded varints.
+	 */
+	private final static byte VARINT = 1;
+	/**
+	 * Encoding of generic columns: each value is written with its class.
+	 */
+	private final static byte MIXED = 0;
+	/**
+	 * Encoding of generic columns: all values have the same class, which is written once.
+	 */
+	private final static byte UNIFORM = 1;
+	/**
+	 * Header of non-empty columns: the values are not compressed. Otherwise, the header is the ordinal of the used
+	 * {@link CompressionCodec} plus one.
+	 */
+	private final static byte UNCOMPRESSED = 0;
+	/**
+	 * Marker in front of the header of non-empty columns: the smallest and largest timestamp of the column follow.
+	 */
+	private final static byte TIMESTAMP_RANGE = -1;
+	/**
+	 * All compression codecs, indexed by their ordinal.
+	 */
+	private final static CompressionCodec[] CODECS = CompressionCodec.values();
+	
+	
+	
+	@Override
+	public void write(Kryo kryo, Output output, BatchColumn column) {
+		final int size = column.size();
+		output.writeInt(size, true);
+		if(size > 0) {
+			if(column.hasTimestampRange()) {
+				output.writeByte(TIMESTAMP_RANGE);
+				output.writeLong(column.getMinTimestamp(), true);
+				output.writeLong(column.getMaxTimestamp(), true);
+			}
+			if(column.isSerializationCached() && column.getClass() != BatchColumn.class) {
+				byte[] values = column.getSerializedValues();
+				if(values == null) {
+					final Output buffer = new Output(8 * size + 16, -1);
+					writeCompressedValues(kryo, buffer, column, size);
+					values = buffer.toBytes();
+					column.setSerializedValues(values);
+				}
+				output.writeBytes(values);
+			} else {
+				writeCompressedValues(kryo, output, column, size);
+			}
+		}
+		// the column was handed over to a remote consumer and can be recycled
+		column.release();
+	}
+	
+	/**
+	 * Writes the used compression codec followed by all (possibly compressed) values of the given non-empty column.
+	 * The values are only compressed, if their serialized size reaches the compression threshold of the column and if
+	 * compression reduces their size.
+	 */
+	private static void writeCompressedValues(Kryo kryo, Output output, BatchColumn column, int size) {
+		final CompressionCodec codec = column.getCompressionCodec();
+		if(codec == null) {
+			output.writeByte(UNCOMPRESSED);
+			writeValues(kryo, output, column, size);
+			return;
+		}
+		
+		final Output buffer = new Output(8 * size + 16, -1);
+		writeValues(kryo, buffer, column, size);
+		final byte[] values = buffer.toBytes();
+		if(values.length >= column.getCompressionThreshold()) {
+			final byte[] compressed = codec.compress(values);
+			if(compressed.length < values.length) {
+				output.writeByte(codec.ordinal() + 1);
+				output.writeInt(values.length, true);
+				output.writeInt(compressed.length, true);
+				output.writeBytes(compressed);
+				return;
+			}
+		}
+		output.writeByte(UNCOMPRESSED);
+		output.writeBytes(values);
+	}
+	
+	/**
+	 * Writes all values of the given non-empty column.
+	 */
+	private static void writeValues(Kryo kryo, Output output, BatchColumn column, int size) {
+		if(column instanceof LongBatchColumn) {
+			writeLongs(output, (LongBatchColumn)column, size);
+		} else if(column instanceof IntBatchColumn) {
+			writeInts(output, (IntBatchColumn)column, size);
+		} else if(column instanceof ShortBatchColumn) {
+			writeShorts(output, (ShortBatchColumn)column, size);
+		} else if(column instanceof DoubleBatchColumn) {
+			for(int i = 0; i < size; ++i) {
+				output.writeDouble(column.getDouble(i));
+			}
+		} else if(column instanceof StringBatchColumn) {
+			writeStrings(output, (StringBatchColumn)column, size);
+		} else {
+			writeObjects(kryo, output, column, size);
+		}
+	}
+	
+	@Override
+	public BatchColumn read(Kryo kryo, Input input, Class<BatchColumn> type) {
+		final int size = input.readInt(true);
+		if(size == 0) {
+			return readValues(kryo, input, type, size);
+		}
+		
+		final int codec = input.readByte();
+		if(codec == TIMESTAMP_RANGE) {
+			final long min = input.readLong(true);
+			final long max = input.readLong(true);
+			final BatchColumn column = readCompressedValues(kryo, input, type, size, input.readByte());
+			column.setTimestampRange(min, max);
+			return column;
+		}
+		return readCompressedValues(kryo, input, type, size, codec);
+	}
+	
+	/**
+	 * Reads all (possibly compressed) values of a non-empty column with {@code size} values. The header (ie, the used
+	 * compression codec) was already read.
+	 */
+	private static BatchColumn readCompressedValues(Kryo kryo, Input input, Class<BatchColumn> type, int size,
+		int codec) {
+		if(codec == UNCOMPRESSED) {
+			return readValues(kryo, input, type, size);
+		}
+		if(codec < 1 || codec > CODECS.length) {
+			throw new KryoException("Unknown compression codec: " + codec);
+		}
+		final int length = input.readInt(true);
+		final byte[] compressed = input.readBytes(input.readInt(true));
+		try {
+			return readValues(kryo, new Input(CODECS[codec - 1].decompress(compressed, length)), type, size);
+		} catch(IllegalArgumentException e) {
+			throw new KryoException(e);
+		}
+	}
+	
+	/**
+	 * Reads all values of a column with {@code size} values.
+	 */
+	@SuppressWarnings("unchecked")
+	private static BatchColumn readValues(Kryo kryo, Input input, Class<BatchColumn> type, int size) {
+		final Class<?> columnType = type;
+		
+		if(columnType == LongBatchColumn.class) {
+			final LongBatchColumn column = size > 0 ? new LongBatchColumn(size) : new LongBatchColumn();
+			if(size > 0) {
+				final boolean varint = input.readByte() == VARINT;
+				for(int i = 0; i < size; ++i) {
+					column.addLong(varint ? input.readLong(false) : input.readLong());
+				}
+			}
+			return column;
+		}
+		if(columnType == IntBatchColumn.class) {
+			final IntBatchColumn column = size > 0 ? new IntBatchColumn(size) : new IntBatchColumn();
+			if(size > 0) {
+				final boolean varint = input.readByte() == VARINT;
+				for(int i = 0; i < size; ++i) {
+					column.addInt(varint ? input.readInt(false) : input.readInt());
+				}
+			}
+			return column;
+		}
+		if(columnType == ShortBatchColumn.class) {
+			final ShortBatchColumn column = size > 0 ? new ShortBatchColumn(size) : new ShortBatchColumn();
+			if(size > 0) {
+				final boolean varint = input.readByte() == VARINT;
+				for(int i = 0; i < size; ++i) {
+					column.addShort(varint ? (short)input.readInt(false) : input.readShort());
+				}
+			}
+			return column;
+		}
+		if(columnType == DoubleBatchColumn.class) {
+			final DoubleBatchColumn column = size > 0 ? new DoubleBatchColumn(size) : new DoubleBatchColumn();
+			for(int i = 0; i < size; ++i) {
+				column.addDouble(input.readDouble());
+			}
+			return column;
+		}
+		if(columnType == StringBatchColumn.class) {
+			final StringBatchColumn column = size > 0 ? new StringBatchColumn(size) : new StringBatchColumn();
+			if(size > 0) {
+				final String[] dictionary = new String[input.readInt(true)];
+				for(int i = 0; i < dictionary.length; ++i) {
+					dictionary[i] = input.readString();
+				}
+				for(int i = 0; i < size; ++i) {
+					column.addString(dictionary[input.readInt(true)]);
+				}
+			}
+			return column;
+		}
+		
+		final BatchColumn column = size > 0 ? new BatchColumn(size) : new BatchColumn();
+		if(size > 0) {
+			if(input.readByte() == UNIFORM) {
+				final Registration registration = kryo.readClass(input);
+				final Serializer<?> serializer = registration.getSerializer();
+				for(int i = 0; i < size; ++i) {
+					column.add(kryo.readObject(input, registration.getType(), serializer));
+				}
+			} else {
+				for(int i = 0; i < size; ++i) {
+					column.add(kryo.readClassAndObject(input));
+				}
+			}
+		}
+		return column;
+	}
+	
+	/**
+	 * Writes all values of a {@link LongBatchColumn}.
+	 */
+	private static void writeLongs(Output output, LongBatchColumn column, int size) {
+		int varintBytes = 0;
+		for(int i = 0; i < size; ++i) {
+			varintBytes += varintLength(column.getLong(i));
+		}
+		
+		if(varintBytes < 8 * size) {
+			output.writeByte(VARINT);
+			for(int i = 0; i < size; ++i) {
+				output.writeLong(column.getLong(i), false);
+			}
+		} else {
+			output.writeByte(FIXED);
+			for(int i = 0; i < size; ++i) {
+				output.writeLong(column.getLong(i));
+			}
+		}
+	}
+	
+	/**
+	 * Writes all values of an {@link IntBatchColumn}.
+	 */
+	private static void writeInts(Output output, IntBatchColumn column, int size) {
+		int varintBytes = 0;
+		for(int i = 0; i < size; ++i) {
+			varintBytes += varintLength(column.getInt(i));
+		}
+		
+		if(varintBytes < 4 * size) {
+			output.writeByte(VARINT);
+			for(int i = 0; i < size; ++i) {
+				output.writeInt(column.getInt(i), false);
+			}
+		} else {
+			output.writeByte(FIXED);
+			for(int i = 0; i < size; ++i) {
+				output.writeInt(column.getInt(i));
+			}
+		}
+	}
+	
+	/**
+	 * Writes all values of a {@link ShortBatchColumn}.
+	 */
+	private static void writeShorts(Output output, ShortBatchColumn column, int size) {
+		int varintBytes = 0;
+		for(int i = 0; i < size; ++i) {
+			varintBytes += varintLength(column.getShort(i));
+		}
+		
+		if(varintBytes < 2 * size) {
+			output.writeByte(VARINT);
+			for(int i = 0; i < size; ++i) {
+				output.writeInt(column.getShort(i), false);
+			}
+		} else {
+			output.writeByte(FIXED);
+			for(int i = 0; i < size; ++i) {
+				output.writeShort(column.getShort(i));
+			}
+		}
+	}
+	
+	/**
+	 * Writes the dictionary and the dictionary indexes of a {@link StringBatchColumn}.
+	 */
+	private static void writeStrings(Output output, StringBatchColumn column, int size) {
+		final int dictionarySize = column.getDictionarySize();
+		output.writeInt(dictionarySize, true);
+		for(int i = 0; i < dictionarySize; ++i) {
+			output.writeString(column.getDictionaryValue(i));
+		}
+		for(int i = 0; i < size; ++i) {
+			output.writeInt(column.getCode(i), true);
+		}
+	}
+	
+	/**
+	 * Writes all values of a generic {@link BatchColumn}.
+	 */
+	private static void writeObjects(Kryo kryo, Output output, BatchColumn column, int size) {
+		final Object first = column.get(0);
+		boolean uniform = first != null;
+		if(uniform) {
+			final Class<?> type = first.getClass();
+			for(int i = 1; i < size; ++i) {
+				final Object value = column.get(i);
+				if(value == null || value.getClass() != type) {
+					uniform = false;
+					break;
+				}
+			}
+		}
+		
+		if(uniform) {
+			output.writeByte(UNIFORM);
+			final Registration registration = kryo.writeClass(output, first.getClass());
+			final Serializer<?> serializer = registration.getSerializer();
+			for(int i = 0; i < size; ++i) {
+				kryo.writeObject(output, column.get(i), serializer);
+			}
+		} else {
+			output.writeByte(MIXED);
+			for(int i = 0; i < size; ++i) {
+				kryo.writeClassAndObject(output, column.get(i));
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of bytes of a zig-zag encoded varint.
+	 */
+	private static int varintLength(long value) {
+		long zigZag = (value << 1) ^ (value >> 63);
+		int length = 1;
+		while((zigZag >>>= 7) != 0) {
+			++length;
+		}
+		return length;
+	}
+	
+}
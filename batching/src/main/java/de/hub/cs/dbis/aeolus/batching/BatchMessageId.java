@@ -0,0 +1,126 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import java.util.List;
+
+import backtype.storm.spout.ISpout;
+
+
+
+
+
+/**
+ * {@link BatchMessageId} is the message ID of an emitted {@link Batch}. It contains the message IDs of all tuples of
+ * the batch that were emitted with a message ID. If Storm acks or fails the batch, each contained message ID is acked or
+ * failed at the spout that emitted the original tuples (see {@link #ack(ISpout)} and {@link #fail(ISpout)}).
+ * 
+ * A tuple that is inserted into multiple batches (for example, to emulate custom-grouping by direct emit) is acked
+ * after all those batches are acked, and failed (once) if any of those batches fails. Likewise, a batch that is
+ * emitted to multiple tasks (to emulate all-grouping) is acked after all deliveries are acked, and failed (once) if
+ * any delivery fails.
+ * 
+ * @author Matthias J. Sax
+ */
+public final class BatchMessageId {
+	/**
+	 * The message IDs of the tuples of the batch.
+	 */
+	private final List<Object> messageIds;
+	/**
+	 * The number of deliveries of the batch that are not acked or failed yet.
+	 */
+	int pendingDeliveries = 1;
+	/**
+	 * {@code true} if the batch got already failed.
+	 */
+	private boolean failed = false;
+	
+	
+	
+	/**
+	 * Instantiates a new {@link BatchMessageId}.
+	 * 
+	 * @param messageIds
+	 *            The message IDs of the tuples of the batch.
+	 */
+	BatchMessageId(List<Object> messageIds) {
+		assert (messageIds != null);
+		this.messageIds = messageIds;
+	}
+	
+	
+	
+	/**
+	 * Acks the message IDs of all tuples of the batch at the given spout, after all deliveries of the batch got acked.
+	 * 
+	 * @param spout
+	 *            The spout that emitted the tuples of the batch.
+	 */
+	public void ack(ISpout spout) {
+		if(--this.pendingDeliveries > 0 || this.failed) {
+			return;
+		}
+		for(int i = 0; i < this.messageIds.size(); ++i) {
+			final Object messageId = this.messageIds.get(i);
+			if(messageId instanceof FanOutMessageId) {
+				((FanOutMessageId)messageId).ack(spout);
+			} else {
+				spout.ack(messageId);
+			}
+		}
+	}
+	
+	/**
+	 * Fails the message IDs of all tuples of the batch at the given spout, if the batch did not fail before.
+	 * 
+	 * @param spout
+	 *            The spout that emitted the tuples of the batch.
+	 */
+	public void fail(ISpout spout) {
+		--this.pendingDeliveries;
+		if(this.failed) {
+			return;
+		}
+		this.failed = true;
+		for(int i = 0; i < this.messageIds.size(); ++i) {
+			final Object messageId = this.messageIds.get(i);
+			if(messageId instanceof FanOutMessageId) {
+				((FanOutMessageId)messageId).fail(spout);
+			} else {
+				spout.fail(messageId);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of tuple message IDs contained in this {@link BatchMessageId}.
+	 * 
+	 * @return the number of tuple message IDs
+	 */
+	public int size() {
+		return this.messageIds.size();
+	}
+	
+	@Override
+	public String toString() {
+		return "BatchMessageId" + this.messageIds;
+	}
+	
+}
@@ -30,8 +30,10 @@ import backtype.storm.task.IOutputCollector;
 import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
 import backtype.storm.utils.Utils;
 import de.hub.cs.dbis.aeolus.batching.api.BoltOutputBatcher;
+import de.hub.cs.dbis.aeolus.batching.api.IBatchOutputCollector;
 
 
 
@@ -43,7 +45,7 @@ import de.hub.cs.dbis.aeolus.batching.api.BoltOutputBatcher;
  * 
  * @author Matthias J. Sax
  */
-public class BatchOutputCollector extends OutputCollector {
+public class BatchOutputCollector extends OutputCollector implements IBatchOutputCollector {
 	final static Logger logger = LoggerFactory.getLogger(BatchOutputCollector.class);
 	
 	/**
@@ -97,7 +99,7 @@ public class BatchOutputCollector extends OutputCollector {
 	 * {@inheritDoc}
 	 * 
 	 * The tuple is not emitted directly, but is added to an output batch. Output batches are emitted if they are full.
-	 * The given anchor is ignored right now because anchoring is not yet supported.
+	 * The output batch is anchored to the anchors of all its tuples.
 	 * 
 	 * @return currently {@code null} is returned, because the receiver task IDs cannot be determined if it is only
 	 *         inserted into an output batch but not actual emit happens
@@ -128,7 +130,7 @@ public class BatchOutputCollector extends OutputCollector {
 	 * {@inheritDoc}
 	 * 
 	 * The tuple is not emitted directly, but is added to an output batch. Output batches are emitted if they are full.
-	 * The given anchors are ignored right now because anchoring is not yet supported.
+	 * The output batch is anchored to the anchors of all its tuples.
 	 * 
 	 * @return currently {@code null} is returned, because the receiver task IDs cannot be determined if it is only
 	 *         inserted into an output batch but not actual emit happens
@@ -144,7 +146,7 @@ public class BatchOutputCollector extends OutputCollector {
 	 * {@inheritDoc}
 	 * 
 	 * The tuple is not emitted directly, but is added to an output batch. Output batches are emitted if they are full.
-	 * The given anchor is ignored right now because anchoring is not yet supported.
+	 * The output batch is anchored to the anchors of all its tuples.
 	 * 
 	 * @return currently {@code null} is returned, because the receiver task IDs cannot be determined if it is only
 	 *         inserted into an output batch but not actual emit happens
@@ -172,7 +174,7 @@ public class BatchOutputCollector extends OutputCollector {
 	
 	/**
 	 * The tuple is not emitted directly, but is added to an output batch. Output batches are emitted if they are full.
-	 * The given anchor is ignored right now because anchoring is not yet supported.
+	 * The output batch is anchored to the anchors of all its tuples.
 	 */
 	// need to override to redirect call to BoltBatchCollector.emitDirect(int taskId, String streamId, Collection<Tuple>
 	// anchors, List<Object> tuple)
@@ -193,7 +195,7 @@ public class BatchOutputCollector extends OutputCollector {
 	
 	/**
 	 * The tuple is not emitted directly, but is added to an output batch. Output batches are emitted if they are full.
-	 * The given anchors are ignored right now because anchoring is not yet supported.
+	 * The output batch is anchored to the anchors of all its tuples.
 	 */
 	// need to override to redirect call to BoltBatchCollector.emitDirect(int taskId, String streamId, Collection<Tuple>
 	// anchors, List<Object> tuple)
@@ -204,7 +206,7 @@ public class BatchOutputCollector extends OutputCollector {
 	
 	/**
 	 * The tuple is not emitted directly, but is added to an output batch. Output batches are emitted if they are full.
-	 * The given anchor is ignored right now because anchoring is not yet supported.
+	 * The output batch is anchored to the anchors of all its tuples.
 	 */
 	// need to override to redirect call to BoltBatchCollector.emitDirect(int taskId, String streamId, Collection<Tuple>
 	// anchors, List<Object> tuple)
@@ -225,7 +227,7 @@ public class BatchOutputCollector extends OutputCollector {
 	
 	/**
 	 * The tuple is not emitted directly, but is added to an output batch. Output batches are emitted if they are full.
-	 * The given anchors are ignored right now because anchoring is not yet supported.
+	 * The output batch is anchored to the anchors of all its tuples.
 	 */
 	@Override
 	public List<Integer> emit(String streamId, Collection<Tuple> anchors, List<Object> tuple) {
@@ -235,7 +237,7 @@ public class BatchOutputCollector extends OutputCollector {
 	
 	/**
 	 * The tuple is not emitted directly, but is added to an output batch. Output batches are emitted if they are full.
-	 * The given anchors are ignored right now because anchoring is not yet supported.
+	 * The output batch is anchored to the anchors of all its tuples.
 	 */
 	@Override
 	public void emitDirect(int taskId, String streamId, Collection<Tuple> anchors, List<Object> tuple) {
@@ -243,13 +245,83 @@ public class BatchOutputCollector extends OutputCollector {
 		this.batcher.tupleEmitDirect(taskId, streamId, anchors, tuple, null);
 	}
 	
+	/**
+	 * Emits multiple tuples at once. The tuples are not emitted directly, but are added to their output batches in a
+	 * single pass. Output batches are emitted if they are full. Each output batch is anchored to the anchors of all its
+	 * tuples.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param anchors
+	 *            The anchor tuples of all emitted tuples.
+	 * @param tuples
+	 *            The output tuples.
+	 */
+	@Override
+	public void emitAll(String streamId, Collection<Tuple> anchors, List<? extends List<Object>> tuples) {
+		logger.trace("streamId: {}; anchors: {}; tuples: {}", streamId, anchors, new Integer(tuples.size()));
+		this.batcher.tuplesEmit(streamId, anchors, tuples);
+	}
+	
+	/**
+	 * Emits multiple tuples at once. The tuples are not emitted directly, but are added to their output batches in a
+	 * single pass. Output batches are emitted if they are full. Each output batch is anchored to the anchors of all its
+	 * tuples.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param anchor
+	 *            The anchor tuple of all emitted tuples.
+	 * @param tuples
+	 *            The output tuples.
+	 */
+	@Override
+	public void emitAll(String streamId, Tuple anchor, List<? extends List<Object>> tuples) {
+		this.emitAll(streamId, Arrays.asList(anchor), tuples);
+	}
+	
+	/**
+	 * Emits multiple unanchored tuples at once. The tuples are not emitted directly, but are added to their output
+	 * batches in a single pass. Output batches are emitted if they are full.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param tuples
+	 *            The output tuples.
+	 */
+	@Override
+	public void emitAll(String streamId, List<? extends List<Object>> tuples) {
+		this.emitAll(streamId, (Collection<Tuple>)null, tuples);
+	}
+	
+	/**
+	 * Emits multiple unanchored tuples to the default output stream at once. The tuples are not emitted directly, but
+	 * are added to their output batches in a single pass. Output batches are emitted if they are full.
+	 * 
+	 * @param tuples
+	 *            The output tuples.
+	 */
+	@Override
+	public void emitAll(List<? extends List<Object>> tuples) {
+		this.emitAll(Utils.DEFAULT_STREAM_ID, tuples);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * If buffered output tuples are anchored to the given input tuple, the ack is deferred until all output batches
+	 * anchored to it got emitted.
+	 */
 	@Override
 	public void ack(Tuple input) {
-		this.collector.ack(input);
+		if(!this.batcher.deferAck(input)) {
+			this.collector.ack(input);
+		}
 	}
 	
 	@Override
 	public void fail(Tuple input) {
+		this.batcher.removeFailedAnchor(input);
 		this.collector.fail(input);
 	}
 	
@@ -265,4 +337,178 @@ public class BatchOutputCollector extends OutputCollector {
 		this.batcher.flush();
 	}
 	
+	/**
+	 * Emits all incomplete batches from the output buffer that exceeded their maximum linger time.
+	 */
+	public void flushExpired() {
+		this.batcher.flushExpired();
+	}
+	
+	/**
+	 * Sets the maximum linger time (in milliseconds) for all output streams.
+	 * 
+	 * @param maxLinger
+	 *            The maximum linger time in milliseconds.
+	 */
+	public void setMaxLinger(int maxLinger) {
+		this.batcher.setMaxLinger(maxLinger);
+	}
+	
+	/**
+	 * Sets the maximum linger time (in milliseconds) for each output stream.
+	 * 
+	 * @param maxLinger
+	 *            The maximum linger times for each output stream.
+	 */
+	public void setMaxLinger(Map<String, Integer> maxLinger) {
+		this.batcher.setMaxLinger(maxLinger);
+	}
+	
+	/**
+	 * Sets the maximum number of distinct anchors of an output batch.
+	 * 
+	 * @param maxAnchors
+	 *            The maximum number of distinct anchors (a non-positive value disables the limit).
+	 * 
+	 * @see AbstractBatchCollector#setMaxAnchors(int)
+	 */
+	public void setMaxAnchors(int maxAnchors) {
+		this.batcher.setMaxAnchors(maxAnchors);
+	}
+	
+	/**
+	 * Enables adaptive batch sizes using the given controller.
+	 * 
+	 * @param controller
+	 *            The controller that adjusts the batch sizes (or {@code null} to disable adaptive batch sizes).
+	 */
+	public void setBatchSizeController(AdaptiveBatchSizeController controller) {
+		this.batcher.setBatchSizeController(controller);
+	}
+	
+	/**
+	 * Declares the attribute types of an output stream.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param types
+	 *            The type of each attribute of the output stream.
+	 */
+	public void setColumnTypes(String streamId, Class<?>[] types) {
+		this.batcher.setColumnTypes(streamId, types);
+	}
+	
+	/**
+	 * Declares the timestamp attribute of an output stream.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param index
+	 *            The index of the timestamp attribute.
+	 */
+	public void setTimestampIndex(String streamId, int index) {
+		this.batcher.setTimestampIndex(streamId, index);
+	}
+	
+	/**
+	 * Declares an output stream as punctuation stream. Tuples of this stream are not batched and all incomplete batches
+	 * are emitted before a tuple of this stream is emitted.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 */
+	public void setPunctuationStream(String streamId) {
+		this.batcher.setPunctuationStream(streamId);
+	}
+	
+	/**
+	 * Enables the compression of serialized output batches of an output stream.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param codec
+	 *            The codec that compresses the serialized batches (or {@code null} to disable compression).
+	 * @param threshold
+	 *            The minimum size (in bytes) of a serialized column, for which the column gets compressed.
+	 */
+	public void setCompression(String streamId, CompressionCodec codec, int threshold) {
+		this.batcher.setCompression(streamId, codec, threshold);
+	}
+	
+	/**
+	 * Sets the maximum number of tuples in all output buffers together.
+	 * 
+	 * @param maxBufferedTuples
+	 *            The maximum number of buffered tuples (a non-positive value disables the limit).
+	 * 
+	 * @see AbstractBatchCollector#setMaxBufferedTuples(int)
+	 */
+	public void setMaxBufferedTuples(int maxBufferedTuples) {
+		this.batcher.setMaxBufferedTuples(maxBufferedTuples);
+	}
+	
+	/**
+	 * Returns the number of tuples in all output buffers.
+	 * 
+	 * @return the number of buffered tuples
+	 */
+	public int getNumberOfBufferedTuples() {
+		return this.batcher.getNumberOfBufferedTuples();
+	}
+	
+	/**
+	 * Enables or disables the collection of statistics about emitted batches.
+	 * 
+	 * @param enabled
+	 *            {@code true} to collect statistics; {@code false} otherwise
+	 * 
+	 * @see AbstractBatchCollector#setStatisticsEnabled(boolean)
+	 */
+	public void setStatisticsEnabled(boolean enabled) {
+		this.batcher.setStatisticsEnabled(enabled);
+	}
+	
+	/**
+	 * Returns the statistics of the emitted batches since the last report for each output stream.
+	 * 
+	 * @return the statistics for each output stream (empty, if statistics are disabled)
+	 */
+	public Map<String, BatchStatistics> getStatistics() {
+		return this.batcher.getStatistics();
+	}
+	
+	/**
+	 * Creates the report tuples of the statistics of all output streams and resets the statistics.
+	 * 
+	 * @param ts
+	 *            The timestamp when this report is triggered.
+	 * 
+	 * @return the report tuples (empty, if statistics are disabled)
+	 */
+	public List<Values> reportStatistics(long ts) {
+		return this.batcher.reportStatistics(ts);
+	}
+	
+	/**
+	 * Enables or disables the local bypass, ie, tuples for receiver tasks in the same worker are not batched.
+	 * 
+	 * @param enabled
+	 *            {@code true} to emit tuples for local receiver tasks directly; {@code false} to batch all tuples
+	 */
+	public void setLocalBypass(boolean enabled) {
+		this.batcher.setLocalBypass(enabled);
+	}
+	
+	/**
+	 * Enables or disables the recycling of emitted batches.
+	 * 
+	 * @param enabled
+	 *            {@code true} to recycle emitted batches; {@code false} otherwise
+	 * 
+	 * @see AbstractBatchCollector#setBatchRecycling(boolean)
+	 */
+	public void setBatchRecycling(boolean enabled) {
+		this.batcher.setBatchRecycling(enabled);
+	}
+	
 }
@@ -0,0 +1,100 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+
+
+
+/**
+ * {@link BatchPool} holds emitted {@link Batch}es that were released by all their consumers. Those batches can be
+ * reused as new output buffers instead of allocating new ones. Batches are returned to the pool by consumer threads
+ * while the producer thread takes them out; thus, {@link BatchPool} is thread-safe.
+ * 
+ * @author Matthias J. Sax
+ */
+class BatchPool {
+	/**
+	 * The released batches.
+	 */
+	private final ConcurrentLinkedQueue<Batch> batches = new ConcurrentLinkedQueue<Batch>();
+	/**
+	 * The number of batches in {@link #batches}.
+	 */
+	private final AtomicInteger size = new AtomicInteger();
+	/**
+	 * The maximum number of batches that are held by this pool.
+	 */
+	private final int capacity;
+	
+	
+	
+	/**
+	 * Instantiates a new {@link BatchPool} that holds at most {@code capacity} batches.
+	 * 
+	 * @param capacity
+	 *            The maximum number of batches that are held by this pool (must be larger than zero).
+	 */
+	BatchPool(int capacity) {
+		assert (capacity > 0);
+		this.capacity = capacity;
+	}
+	
+	
+	
+	/**
+	 * Takes a released batch out of this pool.
+	 * 
+	 * @return a released batch or {@code null} if this pool is empty
+	 */
+	Batch poll() {
+		final Batch batch = this.batches.poll();
+		if(batch != null) {
+			this.size.decrementAndGet();
+		}
+		return batch;
+	}
+	
+	/**
+	 * Returns a released batch to this pool. If this pool is full, the batch is dropped.
+	 * 
+	 * @param batch
+	 *            The batch that was released by all its consumers.
+	 */
+	void recycle(Batch batch) {
+		if(this.size.incrementAndGet() <= this.capacity) {
+			this.batches.offer(batch);
+		} else {
+			this.size.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Returns the number of batches held by this pool.
+	 * 
+	 * @return the number of batches held by this pool
+	 */
+	int size() {
+		return this.size.get();
+	}
+	
+}
@@ -0,0 +1,70 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+
+
+
+
+/**
+ * {@link BatchSerializer} is a Kryo serializer for {@link Batch}. It writes the capacity, the number of attributes, and
+ * the number of tuples of a {@link Batch} followed by all its columns. Each column is written by its registered
+ * serializer (ie, {@link BatchColumnSerializer}).<br />
+ * <br />
+ * Note, if a {@link Batch} is emitted via Storm, Storm serializes each column individually (because it serializes the
+ * list of output values instead of the {@link Batch} object itself). Thus, {@link BatchSerializer} is only used if a
+ * {@link Batch} is serialized as a whole.
+ * 
+ * @author Matthias J. Sax
+ */
+public class BatchSerializer extends Serializer<Batch> {
+	
+	@Override
+	public void write(Kryo kryo, Output output, Batch batch) {
+		output.writeInt(batch.getBatchSize(), true);
+		output.writeInt(batch.getNumberOfAttributes(), true);
+		output.writeInt(batch.getNumberOfTuples(), true);
+		
+		final int numberOfColumns = batch.size();
+		output.writeInt(numberOfColumns, true);
+		for(int i = 0; i < numberOfColumns; ++i) {
+			kryo.writeClassAndObject(output, batch.get(i));
+		}
+	}
+	
+	@Override
+	public Batch read(Kryo kryo, Input input, Class<Batch> type) {
+		final int batchSize = input.readInt(true);
+		final int numberOfAttributes = input.readInt(true);
+		final int numberOfTuples = input.readInt(true);
+		
+		final Batch batch = new Batch(batchSize, numberOfAttributes, numberOfTuples);
+		final int numberOfColumns = input.readInt(true);
+		for(int i = 0; i < numberOfColumns; ++i) {
+			batch.add((BatchColumn)kryo.readClassAndObject(input));
+		}
+		return batch;
+	}
+	
+}
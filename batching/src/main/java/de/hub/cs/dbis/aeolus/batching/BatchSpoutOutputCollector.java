@@ -27,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import backtype.storm.spout.ISpoutOutputCollector;
 import backtype.storm.spout.SpoutOutputCollector;
 import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Values;
 import backtype.storm.utils.Utils;
 import de.hub.cs.dbis.aeolus.batching.api.SpoutOutputBatcher;
 
@@ -104,7 +105,7 @@ public class BatchSpoutOutputCollector extends SpoutOutputCollector {
 	 * {@inheritDoc}
 	 * 
 	 * The tuple is not emitted directly, but is added to an output batch. Output batches are emitted if they are full.
-	 * The given message ID is ignored right now because acking and failing is not yet supported.
+	 * The given message ID is acked or failed after the output batch containing the tuple got acked or failed.
 	 * 
 	 * @return currently {@code null} is returned, because the receiver task IDs cannot be determined if it is only
 	 *         inserted into an output batch but not actual emit happens
@@ -120,7 +121,7 @@ public class BatchSpoutOutputCollector extends SpoutOutputCollector {
 	 * {@inheritDoc}
 	 * 
 	 * The tuple is not emitted directly, but is added to an output batch. Output batches are emitted if they are full.
-	 * The given message ID is ignored right now because acking and failing is not yet supported.
+	 * The given message ID is acked or failed after the output batch containing the tuple got acked or failed.
 	 * 
 	 * @return currently {@code null} is returned, because the receiver task IDs cannot be determined if it is only
 	 *         inserted into an output batch but not actual emit happens
@@ -165,7 +166,7 @@ public class BatchSpoutOutputCollector extends SpoutOutputCollector {
 	 * {@inheritDoc}
 	 * 
 	 * The tuple is not emitted directly, but is added to an output batch. Output batches are emitted if they are full.
-	 * The given message ID is ignored right now because acking and failing is not yet supported.
+	 * The given message ID is acked or failed after the output batch containing the tuple got acked or failed.
 	 */
 	@Override
 	public void emitDirect(int taskId, String streamId, List<Object> tuple, Object messageId) {
@@ -179,7 +180,7 @@ public class BatchSpoutOutputCollector extends SpoutOutputCollector {
 	 * {@inheritDoc}
 	 * 
 	 * The tuple is not emitted directly, but is added to an output batch. Output batches are emitted if they are full.
-	 * The given message ID is ignored right now because acking and failing is not yet supported.
+	 * The given message ID is acked or failed after the output batch containing the tuple got acked or failed.
 	 */
 	// need to override to redirect call to SpoutBatchCollector.emitDirect(int taskId, String streamId, List<Object>
 	// tuple, Object messageId)
@@ -219,4 +220,166 @@ public class BatchSpoutOutputCollector extends SpoutOutputCollector {
 		this.batcher.flush();
 	}
 	
+	/**
+	 * Emits all incomplete batches from the output buffer that exceeded their maximum linger time.
+	 */
+	public void flushExpired() {
+		this.batcher.flushExpired();
+	}
+	
+	/**
+	 * Sets the maximum linger time (in milliseconds) for all output streams.
+	 * 
+	 * @param maxLinger
+	 *            The maximum linger time in milliseconds.
+	 */
+	public void setMaxLinger(int maxLinger) {
+		this.batcher.setMaxLinger(maxLinger);
+	}
+	
+	/**
+	 * Sets the maximum linger time (in milliseconds) for each output stream.
+	 * 
+	 * @param maxLinger
+	 *            The maximum linger times for each output stream.
+	 */
+	public void setMaxLinger(Map<String, Integer> maxLinger) {
+		this.batcher.setMaxLinger(maxLinger);
+	}
+	
+	/**
+	 * Enables adaptive batch sizes using the given controller.
+	 * 
+	 * @param controller
+	 *            The controller that adjusts the batch sizes (or {@code null} to disable adaptive batch sizes).
+	 */
+	public void setBatchSizeController(AdaptiveBatchSizeController controller) {
+		this.batcher.setBatchSizeController(controller);
+	}
+	
+	/**
+	 * Declares the attribute types of an output stream.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param types
+	 *            The type of each attribute of the output stream.
+	 */
+	public void setColumnTypes(String streamId, Class<?>[] types) {
+		this.batcher.setColumnTypes(streamId, types);
+	}
+	
+	/**
+	 * Declares the timestamp attribute of an output stream.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param index
+	 *            The index of the timestamp attribute.
+	 */
+	public void setTimestampIndex(String streamId, int index) {
+		this.batcher.setTimestampIndex(streamId, index);
+	}
+	
+	/**
+	 * Declares an output stream as punctuation stream. Tuples of this stream are not batched and all incomplete batches
+	 * are emitted before a tuple of this stream is emitted.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 */
+	public void setPunctuationStream(String streamId) {
+		this.batcher.setPunctuationStream(streamId);
+	}
+	
+	/**
+	 * Enables the compression of serialized output batches of an output stream.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param codec
+	 *            The codec that compresses the serialized batches (or {@code null} to disable compression).
+	 * @param threshold
+	 *            The minimum size (in bytes) of a serialized column, for which the column gets compressed.
+	 */
+	public void setCompression(String streamId, CompressionCodec codec, int threshold) {
+		this.batcher.setCompression(streamId, codec, threshold);
+	}
+	
+	/**
+	 * Sets the maximum number of tuples in all output buffers together.
+	 * 
+	 * @param maxBufferedTuples
+	 *            The maximum number of buffered tuples (a non-positive value disables the limit).
+	 * 
+	 * @see AbstractBatchCollector#setMaxBufferedTuples(int)
+	 */
+	public void setMaxBufferedTuples(int maxBufferedTuples) {
+		this.batcher.setMaxBufferedTuples(maxBufferedTuples);
+	}
+	
+	/**
+	 * Returns the number of tuples in all output buffers.
+	 * 
+	 * @return the number of buffered tuples
+	 */
+	public int getNumberOfBufferedTuples() {
+		return this.batcher.getNumberOfBufferedTuples();
+	}
+	
+	/**
+	 * Enables or disables the collection of statistics about emitted batches.
+	 * 
+	 * @param enabled
+	 *            {@code true} to collect statistics; {@code false} otherwise
+	 * 
+	 * @see AbstractBatchCollector#setStatisticsEnabled(boolean)
+	 */
+	public void setStatisticsEnabled(boolean enabled) {
+		this.batcher.setStatisticsEnabled(enabled);
+	}
+	
+	/**
+	 * Returns the statistics of the emitted batches since the last report for each output stream.
+	 * 
+	 * @return the statistics for each output stream (empty, if statistics are disabled)
+	 */
+	public Map<String, BatchStatistics> getStatistics() {
+		return this.batcher.getStatistics();
+	}
+	
+	/**
+	 * Creates the report tuples of the statistics of all output streams and resets the statistics.
+	 * 
+	 * @param ts
+	 *            The timestamp when this report is triggered.
+	 * 
+	 * @return the report tuples (empty, if statistics are disabled)
+	 */
+	public List<Values> reportStatistics(long ts) {
+		return this.batcher.reportStatistics(ts);
+	}
+	
+	/**
+	 * Enables or disables the local bypass, ie, tuples for receiver tasks in the same worker are not batched.
+	 * 
+	 * @param enabled
+	 *            {@code true} to emit tuples for local receiver tasks directly; {@code false} to batch all tuples
+	 */
+	public void setLocalBypass(boolean enabled) {
+		this.batcher.setLocalBypass(enabled);
+	}
+	
+	/**
+	 * Enables or disables the recycling of emitted batches.
+	 * 
+	 * @param enabled
+	 *            {@code true} to recycle emitted batches; {@code false} otherwise
+	 * 
+	 * @see AbstractBatchCollector#setBatchRecycling(boolean)
+	 */
+	public void setBatchRecycling(boolean enabled) {
+		this.batcher.setBatchRecycling(enabled);
+	}
+	
 }
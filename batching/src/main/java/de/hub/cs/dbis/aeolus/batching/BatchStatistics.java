@@ -0,0 +1,258 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import java.util.List;
+
+import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Values;
+
+
+
+
+
+/**
+ * {@link BatchStatistics} collects statistics about the emitted batches of a single output stream since the last
+ * report: the number of emitted batches and tuples, the average fill ratio of the batches, the number of batches per
+ * {@link FlushCause}, and a histogram of the time between the first insert into a batch and its emission. Furthermore,
+ * it holds the number of tuples in the output buffers of the stream at report time. The statistics can be emitted to a
+ * regular stream within a topology.<br />
+ * <br />
+ * <strong>Statistics report stream output schema:</strong> {@code <ts:}{@link Long}{@code ,streamId:}{@link String}
+ * {@code ,statistic:}{@link String}{@code ,value:}{@link Double}{@code >}<br />
+ * <br />
+ * where {@code ts} is the timestamp when reporting is triggered, {@code streamId} is the output stream the statistics
+ * belong to, {@code statistic} is the name of the reported statistic, and {@code value} is its value since the last
+ * report. The reported statistics are {@code batches}, {@code tuples}, {@code fillRatio}, {@code bufferedTuples},
+ * {@code flush.<cause>} for each {@link FlushCause} (eg, {@code flush.full}), and one statistic for each histogram
+ * bucket (ie,
+ * {@code timeInBuffer<1ms}, {@code timeInBuffer<2ms}, ..., {@code timeInBuffer<1024ms}, and
+ * {@code timeInBuffer>=1024ms}).
+ * 
+ * @author Matthias J. Sax
+ */
+public class BatchStatistics {
+	
+	/**
+	 * The default ID of the report stream. Must not start with {@link BatchingOutputFieldsDeclarer#STREAM_PREFIX},
+	 * because those streams are reserved for emulating user-defined streams via direct emit.
+	 */
+	public final static String DEFAULT_STATS_STREAM = "aeolus.batching.stats";
+	
+	/** The name of the timestamp attribute. */
+	public final static String TS_ATTRIBUTE = "ts";
+	
+	/** The name of the stream ID attribute. */
+	public final static String STREAM_ID_ATTRIBUTE = "streamId";
+	
+	/** The name of the statistic attribute. */
+	public final static String STATISTIC_ATTRIBUTE = "statistic";
+	
+	/** The name of the value attribute. */
+	public final static String VALUE_ATTRIBUTE = "value";
+	
+	/**
+	 * The number of buckets of the time-in-buffer histogram. Bucket {@code 0} counts batches that were emitted within
+	 * the first millisecond, bucket {@code i} counts batches that were emitted after {@code [2^(i-1), 2^i)}
+	 * milliseconds, and the last bucket counts all remaining batches.
+	 */
+	public final static int NUMBER_OF_BUCKETS = 12;
+	
+	
+	
+	/** The number of emitted batches since the last report. */
+	private long numberOfBatches = 0;
+	
+	/** The number of emitted tuples since the last report. */
+	private long numberOfTuples = 0;
+	
+	/** The summed up capacity of all emitted batches since the last report. */
+	private long capacity = 0;
+	
+	/** The number of emitted batches per {@link FlushCause} since the last report. */
+	private final long[] flushCauses = new long[FlushCause.values().length];
+	
+	/** The time-in-buffer histogram since the last report. */
+	private final long[] timeInBuffer = new long[NUMBER_OF_BUCKETS];
+	
+	/** The number of tuples in the output buffers of the stream (updated right before each report). */
+	private long numberOfBufferedTuples = 0;
+	
+	
+	
+	/**
+	 * Records an emitted batch.
+	 * 
+	 * @param batch
+	 *            The emitted batch.
+	 * @param cause
+	 *            The reason why the batch got emitted.
+	 * @param now
+	 *            The current time in milliseconds.
+	 */
+	void record(Batch batch, FlushCause cause, long now) {
+		++this.numberOfBatches;
+		this.numberOfTuples += batch.getNumberOfTuples();
+		this.capacity += batch.getBatchSize();
+		++this.flushCauses[cause.ordinal()];
+		++this.timeInBuffer[getBucket(now - batch.getFirstInsertTimestamp())];
+	}
+	
+	/**
+	 * Returns the histogram bucket of the given time-in-buffer.
+	 * 
+	 * @param duration
+	 *            The time (in milliseconds) between the first insert into a batch and its emission.
+	 * 
+	 * @return the index of the bucket
+	 */
+	static int getBucket(long duration) {
+		if(duration <= 0) {
+			return 0;
+		}
+		if(duration >= 1L << (NUMBER_OF_BUCKETS - 2)) {
+			return NUMBER_OF_BUCKETS - 1;
+		}
+		return 64 - Long.numberOfLeadingZeros(duration);
+	}
+	
+	/**
+	 * Returns the number of emitted batches since the last report.
+	 * 
+	 * @return the number of emitted batches
+	 */
+	public long getNumberOfBatches() {
+		return this.numberOfBatches;
+	}
+	
+	/**
+	 * Returns the number of emitted tuples since the last report.
+	 * 
+	 * @return the number of emitted tuples
+	 */
+	public long getNumberOfTuples() {
+		return this.numberOfTuples;
+	}
+	
+	/**
+	 * Returns the average fill ratio of all emitted batches since the last report.
+	 * 
+	 * @return the average fill ratio (zero, if no batch got emitted)
+	 */
+	public double getFillRatio() {
+		if(this.capacity == 0) {
+			return 0;
+		}
+		return (double)this.numberOfTuples / this.capacity;
+	}
+	
+	/**
+	 * Returns the number of tuples in the output buffers of the stream at the time of the last report.
+	 * 
+	 * @return the number of buffered tuples
+	 */
+	public long getNumberOfBufferedTuples() {
+		return this.numberOfBufferedTuples;
+	}
+	
+	/**
+	 * Sets the number of tuples that are currently in the output buffers of the stream.
+	 * 
+	 * @param numberOfBufferedTuples
+	 *            The number of buffered tuples.
+	 */
+	void setNumberOfBufferedTuples(long numberOfBufferedTuples) {
+		this.numberOfBufferedTuples = numberOfBufferedTuples;
+	}
+	
+	/**
+	 * Returns the number of batches that got emitted because of the given cause since the last report.
+	 * 
+	 * @param cause
+	 *            The flush cause.
+	 * 
+	 * @return the number of batches emitted because of {@code cause}
+	 */
+	public long getNumberOfFlushes(FlushCause cause) {
+		return this.flushCauses[cause.ordinal()];
+	}
+	
+	/**
+	 * Returns the time-in-buffer histogram since the last report (see {@link #NUMBER_OF_BUCKETS}).
+	 * 
+	 * @return a copy of the histogram
+	 */
+	public long[] getTimeInBufferHistogram() {
+		return this.timeInBuffer.clone();
+	}
+	
+	/**
+	 * Appends the report tuples of all statistics to the given list and resets all statistics.
+	 * 
+	 * @param ts
+	 *            The timestamp when this report is triggered.
+	 * @param streamId
+	 *            The output stream the statistics belong to.
+	 * @param report
+	 *            The list the report tuples are appended to.
+	 */
+	void report(long ts, String streamId, List<Values> report) {
+		final Long timestamp = new Long(ts);
+		report.add(new Values(timestamp, streamId, "batches", new Double(this.numberOfBatches)));
+		report.add(new Values(timestamp, streamId, "tuples", new Double(this.numberOfTuples)));
+		report.add(new Values(timestamp, streamId, "fillRatio", new Double(this.getFillRatio())));
+		report.add(new Values(timestamp, streamId, "bufferedTuples", new Double(this.numberOfBufferedTuples)));
+		
+		final FlushCause[] causes = FlushCause.values();
+		for(int i = 0; i < causes.length; ++i) {
+			report.add(new Values(timestamp, streamId, "flush." + causes[i].name().toLowerCase(), new Double(
+				this.flushCauses[i])));
+			this.flushCauses[i] = 0;
+		}
+		
+		for(int i = 0; i < NUMBER_OF_BUCKETS - 1; ++i) {
+			report.add(new Values(timestamp, streamId, "timeInBuffer<" + (1L << i) + "ms", new Double(
+				this.timeInBuffer[i])));
+			this.timeInBuffer[i] = 0;
+		}
+		report.add(new Values(timestamp, streamId, "timeInBuffer>=" + (1L << (NUMBER_OF_BUCKETS - 2)) + "ms",
+			new Double(this.timeInBuffer[NUMBER_OF_BUCKETS - 1])));
+		this.timeInBuffer[NUMBER_OF_BUCKETS - 1] = 0;
+		
+		this.numberOfBatches = 0;
+		this.numberOfTuples = 0;
+		this.capacity = 0;
+	}
+	
+	/**
+	 * Declares a report stream with schema {@code <ts:}{@link Long}{@code ,streamId:}{@link String}
+	 * {@code ,statistic:}{@link String}{@code ,value:}{@link Double}{@code >}
+	 * 
+	 * @param reportStream
+	 *            The ID of the report stream to be declared.
+	 * @param declarer
+	 *            The declarer object the report stream is declared to.
+	 */
+	public static void declareStatsStream(String reportStream, OutputFieldsDeclarer declarer) {
+		declarer.declareStream(reportStream, new Fields(TS_ATTRIBUTE, STREAM_ID_ATTRIBUTE, STATISTIC_ATTRIBUTE,
+			VALUE_ATTRIBUTE));
+	}
+	
+}
@@ -101,4 +101,10 @@ class BoltBatchCollectorImpl extends AbstractBatchCollector {
 		this.boltBatchCollector.collector.emitDirect(taskId, streamId, anchors, (List)tupleOrBatch);
 	}
 	
+	@Override
+	protected void doAck(Tuple input) {
+		BatchOutputCollector.logger.trace("input: {}", input);
+		this.boltBatchCollector.collector.ack(input);
+	}
+	
 }
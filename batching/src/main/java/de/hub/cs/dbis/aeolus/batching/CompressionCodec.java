@@ -0,0 +1,254 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+
+
+
+/**
+ * {@link CompressionCodec} defines the codecs that can be used to compress the serialized columns of output batches
+ * (see {@link BatchColumnSerializer}). The used codec is written into the serialized column; thus, consumers do not
+ * need to be configured.
+ * 
+ * @author Matthias J. Sax
+ */
+public enum CompressionCodec {
+	/**
+	 * LZF compression (pure Java). Very fast compression and decompression with a moderate compression ratio.
+	 */
+	LZF {
+		@Override
+		byte[] compress(byte[] data) {
+			return lzfCompress(data);
+		}
+		
+		@Override
+		byte[] decompress(byte[] data, int uncompressedLength) {
+			return lzfDecompress(data, uncompressedLength);
+		}
+	},
+	/**
+	 * Deflate compression with the fastest compression level. Slower than {@link #LZF} but with a better compression
+	 * ratio.
+	 */
+	DEFLATE {
+		@Override
+		byte[] compress(byte[] data) {
+			final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try {
+				deflater.setInput(data);
+				deflater.finish();
+				
+				byte[] buffer = new byte[data.length + 64];
+				int length = 0;
+				while(!deflater.finished()) {
+					if(length == buffer.length) {
+						buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+					}
+					length += deflater.deflate(buffer, length, buffer.length - length);
+				}
+				return Arrays.copyOf(buffer, length);
+			} finally {
+				deflater.end();
+			}
+		}
+		
+		@Override
+		byte[] decompress(byte[] data, int uncompressedLength) {
+			final Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(data);
+				
+				final byte[] result = new byte[uncompressedLength];
+				int length = 0;
+				while(length < uncompressedLength) {
+					final int n = inflater.inflate(result, length, uncompressedLength - length);
+					if(n == 0 && (inflater.finished() || inflater.needsInput())) {
+						throw new IllegalArgumentException("Compressed data is truncated.");
+					}
+					length += n;
+				}
+				return result;
+			} catch(DataFormatException e) {
+				throw new IllegalArgumentException("Compressed data is corrupted.", e);
+			} finally {
+				inflater.end();
+			}
+		}
+	};
+	
+	/**
+	 * The number of bits of the hash values used to find LZF back references.
+	 */
+	private final static int LZF_HASH_BITS = 14;
+	/**
+	 * The maximum number of literals that are encoded by a single LZF control byte.
+	 */
+	private final static int LZF_MAX_LITERALS = 1 << 5;
+	/**
+	 * The maximum distance of an LZF back reference.
+	 */
+	private final static int LZF_MAX_OFFSET = 1 << 13;
+	/**
+	 * The maximum length of an LZF back reference.
+	 */
+	private final static int LZF_MAX_REFERENCE = (1 << 8) + (1 << 3);
+	
+	
+	
+	/**
+	 * Compresses the given data.
+	 * 
+	 * @param data
+	 *            The data to be compressed.
+	 * 
+	 * @return the compressed data
+	 */
+	abstract byte[] compress(byte[] data);
+	
+	/**
+	 * Decompresses the given data.
+	 * 
+	 * @param data
+	 *            The compressed data.
+	 * @param uncompressedLength
+	 *            The length of the uncompressed data.
+	 * 
+	 * @return the uncompressed data
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code data} is corrupted
+	 */
+	abstract byte[] decompress(byte[] data, int uncompressedLength);
+	
+	/**
+	 * Compresses the given data with LZF. The result is a sequence of literal runs (a control byte {@code 000LLLLL}
+	 * followed by {@code L+1} literals) and back references (a control byte {@code LLLOOOOO}, an additional length byte
+	 * if {@code LLL == 7}, and a second offset byte; the reference copies {@code L+2} bytes starting {@code O+1} bytes
+	 * before the current position).
+	 */
+	private static byte[] lzfCompress(byte[] data) {
+		final int length = data.length;
+		// worst case: all literals plus one control byte per literal run
+		final byte[] out = new byte[length + length / LZF_MAX_LITERALS + 1];
+		// position plus one of the last occurrence of each hash value (zero if not seen yet)
+		final int[] hashTable = new int[1 << LZF_HASH_BITS];
+		
+		int position = 0;
+		int literalStart = 0;
+		int outPosition = 0;
+		while(position + 2 < length) {
+			final int next = (data[position] & 0xff) << 16 | (data[position + 1] & 0xff) << 8 | data[position + 2] & 0xff;
+			final int hash = (next * 0x9E3779B1) >>> (32 - LZF_HASH_BITS);
+			final int reference = hashTable[hash] - 1;
+			hashTable[hash] = position + 1;
+			
+			final int offset = position - reference - 1;
+			if(reference >= 0 && offset < LZF_MAX_OFFSET && data[reference] == data[position]
+				&& data[reference + 1] == data[position + 1] && data[reference + 2] == data[position + 2]) {
+				final int maxLength = Math.min(LZF_MAX_REFERENCE, length - position);
+				int matchLength = 3;
+				while(matchLength < maxLength && data[reference + matchLength] == data[position + matchLength]) {
+					++matchLength;
+				}
+				
+				outPosition = writeLiterals(data, literalStart, position - literalStart, out, outPosition);
+				final int encodedLength = matchLength - 2;
+				if(encodedLength < 7) {
+					out[outPosition++] = (byte)(encodedLength << 5 | offset >>> 8);
+				} else {
+					out[outPosition++] = (byte)(7 << 5 | offset >>> 8);
+					out[outPosition++] = (byte)(encodedLength - 7);
+				}
+				out[outPosition++] = (byte)offset;
+				
+				position += matchLength;
+				literalStart = position;
+			} else {
+				++position;
+			}
+		}
+		outPosition = writeLiterals(data, literalStart, length - literalStart, out, outPosition);
+		
+		return Arrays.copyOf(out, outPosition);
+	}
+	
+	/**
+	 * Writes the given literals as LZF literal runs.
+	 * 
+	 * @return the output position after the written literal runs
+	 */
+	private static int writeLiterals(byte[] data, int start, int count, byte[] out, int outPosition) {
+		while(count > 0) {
+			final int runLength = Math.min(count, LZF_MAX_LITERALS);
+			out[outPosition++] = (byte)(runLength - 1);
+			System.arraycopy(data, start, out, outPosition, runLength);
+			outPosition += runLength;
+			start += runLength;
+			count -= runLength;
+		}
+		return outPosition;
+	}
+	
+	/**
+	 * Decompresses the given LZF compressed data (see {@link #lzfCompress(byte[])}).
+	 */
+	private static byte[] lzfDecompress(byte[] data, int uncompressedLength) {
+		final byte[] out = new byte[uncompressedLength];
+		
+		int position = 0;
+		int outPosition = 0;
+		try {
+			while(position < data.length) {
+				final int control = data[position++] & 0xff;
+				if(control < LZF_MAX_LITERALS) {
+					final int runLength = control + 1;
+					System.arraycopy(data, position, out, outPosition, runLength);
+					position += runLength;
+					outPosition += runLength;
+				} else {
+					int referenceLength = control >>> 5;
+					if(referenceLength == 7) {
+						referenceLength += data[position++] & 0xff;
+					}
+					referenceLength += 2;
+					int reference = outPosition - ((control & 0x1f) << 8 | data[position++] & 0xff) - 1;
+					// references may overlap with the output; thus, copy byte by byte
+					for(int i = 0; i < referenceLength; ++i) {
+						out[outPosition++] = out[reference++];
+					}
+				}
+			}
+		} catch(IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Compressed data is corrupted.", e);
+		}
+		
+		if(outPosition != uncompressedLength) {
+			throw new IllegalArgumentException("Compressed data is truncated.");
+		}
+		return out;
+	}
+	
+}
@@ -0,0 +1,132 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import java.util.Arrays;
+
+
+
+
+
+/**
+ * {@link DoubleBatchColumn} is a {@link BatchColumn} that stores {@link Double} attribute values as primitive
+ * {@code double}s.
+ * 
+ * @author Matthias J. Sax
+ */
+public class DoubleBatchColumn extends BatchColumn {
+	private final static long serialVersionUID = 676536137047503052L;
+	
+	/**
+	 * The stored values.
+	 */
+	private double[] values;
+	/**
+	 * The number of stored values.
+	 */
+	private int size;
+	
+	
+	
+	/**
+	 * Default constructor. Needed for serialization.
+	 */
+	public DoubleBatchColumn() {
+		this.values = new double[DEFAULT_CAPACITY];
+	}
+	
+	/**
+	 * Instantiates a {@link DoubleBatchColumn} with size {@code batchSize} (must be larger than zero).
+	 * 
+	 * @param batchSize
+	 *            The number of attributes that should be stored in this {@link DoubleBatchColumn}.
+	 */
+	public DoubleBatchColumn(int batchSize) {
+		assert (batchSize > 0);
+		this.values = new double[batchSize];
+	}
+	
+	
+	
+	/**
+	 * Appends the given value.
+	 * 
+	 * @param value
+	 *            The value to be appended.
+	 */
+	public void addDouble(double value) {
+		if(this.size == this.values.length) {
+			this.values = Arrays.copyOf(this.values, Math.max(2 * this.size, DEFAULT_CAPACITY));
+		}
+		this.values[this.size++] = value;
+		++this.modCount;
+	}
+	
+	@Override
+	boolean append(Object value) {
+		if(value instanceof Double) {
+			this.addDouble(((Double)value).doubleValue());
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Appends the given value.
+	 * 
+	 * @throws ClassCastException
+	 *             if {@code value} is not of type {@link Double}
+	 */
+	@Override
+	public boolean add(Object value) {
+		this.addDouble(((Double)value).doubleValue());
+		return true;
+	}
+	
+	@Override
+	public Object get(int index) {
+		return Double.valueOf(this.getDouble(index));
+	}
+	
+	@Override
+	public double getDouble(int index) {
+		this.checkIndex(index);
+		return this.values[index];
+	}
+	
+	@Override
+	public int size() {
+		return this.size;
+	}
+	
+	@Override
+	public void clear() {
+		this.size = 0;
+		++this.modCount;
+	}
+	
+	@Override
+	public int hashCode() {
+		assert (this.size > 0);
+		final double value = this.values[0];
+		final long bits = Double.doubleToLongBits(value);
+		return (int)(bits ^ (bits >>> 32));
+	}
+	
+}
@@ -0,0 +1,94 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import backtype.storm.spout.ISpout;
+
+
+
+
+
+/**
+ * {@link FanOutMessageId} wraps the message ID of a tuple that is inserted into multiple batches. The original message
+ * ID is acked after all batches are acked, and failed as soon as the first batch fails. Because a spout's
+ * {@code nextTuple()}, {@code ack(...)}, and {@code fail(...)} are called by the same thread, no synchronization is
+ * required.
+ * 
+ * @author Matthias J. Sax
+ */
+final class FanOutMessageId {
+	/**
+	 * The original message ID.
+	 */
+	final Object messageId;
+	/**
+	 * The number of batches containing the tuple, that are not acked or failed yet.
+	 */
+	int pending = 0;
+	/**
+	 * {@code true} if the original message ID got already failed.
+	 */
+	private boolean failed = false;
+	
+	
+	
+	/**
+	 * Instantiates a new {@link FanOutMessageId}.
+	 * 
+	 * @param messageId
+	 *            The original message ID.
+	 */
+	FanOutMessageId(Object messageId) {
+		this.messageId = messageId;
+	}
+	
+	
+	
+	/**
+	 * Acks one of the batches containing the tuple.
+	 * 
+	 * @param spout
+	 *            The spout that emitted the tuple.
+	 */
+	void ack(ISpout spout) {
+		if(--this.pending == 0 && !this.failed) {
+			spout.ack(this.messageId);
+		}
+	}
+	
+	/**
+	 * Fails one of the batches containing the tuple.
+	 * 
+	 * @param spout
+	 *            The spout that emitted the tuple.
+	 */
+	void fail(ISpout spout) {
+		--this.pending;
+		if(!this.failed) {
+			this.failed = true;
+			spout.fail(this.messageId);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return String.valueOf(this.messageId);
+	}
+	
+}
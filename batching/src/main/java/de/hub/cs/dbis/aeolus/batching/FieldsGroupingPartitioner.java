@@ -0,0 +1,150 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import java.util.Arrays;
+import java.util.List;
+
+import backtype.storm.tuple.Fields;
+
+
+
+
+
+/**
+ * {@link FieldsGroupingPartitioner} computes the receiver task of a tuple for a single fields-grouping (or
+ * global-grouping) receiver exactly as Storm does. Storm computes the hash value of the list of grouping attribute
+ * values ({@link List#hashCode()}), takes it modulo the number of receiver tasks (the result is always non-negative),
+ * and uses the result as index into the sorted list of receiver task IDs. Global-grouping is a fields-grouping
+ * without grouping attributes and always chooses the receiver task with the smallest ID.
+ * 
+ * @author Matthias J. Sax
+ */
+final class FieldsGroupingPartitioner {
+	/**
+	 * The positions of the grouping attributes within the output schema (empty for global-grouping).
+	 */
+	private final int[] fieldIndexes;
+	/**
+	 * The receiver task IDs in ascending order.
+	 */
+	private final int[] taskIds;
+	
+	
+	
+	/**
+	 * Instantiates a new {@link FieldsGroupingPartitioner}.
+	 * 
+	 * @param outputFields
+	 *            The output schema of the producer's output stream.
+	 * @param groupingFields
+	 *            The grouping attributes of the receiver (empty for global-grouping).
+	 * @param receiverTaskIds
+	 *            The IDs of all receiver tasks (must not be empty).
+	 */
+	FieldsGroupingPartitioner(Fields outputFields, List<String> groupingFields, List<Integer> receiverTaskIds) {
+		assert (receiverTaskIds.size() > 0);
+		
+		this.fieldIndexes = new int[groupingFields.size()];
+		for(int i = 0; i < this.fieldIndexes.length; ++i) {
+			this.fieldIndexes[i] = outputFields.fieldIndex(groupingFields.get(i));
+		}
+		
+		this.taskIds = new int[receiverTaskIds.size()];
+		for(int i = 0; i < this.taskIds.length; ++i) {
+			this.taskIds[i] = receiverTaskIds.get(i).intValue();
+		}
+		Arrays.sort(this.taskIds);
+	}
+	
+	
+	
+	/**
+	 * Returns the index of the receiver task (with regard to the ascending order of all receiver task IDs) of the given
+	 * tuple.
+	 * 
+	 * @param tuple
+	 *            The output tuple.
+	 * 
+	 * @return the index of the receiver task of the tuple
+	 */
+	int getTaskIndex(List<Object> tuple) {
+		if(this.fieldIndexes.length == 0) { // global-grouping
+			return 0;
+		}
+		
+		// same as Fields.select(...).hashCode() but without creating a new list
+		int hashCode = 1;
+		for(int i = 0; i < this.fieldIndexes.length; ++i) {
+			final Object value = tuple.get(this.fieldIndexes[i]);
+			hashCode = 31 * hashCode + (value == null ? 0 : value.hashCode());
+		}
+		
+		final int index = hashCode % this.taskIds.length;
+		return index < 0 ? index + this.taskIds.length : index;
+	}
+	
+	/**
+	 * Returns the ID of the receiver task of the given tuple.
+	 * 
+	 * @param tuple
+	 *            The output tuple.
+	 * 
+	 * @return the ID of the receiver task of the tuple
+	 */
+	int getTaskId(List<Object> tuple) {
+		return this.taskIds[this.getTaskIndex(tuple)];
+	}
+	
+	/**
+	 * Returns the number of receiver tasks.
+	 * 
+	 * @return the number of receiver tasks
+	 */
+	int getNumberOfTasks() {
+		return this.taskIds.length;
+	}
+	
+	/**
+	 * Returns the number of distinct task indexes that are returned by {@link #getTaskIndex(List)}, ie, one for
+	 * global-grouping and the number of receiver tasks otherwise.
+	 * 
+	 * @return the number of distinct task indexes
+	 */
+	int getNumberOfPartitions() {
+		return this.fieldIndexes.length == 0 ? 1 : this.taskIds.length;
+	}
+	
+	/**
+	 * Checks if the given {@link FieldsGroupingPartitioner} returns the same task index as this
+	 * {@link FieldsGroupingPartitioner} for each tuple. This is the case, if both use the same grouping attributes in the
+	 * same order (the order changes the hash value) and have the same number of receiver tasks. The receiver task IDs
+	 * themselves are irrelevant.
+	 * 
+	 * @param other
+	 *            The {@link FieldsGroupingPartitioner} to compare with.
+	 * 
+	 * @return {@code true} if both partition all tuples equally; {@code false} otherwise
+	 */
+	boolean isEquivalent(FieldsGroupingPartitioner other) {
+		return Arrays.equals(this.fieldIndexes, other.fieldIndexes)
+			&& this.getNumberOfPartitions() == other.getNumberOfPartitions();
+	}
+	
+}
@@ -0,0 +1,48 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+/**
+ * {@link FlushCause} defines why an output batch got emitted (see {@link BatchStatistics}).
+ * 
+ * @author Matthias J. Sax
+ */
+public enum FlushCause {
+	/**
+	 * The batch is full or reached the maximum number of distinct anchors.
+	 */
+	FULL,
+	/**
+	 * The batch exceeded the maximum linger time of its output stream.
+	 */
+	LINGER,
+	/**
+	 * The number of tuples in all output buffers exceeded the maximum number of buffered tuples.
+	 */
+	BUFFER_LIMIT,
+	/**
+	 * A tuple of a punctuation stream got emitted and all output buffers got flushed in front of it.
+	 */
+	PUNCTUATION,
+	/**
+	 * All output buffers got flushed explicitly (eg, on cleanup).
+	 */
+	FLUSH
+	
+}
@@ -0,0 +1,131 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import java.util.Arrays;
+
+
+
+
+
+/**
+ * {@link LongBatchColumn} is a {@link BatchColumn} that stores {@link Long} attribute values as primitive
+ * {@code long}s.
+ * 
+ * @author Matthias J. Sax
+ */
+public class LongBatchColumn extends BatchColumn {
+	private final static long serialVersionUID = 3357040713451853374L;
+	
+	/**
+	 * The stored values.
+	 */
+	private long[] values;
+	/**
+	 * The number of stored values.
+	 */
+	private int size;
+	
+	
+	
+	/**
+	 * Default constructor. Needed for serialization.
+	 */
+	public LongBatchColumn() {
+		this.values = new long[DEFAULT_CAPACITY];
+	}
+	
+	/**
+	 * Instantiates a {@link LongBatchColumn} with size {@code batchSize} (must be larger than zero).
+	 * 
+	 * @param batchSize
+	 *            The number of attributes that should be stored in this {@link LongBatchColumn}.
+	 */
+	public LongBatchColumn(int batchSize) {
+		assert (batchSize > 0);
+		this.values = new long[batchSize];
+	}
+	
+	
+	
+	/**
+	 * Appends the given value.
+	 * 
+	 * @param value
+	 *            The value to be appended.
+	 */
+	public void addLong(long value) {
+		if(this.size == this.values.length) {
+			this.values = Arrays.copyOf(this.values, Math.max(2 * this.size, DEFAULT_CAPACITY));
+		}
+		this.values[this.size++] = value;
+		++this.modCount;
+	}
+	
+	@Override
+	boolean append(Object value) {
+		if(value instanceof Long) {
+			this.addLong(((Long)value).longValue());
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Appends the given value.
+	 * 
+	 * @throws ClassCastException
+	 *             if {@code value} is not of type {@link Long}
+	 */
+	@Override
+	public boolean add(Object value) {
+		this.addLong(((Long)value).longValue());
+		return true;
+	}
+	
+	@Override
+	public Object get(int index) {
+		return Long.valueOf(this.getLong(index));
+	}
+	
+	@Override
+	public long getLong(int index) {
+		this.checkIndex(index);
+		return this.values[index];
+	}
+	
+	@Override
+	public int size() {
+		return this.size;
+	}
+	
+	@Override
+	public void clear() {
+		this.size = 0;
+		++this.modCount;
+	}
+	
+	@Override
+	public int hashCode() {
+		assert (this.size > 0);
+		final long value = this.values[0];
+		return (int)(value ^ (value >>> 32));
+	}
+	
+}
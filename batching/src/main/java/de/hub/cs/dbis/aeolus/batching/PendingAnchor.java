@@ -0,0 +1,39 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+/**
+ * {@link PendingAnchor} tracks an input tuple that anchors buffered output tuples. Storm requires that a tuple is
+ * anchored before its anchor gets acked; thus, acking an anchor is deferred until all output batches anchored to it
+ * got emitted. Because a bolt's {@code execute(...)} and all collector calls are issued by the same thread, no
+ * synchronization is required.
+ * 
+ * @author Matthias J. Sax
+ */
+final class PendingAnchor {
+	/**
+	 * The number of output buffers that contain tuples anchored to the input tuple.
+	 */
+	int buffers = 0;
+	/**
+	 * {@code true} if the input tuple got acked by the bolt, but the ack is not forwarded to Storm yet.
+	 */
+	boolean acked = false;
+	
+}
@@ -0,0 +1,130 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import java.util.Arrays;
+
+
+
+
+
+/**
+ * {@link ShortBatchColumn} is a {@link BatchColumn} that stores {@link Short} attribute values as primitive
+ * {@code short}s.
+ * 
+ * @author Matthias J. Sax
+ */
+public class ShortBatchColumn extends BatchColumn {
+	private final static long serialVersionUID = 457294929750468935L;
+	
+	/**
+	 * The stored values.
+	 */
+	private short[] values;
+	/**
+	 * The number of stored values.
+	 */
+	private int size;
+	
+	
+	
+	/**
+	 * Default constructor. Needed for serialization.
+	 */
+	public ShortBatchColumn() {
+		this.values = new short[DEFAULT_CAPACITY];
+	}
+	
+	/**
+	 * Instantiates a {@link ShortBatchColumn} with size {@code batchSize} (must be larger than zero).
+	 * 
+	 * @param batchSize
+	 *            The number of attributes that should be stored in this {@link ShortBatchColumn}.
+	 */
+	public ShortBatchColumn(int batchSize) {
+		assert (batchSize > 0);
+		this.values = new short[batchSize];
+	}
+	
+	
+	
+	/**
+	 * Appends the given value.
+	 * 
+	 * @param value
+	 *            The value to be appended.
+	 */
+	public void addShort(short value) {
+		if(this.size == this.values.length) {
+			this.values = Arrays.copyOf(this.values, Math.max(2 * this.size, DEFAULT_CAPACITY));
+		}
+		this.values[this.size++] = value;
+		++this.modCount;
+	}
+	
+	@Override
+	boolean append(Object value) {
+		if(value instanceof Short) {
+			this.addShort(((Short)value).shortValue());
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Appends the given value.
+	 * 
+	 * @throws ClassCastException
+	 *             if {@code value} is not of type {@link Short}
+	 */
+	@Override
+	public boolean add(Object value) {
+		this.addShort(((Short)value).shortValue());
+		return true;
+	}
+	
+	@Override
+	public Object get(int index) {
+		return Short.valueOf(this.getShort(index));
+	}
+	
+	@Override
+	public short getShort(int index) {
+		this.checkIndex(index);
+		return this.values[index];
+	}
+	
+	@Override
+	public int size() {
+		return this.size;
+	}
+	
+	@Override
+	public void clear() {
+		this.size = 0;
+		++this.modCount;
+	}
+	
+	@Override
+	public int hashCode() {
+		assert (this.size > 0);
+		return this.values[0];
+	}
+	
+}
@@ -102,4 +102,10 @@ class SpoutBatchCollectorImpl extends AbstractBatchCollector {
 		this.spoutBatchCollector.collector.emitDirect(taskId, streamId, (List)tupleOrBatch, messageId);
 	}
 	
+	@Override
+	protected void doAck(Tuple input) {
+		// spouts do not anchor output tuples
+		assert (false);
+	}
+	
 }
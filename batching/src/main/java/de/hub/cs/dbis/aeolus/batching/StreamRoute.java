@@ -0,0 +1,225 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import backtype.storm.grouping.CustomStreamGrouping;
+
+
+
+
+
+/**
+ * {@link StreamRoute} holds the precomputed routing information of a single output stream. It is computed once by
+ * {@link AbstractBatchCollector} such that emitted tuples can be assigned to their output buffer without any map
+ * lookups or string operations.
+ * 
+ * @author Matthias J. Sax
+ */
+final class StreamRoute {
+	/**
+	 * The output stream.
+	 */
+	final String streamId;
+	/**
+	 * {@code true} if tuples of this output stream are batched; {@code false} if they are emitted directly.
+	 */
+	final boolean batched;
+	/**
+	 * {@code true} if this output stream is a punctuation stream, ie, all output buffers are flushed before a tuple of
+	 * this stream is emitted.
+	 */
+	boolean punctuation;
+	/**
+	 * The number of tuples in all output buffers of this output stream (including {@link #broadcastBuffers}).
+	 */
+	int numberOfBufferedTuples;
+	
+	/**
+	 * The output buffers of a regular output stream ({@code null} for direct output streams).
+	 */
+	Batch[] buffers;
+	/**
+	 * The partitioner of each receiver of a regular output stream that uses fields-grouping.
+	 */
+	FieldsGroupingPartitioner[] partitioners = new FieldsGroupingPartitioner[0];
+	/**
+	 * The weight of each fields-grouping receiver, ie, the factor its task index is multiplied with to compute the
+	 * index of the output buffer.
+	 */
+	int[] fieldsWeights = new int[0];
+	/**
+	 * The attributes of a regular output stream that are read by at least one receiver ({@code null} if all attributes
+	 * are emitted).
+	 */
+	boolean[] projection;
+	
+	/**
+	 * The output buffers of a direct output stream, one for each receiver task (ie, task-ID minus
+	 * {@link #directTaskOffset}). Entries are {@code null} for tasks that do not receive the stream. {@code null} for
+	 * regular output streams.
+	 */
+	Batch[] directBuffers;
+	/**
+	 * The smallest task-ID contained in {@link #directBuffers}.
+	 */
+	int directTaskOffset;
+	/**
+	 * The number of receiver tasks of a direct output stream.
+	 */
+	int numberOfDirectBuffers;
+	/**
+	 * The number of broadcast buffers of the emulated output stream, that hold batches of this direct output stream.
+	 */
+	int numberOfBroadcastBuffers;
+	/**
+	 * {@code true} for each receiver task of a direct output stream (indexed as {@link #directBuffers}) that runs in
+	 * the same worker and gets its tuples without batching ({@code null} if there is no such task).
+	 */
+	boolean[] localTasks;
+	/**
+	 * The attributes that are read by each receiver task of a direct output stream (indexed as {@link #directBuffers}).
+	 * Entries are {@code null} for tasks that read all attributes.
+	 */
+	boolean[][] directProjections;
+	
+	/**
+	 * The route of the Aeolus-defined direct output stream, if the output stream is emulated via direct emit
+	 * ({@code null} otherwise).
+	 */
+	StreamRoute emulationRoute;
+	/**
+	 * The partitioner of each receiver of the emulating direct output stream ({@code null} for receivers that use
+	 * custom-grouping).
+	 */
+	FieldsGroupingPartitioner[] emulatedPartitioners;
+	/**
+	 * The custom-grouping of each receiver of the emulating direct output stream ({@code null} for receivers that use
+	 * fields-grouping).
+	 */
+	CustomStreamGrouping[] customGroupings;
+	/**
+	 * The number of tasks of each custom-grouping receiver of the emulating direct output stream.
+	 */
+	int[] numberOfReceiverTasks;
+	/**
+	 * The task IDs of each shuffle- or all-grouping receiver of the emulating direct output stream ({@code null} for
+	 * fields- and custom-grouping receivers).
+	 */
+	int[][] emulatedTasks;
+	/**
+	 * {@code true} for each receiver of the emulating direct output stream that uses all-grouping.
+	 */
+	boolean[] broadcast;
+	/**
+	 * The single output buffer of each all-grouping receiver of the emulating direct output stream ({@code null} for
+	 * all other receivers). A full buffer is emitted to all tasks of the receiver.
+	 */
+	Batch[] broadcastBuffers;
+	/**
+	 * The receiver tasks each buffer of {@link #broadcastBuffers} is emitted to, ie, all tasks of the all-grouping
+	 * receiver that do not get their tuples without batching.
+	 */
+	int[][] broadcastTasks;
+	/**
+	 * The attributes that are read by each all-grouping receiver of the emulating direct output stream ({@code null}
+	 * entries if all attributes are read).
+	 */
+	boolean[][] broadcastProjections;
+	/**
+	 * The tasks of each all-grouping receiver that run in the same worker and get their tuples without batching
+	 * ({@code null} entries if there are no such tasks).
+	 */
+	int[][] localBroadcastTasks;
+	/**
+	 * The index of the next receiver task of each shuffle-grouping receiver of the emulating direct output stream.
+	 */
+	int[] nextTaskIndex;
+	/**
+	 * {@code true} if a tuple might be inserted into multiple batches of the emulating direct output stream.
+	 */
+	boolean fanOut;
+	
+	/**
+	 * The codec that compresses serialized output batches of this stream ({@code null} if compression is disabled).
+	 */
+	CompressionCodec compressionCodec;
+	/**
+	 * The minimum size (in bytes) of a serialized column of an output batch, for which the column gets compressed.
+	 */
+	int compressionThreshold;
+	
+	
+	
+	/**
+	 * Instantiates a new {@link StreamRoute} without any output buffers.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param batched
+	 *            {@code true} if tuples of the output stream are batched.
+	 */
+	StreamRoute(String streamId, boolean batched) {
+		this.streamId = streamId;
+		this.batched = batched;
+	}
+	
+	
+	
+	/**
+	 * Returns the attributes that are read by the given receiver task of a direct output stream.
+	 * 
+	 * @param taskId
+	 *            The ID of the receiver task.
+	 * 
+	 * @return the attributes that are read by the given task or {@code null} if all attributes are read
+	 */
+	boolean[] getDirectProjection(int taskId) {
+		return this.directProjections[taskId - this.directTaskOffset];
+	}
+	
+	/**
+	 * Returns the output buffer of the given receiver task of a direct output stream.
+	 * 
+	 * @param taskId
+	 *            The ID of the receiver task.
+	 * 
+	 * @return the output buffer of the given task or {@code null} if the task does not receive this stream
+	 */
+	Batch getDirectBuffer(int taskId) {
+		final int index = taskId - this.directTaskOffset;
+		if(this.directBuffers == null || index < 0 || index >= this.directBuffers.length) {
+			return null;
+		}
+		return this.directBuffers[index];
+	}
+	
+	/**
+	 * Checks if the given receiver task of a direct output stream gets its tuples without batching.
+	 * 
+	 * @param taskId
+	 *            The ID of the receiver task.
+	 * 
+	 * @return {@code true} if the tuples for the given task are not batched; {@code false} otherwise
+	 */
+	boolean isLocalTask(int taskId) {
+		final int index = taskId - this.directTaskOffset;
+		return this.localTasks != null && index >= 0 && index < this.localTasks.length && this.localTasks[index];
+	}
+	
+}
@@ -0,0 +1,202 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+
+
+
+
+/**
+ * {@link StringBatchColumn} is a {@link BatchColumn} that stores {@link String} attribute values dictionary encoded.
+ * Each distinct value is stored only once and each position refers to its value by a dictionary index.
+ * 
+ * @author Matthias J. Sax
+ */
+public class StringBatchColumn extends BatchColumn {
+	private final static long serialVersionUID = -6290870935372281533L;
+	
+	/**
+	 * The dictionary index of each stored value.
+	 */
+	private int[] codes;
+	/**
+	 * The number of stored values.
+	 */
+	private int size;
+	/**
+	 * All distinct values in insertion order.
+	 */
+	private final ArrayList<String> dictionary = new ArrayList<String>();
+	/**
+	 * Maps each distinct value to its dictionary index. Only needed while values are appended and thus, created lazily.
+	 */
+	private transient HashMap<String, Integer> index;
+	
+	
+	
+	/**
+	 * Default constructor. Needed for serialization.
+	 */
+	public StringBatchColumn() {
+		this.codes = new int[DEFAULT_CAPACITY];
+	}
+	
+	/**
+	 * Instantiates a {@link StringBatchColumn} with size {@code batchSize} (must be larger than zero).
+	 * 
+	 * @param batchSize
+	 *            The number of attributes that should be stored in this {@link StringBatchColumn}.
+	 */
+	public StringBatchColumn(int batchSize) {
+		assert (batchSize > 0);
+		this.codes = new int[batchSize];
+	}
+	
+	
+	
+	/**
+	 * Appends the given value.
+	 * 
+	 * @param value
+	 *            The value to be appended (must not be {@code null}).
+	 */
+	public void addString(String value) {
+		assert (value != null);
+		
+		if(this.index == null) {
+			this.index = new HashMap<String, Integer>();
+			for(int i = 0; i < this.dictionary.size(); ++i) {
+				this.index.put(this.dictionary.get(i), new Integer(i));
+			}
+		}
+		
+		final int code;
+		final Integer c = this.index.get(value);
+		if(c == null) {
+			code = this.dictionary.size();
+			this.dictionary.add(value);
+			this.index.put(value, new Integer(code));
+		} else {
+			code = c.intValue();
+		}
+		
+		if(this.size == this.codes.length) {
+			this.codes = Arrays.copyOf(this.codes, Math.max(2 * this.size, DEFAULT_CAPACITY));
+		}
+		this.codes[this.size++] = code;
+		++this.modCount;
+	}
+	
+	@Override
+	boolean append(Object value) {
+		if(value instanceof String) {
+			this.addString((String)value);
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Appends the given value.
+	 * 
+	 * @throws ClassCastException
+	 *             if {@code value} is not of type {@link String}
+	 * @throws NullPointerException
+	 *             if {@code value} is {@code null}
+	 */
+	@Override
+	public boolean add(Object value) {
+		if(value == null) {
+			throw new NullPointerException();
+		}
+		this.addString((String)value);
+		return true;
+	}
+	
+	@Override
+	public Object get(int index) {
+		return this.getString(index);
+	}
+	
+	@Override
+	public String getString(int index) {
+		this.checkIndex(index);
+		return this.dictionary.get(this.codes[index]);
+	}
+	
+	/**
+	 * Returns the number of distinct values stored in this {@link StringBatchColumn}.
+	 * 
+	 * @return the number of distinct values
+	 */
+	public int getDictionarySize() {
+		return this.dictionary.size();
+	}
+	
+	/**
+	 * Returns the distinct value with dictionary index {@code code}.
+	 * 
+	 * @param code
+	 *            The dictionary index.
+	 * 
+	 * @return the distinct value with dictionary index {@code code}
+	 */
+	String getDictionaryValue(int code) {
+		return this.dictionary.get(code);
+	}
+	
+	/**
+	 * Returns the dictionary index of the value at position {@code index}.
+	 * 
+	 * @param index
+	 *            The position of the value.
+	 * 
+	 * @return the dictionary index of the value at position {@code index}
+	 */
+	int getCode(int index) {
+		this.checkIndex(index);
+		return this.codes[index];
+	}
+	
+	@Override
+	public int size() {
+		return this.size;
+	}
+	
+	@Override
+	public void clear() {
+		this.size = 0;
+		this.dictionary.clear();
+		if(this.index != null) {
+			this.index.clear();
+		}
+		++this.modCount;
+	}
+	
+	@Override
+	public int hashCode() {
+		assert (this.size > 0);
+		return this.dictionary.get(this.codes[0]).hashCode();
+	}
+	
+}
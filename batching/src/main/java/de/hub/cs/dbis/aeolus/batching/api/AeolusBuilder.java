@@ -19,8 +19,11 @@
 package de.hub.cs.dbis.aeolus.batching.api;
 
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
+import backtype.storm.topology.BasicBoltExecutor;
 import backtype.storm.topology.BoltDeclarer;
 import backtype.storm.topology.IBasicBolt;
 import backtype.storm.topology.IRichBolt;
@@ -28,6 +31,7 @@ import backtype.storm.topology.IRichSpout;
 import backtype.storm.topology.IRichStateSpout;
 import backtype.storm.topology.SpoutDeclarer;
 import backtype.storm.topology.TopologyBuilder;
+import de.hub.cs.dbis.aeolus.batching.AdaptiveBatchSizeController;
 
 
 
@@ -35,14 +39,45 @@ import backtype.storm.topology.TopologyBuilder;
 
 /**
  * {@link AeolusBuilder} allows to specify an output batch size for each Spout/Bolt that is added to the topology. It
- * automatically inserts wrappers that batch the output and debatch the input if required.
+ * automatically inserts wrappers that batch the output and debatch the input if required. Bolts that implement
+ * {@link IBatchBolt} receive input batches as a whole instead of tuple by tuple. Basic bolts ({@link IBasicBolt}) are
+ * wrapped by a {@link BasicBoltExecutor}; thus, each extracted input tuple is acked automatically and an input batch is
+ * acked after all its tuples got processed.
+ * <p>
+ * Output streams that are registered via {@link #setPunctuationStream(String)} are declared as punctuation streams for
+ * all Spouts/Bolts that are added afterwards.
  * 
  * @author Matthias J. Sax
  */
 public class AeolusBuilder extends TopologyBuilder {
+	/** The output streams that are declared as punctuation streams for all added Spouts/Bolts. */
+	private final Set<String> punctuationStreams = new LinkedHashSet<String>();
+	
+	
+	
+	/**
+	 * Declares the given output stream as punctuation stream (see
+	 * {@link BoltOutputBatcher#setPunctuationStream(String)}) for all Spouts/Bolts that are added to the topology
+	 * afterwards.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * 
+	 * @return this {@link AeolusBuilder}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code streamId} is {@code null}
+	 */
+	public AeolusBuilder setPunctuationStream(String streamId) {
+		if(streamId == null) {
+			throw new IllegalArgumentException("Parameter <streamId> must not be null.");
+		}
+		this.punctuationStreams.add(streamId);
+		return this;
+	}
 	
 	@Override
-	public BoltDeclarer setBolt(String id, IRichBolt bolt) {
+	public BatchedDeclarer setBolt(String id, IRichBolt bolt) {
 		return this.setBolt(id, bolt, null, 0);
 	}
 	
@@ -59,7 +94,7 @@ public class AeolusBuilder extends TopologyBuilder {
 	 * 
 	 * @return use the returned object to declare the inputs to this component
 	 */
-	public BoltDeclarer setBolt(String id, IRichBolt bolt, int batchSize) {
+	public BatchedDeclarer setBolt(String id, IRichBolt bolt, int batchSize) {
 		return this.setBolt(id, bolt, null, batchSize);
 	}
 	
@@ -78,12 +113,12 @@ public class AeolusBuilder extends TopologyBuilder {
 	 * 
 	 * @return use the returned object to declare the inputs to this component
 	 */
-	public BoltDeclarer setBolt(String id, IRichBolt bolt, HashMap<String, Integer> batchSizes) {
+	public BatchedDeclarer setBolt(String id, IRichBolt bolt, HashMap<String, Integer> batchSizes) {
 		return this.setBolt(id, bolt, null, batchSizes);
 	}
 	
 	@Override
-	public BoltDeclarer setBolt(String id, IRichBolt bolt, Number parallelismHint) {
+	public BatchedDeclarer setBolt(String id, IRichBolt bolt, Number parallelismHint) {
 		return this.setBolt(id, bolt, parallelismHint, 0);
 	}
 	
@@ -103,14 +138,14 @@ public class AeolusBuilder extends TopologyBuilder {
 	 * 
 	 * @return use the returned object to declare the inputs to this component
 	 */
-	public BoltDeclarer setBolt(String id, IRichBolt bolt, Number parallelismHint, int batchSize) {
-		bolt = new InputDebatcher(bolt);
+	public BatchedDeclarer setBolt(String id, IRichBolt bolt, Number parallelismHint, int batchSize) {
+		final BoltOutputBatcher batcher;
 		if(batchSize > 0) {
-			bolt = new BoltOutputBatcher(bolt, batchSize);
+			batcher = new BoltOutputBatcher(new InputDebatcher(bolt), batchSize);
 		} else {
-			bolt = new BoltOutputBatcher(bolt, new HashMap<String, Integer>());
+			batcher = new BoltOutputBatcher(new InputDebatcher(bolt), new HashMap<String, Integer>());
 		}
-		return new BatchedDeclarer(super.setBolt(id, bolt, parallelismHint));
+		return new BatchedDeclarer(super.setBolt(id, this.addPunctuationStreams(batcher), parallelismHint));
 	}
 	
 	/**
@@ -131,32 +166,128 @@ public class AeolusBuilder extends TopologyBuilder {
 	 * 
 	 * @return use the returned object to declare the inputs to this component
 	 */
-	public BoltDeclarer setBolt(String id, IRichBolt bolt, Number parallelismHint, HashMap<String, Integer> batchSizes) {
+	public BatchedDeclarer setBolt(String id, IRichBolt bolt, Number parallelismHint,
+		HashMap<String, Integer> batchSizes) {
 		if(batchSizes == null) {
 			batchSizes = new HashMap<String, Integer>();
 		}
-		return new BatchedDeclarer(super.setBolt(id, new BoltOutputBatcher(new InputDebatcher(bolt), batchSizes),
-			parallelismHint));
+		return new BatchedDeclarer(super.setBolt(id,
+			this.addPunctuationStreams(new BoltOutputBatcher(new InputDebatcher(bolt), batchSizes)), parallelismHint));
 	}
 	
 	/**
-	 * Not supported yet. Throws an {@link UnsupportedOperationException}.
+	 * Define a new bolt in this topology with the specified amount of parallelism. The batch sizes of all output
+	 * streams are adjusted at runtime by the given controller. Partially filled batches are emitted after the
+	 * controller's target latency; otherwise, a batch would never be emitted on a low-rate stream.
+	 * 
+	 * @param id
+	 *            The id of this component. This id is referenced by other components that want to consume this bolt's
+	 *            outputs.
+	 * @param bolt
+	 *            The bolt to be added to the topology.
+	 * @param parallelismHint
+	 *            The number of tasks that should be assigned to execute this bolt. Each task will run on a thread in a
+	 *            process somewhere around the cluster.
+	 * @param batchSizeController
+	 *            The controller that adjusts the batch sizes of all output streams.
 	 * 
-	 * @throws UnsupportedOperationException
+	 * @return use the returned object to declare the inputs to this component
 	 */
+	public BatchedDeclarer setAdaptiveBolt(String id, IRichBolt bolt, Number parallelismHint,
+		AdaptiveBatchSizeController batchSizeController) {
+		return new BatchedDeclarer(super.setBolt(id,
+			this.addPunctuationStreams(new BoltOutputBatcher(new InputDebatcher(bolt), batchSizeController
+				.getMinBatchSize()).setBatchSizeController(batchSizeController).setMaxLinger(
+				batchSizeController.getTargetLatency())), parallelismHint));
+	}
+	
 	@Override
-	public BoltDeclarer setBolt(String id, IBasicBolt bolt) {
-		throw new UnsupportedOperationException();
+	public BatchedDeclarer setBolt(String id, IBasicBolt bolt) {
+		return this.setBolt(id, bolt, null, 0);
 	}
 	
 	/**
-	 * Not supported yet. Throws an {@link UnsupportedOperationException}.
+	 * Define a new basic bolt in this topology with parallelism of just one thread.
 	 * 
-	 * @throws UnsupportedOperationException
+	 * @param id
+	 *            The id of this component. This id is referenced by other components that want to consume this bolt's
+	 *            outputs.
+	 * @param bolt
+	 *            The basic bolt to be added to the topology.
+	 * @param batchSize
+	 *            The batch size to be used for all output streams of the given bolt (must not be negative).
+	 * 
+	 * @return use the returned object to declare the inputs to this component
 	 */
+	public BatchedDeclarer setBolt(String id, IBasicBolt bolt, int batchSize) {
+		return this.setBolt(id, bolt, null, batchSize);
+	}
+	
+	/**
+	 * Define a new basic bolt in this topology with parallelism of just one thread.
+	 * 
+	 * @param id
+	 *            The id of this component. This id is referenced by other components that want to consume this bolt's
+	 *            outputs.
+	 * @param bolt
+	 *            The basic bolt to be added to the topology.
+	 * @param batchSizes
+	 *            Specifies different batch sizes for different output streams. If the given bolt declares an output
+	 *            stream, that is not specified in this map, the output tuples will not be batched. The specified batch
+	 *            sizes must not be negative.
+	 * 
+	 * @return use the returned object to declare the inputs to this component
+	 */
+	public BatchedDeclarer setBolt(String id, IBasicBolt bolt, HashMap<String, Integer> batchSizes) {
+		return this.setBolt(id, bolt, null, batchSizes);
+	}
+	
 	@Override
-	public BoltDeclarer setBolt(String id, IBasicBolt bolt, Number parallelismHint) {
-		throw new UnsupportedOperationException();
+	public BatchedDeclarer setBolt(String id, IBasicBolt bolt, Number parallelismHint) {
+		return this.setBolt(id, bolt, parallelismHint, 0);
+	}
+	
+	/**
+	 * Define a new basic bolt in this topology with the specified amount of parallelism.
+	 * 
+	 * @param id
+	 *            The id of this component. This id is referenced by other components that want to consume this bolt's
+	 *            outputs.
+	 * @param bolt
+	 *            The basic bolt to be added to the topology.
+	 * @param parallelismHint
+	 *            The number of tasks that should be assigned to execute this bolt. Each task will run on a thread in a
+	 *            process somewhere around the cluster.
+	 * @param batchSize
+	 *            The batch size to be used for all output streams of the given bolt (must not be negative).
+	 * 
+	 * @return use the returned object to declare the inputs to this component
+	 */
+	public BatchedDeclarer setBolt(String id, IBasicBolt bolt, Number parallelismHint, int batchSize) {
+		return this.setBolt(id, new BasicBoltExecutor(bolt), parallelismHint, batchSize);
+	}
+	
+	/**
+	 * Define a new basic bolt in this topology with the specified amount of parallelism.
+	 * 
+	 * @param id
+	 *            The id of this component. This id is referenced by other components that want to consume this bolt's
+	 *            outputs.
+	 * @param bolt
+	 *            The basic bolt to be added to the topology.
+	 * @param parallelismHint
+	 *            The number of tasks that should be assigned to execute this bolt. Each task will run on a thread in a
+	 *            process somewhere around the cluster.
+	 * @param batchSizes
+	 *            Specifies different batch sizes for different output streams. If the given bolt declares an output
+	 *            stream, that is not specified in this map, the output tuples will not be batched. The specified batch
+	 *            sizes must not be negative.
+	 * 
+	 * @return use the returned object to declare the inputs to this component
+	 */
+	public BatchedDeclarer setBolt(String id, IBasicBolt bolt, Number parallelismHint,
+		HashMap<String, Integer> batchSizes) {
+		return this.setBolt(id, new BasicBoltExecutor(bolt), parallelismHint, batchSizes);
 	}
 	
 	@Override
@@ -212,10 +343,12 @@ public class AeolusBuilder extends TopologyBuilder {
 	 */
 	public SpoutDeclarer setSpout(String id, IRichSpout spout, Number parallelismHint, int batchSize) {
 		if(batchSize <= 0) {
-			return super.setSpout(id, new SpoutOutputBatcher(spout, new HashMap<String, Integer>()), parallelismHint);
+			return super.setSpout(id,
+				this.addPunctuationStreams(new SpoutOutputBatcher(spout, new HashMap<String, Integer>())),
+				parallelismHint);
 		}
 		
-		return super.setSpout(id, new SpoutOutputBatcher(spout, batchSize), parallelismHint);
+		return super.setSpout(id, this.addPunctuationStreams(new SpoutOutputBatcher(spout, batchSize)), parallelismHint);
 	}
 	
 	/**
@@ -238,7 +371,62 @@ public class AeolusBuilder extends TopologyBuilder {
 		if(batchSizes == null) {
 			batchSizes = new HashMap<String, Integer>();
 		}
-		return super.setSpout(id, new SpoutOutputBatcher(spout, batchSizes), parallelismHint);
+		return super.setSpout(id, this.addPunctuationStreams(new SpoutOutputBatcher(spout, batchSizes)),
+			parallelismHint);
+	}
+	
+	/**
+	 * Define a new spout in this topology. The batch sizes of all output streams are adjusted at runtime by the given
+	 * controller. Partially filled batches are emitted after the controller's target latency; otherwise, a batch would
+	 * never be emitted on a low-rate stream.
+	 * 
+	 * @param id
+	 *            The ID of this component. This ID is referenced by other components that want to consume this spout's
+	 *            outputs.
+	 * @param spout
+	 *            The spout to be added to the topology.
+	 * @param parallelismHint
+	 *            The number of tasks that should be assigned to execute this spout. Each task will run on a thread in a
+	 *            process somewhere around the cluster.
+	 * @param batchSizeController
+	 *            The controller that adjusts the batch sizes of all output streams.
+	 */
+	public SpoutDeclarer setAdaptiveSpout(String id, IRichSpout spout, Number parallelismHint,
+		AdaptiveBatchSizeController batchSizeController) {
+		return super.setSpout(id,
+			this.addPunctuationStreams(new SpoutOutputBatcher(spout, batchSizeController.getMinBatchSize())
+				.setBatchSizeController(batchSizeController).setMaxLinger(batchSizeController.getTargetLatency())),
+			parallelismHint);
+	}
+	
+	/**
+	 * Declares all registered punctuation streams for the given batcher.
+	 * 
+	 * @param batcher
+	 *            The batcher of a Bolt that is added to the topology.
+	 * 
+	 * @return the given batcher
+	 */
+	private BoltOutputBatcher addPunctuationStreams(BoltOutputBatcher batcher) {
+		for(String streamId : this.punctuationStreams) {
+			batcher.setPunctuationStream(streamId);
+		}
+		return batcher;
+	}
+	
+	/**
+	 * Declares all registered punctuation streams for the given batcher.
+	 * 
+	 * @param batcher
+	 *            The batcher of a Spout that is added to the topology.
+	 * 
+	 * @return the given batcher
+	 */
+	private SpoutOutputBatcher addPunctuationStreams(SpoutOutputBatcher batcher) {
+		for(String streamId : this.punctuationStreams) {
+			batcher.setPunctuationStream(streamId);
+		}
+		return batcher;
 	}
 	
 	@Override
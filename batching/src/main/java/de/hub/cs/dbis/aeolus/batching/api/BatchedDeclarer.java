@@ -27,6 +27,7 @@ import backtype.storm.topology.BoltDeclarer;
 import backtype.storm.topology.TopologyBuilder;
 import backtype.storm.tuple.Fields;
 import backtype.storm.utils.Utils;
+import de.hub.cs.dbis.aeolus.batching.AbstractBatchCollector;
 import de.hub.cs.dbis.aeolus.batching.BatchingOutputFieldsDeclarer;
 
 
@@ -37,11 +38,15 @@ import de.hub.cs.dbis.aeolus.batching.BatchingOutputFieldsDeclarer;
  * {@link BatchedDeclarer} wraps an {@link BoltDeclarer} and forwards each method call to the wrapped object.
  * Additionally, it calls {@link #directGrouping(String, String)} for calls to "{@code xxxGrouping(...)}" methods
  * (except for direct- and custom-grouping) in order to connect to the direct stream that is declares by
- * {@link SpoutOutputBatcher} or {@link BoltOutputBatcher}.
+ * {@link SpoutOutputBatcher} or {@link BoltOutputBatcher}.<br />
+ * <br />
+ * Furthermore, the attributes a bolt reads from an input stream can be declared via
+ * {@link #projectFields(String, String, Fields)}. The producer emits batches with only those columns to the bolt;
+ * thus, serialization cost and network volume shrink with the number of unread attributes.
  * 
  * @author Matthias J. Sax
  */
-class BatchedDeclarer implements BoltDeclarer {
+public class BatchedDeclarer implements BoltDeclarer {
 	/**
 	 * The original declarer provided by {@link TopologyBuilder}.
 	 */
@@ -61,138 +66,183 @@ class BatchedDeclarer implements BoltDeclarer {
 	
 	
 	
+	/**
+	 * Declares the attributes this bolt reads from the default output stream of the given component (see
+	 * {@link #projectFields(String, String, Fields)}).
+	 * 
+	 * @param componentId
+	 *            The ID of the producer.
+	 * @param fields
+	 *            The attributes that are read by this bolt.
+	 * 
+	 * @return this {@link BatchedDeclarer}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code fields} is {@code null} or empty
+	 */
+	public BatchedDeclarer projectFields(String componentId, Fields fields) {
+		return this.projectFields(componentId, Utils.DEFAULT_STREAM_ID, fields);
+	}
+	
+	/**
+	 * Declares the attributes this bolt reads from the given output stream of the given component. Output batches of
+	 * the producer only contain the columns of attributes that are read by at least one receiver of the batch. Thus,
+	 * the values of all other attributes are {@code null} in the input tuples of this bolt. Only applies to producers
+	 * that batch their output (ie, that are added via {@link AeolusBuilder} with a batch size larger than zero).
+	 * 
+	 * @param componentId
+	 *            The ID of the producer.
+	 * @param streamId
+	 *            The output stream of the producer.
+	 * @param fields
+	 *            The attributes that are read by this bolt.
+	 * 
+	 * @return this {@link BatchedDeclarer}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code fields} is {@code null} or empty
+	 */
+	public BatchedDeclarer projectFields(String componentId, String streamId, Fields fields) {
+		if(fields == null || fields.size() == 0) {
+			throw new IllegalArgumentException("Parameter <fields> must not be null or empty.");
+		}
+		this.declarer.addConfiguration(AbstractBatchCollector.getProjectionConfigKey(componentId, streamId),
+			fields.toList());
+		return this;
+	}
+	
 	@Override
-	public BoltDeclarer fieldsGrouping(String componentId, Fields fields) {
+	public BatchedDeclarer fieldsGrouping(String componentId, Fields fields) {
 		return this.fieldsGrouping(componentId, Utils.DEFAULT_STREAM_ID, fields);
 	}
 	
 	@Override
-	public BoltDeclarer fieldsGrouping(String componentId, String streamId, Fields fields) {
-		this.declarer.fieldsGrouping(componentId, fields).directGrouping(componentId,
+	public BatchedDeclarer fieldsGrouping(String componentId, String streamId, Fields fields) {
+		this.declarer.fieldsGrouping(componentId, streamId, fields).directGrouping(componentId,
 			BatchingOutputFieldsDeclarer.STREAM_PREFIX + streamId);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer globalGrouping(String componentId) {
+	public BatchedDeclarer globalGrouping(String componentId) {
 		return this.globalGrouping(componentId, Utils.DEFAULT_STREAM_ID);
 	}
 	
 	@Override
-	public BoltDeclarer globalGrouping(String componentId, String streamId) {
+	public BatchedDeclarer globalGrouping(String componentId, String streamId) {
 		this.declarer.globalGrouping(componentId, streamId).directGrouping(componentId,
 			BatchingOutputFieldsDeclarer.STREAM_PREFIX + streamId);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer shuffleGrouping(String componentId) {
+	public BatchedDeclarer shuffleGrouping(String componentId) {
 		return this.shuffleGrouping(componentId, Utils.DEFAULT_STREAM_ID);
 	}
 	
 	@Override
-	public BoltDeclarer shuffleGrouping(String componentId, String streamId) {
+	public BatchedDeclarer shuffleGrouping(String componentId, String streamId) {
 		this.declarer.shuffleGrouping(componentId, streamId).directGrouping(componentId,
 			BatchingOutputFieldsDeclarer.STREAM_PREFIX + streamId);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer localOrShuffleGrouping(String componentId) {
+	public BatchedDeclarer localOrShuffleGrouping(String componentId) {
 		return this.localOrShuffleGrouping(componentId, Utils.DEFAULT_STREAM_ID);
 	}
 	
 	@Override
-	public BoltDeclarer localOrShuffleGrouping(String componentId, String streamId) {
+	public BatchedDeclarer localOrShuffleGrouping(String componentId, String streamId) {
 		this.declarer.localOrShuffleGrouping(componentId, streamId).directGrouping(componentId,
 			BatchingOutputFieldsDeclarer.STREAM_PREFIX + streamId);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer noneGrouping(String componentId) {
+	public BatchedDeclarer noneGrouping(String componentId) {
 		return this.noneGrouping(componentId, Utils.DEFAULT_STREAM_ID);
 	}
 	
 	@Override
-	public BoltDeclarer noneGrouping(String componentId, String streamId) {
+	public BatchedDeclarer noneGrouping(String componentId, String streamId) {
 		this.declarer.noneGrouping(componentId, streamId).directGrouping(componentId,
 			BatchingOutputFieldsDeclarer.STREAM_PREFIX + streamId);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer allGrouping(String componentId) {
+	public BatchedDeclarer allGrouping(String componentId) {
 		return this.allGrouping(componentId, Utils.DEFAULT_STREAM_ID);
 	}
 	
 	@Override
-	public BoltDeclarer allGrouping(String componentId, String streamId) {
+	public BatchedDeclarer allGrouping(String componentId, String streamId) {
 		this.declarer.allGrouping(componentId, streamId).directGrouping(componentId,
 			BatchingOutputFieldsDeclarer.STREAM_PREFIX + streamId);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer directGrouping(String componentId) {
+	public BatchedDeclarer directGrouping(String componentId) {
 		return this.directGrouping(componentId, Utils.DEFAULT_STREAM_ID);
 	}
 	
 	@Override
-	public BoltDeclarer directGrouping(String componentId, String streamId) {
+	public BatchedDeclarer directGrouping(String componentId, String streamId) {
 		this.declarer.directGrouping(componentId, streamId);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer customGrouping(String componentId, CustomStreamGrouping grouping) {
+	public BatchedDeclarer customGrouping(String componentId, CustomStreamGrouping grouping) {
 		return this.customGrouping(componentId, Utils.DEFAULT_STREAM_ID, grouping);
 	}
 	
 	@Override
-	public BoltDeclarer customGrouping(String componentId, String streamId, CustomStreamGrouping grouping) {
+	public BatchedDeclarer customGrouping(String componentId, String streamId, CustomStreamGrouping grouping) {
 		this.declarer.customGrouping(componentId, streamId, grouping);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer grouping(GlobalStreamId id, Grouping grouping) {
+	public BatchedDeclarer grouping(GlobalStreamId id, Grouping grouping) {
 		this.declarer.grouping(id, grouping);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer addConfigurations(@SuppressWarnings("rawtypes") Map conf) {
+	public BatchedDeclarer addConfigurations(@SuppressWarnings("rawtypes") Map conf) {
 		this.declarer.addConfigurations(conf);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer addConfiguration(String config, Object value) {
-		this.addConfiguration(config, value);
+	public BatchedDeclarer addConfiguration(String config, Object value) {
+		this.declarer.addConfiguration(config, value);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer setDebug(boolean debug) {
+	public BatchedDeclarer setDebug(boolean debug) {
 		this.declarer.setDebug(debug);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer setMaxTaskParallelism(Number val) {
+	public BatchedDeclarer setMaxTaskParallelism(Number val) {
 		this.declarer.setMaxTaskParallelism(val);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer setMaxSpoutPending(Number val) {
+	public BatchedDeclarer setMaxSpoutPending(Number val) {
 		this.declarer.setMaxSpoutPending(val);
 		return this;
 	}
 	
 	@Override
-	public BoltDeclarer setNumTasks(Number val) {
+	public BatchedDeclarer setNumTasks(Number val) {
 		this.declarer.setNumTasks(val);
 		return this;
 	}
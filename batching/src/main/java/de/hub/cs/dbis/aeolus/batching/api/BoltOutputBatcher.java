@@ -18,17 +18,27 @@
  */
 package de.hub.cs.dbis.aeolus.batching.api;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import backtype.storm.Config;
+import backtype.storm.Constants;
 import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.IRichBolt;
 import backtype.storm.topology.OutputFieldsDeclarer;
 import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
 import de.hub.cs.dbis.aeolus.batching.AbstractBatchCollector;
+import de.hub.cs.dbis.aeolus.batching.AdaptiveBatchSizeController;
+import de.hub.cs.dbis.aeolus.batching.Batch;
 import de.hub.cs.dbis.aeolus.batching.BatchOutputCollector;
+import de.hub.cs.dbis.aeolus.batching.BatchStatistics;
 import de.hub.cs.dbis.aeolus.batching.BatchingOutputFieldsDeclarer;
+import de.hub.cs.dbis.aeolus.batching.CompressionCodec;
 
 
 
@@ -41,7 +51,17 @@ import de.hub.cs.dbis.aeolus.batching.BatchingOutputFieldsDeclarer;
  * <strong>CAUTION:</strong>Calls to {@code .emit(...)} will return {@code null}, because the tuples might still be in
  * the output buffer and not transfered yet.<br />
  * <br />
- * <strong>CAUTION:</strong>Tuple acking, failing, and anchoring is currently not supported.
+ * Each output batch is anchored to the (distinct) anchors of all its tuples; thus, Storm tracks a single edge per
+ * batch and anchor instead of one edge per tuple. Because Storm requires that output tuples are anchored before their
+ * input tuple is acked, acks of the wrapped bolt are deferred until all batches anchored to the acked tuple got
+ * emitted. The number of distinct anchors per batch can be limited (see {@link #setMaxAnchors(int)}) to bound the
+ * time acks are deferred; a maximum linger time (see below) should be specified if input tuples must be acked within
+ * Storm's message timeout.<br />
+ * <br />
+ * If a maximum linger time is specified (see {@link #setMaxLinger(int)}), {@link BoltOutputBatcher} requests tick
+ * tuples from Storm and emits partially filled batches that exceeded the linger time. Because Storm's tick interval has
+ * a granularity of seconds, expired batches are also checked after each processed input tuple. Tick tuples are only
+ * forwarded to the wrapped bolt, if the wrapped bolt requested tick tuples itself.
  * 
  * @author Matthias J. Sax
  */
@@ -60,10 +80,82 @@ public class BoltOutputBatcher implements IRichBolt {
 	 * The size of the output batches (for all output streams).
 	 */
 	private final int batchSize;
+	/**
+	 * The maximum linger times for each output stream.
+	 */
+	private Map<String, Integer> maxLingers = null;
+	/**
+	 * The maximum linger time (for all output streams).
+	 */
+	private int maxLinger = 0;
+	/**
+	 * Adjusts the batch sizes at runtime ({@code null} if batch sizes are static).
+	 */
+	private AdaptiveBatchSizeController batchSizeController = null;
+	/**
+	 * The declared attribute types for each output stream.
+	 */
+	private final Map<String, Class<?>[]> columnTypes = new HashMap<String, Class<?>[]>();
+	/**
+	 * The name of the timestamp attribute for each output stream with timestamp range tracking.
+	 */
+	private final Map<String, String> timestampAttributes = new HashMap<String, String>();
+	/**
+	 * The punctuation streams, that are not batched and flush all output buffers.
+	 */
+	private final Set<String> punctuationStreams = new HashSet<String>();
+	/**
+	 * The compression codec for each output stream with enabled compression.
+	 */
+	private final Map<String, CompressionCodec> compressionCodecs = new HashMap<String, CompressionCodec>();
+	/**
+	 * The compression threshold (in bytes) for each output stream with enabled compression.
+	 */
+	private final Map<String, Integer> compressionThresholds = new HashMap<String, Integer>();
+	/**
+	 * Indicates if emitted batches are recycled.
+	 */
+	private boolean recycleBatches = false;
+	/**
+	 * Indicates if tuples for receiver tasks in the same worker are emitted without batching.
+	 */
+	private boolean localBypass = false;
+	/**
+	 * The maximum number of tuples in all output buffers together (zero, if unlimited).
+	 */
+	private int maxBufferedTuples = 0;
+	/**
+	 * The reporting interval of the batching statistics in milliseconds (zero, if statistics are disabled).
+	 */
+	private long reportInterval = 0;
+	/**
+	 * The name of the report stream of the batching statistics.
+	 */
+	private String reportStream = BatchStatistics.DEFAULT_STATS_STREAM;
+	/**
+	 * The point in time (in milliseconds) when the batching statistics are reported next.
+	 */
+	private long nextReport;
+	/**
+	 * The maximum number of distinct anchors of an output batch (zero, if unlimited).
+	 */
+	private int maxAnchors = 0;
+	/**
+	 * The actual {@link OutputCollector} (used to emit the batching statistics).
+	 */
+	private OutputCollector collector;
 	/**
 	 * The used {@link BatchOutputCollector} that wraps the actual {@link OutputCollector}.
 	 */
 	private BatchOutputCollector batchCollector;
+	/**
+	 * Indicates if a maximum linger time is specified for at least one output stream.
+	 */
+	private boolean lingerEnabled;
+	/**
+	 * Indicates if tick tuples must be forwarded to the wrapped bolt.
+	 */
+	private boolean forwardTickTuples;
 	
 	
 	
@@ -117,20 +209,388 @@ public class BoltOutputBatcher implements IRichBolt {
 	
 	
 	
+	/**
+	 * Sets the maximum time (in milliseconds) a tuple can stay in an output buffer for all output streams. If a
+	 * partially filled batch exceeds this time, it is emitted.
+	 * 
+	 * @param maxLinger
+	 *            The maximum linger time in milliseconds (must be positive).
+	 * 
+	 * @return this {@link BoltOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code maxLinger} is not positive
+	 */
+	public BoltOutputBatcher setMaxLinger(int maxLinger) {
+		if(maxLinger < 1) {
+			throw new IllegalArgumentException("Parameter <maxLinger> must be greater than 0.");
+		}
+		this.maxLinger = maxLinger;
+		this.maxLingers = null;
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum time (in milliseconds) a tuple can stay in an output buffer for each output stream. If a
+	 * partially filled batch exceeds this time, it is emitted. Streams without an entry are only emitted if the batch
+	 * is full.
+	 * 
+	 * @param maxLingers
+	 *            The maximum linger times in milliseconds for each output stream.
+	 * 
+	 * @return this {@link BoltOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code maxLingers} is {@code null}
+	 */
+	public BoltOutputBatcher setMaxLinger(Map<String, Integer> maxLingers) {
+		if(maxLingers == null) {
+			throw new IllegalArgumentException("Parameter <maxLingers> must not be null.");
+		}
+		this.maxLingers = new HashMap<String, Integer>(maxLingers);
+		this.maxLinger = 0;
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum number of distinct anchors of an output batch. A batch is emitted (even if it is not full), as
+	 * soon as its tuples are anchored to {@code maxAnchors} distinct input tuples.
+	 * 
+	 * @param maxAnchors
+	 *            The maximum number of distinct anchors (must be positive).
+	 * 
+	 * @return this {@link BoltOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code maxAnchors} is not positive
+	 */
+	public BoltOutputBatcher setMaxAnchors(int maxAnchors) {
+		if(maxAnchors < 1) {
+			throw new IllegalArgumentException("Parameter <maxAnchors> must be greater than 0.");
+		}
+		this.maxAnchors = maxAnchors;
+		return this;
+	}
+	
+	/**
+	 * Enables adaptive batch sizes. The batch sizes given in the constructor are used as initial values and are
+	 * adjusted at runtime by the given controller.
+	 * 
+	 * @param controller
+	 *            The controller that adjusts the batch sizes.
+	 * 
+	 * @return this {@link BoltOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code controller} is {@code null}
+	 */
+	public BoltOutputBatcher setBatchSizeController(AdaptiveBatchSizeController controller) {
+		if(controller == null) {
+			throw new IllegalArgumentException("Parameter <controller> must not be null.");
+		}
+		this.batchSizeController = controller;
+		return this;
+	}
+	
+	/**
+	 * Declares the attribute types of an output stream. Attributes of type {@link Long}, {@link Integer},
+	 * {@link Short}, {@link Double}, and {@link String} are buffered without boxing. If no types are declared, the
+	 * types of the first tuple of each batch are used.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param types
+	 *            The type of each attribute of the output stream.
+	 * 
+	 * @return this {@link BoltOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code streamId} or {@code types} is {@code null}
+	 */
+	public BoltOutputBatcher setColumnTypes(String streamId, Class<?>... types) {
+		if(streamId == null) {
+			throw new IllegalArgumentException("Parameter <streamId> must not be null.");
+		}
+		if(types == null) {
+			throw new IllegalArgumentException("Parameter <types> must not be null.");
+		}
+		this.columnTypes.put(streamId, types.clone());
+		return this;
+	}
+	
+	/**
+	 * Declares the timestamp attribute of an output stream. Each emitted batch of this stream carries the minimum and
+	 * maximum timestamp of its tuples, such that consumers can process whole batches without inspecting each tuple (see
+	 * {@link Batch#hasTimestampRange()}). All values of the timestamp attribute must be of type {@link Number}.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param attribute
+	 *            The name of the timestamp attribute.
+	 * 
+	 * @return this {@link BoltOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code streamId} or {@code attribute} is {@code null}
+	 */
+	public BoltOutputBatcher setTimestampAttribute(String streamId, String attribute) {
+		if(streamId == null) {
+			throw new IllegalArgumentException("Parameter <streamId> must not be null.");
+		}
+		if(attribute == null) {
+			throw new IllegalArgumentException("Parameter <attribute> must not be null.");
+		}
+		this.timestampAttributes.put(streamId, attribute);
+		return this;
+	}
+	
+	/**
+	 * Declares an output stream as punctuation stream (eg, a stream of progress tuples that let downstream mergers
+	 * advance). Tuples of a punctuation stream are never batched. Before a punctuation tuple is emitted, all incomplete
+	 * batches of all output streams are emitted, such that the punctuation does not overtake buffered tuples.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * 
+	 * @return this {@link BoltOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code streamId} is {@code null}
+	 */
+	public BoltOutputBatcher setPunctuationStream(String streamId) {
+		if(streamId == null) {
+			throw new IllegalArgumentException("Parameter <streamId> must not be null.");
+		}
+		this.punctuationStreams.add(streamId);
+		return this;
+	}
+	
+	/**
+	 * Enables the compression of output batches of an output stream that are sent to remote consumers. Each column of a
+	 * serialized batch is compressed with {@code codec}, if its serialized size is at least {@code threshold} bytes.
+	 * Compression trades CPU for network bandwidth and pays off for large batches of compressible data (eg, strings).
+	 * Consumers decompress batches automatically.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param codec
+	 *            The codec that compresses the serialized batches.
+	 * @param threshold
+	 *            The minimum size (in bytes) of a serialized column, for which the column gets compressed.
+	 * 
+	 * @return this {@link BoltOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code streamId} or {@code codec} is {@code null} or {@code threshold} is negative
+	 */
+	public BoltOutputBatcher setCompression(String streamId, CompressionCodec codec, int threshold) {
+		if(streamId == null) {
+			throw new IllegalArgumentException("Parameter <streamId> must not be null.");
+		}
+		if(codec == null) {
+			throw new IllegalArgumentException("Parameter <codec> must not be null.");
+		}
+		if(threshold < 0) {
+			throw new IllegalArgumentException("Parameter <threshold> must not be negative.");
+		}
+		this.compressionCodecs.put(streamId, codec);
+		this.compressionThresholds.put(streamId, new Integer(threshold));
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum number of tuples in all output buffers together. If the limit is exceeded, the largest output
+	 * buffers are emitted (even if they are not full) until at most half of the limit is buffered. This bounds the
+	 * memory used for buffering if the number of output buffers is large (eg, for many receiver tasks or many output
+	 * streams).
+	 * 
+	 * @param maxBufferedTuples
+	 *            The maximum number of buffered tuples (must be positive).
+	 * 
+	 * @return this {@link BoltOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code maxBufferedTuples} is not positive
+	 */
+	public BoltOutputBatcher setMaxBufferedTuples(int maxBufferedTuples) {
+		if(maxBufferedTuples < 1) {
+			throw new IllegalArgumentException("Parameter <maxBufferedTuples> must be greater than 0.");
+		}
+		this.maxBufferedTuples = maxBufferedTuples;
+		return this;
+	}
+	
+	/**
+	 * Enables or disables the local bypass. If enabled, tuples for receiver tasks that run in the same worker are
+	 * emitted directly instead of being batched, because Storm does not serialize them anyway. Only receivers that
+	 * are connected via {@link BatchedDeclarer} (eg, if added via {@link AeolusBuilder}) and direct output streams are
+	 * affected. Note that in local mode all tasks run in the same worker.
+	 * 
+	 * @param enabled
+	 *            {@code true} to emit tuples for local receiver tasks directly; {@code false} to batch all tuples
+	 * 
+	 * @return this {@link BoltOutputBatcher}
+	 */
+	public BoltOutputBatcher setLocalBypass(boolean enabled) {
+		this.localBypass = enabled;
+		return this;
+	}
+	
+	/**
+	 * Enables the reporting of batching statistics (see {@link BatchStatistics}) to the default report stream
+	 * {@link BatchStatistics#DEFAULT_STATS_STREAM}.
+	 * 
+	 * @param interval
+	 *            The reporting interval in milliseconds (must be positive).
+	 * 
+	 * @return this {@link BoltOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code interval} is not positive
+	 */
+	public BoltOutputBatcher setStatisticsReporting(long interval) {
+		return this.setStatisticsReporting(interval, BatchStatistics.DEFAULT_STATS_STREAM);
+	}
+	
+	/**
+	 * Enables the reporting of batching statistics (see {@link BatchStatistics}) to the given report stream. The
+	 * statistics are reported by the executor thread after each input tuple and on tick tuples (which are requested
+	 * automatically); thus, the actual reporting interval might be larger than specified.
+	 * 
+	 * @param interval
+	 *            The reporting interval in milliseconds (must be positive).
+	 * @param reportStream
+	 *            The name of the report stream.
+	 * 
+	 * @return this {@link BoltOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code interval} is not positive or {@code reportStream} is {@code null} or starts with
+	 *             {@link BatchingOutputFieldsDeclarer#STREAM_PREFIX}
+	 */
+	public BoltOutputBatcher setStatisticsReporting(long interval, String reportStream) {
+		if(interval < 1) {
+			throw new IllegalArgumentException("Parameter <interval> must be greater than 0.");
+		}
+		if(reportStream == null) {
+			throw new IllegalArgumentException("Parameter <reportStream> must not be null.");
+		}
+		if(reportStream.startsWith(BatchingOutputFieldsDeclarer.STREAM_PREFIX)) {
+			throw new IllegalArgumentException("Parameter <reportStream> must not start with "
+				+ BatchingOutputFieldsDeclarer.STREAM_PREFIX + ".");
+		}
+		this.reportInterval = interval;
+		this.reportStream = reportStream;
+		return this;
+	}
+	
+	/**
+	 * Enables or disables the recycling of emitted batches. An emitted batch is reused as output buffer after all
+	 * consumers processed it, reducing the number of allocated objects. Batches are only reused, if all consumers are
+	 * wrapped by an {@link InputDebatcher} and the custom serializers are registered (see
+	 * {@link #registerKryoClasses(Config)}); otherwise, new batches are allocated as usual.
+	 * 
+	 * @param enabled
+	 *            {@code true} to recycle emitted batches; {@code false} otherwise
+	 * 
+	 * @return this {@link BoltOutputBatcher}
+	 */
+	public BoltOutputBatcher setBatchRecycling(boolean enabled) {
+		this.recycleBatches = enabled;
+		return this;
+	}
+	
+	
+	
 	@Override
 	public void prepare(@SuppressWarnings("rawtypes") Map stormConf, TopologyContext context, OutputCollector collector) {
+		this.collector = collector;
 		if(this.batchSizes != null) {
 			this.batchCollector = new BatchOutputCollector(context, collector, this.batchSizes);
 		} else {
 			this.batchCollector = new BatchOutputCollector(context, collector, this.batchSize);
 		}
+		if(this.batchSizeController != null) {
+			this.batchCollector.setBatchSizeController(this.batchSizeController);
+		}
+		for(Entry<String, Class<?>[]> types : this.columnTypes.entrySet()) {
+			this.batchCollector.setColumnTypes(types.getKey(), types.getValue());
+		}
+		for(Entry<String, String> attribute : this.timestampAttributes.entrySet()) {
+			this.batchCollector.setTimestampIndex(attribute.getKey(),
+				context.getComponentOutputFields(context.getThisComponentId(), attribute.getKey()).fieldIndex(
+					attribute.getValue()));
+		}
+		for(String streamId : this.punctuationStreams) {
+			this.batchCollector.setPunctuationStream(streamId);
+		}
+		for(Entry<String, CompressionCodec> codec : this.compressionCodecs.entrySet()) {
+			this.batchCollector.setCompression(codec.getKey(), codec.getValue(),
+				this.compressionThresholds.get(codec.getKey()).intValue());
+		}
+		if(this.recycleBatches) {
+			this.batchCollector.setBatchRecycling(true);
+		}
+		if(this.localBypass) {
+			this.batchCollector.setLocalBypass(true);
+		}
+		if(this.maxBufferedTuples > 0) {
+			this.batchCollector.setMaxBufferedTuples(this.maxBufferedTuples);
+		}
+		if(this.reportInterval > 0) {
+			this.batchCollector.setStatisticsEnabled(true);
+			this.nextReport = System.currentTimeMillis() + this.reportInterval;
+		}
+		if(this.maxAnchors > 0) {
+			this.batchCollector.setMaxAnchors(this.maxAnchors);
+		}
+		if(this.maxLingers != null) {
+			this.batchCollector.setMaxLinger(this.maxLingers);
+		} else if(this.maxLinger > 0) {
+			this.batchCollector.setMaxLinger(this.maxLinger);
+		}
+		
+		this.lingerEnabled = this.getMinimumLinger() > 0;
+		final Map<String, Object> userConf = this.wrappedBolt.getComponentConfiguration();
+		this.forwardTickTuples = userConf != null && userConf.get(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS) != null;
+		
 		this.wrappedBolt.prepare(stormConf, context, this.batchCollector);
 		
 	}
 	
 	@Override
 	public void execute(Tuple input) {
-		this.wrappedBolt.execute(input);
+		if(this.lingerEnabled || this.reportInterval > 0) {
+			if(Constants.SYSTEM_COMPONENT_ID.equals(input.getSourceComponent())
+				&& Constants.SYSTEM_TICK_STREAM_ID.equals(input.getSourceStreamId())) {
+				this.checkTimers();
+				if(!this.forwardTickTuples) {
+					return;
+				}
+			}
+			
+			this.wrappedBolt.execute(input);
+			this.checkTimers();
+		} else {
+			this.wrappedBolt.execute(input);
+		}
+	}
+	
+	/**
+	 * Emits all batches that exceeded their maximum linger time and reports the batching statistics if the reporting
+	 * interval elapsed.
+	 */
+	private void checkTimers() {
+		this.batchCollector.flushExpired();
+		if(this.reportInterval > 0) {
+			final long now = System.currentTimeMillis();
+			if(now >= this.nextReport) {
+				for(Values statsTuple : this.batchCollector.reportStatistics(now)) {
+					this.collector.emit(this.reportStream, statsTuple);
+				}
+				this.nextReport = now + this.reportInterval;
+			}
+		}
 	}
 	
 	@Override
@@ -142,11 +602,58 @@ public class BoltOutputBatcher implements IRichBolt {
 	@Override
 	public void declareOutputFields(OutputFieldsDeclarer declarer) {
 		this.wrappedBolt.declareOutputFields(new BatchingOutputFieldsDeclarer(declarer));
+		if(this.reportInterval > 0) {
+			BatchStatistics.declareStatsStream(this.reportStream, declarer);
+		}
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * If a maximum linger time or statistics reporting is specified and the wrapped bolt does not request tick tuples,
+	 * the returned configuration additionally requests tick tuples.
+	 */
 	@Override
 	public Map<String, Object> getComponentConfiguration() {
-		return this.wrappedBolt.getComponentConfiguration();
+		final Map<String, Object> userConf = this.wrappedBolt.getComponentConfiguration();
+		
+		long interval = this.getMinimumLinger();
+		if(this.reportInterval > 0 && (interval <= 0 || this.reportInterval < interval)) {
+			interval = this.reportInterval;
+		}
+		if(interval <= 0 || (userConf != null && userConf.get(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS) != null)) {
+			return userConf;
+		}
+		
+		final Map<String, Object> conf = new HashMap<String, Object>();
+		if(userConf != null) {
+			conf.putAll(userConf);
+		}
+		// tick tuple frequency is specified in seconds
+		conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, new Integer((int)Math.max(1, (interval + 999) / 1000)));
+		return conf;
+	}
+	
+	/**
+	 * Returns the smallest specified maximum linger time over all output streams.
+	 * 
+	 * @return the smallest maximum linger time in milliseconds (zero, if no linger time is specified)
+	 */
+	private int getMinimumLinger() {
+		if(this.maxLingers == null) {
+			return this.maxLinger;
+		}
+		
+		int min = 0;
+		for(Integer linger : this.maxLingers.values()) {
+			if(linger != null) {
+				final int l = linger.intValue();
+				if(l > 0 && (min == 0 || l < min)) {
+					min = l;
+				}
+			}
+		}
+		return min;
 	}
 	
 	/**
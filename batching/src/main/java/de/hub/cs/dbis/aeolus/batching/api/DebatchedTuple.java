@@ -0,0 +1,274 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching.api;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import backtype.storm.task.GeneralTopologyContext;
+import backtype.storm.tuple.MessageId;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.TupleImpl;
+import de.hub.cs.dbis.aeolus.batching.BatchColumn;
+
+
+
+
+
+/**
+ * {@link DebatchedTuple} is a reusable view of a single tuple of an input batch. {@link InputDebatcher} hands the same
+ * {@link DebatchedTuple} instance to the wrapped bolt for each tuple of a batch and only moves the view to the next row
+ * of the batch's columns; thus, no objects are allocated per tuple.<br />
+ * <br />
+ * A {@link DebatchedTuple} is only valid within the call to {@code execute(...)} it was handed over. A bolt that needs
+ * to keep an input tuple after {@code execute(...)} returned, must keep a copy (see {@link #copy()}). However, the list
+ * returned by {@link #getValues()} is an independent copy and can be kept (or emitted) safely.<br />
+ * <br />
+ * An {@link IBatchBolt} that buffers input batches can create its own view of a batch (see
+ * {@link #DebatchedTuple(GeneralTopologyContext, Tuple, BatchColumn[], int)}) to hand over single tuples to a wrapped
+ * bolt later on.
+ * 
+ * @author Matthias J. Sax
+ */
+public class DebatchedTuple extends TupleImpl {
+	
+	/**
+	 * The current runtime environment.
+	 */
+	private final GeneralTopologyContext context;
+	/**
+	 * The view of the current row.
+	 */
+	private final Row row;
+	/**
+	 * The input batch the current row belongs to ({@code null} if acks are not tracked).
+	 */
+	private PendingBatch batch;
+	
+	
+	
+	/**
+	 * Instantiates a new {@link DebatchedTuple} for batches with {@code numberOfAttributes} columns.
+	 * 
+	 * @param context
+	 *            The current runtime environment.
+	 * @param numberOfAttributes
+	 *            The number of attributes of the batches.
+	 * @param taskId
+	 *            The ID of the task that emitted the batches.
+	 * @param streamId
+	 *            The ID of the stream the batches were emitted to.
+	 */
+	DebatchedTuple(GeneralTopologyContext context, int numberOfAttributes, int taskId, String streamId) {
+		this(context, new Row(numberOfAttributes), taskId, streamId);
+	}
+	
+	/**
+	 * Instantiates a new {@link DebatchedTuple} for the given input batch, as handed over to
+	 * {@link IBatchBolt#executeBatch(Tuple, BatchColumn[], int)}. The input batch is acked (or failed) after all its
+	 * tuples got acked (or failed) via the collector of the {@link IBatchBolt}. The view is positioned at the first
+	 * row.
+	 * 
+	 * @param context
+	 *            The current runtime environment.
+	 * @param input
+	 *            The input tuple that carries the batch.
+	 * @param columns
+	 *            The attribute columns of the batch.
+	 * @param numberOfTuples
+	 *            The number of tuples in the batch.
+	 */
+	public DebatchedTuple(GeneralTopologyContext context, Tuple input, BatchColumn[] columns, int numberOfTuples) {
+		this(context, new Row(columns.length), input.getSourceTask(), input.getSourceStreamId());
+		System.arraycopy(columns, 0, this.row.columns, 0, columns.length);
+		this.batch = new PendingBatch(input, numberOfTuples);
+	}
+	
+	private DebatchedTuple(GeneralTopologyContext context, Row row, int taskId, String streamId) {
+		super(context, row, taskId, streamId);
+		this.context = context;
+		this.row = row;
+	}
+	
+	
+	
+	/**
+	 * Sets the column with the given index.
+	 * 
+	 * @param index
+	 *            The index of the column.
+	 * @param column
+	 *            The column.
+	 */
+	void setColumn(int index, BatchColumn column) {
+		this.row.columns[index] = column;
+	}
+	
+	/**
+	 * Returns the column with the given index.
+	 * 
+	 * @param index
+	 *            The index of the column.
+	 * 
+	 * @return the column with the given index
+	 */
+	BatchColumn getColumn(int index) {
+		return this.row.columns[index];
+	}
+	
+	/**
+	 * Moves this view to the given row of the current columns.
+	 * 
+	 * @param index
+	 *            The index of the row.
+	 */
+	public void setRow(int index) {
+		this.row.index = index;
+	}
+	
+	/**
+	 * Sets the input batch the current columns belong to.
+	 * 
+	 * @param batch
+	 *            The input batch.
+	 */
+	void setPendingBatch(PendingBatch batch) {
+		this.batch = batch;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The returned list is an independent copy of the current values.
+	 */
+	@Override
+	public List<Object> getValues() {
+		return new ArrayList<Object>(this.row);
+	}
+	
+	/**
+	 * Returns an independent copy of this tuple that can be kept after {@code execute(...)} returned.
+	 * 
+	 * @return an independent copy of this tuple
+	 */
+	public Tuple copy() {
+		return new CopiedTuple(this.context, new ArrayList<Object>(this.row), this.getSourceTask(),
+			this.getSourceStreamId(), this.getMessageId(), this.batch, this.row.index);
+	}
+	
+	/**
+	 * Returns the input batch the given (debatched or copied) tuple belongs to.
+	 * 
+	 * @param tuple
+	 *            The tuple.
+	 * 
+	 * @return the input batch of the tuple or {@code null} if the tuple was not debatched
+	 */
+	static PendingBatch getPendingBatch(Tuple tuple) {
+		if(tuple instanceof DebatchedTuple) {
+			return ((DebatchedTuple)tuple).batch;
+		}
+		if(tuple instanceof CopiedTuple) {
+			return ((CopiedTuple)tuple).batch;
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the row of the given (debatched or copied) tuple within its input batch.
+	 * 
+	 * @param tuple
+	 *            The debatched or copied tuple.
+	 * 
+	 * @return the row of the tuple within its input batch
+	 */
+	static int getRow(Tuple tuple) {
+		if(tuple instanceof DebatchedTuple) {
+			return ((DebatchedTuple)tuple).row.index;
+		}
+		return ((CopiedTuple)tuple).row;
+	}
+	
+	
+	
+	/**
+	 * {@link CopiedTuple} is an independent copy of a {@link DebatchedTuple} that remembers the input batch it belongs
+	 * to; thus, it can be acked, failed, and used as anchor after {@code execute(...)} returned.
+	 */
+	private static class CopiedTuple extends TupleImpl {
+		/**
+		 * The input batch the tuple belongs to.
+		 */
+		final PendingBatch batch;
+		/**
+		 * The row of the tuple within its input batch.
+		 */
+		final int row;
+		
+		CopiedTuple(GeneralTopologyContext context, List<Object> values, int taskId, String streamId,
+			MessageId messageId, PendingBatch batch, int row) {
+			super(context, values, taskId, streamId, messageId);
+			this.batch = batch;
+			this.row = row;
+		}
+		
+	}
+	
+	
+	
+	/**
+	 * {@link Row} presents a single row of the given columns as a list.
+	 */
+	private static class Row extends AbstractList<Object> implements RandomAccess {
+		/**
+		 * The columns of the current batch.
+		 */
+		final BatchColumn[] columns;
+		/**
+		 * The index of the current row.
+		 */
+		int index;
+		
+		
+		
+		Row(int numberOfAttributes) {
+			this.columns = new BatchColumn[numberOfAttributes];
+		}
+		
+		
+		
+		@Override
+		public Object get(int i) {
+			final BatchColumn column = this.columns[i];
+			if(column == null) {
+				return null; // attribute is not read by the receiver (see AbstractBatchCollector#getProjectionConfigKey)
+			}
+			return column.get(this.index);
+		}
+		
+		@Override
+		public int size() {
+			return this.columns.length;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,216 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import backtype.storm.task.IOutputCollector;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.utils.Utils;
+
+
+
+
+
+/**
+ * {@link DebatchingOutputCollector} is used by {@link InputDebatcher} to capture all calls of the wrapped bolt to the
+ * original provided collector. Acks and fails of debatched tuples (see {@link DebatchedTuple}) are counted and a single
+ * ack or fail is issued for their input batch after all its tuples got acked or failed. Output tuples that are anchored
+ * to debatched tuples are anchored to their input batch instead.<br />
+ * <br />
+ * {@link DebatchingOutputCollector} is handed to the wrapped bolt directly. Thus, the wrapped bolt can emit multiple
+ * tuples at once via {@link IBatchOutputCollector}. If the original collector is an {@link IBatchOutputCollector}
+ * itself (ie, if the {@link InputDebatcher} is wrapped by a {@link BoltOutputBatcher}), those calls are forwarded;
+ * otherwise, all tuples are emitted one by one.
+ * 
+ * @author Matthias J. Sax
+ */
+class DebatchingOutputCollector extends OutputCollector implements IBatchOutputCollector {
+	/**
+	 * The originally provided collector object.
+	 */
+	private final IOutputCollector collector;
+	
+	
+	
+	/**
+	 * Instantiates a new {@link DebatchingOutputCollector}.
+	 * 
+	 * @param collector
+	 *            The original collector object.
+	 */
+	DebatchingOutputCollector(IOutputCollector collector) {
+		super(collector);
+		this.collector = collector;
+	}
+	
+	
+	
+	@Override
+	public List<Integer> emit(String streamId, Collection<Tuple> anchors, List<Object> tuple) {
+		return this.collector.emit(streamId, getInputAnchors(anchors), tuple);
+	}
+	
+	@Override
+	public void emitDirect(int taskId, String streamId, Collection<Tuple> anchors, List<Object> tuple) {
+		this.collector.emitDirect(taskId, streamId, getInputAnchors(anchors), tuple);
+	}
+	
+	@Override
+	public void emitAll(String streamId, Collection<Tuple> anchors, List<? extends List<Object>> tuples) {
+		final Collection<Tuple> inputAnchors = getInputAnchors(anchors);
+		if(this.collector instanceof IBatchOutputCollector) {
+			((IBatchOutputCollector)this.collector).emitAll(streamId, inputAnchors, tuples);
+		} else {
+			for(List<Object> tuple : tuples) {
+				this.collector.emit(streamId, inputAnchors, tuple);
+			}
+		}
+	}
+	
+	@Override
+	public void emitAll(String streamId, Tuple anchor, List<? extends List<Object>> tuples) {
+		this.emitAll(streamId, Arrays.asList(anchor), tuples);
+	}
+	
+	@Override
+	public void emitAll(String streamId, List<? extends List<Object>> tuples) {
+		this.emitAll(streamId, (Collection<Tuple>)null, tuples);
+	}
+	
+	@Override
+	public void emitAll(List<? extends List<Object>> tuples) {
+		this.emitAll(Utils.DEFAULT_STREAM_ID, tuples);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * If {@code input} is a debatched tuple, its input batch is acked after all tuples of the batch got acked (or
+	 * failed, if at least one tuple of the batch failed). Repeated acks of the same debatched tuple are ignored.
+	 */
+	@Override
+	public void ack(Tuple input) {
+		final PendingBatch batch = DebatchedTuple.getPendingBatch(input);
+		if(batch == null) {
+			this.collector.ack(input);
+		} else if(batch.resolve(DebatchedTuple.getRow(input), false)) {
+			this.resolve(batch);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * If {@code input} is a debatched tuple, its input batch is failed after all tuples of the batch got acked or
+	 * failed. Repeated fails (or a fail after an ack) of the same debatched tuple are ignored.
+	 */
+	@Override
+	public void fail(Tuple input) {
+		final PendingBatch batch = DebatchedTuple.getPendingBatch(input);
+		if(batch == null) {
+			this.collector.fail(input);
+		} else if(batch.resolve(DebatchedTuple.getRow(input), true)) {
+			this.resolve(batch);
+		}
+	}
+	
+	@Override
+	public void reportError(Throwable error) {
+		this.collector.reportError(error);
+	}
+	
+	/**
+	 * Acks or fails the given input batch after all its tuples got acked or failed.
+	 * 
+	 * @param batch
+	 *            The resolved input batch.
+	 */
+	private void resolve(PendingBatch batch) {
+		if(batch.failed) {
+			this.collector.fail(batch.input);
+		} else {
+			this.collector.ack(batch.input);
+		}
+	}
+	
+	/**
+	 * Replaces all debatched tuples of the given anchors by their input batch.
+	 * 
+	 * @param anchors
+	 *            The anchors given by the wrapped bolt (may be {@code null}).
+	 * 
+	 * @return the anchors with all debatched tuples replaced by their input batch (no duplicates)
+	 */
+	private static Collection<Tuple> getInputAnchors(Collection<Tuple> anchors) {
+		if(anchors == null) {
+			return null;
+		}
+		
+		if(anchors.size() == 1) {
+			final PendingBatch batch = DebatchedTuple.getPendingBatch(anchors.iterator().next());
+			return batch == null ? anchors : batch.anchors;
+		}
+		
+		boolean debatched = false;
+		for(Tuple anchor : anchors) {
+			if(DebatchedTuple.getPendingBatch(anchor) != null) {
+				debatched = true;
+				break;
+			}
+		}
+		if(!debatched) {
+			return anchors;
+		}
+		
+		final List<Tuple> inputAnchors = new ArrayList<Tuple>(anchors.size());
+		for(Tuple anchor : anchors) {
+			final PendingBatch batch = DebatchedTuple.getPendingBatch(anchor);
+			final Tuple a = batch == null ? anchor : batch.input;
+			if(!containsSame(inputAnchors, a)) {
+				inputAnchors.add(a);
+			}
+		}
+		return inputAnchors;
+	}
+	
+	/**
+	 * Checks if the given list contains the given tuple (compared by identity).
+	 * 
+	 * @param tuples
+	 *            The list to be searched.
+	 * @param tuple
+	 *            The tuple to be searched for.
+	 * 
+	 * @return {@code true} if the list contains the tuple; {@code false} otherwise
+	 */
+	private static boolean containsSame(List<Tuple> tuples, Tuple tuple) {
+		for(int i = 0; i < tuples.size(); ++i) {
+			if(tuples.get(i) == tuple) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+}
@@ -0,0 +1,69 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching.api;
+
+import backtype.storm.topology.IRichBolt;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+import de.hub.cs.dbis.aeolus.batching.BatchColumn;
+
+
+
+
+
+/**
+ * {@link IBatchBolt} is a bolt that processes whole input batches at once. If a bolt implementing {@link IBatchBolt}
+ * is wrapped by an {@link InputDebatcher} (eg, if it is added to a topology via {@link AeolusBuilder}), input batches
+ * are not debatched but handed over via {@link #executeBatch(Tuple, BatchColumn[], int)}. Thus, the bolt can process
+ * each attribute column in a tight loop, eg:
+ * 
+ * <pre>
+ * public void executeBatch(Tuple input, BatchColumn[] columns, int numberOfTuples) {
+ * 	final BatchColumn speed = columns[1];
+ * 	for(int i = 0; i &lt; numberOfTuples; ++i) {
+ * 		this.sum += speed.getInt(i);
+ * 	}
+ * 	this.count += numberOfTuples;
+ * }
+ * </pre>
+ * 
+ * Regular (ie, non-batched) input tuples are still handed over via {@link #execute(Tuple)}.
+ * 
+ * @author Matthias J. Sax
+ */
+public interface IBatchBolt extends IRichBolt {
+	
+	/**
+	 * Processes all tuples of an input batch. The given columns are only valid within this call and must not be kept
+	 * (they might be reused for other batches after this call returned), unless they are retained via
+	 * {@link BatchColumn#retain()} and released via {@link BatchColumn#release()} after their last access.
+	 * 
+	 * @param input
+	 *            The input tuple that carries the batch (provides the metadata of the batch, like source task and
+	 *            source stream).
+	 * @param columns
+	 *            The attribute columns of the batch (one column for each attribute of the input schema; {@code null}
+	 *            for attributes that are not read by this bolt, see
+	 *            {@link BatchedDeclarer#projectFields(String, String, Fields)}).
+	 * @param numberOfTuples
+	 *            The number of tuples in the batch.
+	 */
+	void executeBatch(Tuple input, BatchColumn[] columns, int numberOfTuples);
+	
+}
@@ -0,0 +1,85 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching.api;
+
+import java.util.Collection;
+import java.util.List;
+
+import backtype.storm.task.OutputCollector;
+import backtype.storm.tuple.Tuple;
+import de.hub.cs.dbis.aeolus.batching.BatchOutputCollector;
+
+
+
+
+
+/**
+ * {@link IBatchOutputCollector} is an output collector that can emit multiple tuples at once. Bolts that emit many
+ * tuples in a row (eg, when flushing a window) can check if their {@link OutputCollector} is an
+ * {@link IBatchOutputCollector} and add all tuples to the output batches in a single call. This is the case if the bolt
+ * is wrapped by a {@link BoltOutputBatcher} (see {@link BatchOutputCollector}) or by an {@link InputDebatcher} (eg, if
+ * it is added to a topology via {@link AeolusBuilder}).
+ * 
+ * @author Matthias J. Sax
+ */
+public interface IBatchOutputCollector {
+	
+	/**
+	 * Emits multiple tuples at once. Each tuple is anchored to all given anchors.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param anchors
+	 *            The anchor tuples of all emitted tuples (may be {@code null}).
+	 * @param tuples
+	 *            The output tuples.
+	 */
+	void emitAll(String streamId, Collection<Tuple> anchors, List<? extends List<Object>> tuples);
+	
+	/**
+	 * Emits multiple tuples at once. Each tuple is anchored to the given anchor.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param anchor
+	 *            The anchor tuple of all emitted tuples.
+	 * @param tuples
+	 *            The output tuples.
+	 */
+	void emitAll(String streamId, Tuple anchor, List<? extends List<Object>> tuples);
+	
+	/**
+	 * Emits multiple unanchored tuples at once.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param tuples
+	 *            The output tuples.
+	 */
+	void emitAll(String streamId, List<? extends List<Object>> tuples);
+	
+	/**
+	 * Emits multiple unanchored tuples to the default output stream at once.
+	 * 
+	 * @param tuples
+	 *            The output tuples.
+	 */
+	void emitAll(List<? extends List<Object>> tuples);
+	
+}
@@ -18,7 +18,6 @@
  */
 package de.hub.cs.dbis.aeolus.batching.api;
 
-import java.util.ArrayList;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -29,8 +28,8 @@ import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.IRichBolt;
 import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.tuple.Fields;
 import backtype.storm.tuple.Tuple;
-import backtype.storm.tuple.TupleImpl;
 import de.hub.cs.dbis.aeolus.batching.AbstractBatchCollector;
 import de.hub.cs.dbis.aeolus.batching.BatchColumn;
 
@@ -44,7 +43,13 @@ import de.hub.cs.dbis.aeolus.batching.BatchColumn;
  * a batch and forwards it to its wrapped bolt for processing. {@link InputDebatcher} can handle and combination of
  * batched and non-batched input and works with any batch size.<br />
  * <br />
- * <strong>CAUTION:</strong>Tuple acking, failing, and anchoring is currently not supported.
+ * Extracted tuples are handed to the wrapped bolt as reusable {@link DebatchedTuple} views, that are only valid within
+ * the call to {@code execute(...)}. Bolts that keep input tuples, must keep a copy (see {@link DebatchedTuple#copy()}).<br />
+ * <br />
+ * Acks and fails of extracted tuples are coalesced: an input batch is acked after all its tuples got acked, or failed
+ * after all its tuples got acked or failed and at least one tuple failed. Output tuples that are anchored to extracted
+ * tuples are anchored to the input batch instead. For this, {@link InputDebatcher} must wrap the user bolt directly
+ * (ie, an {@link InputDebatcher} can be wrapped by a {@link BoltOutputBatcher} but not vice versa).
  * 
  * @author Matthias J. Sax
  */
@@ -57,10 +62,19 @@ public class InputDebatcher implements IRichBolt {
 	 * The bolt that is wrapped.
 	 */
 	private final IRichBolt wrappedBolt;
+	/**
+	 * The wrapped bolt, if it processes whole batches ({@code null} otherwise).
+	 */
+	private final IBatchBolt wrappedBatchBolt;
 	/**
 	 * The current runtime environment.
 	 */
 	private TopologyContext topologyContext;
+	/**
+	 * The view that is handed to the wrapped bolt for each tuple of an input batch. It is reused for all input batches
+	 * of the same producer task and stream.
+	 */
+	private DebatchedTuple debatchedTuple;
 	
 	
 	
@@ -72,6 +86,7 @@ public class InputDebatcher implements IRichBolt {
 	 */
 	public InputDebatcher(IRichBolt bolt) {
 		this.wrappedBolt = bolt;
+		this.wrappedBatchBolt = bolt instanceof IBatchBolt ? (IBatchBolt)bolt : null;
 	}
 	
 	
@@ -79,13 +94,19 @@ public class InputDebatcher implements IRichBolt {
 	@Override
 	public void prepare(@SuppressWarnings("rawtypes") Map stormConf, TopologyContext context, OutputCollector collector) {
 		this.topologyContext = context;
-		this.wrappedBolt.prepare(stormConf, context, collector);
+		this.wrappedBolt.prepare(stormConf, context, new DebatchingOutputCollector(collector));
 	}
 	
 	/**
 	 * Processes a single input tuple or batch. In case of an regular input tuple, the input tuple is simply forwarded
 	 * to the wrapped bolt for processing. In case of an input batch, all tuples are extracted from the batch and
-	 * forwarded to the wrapped bolt one by one. The batch metadata is recreated for each extracted tuple.
+	 * forwarded to the wrapped bolt one by one. The extracted tuples are not copied; instead, the same
+	 * {@link DebatchedTuple} view is handed over for all tuples (see {@link DebatchedTuple#copy()} if an input tuple
+	 * must be kept). The input batch is acked (or failed) after the wrapped bolt acked (or failed) all extracted tuples.
+	 * If the wrapped bolt is an {@link IBatchBolt}, the input batch is not debatched but handed over as
+	 * a whole. Afterwards, all columns of the batch are released (see {@link BatchColumn#release()}). Columns of
+	 * attributes that are not read by this bolt (see {@link BatchedDeclarer#projectFields(String, String, Fields)}) are
+	 * {@code null}.
 	 */
 	@Override
 	public void execute(Tuple input) {
@@ -93,31 +114,17 @@ public class InputDebatcher implements IRichBolt {
 		
 		// we cannot check "input.getValues() instanceof Batch", because Storm does not preserve this information
 		// (the class of input.getValues() is always java.utils.ArrayList)
-		if(input.size() > 0 && input.getValue(0) instanceof BatchColumn) {
+		final int firstColumn = getFirstColumn(input);
+		if(firstColumn != -1) {
 			logger.trace("debatching");
 			
 			final int numberOfAttributes = input.size();
 			logger.trace("numberOfAttributes: {}", new Integer(numberOfAttributes));
-			final BatchColumn[] columns = new BatchColumn[numberOfAttributes];
 			
-			for(int i = 0; i < numberOfAttributes; ++i) {
-				columns[i] = (BatchColumn)input.getValue(i);
-			}
-			
-			final int size = columns[0].size();
-			logger.trace("batchSize: {}", new Integer(size));
-			for(int i = 0; i < size; ++i) {
-				final ArrayList<Object> attributes = new ArrayList<Object>(numberOfAttributes);
-				
-				for(int j = 0; j < numberOfAttributes; ++j) {
-					attributes.add(columns[j].get(i));
-				}
-				logger.trace("extracted tuple #{}: {}", new Integer(i), attributes);
-				
-				final TupleImpl tuple = new TupleImpl(this.topologyContext, attributes, input.getSourceTask(),
-					input.getSourceStreamId());
-				
-				this.wrappedBolt.execute(tuple);
+			if(this.wrappedBatchBolt != null) {
+				this.executeBatch(input, numberOfAttributes, firstColumn);
+			} else {
+				this.debatch(input, numberOfAttributes, firstColumn);
 			}
 		} else {
 			this.wrappedBolt.execute(input);
@@ -125,6 +132,97 @@ public class InputDebatcher implements IRichBolt {
 		
 	}
 	
+	/**
+	 * Extracts all tuples from the given input batch and forwards them one by one to the wrapped bolt.
+	 * 
+	 * @param input
+	 *            The input batch.
+	 * @param numberOfAttributes
+	 *            The number of attributes of the input batch.
+	 * @param firstColumn
+	 *            The index of the first column that is not {@code null}.
+	 */
+	private void debatch(Tuple input, int numberOfAttributes, int firstColumn) {
+		final String streamId = input.getSourceStreamId();
+		DebatchedTuple tuple = this.debatchedTuple;
+		if(tuple == null || tuple.getSourceTask() != input.getSourceTask()
+			|| (streamId != tuple.getSourceStreamId() && (streamId == null || !streamId.equals(tuple
+				.getSourceStreamId())))) {
+			tuple = new DebatchedTuple(this.topologyContext, numberOfAttributes, input.getSourceTask(), streamId);
+			this.debatchedTuple = tuple;
+		}
+		for(int i = 0; i < numberOfAttributes; ++i) {
+			tuple.setColumn(i, (BatchColumn)input.getValue(i));
+		}
+		
+		final int size = tuple.getColumn(firstColumn).size();
+		logger.trace("batchSize: {}", new Integer(size));
+		tuple.setPendingBatch(new PendingBatch(input, size));
+		for(int i = 0; i < size; ++i) {
+			tuple.setRow(i);
+			if(logger.isTraceEnabled()) {
+				logger.trace("extracted tuple #{}: {}", new Integer(i), tuple);
+			}
+			
+			this.wrappedBolt.execute(tuple);
+		}
+		
+		for(int i = 0; i < numberOfAttributes; ++i) {
+			final BatchColumn column = tuple.getColumn(i);
+			if(column != null) {
+				column.release();
+				tuple.setColumn(i, null);
+			}
+		}
+	}
+	
+	/**
+	 * Forwards the given input batch as a whole to the wrapped {@link IBatchBolt}.
+	 * 
+	 * @param input
+	 *            The input batch.
+	 * @param numberOfAttributes
+	 *            The number of attributes of the input batch.
+	 * @param firstColumn
+	 *            The index of the first column that is not {@code null}.
+	 */
+	private void executeBatch(Tuple input, int numberOfAttributes, int firstColumn) {
+		final BatchColumn[] columns = new BatchColumn[numberOfAttributes];
+		for(int i = 0; i < numberOfAttributes; ++i) {
+			columns[i] = (BatchColumn)input.getValue(i);
+		}
+		
+		final int size = columns[firstColumn].size();
+		logger.trace("batchSize: {}", new Integer(size));
+		this.wrappedBatchBolt.executeBatch(input, columns, size);
+		
+		for(int i = 0; i < numberOfAttributes; ++i) {
+			if(columns[i] != null) {
+				columns[i].release();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the index of the first column of the given input, if the input is a batch. Leading columns might be
+	 * {@code null}, if their attributes are not read by this bolt.
+	 * 
+	 * @param input
+	 *            The input tuple or batch.
+	 * 
+	 * @return the index of the first column that is not {@code null} -- {@code -1} if the input is a regular tuple
+	 */
+	private static int getFirstColumn(Tuple input) {
+		final int numberOfAttributes = input.size();
+		for(int i = 0; i < numberOfAttributes; ++i) {
+			final Object value = input.getValue(i);
+			if(value != null) {
+				return value instanceof BatchColumn ? i : -1;
+			}
+		}
+		return -1;
+	}
+	
 	@Override
 	public void cleanup() {
 		this.wrappedBolt.cleanup();
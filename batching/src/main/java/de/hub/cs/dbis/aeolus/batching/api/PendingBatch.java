@@ -0,0 +1,101 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching.api;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import backtype.storm.tuple.Tuple;
+
+
+
+
+
+/**
+ * {@link PendingBatch} tracks the acks and fails of the tuples of a single input batch. The input batch is acked (or
+ * failed, if at least one of its tuples failed) after all its tuples got acked or failed. Repeated acks or fails of the
+ * same tuple are ignored. Because a bolt's
+ * {@code execute(...)} and all collector calls are issued by the same thread, no synchronization is required.
+ * 
+ * @author Matthias J. Sax
+ */
+final class PendingBatch {
+	/**
+	 * The input batch as received from Storm.
+	 */
+	final Tuple input;
+	/**
+	 * {@link #input} as a single element list. Used to anchor output tuples without allocating a new list.
+	 */
+	final List<Tuple> anchors;
+	/**
+	 * The rows of the input batch that are acked or failed already.
+	 */
+	private final BitSet resolved;
+	/**
+	 * The number of tuples of the input batch that are neither acked nor failed yet.
+	 */
+	private int pending;
+	/**
+	 * {@code true} if at least one tuple of the input batch failed.
+	 */
+	boolean failed = false;
+	
+	
+	
+	/**
+	 * Instantiates a new {@link PendingBatch}.
+	 * 
+	 * @param input
+	 *            The input batch as received from Storm.
+	 * @param size
+	 *            The number of tuples of the input batch.
+	 */
+	PendingBatch(Tuple input, int size) {
+		this.input = input;
+		this.anchors = Collections.singletonList(input);
+		this.resolved = new BitSet(size);
+		this.pending = size;
+	}
+	
+	
+	
+	/**
+	 * Records an ack or fail of the tuple in the given row. Repeated calls for the same row are ignored.
+	 * 
+	 * @param row
+	 *            The row of the acked or failed tuple.
+	 * @param fail
+	 *            {@code true} if the tuple failed; {@code false} if it got acked
+	 * 
+	 * @return {@code true} if all tuples of the input batch are acked or failed now; {@code false} otherwise
+	 */
+	boolean resolve(int row, boolean fail) {
+		if(this.resolved.get(row)) {
+			return false;
+		}
+		this.resolved.set(row);
+		if(fail) {
+			this.failed = true;
+		}
+		return --this.pending == 0;
+	}
+	
+}
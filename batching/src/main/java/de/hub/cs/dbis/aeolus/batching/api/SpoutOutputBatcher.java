@@ -18,16 +18,26 @@
  */
 package de.hub.cs.dbis.aeolus.batching.api;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import backtype.storm.Config;
 import backtype.storm.spout.SpoutOutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.IRichSpout;
 import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.tuple.Values;
 import de.hub.cs.dbis.aeolus.batching.AbstractBatchCollector;
+import de.hub.cs.dbis.aeolus.batching.AdaptiveBatchSizeController;
+import de.hub.cs.dbis.aeolus.batching.Batch;
+import de.hub.cs.dbis.aeolus.batching.BatchMessageId;
 import de.hub.cs.dbis.aeolus.batching.BatchSpoutOutputCollector;
+import de.hub.cs.dbis.aeolus.batching.BatchStatistics;
 import de.hub.cs.dbis.aeolus.batching.BatchingOutputFieldsDeclarer;
+import de.hub.cs.dbis.aeolus.batching.CompressionCodec;
 
 
 
@@ -40,13 +50,26 @@ import de.hub.cs.dbis.aeolus.batching.BatchingOutputFieldsDeclarer;
  * <strong>CAUTION:</strong>Calls to {@code .emit(...)} will return {@code null}, because the tuples might still be in
  * the output buffer and not transfered yet.<br />
  * <br />
- * <strong>CAUTION:</strong>Tuple acking, failing, and anchoring is currently not supported.
+ * Tuples that are emitted with a message ID are acked and failed as usual: each batch is emitted with its own
+ * {@link BatchMessageId} that contains the message IDs of all its tuples. If a batch is acked or failed, the wrapped
+ * spout receives an ack or fail for each contained message ID.<br />
+ * <br />
+ * If a maximum linger time is specified (see {@link #setMaxLinger(int)}), partially filled batches that exceeded the
+ * linger time are emitted at the end of each call to {@link #nextTuple()}.<br />
+ * <br />
+ * By default, each call to {@link #nextTuple()} calls the wrapped spout repeatedly until a batch is emitted or the
+ * wrapped spout does not emit a tuple. This fill loop can be bounded by a time budget (see
+ * {@link #setMaxFillTime(long)}) or disabled (see {@link #setBatchFilling(boolean)}).
  * 
  * @author Matthias J. Sax
  */
 public class SpoutOutputBatcher implements IRichSpout {
 	private final static long serialVersionUID = -8627934412821417370L;
 	
+	/**
+	 * The actual {@link SpoutOutputCollector} (used to emit the batching statistics).
+	 */
+	private SpoutOutputCollector collector;
 	/**
 	 * The used {@link BatchSpoutOutputCollector} that wraps the actual {@link SpoutOutputCollector}.
 	 */
@@ -63,6 +86,75 @@ public class SpoutOutputBatcher implements IRichSpout {
 	 * The size of the output batches (for all output streams).
 	 */
 	private final int batchSize;
+	/**
+	 * The maximum linger times for each output stream.
+	 */
+	private Map<String, Integer> maxLingers = null;
+	/**
+	 * The maximum linger time (for all output streams).
+	 */
+	private int maxLinger = 0;
+	/**
+	 * Adjusts the batch sizes at runtime ({@code null} if batch sizes are static).
+	 */
+	private AdaptiveBatchSizeController batchSizeController = null;
+	/**
+	 * The declared attribute types for each output stream.
+	 */
+	private final Map<String, Class<?>[]> columnTypes = new HashMap<String, Class<?>[]>();
+	/**
+	 * The name of the timestamp attribute for each output stream with timestamp range tracking.
+	 */
+	private final Map<String, String> timestampAttributes = new HashMap<String, String>();
+	/**
+	 * The punctuation streams, that are not batched and flush all output buffers.
+	 */
+	private final Set<String> punctuationStreams = new HashSet<String>();
+	/**
+	 * The compression codec for each output stream with enabled compression.
+	 */
+	private final Map<String, CompressionCodec> compressionCodecs = new HashMap<String, CompressionCodec>();
+	/**
+	 * The compression threshold (in bytes) for each output stream with enabled compression.
+	 */
+	private final Map<String, Integer> compressionThresholds = new HashMap<String, Integer>();
+	/**
+	 * Indicates if emitted batches are recycled.
+	 */
+	private boolean recycleBatches = false;
+	/**
+	 * Indicates if tuples for receiver tasks in the same worker are emitted without batching.
+	 */
+	private boolean localBypass = false;
+	/**
+	 * The maximum number of tuples in all output buffers together (zero, if unlimited).
+	 */
+	private int maxBufferedTuples = 0;
+	/**
+	 * The reporting interval of the batching statistics in milliseconds (zero, if statistics are disabled).
+	 */
+	private long reportInterval = 0;
+	/**
+	 * The name of the report stream of the batching statistics.
+	 */
+	private String reportStream = BatchStatistics.DEFAULT_STATS_STREAM;
+	/**
+	 * The point in time (in milliseconds) when the batching statistics are reported next.
+	 */
+	private long nextReport;
+	/**
+	 * Indicates if a maximum linger time is specified.
+	 */
+	private boolean lingerEnabled;
+	/**
+	 * Indicates if the wrapped spout is called repeatedly within a single call to {@link #nextTuple()}.
+	 */
+	private boolean fillBatches = true;
+	/**
+	 * The maximum time (in nanoseconds) the wrapped spout is called repeatedly within a single call to
+	 * {@link #nextTuple()} (zero, if unlimited).
+	 */
+	private long maxFillTime = 0;
 	
 	
 	
@@ -116,13 +208,362 @@ public class SpoutOutputBatcher implements IRichSpout {
 	
 	
 	
+	/**
+	 * Sets the maximum time (in milliseconds) a tuple can stay in an output buffer for all output streams. If a
+	 * partially filled batch exceeds this time, it is emitted.
+	 * 
+	 * @param maxLinger
+	 *            The maximum linger time in milliseconds (must be positive).
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code maxLinger} is not positive
+	 */
+	public SpoutOutputBatcher setMaxLinger(int maxLinger) {
+		if(maxLinger < 1) {
+			throw new IllegalArgumentException("Parameter <maxLinger> must be greater than 0.");
+		}
+		this.maxLinger = maxLinger;
+		this.maxLingers = null;
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum time (in milliseconds) a tuple can stay in an output buffer for each output stream. If a
+	 * partially filled batch exceeds this time, it is emitted. Streams without an entry are only emitted if the batch
+	 * is full.
+	 * 
+	 * @param maxLingers
+	 *            The maximum linger times in milliseconds for each output stream.
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code maxLingers} is {@code null}
+	 */
+	public SpoutOutputBatcher setMaxLinger(Map<String, Integer> maxLingers) {
+		if(maxLingers == null) {
+			throw new IllegalArgumentException("Parameter <maxLingers> must not be null.");
+		}
+		this.maxLingers = new HashMap<String, Integer>(maxLingers);
+		this.maxLinger = 0;
+		return this;
+	}
+	
+	/**
+	 * Enables adaptive batch sizes. The batch sizes given in the constructor are used as initial values and are
+	 * adjusted at runtime by the given controller.
+	 * 
+	 * @param controller
+	 *            The controller that adjusts the batch sizes.
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code controller} is {@code null}
+	 */
+	public SpoutOutputBatcher setBatchSizeController(AdaptiveBatchSizeController controller) {
+		if(controller == null) {
+			throw new IllegalArgumentException("Parameter <controller> must not be null.");
+		}
+		this.batchSizeController = controller;
+		return this;
+	}
+	
+	/**
+	 * Declares the attribute types of an output stream. Attributes of type {@link Long}, {@link Integer},
+	 * {@link Short}, {@link Double}, and {@link String} are buffered without boxing. If no types are declared, the
+	 * types of the first tuple of each batch are used.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param types
+	 *            The type of each attribute of the output stream.
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code streamId} or {@code types} is {@code null}
+	 */
+	public SpoutOutputBatcher setColumnTypes(String streamId, Class<?>... types) {
+		if(streamId == null) {
+			throw new IllegalArgumentException("Parameter <streamId> must not be null.");
+		}
+		if(types == null) {
+			throw new IllegalArgumentException("Parameter <types> must not be null.");
+		}
+		this.columnTypes.put(streamId, types.clone());
+		return this;
+	}
+	
+	/**
+	 * Declares the timestamp attribute of an output stream. Each emitted batch of this stream carries the minimum and
+	 * maximum timestamp of its tuples, such that consumers can process whole batches without inspecting each tuple (see
+	 * {@link Batch#hasTimestampRange()}). All values of the timestamp attribute must be of type {@link Number}.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param attribute
+	 *            The name of the timestamp attribute.
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code streamId} or {@code attribute} is {@code null}
+	 */
+	public SpoutOutputBatcher setTimestampAttribute(String streamId, String attribute) {
+		if(streamId == null) {
+			throw new IllegalArgumentException("Parameter <streamId> must not be null.");
+		}
+		if(attribute == null) {
+			throw new IllegalArgumentException("Parameter <attribute> must not be null.");
+		}
+		this.timestampAttributes.put(streamId, attribute);
+		return this;
+	}
+	
+	/**
+	 * Declares an output stream as punctuation stream (eg, a stream of progress tuples that let downstream mergers
+	 * advance). Tuples of a punctuation stream are never batched. Before a punctuation tuple is emitted, all incomplete
+	 * batches of all output streams are emitted, such that the punctuation does not overtake buffered tuples.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code streamId} is {@code null}
+	 */
+	public SpoutOutputBatcher setPunctuationStream(String streamId) {
+		if(streamId == null) {
+			throw new IllegalArgumentException("Parameter <streamId> must not be null.");
+		}
+		this.punctuationStreams.add(streamId);
+		return this;
+	}
+	
+	/**
+	 * Enables the compression of output batches of an output stream that are sent to remote consumers. Each column of a
+	 * serialized batch is compressed with {@code codec}, if its serialized size is at least {@code threshold} bytes.
+	 * Compression trades CPU for network bandwidth and pays off for large batches of compressible data (eg, strings).
+	 * Consumers decompress batches automatically.
+	 * 
+	 * @param streamId
+	 *            The output stream.
+	 * @param codec
+	 *            The codec that compresses the serialized batches.
+	 * @param threshold
+	 *            The minimum size (in bytes) of a serialized column, for which the column gets compressed.
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code streamId} or {@code codec} is {@code null} or {@code threshold} is negative
+	 */
+	public SpoutOutputBatcher setCompression(String streamId, CompressionCodec codec, int threshold) {
+		if(streamId == null) {
+			throw new IllegalArgumentException("Parameter <streamId> must not be null.");
+		}
+		if(codec == null) {
+			throw new IllegalArgumentException("Parameter <codec> must not be null.");
+		}
+		if(threshold < 0) {
+			throw new IllegalArgumentException("Parameter <threshold> must not be negative.");
+		}
+		this.compressionCodecs.put(streamId, codec);
+		this.compressionThresholds.put(streamId, new Integer(threshold));
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum number of tuples in all output buffers together. If the limit is exceeded, the largest output
+	 * buffers are emitted (even if they are not full) until at most half of the limit is buffered. This bounds the
+	 * memory used for buffering if the number of output buffers is large (eg, for many receiver tasks or many output
+	 * streams).
+	 * 
+	 * @param maxBufferedTuples
+	 *            The maximum number of buffered tuples (must be positive).
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code maxBufferedTuples} is not positive
+	 */
+	public SpoutOutputBatcher setMaxBufferedTuples(int maxBufferedTuples) {
+		if(maxBufferedTuples < 1) {
+			throw new IllegalArgumentException("Parameter <maxBufferedTuples> must be greater than 0.");
+		}
+		this.maxBufferedTuples = maxBufferedTuples;
+		return this;
+	}
+	
+	/**
+	 * Enables or disables the local bypass. If enabled, tuples for receiver tasks that run in the same worker are
+	 * emitted directly instead of being batched, because Storm does not serialize them anyway. Only receivers that
+	 * are connected via {@link BatchedDeclarer} (eg, if added via {@link AeolusBuilder}) and direct output streams are
+	 * affected. Note that in local mode all tasks run in the same worker.
+	 * 
+	 * @param enabled
+	 *            {@code true} to emit tuples for local receiver tasks directly; {@code false} to batch all tuples
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 */
+	public SpoutOutputBatcher setLocalBypass(boolean enabled) {
+		this.localBypass = enabled;
+		return this;
+	}
+	
+	/**
+	 * Enables the reporting of batching statistics (see {@link BatchStatistics}) to the default report stream
+	 * {@link BatchStatistics#DEFAULT_STATS_STREAM}.
+	 * 
+	 * @param interval
+	 *            The reporting interval in milliseconds (must be positive).
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code interval} is not positive
+	 */
+	public SpoutOutputBatcher setStatisticsReporting(long interval) {
+		return this.setStatisticsReporting(interval, BatchStatistics.DEFAULT_STATS_STREAM);
+	}
+	
+	/**
+	 * Enables the reporting of batching statistics (see {@link BatchStatistics}) to the given report stream. The
+	 * statistics are reported by the executor thread at the end of {@link #nextTuple()}; thus, the actual reporting
+	 * interval might be larger than specified.
+	 * 
+	 * @param interval
+	 *            The reporting interval in milliseconds (must be positive).
+	 * @param reportStream
+	 *            The name of the report stream.
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code interval} is not positive or {@code reportStream} is {@code null} or starts with
+	 *             {@link BatchingOutputFieldsDeclarer#STREAM_PREFIX}
+	 */
+	public SpoutOutputBatcher setStatisticsReporting(long interval, String reportStream) {
+		if(interval < 1) {
+			throw new IllegalArgumentException("Parameter <interval> must be greater than 0.");
+		}
+		if(reportStream == null) {
+			throw new IllegalArgumentException("Parameter <reportStream> must not be null.");
+		}
+		if(reportStream.startsWith(BatchingOutputFieldsDeclarer.STREAM_PREFIX)) {
+			throw new IllegalArgumentException("Parameter <reportStream> must not start with "
+				+ BatchingOutputFieldsDeclarer.STREAM_PREFIX + ".");
+		}
+		this.reportInterval = interval;
+		this.reportStream = reportStream;
+		return this;
+	}
+	
+	/**
+	 * Enables or disables the recycling of emitted batches. An emitted batch is reused as output buffer after all
+	 * consumers processed it, reducing the number of allocated objects. Batches are only reused, if all consumers are
+	 * wrapped by an {@link InputDebatcher} and the custom serializers are registered (see
+	 * {@link #registerKryoClasses(Config)}); otherwise, new batches are allocated as usual.
+	 * 
+	 * @param enabled
+	 *            {@code true} to recycle emitted batches; {@code false} otherwise
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 */
+	public SpoutOutputBatcher setBatchRecycling(boolean enabled) {
+		this.recycleBatches = enabled;
+		return this;
+	}
+	
+	/**
+	 * Enables or disables the fill loop of {@link #nextTuple()}. If enabled (default), each call to
+	 * {@link #nextTuple()} calls the wrapped spout repeatedly until a batch is emitted, the wrapped spout does not emit
+	 * a tuple, or the maximum fill time is exceeded (see {@link #setMaxFillTime(long)}). If disabled, the wrapped spout
+	 * is called exactly once per call to {@link #nextTuple()}.
+	 * 
+	 * @param enabled
+	 *            {@code true} to fill up batches within a single call to {@link #nextTuple()}; {@code false} otherwise
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 */
+	public SpoutOutputBatcher setBatchFilling(boolean enabled) {
+		this.fillBatches = enabled;
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum time the wrapped spout is called repeatedly within a single call to {@link #nextTuple()}. The
+	 * time is checked after each call to the wrapped spout; thus, a single slow call to the wrapped spout may exceed
+	 * the given time.
+	 * 
+	 * @param maxFillTime
+	 *            The maximum fill time in microseconds (must be positive).
+	 * 
+	 * @return this {@link SpoutOutputBatcher}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if {@code maxFillTime} is not positive
+	 */
+	public SpoutOutputBatcher setMaxFillTime(long maxFillTime) {
+		if(maxFillTime < 1) {
+			throw new IllegalArgumentException("Parameter <maxFillTime> must be greater than 0.");
+		}
+		this.maxFillTime = maxFillTime * 1000;
+		return this;
+	}
+	
+	
+	
 	@Override
 	public void open(@SuppressWarnings("rawtypes") Map conf, TopologyContext context, SpoutOutputCollector collector) {
+		this.collector = collector;
 		if(this.batchSizes != null) {
 			this.batchCollector = new BatchSpoutOutputCollector(context, collector, this.batchSizes);
 		} else {
 			this.batchCollector = new BatchSpoutOutputCollector(context, collector, this.batchSize);
 		}
+		if(this.batchSizeController != null) {
+			this.batchCollector.setBatchSizeController(this.batchSizeController);
+		}
+		for(Entry<String, Class<?>[]> types : this.columnTypes.entrySet()) {
+			this.batchCollector.setColumnTypes(types.getKey(), types.getValue());
+		}
+		for(Entry<String, String> attribute : this.timestampAttributes.entrySet()) {
+			this.batchCollector.setTimestampIndex(attribute.getKey(),
+				context.getComponentOutputFields(context.getThisComponentId(), attribute.getKey()).fieldIndex(
+					attribute.getValue()));
+		}
+		for(String streamId : this.punctuationStreams) {
+			this.batchCollector.setPunctuationStream(streamId);
+		}
+		for(Entry<String, CompressionCodec> codec : this.compressionCodecs.entrySet()) {
+			this.batchCollector.setCompression(codec.getKey(), codec.getValue(),
+				this.compressionThresholds.get(codec.getKey()).intValue());
+		}
+		if(this.recycleBatches) {
+			this.batchCollector.setBatchRecycling(true);
+		}
+		if(this.localBypass) {
+			this.batchCollector.setLocalBypass(true);
+		}
+		if(this.maxBufferedTuples > 0) {
+			this.batchCollector.setMaxBufferedTuples(this.maxBufferedTuples);
+		}
+		if(this.reportInterval > 0) {
+			this.batchCollector.setStatisticsEnabled(true);
+			this.nextReport = System.currentTimeMillis() + this.reportInterval;
+		}
+		if(this.maxLingers != null) {
+			this.batchCollector.setMaxLinger(this.maxLingers);
+			this.lingerEnabled = !this.maxLingers.isEmpty();
+		} else if(this.maxLinger > 0) {
+			this.batchCollector.setMaxLinger(this.maxLinger);
+			this.lingerEnabled = true;
+		}
 		this.wrappedSpout.open(conf, context, this.batchCollector);
 	}
 	
@@ -145,41 +586,79 @@ public class SpoutOutputBatcher implements IRichSpout {
 	
 	@Override
 	public void nextTuple() {
-		/*
-		 * In order to avoid a waiting penalty (because of a missing emit), we try to fill up a complete batch before
-		 * returning. If the wrapped spout does not add a new tuple to an output batch we return as well in order to
-		 * avoid busy waiting within the while-true-loop.
-		 */
-		while(true) {
-			this.batchCollector.tupleEmitted = false;
-			this.batchCollector.batchEmitted = false;
-			
+		if(this.fillBatches) {
+			/*
+			 * In order to avoid a waiting penalty (because of a missing emit), we try to fill up a complete batch
+			 * before returning. If the wrapped spout does not add a new tuple to an output batch we return as well in
+			 * order to avoid busy waiting within the while-true-loop. If the fill time is limited, we return after the
+			 * time budget is used up to give the executor the chance to process acks and tick tuples.
+			 */
+			final long deadline = this.maxFillTime > 0 ? System.nanoTime() + this.maxFillTime : 0;
+			while(true) {
+				this.batchCollector.tupleEmitted = false;
+				this.batchCollector.batchEmitted = false;
+				
+				this.wrappedSpout.nextTuple();
+				
+				if(!this.batchCollector.tupleEmitted || this.batchCollector.batchEmitted) {
+					break;
+				}
+				if(this.maxFillTime > 0 && System.nanoTime() - deadline >= 0) {
+					break;
+				}
+			}
+		} else {
 			this.wrappedSpout.nextTuple();
-			
-			if(!this.batchCollector.tupleEmitted || this.batchCollector.batchEmitted) {
-				break;
+		}
+		
+		if(this.lingerEnabled) {
+			this.batchCollector.flushExpired();
+		}
+		if(this.reportInterval > 0) {
+			final long now = System.currentTimeMillis();
+			if(now >= this.nextReport) {
+				for(Values statsTuple : this.batchCollector.reportStatistics(now)) {
+					this.collector.emit(this.reportStream, statsTuple);
+				}
+				this.nextReport = now + this.reportInterval;
 			}
 		}
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * If an entire batch is acked, the message IDs of all its tuples are acked at the wrapped spout.
+	 */
 	@Override
 	public void ack(Object msgId) {
-		// TODO: receiving ack for whole batch -> reply acks for single tuples to user spout
-		// TODO: store original Ids of all tuples for each batch
-		this.wrappedSpout.ack(msgId);
+		if(msgId instanceof BatchMessageId) {
+			((BatchMessageId)msgId).ack(this.wrappedSpout);
+		} else {
+			this.wrappedSpout.ack(msgId);
+		}
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * If an entire batch is failed, the message IDs of all its tuples are failed at the wrapped spout.
+	 */
 	@Override
 	public void fail(Object msgId) {
-		// TODO: receiving fail for whole batch -> reply fails for single tuples to user spout
-		// TODO: store original Ids of all tuples for each batch
-		this.wrappedSpout.fail(msgId);
+		if(msgId instanceof BatchMessageId) {
+			((BatchMessageId)msgId).fail(this.wrappedSpout);
+		} else {
+			this.wrappedSpout.fail(msgId);
+		}
 	}
 	
 	@Override
 	public void declareOutputFields(OutputFieldsDeclarer declarer) {
 		this.wrappedSpout.declareOutputFields(new BatchingOutputFieldsDeclarer(declarer));
-		
+		if(this.reportInterval > 0) {
+			BatchStatistics.declareStatsStream(this.reportStream, declarer);
+		}
 	}
 	
 	@Override
@@ -198,4 +677,18 @@ public class SpoutOutputBatcher implements IRichSpout {
 		AbstractBatchCollector.registerKryoClasses(stormConfig);
 	}
 	
+	/**
+	 * Registers internally used classes for serialization and deserialization.
+	 * 
+	 * @param stormConfig
+	 *            The storm config the which the classes should be registered to.
+	 * @param useCustomSerializers
+	 *            If {@code true}, the custom batch serializers are used; otherwise, Kryo's default serializers are used.
+	 * 
+	 * @see AbstractBatchCollector#registerKryoClasses(Config, boolean)
+	 */
+	public static void registerKryoClasses(Config stormConfig, boolean useCustomSerializers) {
+		AbstractBatchCollector.registerKryoClasses(stormConfig, useCustomSerializers);
+	}
+	
 }
@@ -18,14 +18,17 @@
  */
 package de.hub.cs.dbis.aeolus.batching;
 
-import static org.mockito.Matchers.any;
+import static org.mockito.AdditionalMatchers.geq;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -39,16 +42,17 @@ import java.util.Set;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
-import org.junit.runner.RunWith;
-import org.powermock.api.mockito.PowerMockito;
-import org.powermock.core.classloader.annotations.PrepareForTest;
-import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
 
 import backtype.storm.Config;
+import backtype.storm.generated.Bolt;
+import backtype.storm.generated.ComponentCommon;
 import backtype.storm.generated.Grouping;
+import backtype.storm.generated.StormTopology;
+import backtype.storm.spout.ISpout;
 import backtype.storm.task.TopologyContext;
-import backtype.storm.task.WorkerTopologyContext;
 import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
 import backtype.storm.utils.Utils;
 
@@ -59,8 +63,6 @@ import backtype.storm.utils.Utils;
 /**
  * @author Matthias J. Sax
  */
-@RunWith(PowerMockRunner.class)
-@PrepareForTest(StormConnector.class)
 public class AbstractBatchCollectorTest {
 	private Random r;
 	final String sourceId = "sourceId";
@@ -110,6 +112,15 @@ public class AbstractBatchCollectorTest {
 		return outputStreams;
 	}
 	
+	/**
+	 * Computes the receiver task index of Storm's fields-grouping on the first attribute (ie, the index within the
+	 * sorted receiver task IDs).
+	 */
+	static int fieldsGroupingIndex(List<Object> tuple, int numberOfTasks) {
+		final int index = Arrays.asList(new Object[] {tuple.get(0)}).hashCode() % numberOfTasks;
+		return index < 0 ? index + numberOfTasks : index;
+	}
+	
 	private HashMap<String, Integer> generateBatchSizes(String[] streamIds) {
 		HashMap<String, Integer> batchSizes = new HashMap<String, Integer>();
 		
@@ -142,7 +153,6 @@ public class AbstractBatchCollectorTest {
 		this.r = new Random(seed);
 		System.out.println("Test seed: " + seed);
 		
-		PowerMockito.mockStatic(StormConnector.class);
 	}
 	
 	
@@ -391,10 +401,6 @@ public class AbstractBatchCollectorTest {
 			maxNumberOfBatches *= numberOfConsumerTasks[i];
 		}
 		final int numberOfDistinctValues = 1 + maxNumberOfBatches / 2 + this.r.nextInt(2 * maxNumberOfBatches);
-		Values[] partitionsTuple = new Values[numberOfDistinctValues];
-		for(int i = 0; i < numberOfDistinctValues; ++i) {
-			partitionsTuple[i] = new Values(new Integer(i));
-		}
 		
 		
 		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
@@ -444,13 +450,6 @@ public class AbstractBatchCollectorTest {
 			when(context.getComponentTasks(consumerId)).thenReturn(consumerTasks);
 			taskIds.put(consumerId, consumerTasks);
 			
-			for(int j = 0; j < numberOfDistinctValues; ++j) {
-				when(
-					StormConnector.getFieldsGroupingReceiverTaskId(any(WorkerTopologyContext.class), eq(this.sourceId),
-						eq(outputStreams[i]), eq(consumerId), eq(partitionsTuple[j]))).thenReturn(
-					consumerTasks.get(j % numberOfConsumerTasks[i]));
-			}
-			
 			Map<String, Grouping> streamMapping = targets.get(outputStreams[i]);
 			if(streamMapping == null) {
 				targets.put(outputStreams[i], consumer);
@@ -474,6 +473,7 @@ public class AbstractBatchCollectorTest {
 		when(context.getThisTargets()).thenReturn(targets);
 		
 		when(new Boolean(grouping.is_set_fields())).thenReturn(new Boolean(true));
+		when(grouping.get_fields()).thenReturn(Arrays.asList("attribute"));
 		
 		
 		
@@ -513,7 +513,7 @@ public class AbstractBatchCollectorTest {
 					for(int k = 0; k < numberOfConsumerTasks.length; ++k) {
 						if(outputStreams[k].equals(outputStream)) {
 							batchKey.add(taskIds.get(consumerPrefix + k).get(
-								((Integer)tuple.get(0)).intValue() % numberOfConsumerTasks[k]));
+								fieldsGroupingIndex(tuple, numberOfConsumerTasks[k])));
 						}
 					}
 					
@@ -606,6 +606,7 @@ public class AbstractBatchCollectorTest {
 		
 		Grouping grouping = mock(Grouping.class);
 		when(new Boolean(grouping.is_set_fields())).thenReturn(new Boolean(true));
+		when(grouping.get_fields()).thenReturn(Arrays.asList("attribute"));
 		Grouping directGrouping = mock(Grouping.class);
 		when(new Boolean(directGrouping.is_set_direct())).thenReturn(new Boolean(true));
 		
@@ -617,10 +618,6 @@ public class AbstractBatchCollectorTest {
 			maxNumberOfBatches *= numberOfConsumerTasks[i];
 		}
 		final int numberOfDistinctValues = 1 + maxNumberOfBatches / 2 + this.r.nextInt(2 * maxNumberOfBatches);
-		Values[] partitionsTuple = new Values[numberOfDistinctValues];
-		for(int i = 0; i < numberOfDistinctValues; ++i) {
-			partitionsTuple[i] = new Values(new Integer(i));
-		}
 		
 		
 		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
@@ -648,13 +645,6 @@ public class AbstractBatchCollectorTest {
 			when(context.getComponentTasks(consumerId)).thenReturn(consumerTasks);
 			taskIds.put(consumerId, consumerTasks);
 			
-			for(int j = 0; j < numberOfDistinctValues; ++j) {
-				when(
-					StormConnector.getFieldsGroupingReceiverTaskId(any(WorkerTopologyContext.class), eq(this.sourceId),
-						eq(outputStreams[i]), eq(consumerId), eq(partitionsTuple[j]))).thenReturn(
-					consumerTasks.get(j % numberOfConsumerTasks[i]));
-			}
-			
 			Map<String, Grouping> streamMapping = targets.get(outputStreams[i]);
 			if(streamMapping == null) {
 				targets.put(outputStreams[i], consumer);
@@ -725,7 +715,7 @@ public class AbstractBatchCollectorTest {
 					for(int k = 0; k < numberOfConsumerTasks.length; ++k) {
 						if(outputStreams[k].equals(outputStream)) {
 							Integer tid = taskIds.get(consumerPrefix + k).get(
-								((Integer)tuple.get(0)).intValue() % numberOfConsumerTasks[k]);
+								fieldsGroupingIndex(tuple, numberOfConsumerTasks[k]));
 							
 							Batch batch = currentBatch.get(tid);
 							if(batch != null) {
@@ -1099,13 +1089,1105 @@ public class AbstractBatchCollectorTest {
 		Assert.assertEquals(40, collector.resultBuffer.get(directStream2).size());
 	}
 	
+	@Test
+	public void testFlushExpired() {
+		final String secondStream = "stream-2";
+		final String directStream = "direct";
+		
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		
+		HashMap<String, Grouping> directConsumer = new HashMap<String, Grouping>();
+		Grouping direct = mock(Grouping.class);
+		when(new Boolean(direct.is_set_direct())).thenReturn(new Boolean(true));
+		directConsumer.put("directReceiver", direct);
+		
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		targets.put(secondStream, consumer);
+		targets.put(directStream, directConsumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("dummy"));
+		when(context.getComponentOutputFields(null, secondStream)).thenReturn(new Fields("dummy"));
+		when(context.getComponentOutputFields(null, directStream)).thenReturn(new Fields("dummy"));
+		when(context.getComponentTasks("directReceiver")).thenReturn(
+			Arrays.asList(new Integer[] {new Integer(0), new Integer(1), new Integer(2)}));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 5);
+		
+		HashMap<String, Integer> maxLinger = new HashMap<String, Integer>();
+		maxLinger.put(Utils.DEFAULT_STREAM_ID, new Integer(60000));
+		maxLinger.put(directStream, new Integer(60000));
+		collector.setMaxLinger(maxLinger);
+		
+		for(int i = 0; i < 3; ++i) {
+			collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(i)), null);
+			collector.tupleEmit(secondStream, null, new Values(new Integer(i)), null);
+			collector.tupleEmitDirect(0, directStream, null, new Values(new Integer(i)), null);
+		}
+		
+		collector.flushExpired();
+		Assert.assertEquals(0, collector.resultBuffer.size());
+		
+		collector.clockOffset = 60000;
+		collector.flushExpired();
+		
+		Assert.assertEquals(1, collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).size());
+		Assert.assertEquals(3, ((Batch)collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(0)).get(0).size());
+		Assert.assertEquals(1, collector.resultBuffer.get(directStream).size());
+		Assert.assertNull(collector.resultBuffer.get(secondStream));
+		
+		collector.flushExpired();
+		Assert.assertEquals(1, collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).size());
+		Assert.assertEquals(1, collector.resultBuffer.get(directStream).size());
+		
+		collector.flush();
+		Assert.assertEquals(1, collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).size());
+		Assert.assertEquals(1, collector.resultBuffer.get(secondStream).size());
+	}
+	
+	@Test
+	public void testAdaptiveBatchSize() {
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("dummy"));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 2);
+		collector.setBatchSizeController(new AdaptiveBatchSizeController(1, 100, 1000));
+		
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(0)), null);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(1)), null);
+		Assert.assertEquals(1, collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).size());
+		
+		// high emit rate -> batch size is doubled
+		Assert.assertEquals(new Integer(4), collector.getBatchSize(Utils.DEFAULT_STREAM_ID));
+		
+		for(int i = 2; i < 5; ++i) {
+			collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(i)), null);
+		}
+		Assert.assertEquals(1, collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).size());
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(5)), null);
+		Assert.assertEquals(2, collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).size());
+		Assert.assertEquals(4, ((Batch)collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(1)).get(0).size());
+	}
+	
+	@Test
+	public void testAdaptiveBatchSizeUsesCollectorClock() {
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("dummy"));
+		
+		AdaptiveBatchSizeController controller = mock(AdaptiveBatchSizeController.class);
+		when(new Integer(controller.computeBatchSize(eq(Utils.DEFAULT_STREAM_ID), anyInt(), anyInt(), geq(60000L))))
+			.thenReturn(new Integer(2));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 2);
+		collector.setBatchSizeController(controller);
+		
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(0)), null);
+		collector.clockOffset = 60000;
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(1)), null);
+		
+		verify(controller).computeBatchSize(eq(Utils.DEFAULT_STREAM_ID), eq(2), eq(2), geq(60000L));
+	}
+	
+	@Test
+	public void testEmitShuffleAndAllGroupingViaDirectEmit() {
+		final String directStream = BatchingOutputFieldsDeclarer.STREAM_PREFIX + Utils.DEFAULT_STREAM_ID;
+		
+		Grouping shuffle = mock(Grouping.class);
+		Grouping all = mock(Grouping.class);
+		when(new Boolean(all.is_set_all())).thenReturn(new Boolean(true));
+		Grouping direct = mock(Grouping.class);
+		when(new Boolean(direct.is_set_direct())).thenReturn(new Boolean(true));
+		
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("shuffleReceiver", shuffle);
+		consumer.put("allReceiver", all);
+		HashMap<String, Grouping> directConsumer = new HashMap<String, Grouping>();
+		directConsumer.put("shuffleReceiver", direct);
+		directConsumer.put("allReceiver", direct);
+		
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		targets.put(directStream, directConsumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		when(context.getComponentOutputFields(null, directStream)).thenReturn(new Fields("a"));
+		when(context.getComponentTasks("shuffleReceiver")).thenReturn(
+			Arrays.asList(new Integer[] {new Integer(0), new Integer(1)}));
+		when(context.getComponentTasks("allReceiver")).thenReturn(
+			Arrays.asList(new Integer[] {new Integer(2), new Integer(3)}));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 2);
+		for(int i = 0; i < 4; ++i) {
+			collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(i)), null);
+		}
+		
+		// shuffle receiver tasks get two tuples each; all receiver tasks get all four tuples
+		List<Integer> receiverTasks = collector.taskBuffer.get(directStream);
+		Assert.assertEquals(6, receiverTasks.size());
+		int[] count = new int[4];
+		for(Integer taskId : receiverTasks) {
+			++count[taskId.intValue()];
+		}
+		Assert.assertArrayEquals(new int[] {1, 1, 2, 2}, count);
+	}
+	
+	@Test
+	public void testBatchMessageId() {
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 3);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(0)), "id0");
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(1)), null);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(2)), "id2");
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(3)), null);
+		collector.flush();
+		
+		List<Object> messageIds = collector.messageIdBuffer.get(Utils.DEFAULT_STREAM_ID);
+		Assert.assertEquals(2, messageIds.size());
+		Assert.assertNull(messageIds.get(1));
+		
+		ISpout spout = mock(ISpout.class);
+		((BatchMessageId)messageIds.get(0)).ack(spout);
+		verify(spout).ack("id0");
+		verify(spout).ack("id2");
+	}
+	
+	@Test
+	public void testBatchMessageIdFanOut() {
+		final String directStream = BatchingOutputFieldsDeclarer.STREAM_PREFIX + Utils.DEFAULT_STREAM_ID;
+		
+		Grouping all = mock(Grouping.class);
+		when(new Boolean(all.is_set_all())).thenReturn(new Boolean(true));
+		Grouping direct = mock(Grouping.class);
+		when(new Boolean(direct.is_set_direct())).thenReturn(new Boolean(true));
+		
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", all);
+		HashMap<String, Grouping> directConsumer = new HashMap<String, Grouping>();
+		directConsumer.put("receiver", direct);
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		targets.put(directStream, directConsumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		when(context.getComponentOutputFields(null, directStream)).thenReturn(new Fields("a"));
+		when(context.getComponentTasks("receiver")).thenReturn(
+			Arrays.asList(new Integer[] {new Integer(0), new Integer(1)}));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 1);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(0)), "id");
+		
+		List<Object> messageIds = collector.messageIdBuffer.get(directStream);
+		Assert.assertEquals(2, messageIds.size());
+		
+		ISpout spout = mock(ISpout.class);
+		((BatchMessageId)messageIds.get(0)).ack(spout);
+		verify(spout, never()).ack("id");
+		((BatchMessageId)messageIds.get(1)).ack(spout);
+		verify(spout).ack("id");
+	}
+	
+	private static TopologyContext mockEmulatedContext(Grouping grouping, List<Integer> receiverTasks,
+		List<Integer> workerTasks) {
+		final String directStream = BatchingOutputFieldsDeclarer.STREAM_PREFIX + Utils.DEFAULT_STREAM_ID;
+		
+		Grouping direct = mock(Grouping.class);
+		when(new Boolean(direct.is_set_direct())).thenReturn(new Boolean(true));
+		
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", grouping);
+		HashMap<String, Grouping> directConsumer = new HashMap<String, Grouping>();
+		directConsumer.put("receiver", direct);
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		targets.put(directStream, directConsumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		when(context.getComponentOutputFields(null, directStream)).thenReturn(new Fields("a"));
+		when(context.getComponentTasks("receiver")).thenReturn(receiverTasks);
+		when(context.getThisWorkerTasks()).thenReturn(workerTasks);
+		return context;
+	}
+	
+	@Test
+	public void testLocalOrShuffleGrouping() {
+		final String directStream = BatchingOutputFieldsDeclarer.STREAM_PREFIX + Utils.DEFAULT_STREAM_ID;
+		
+		Grouping localOrShuffle = mock(Grouping.class);
+		when(new Boolean(localOrShuffle.is_set_local_or_shuffle())).thenReturn(new Boolean(true));
+		
+		TopologyContext context = mockEmulatedContext(localOrShuffle,
+			Arrays.asList(new Integer[] {new Integer(0), new Integer(1), new Integer(2)}),
+			Arrays.asList(new Integer[] {new Integer(1), new Integer(5)}));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 2);
+		for(int i = 0; i < 6; ++i) {
+			collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(i)), null);
+		}
+		
+		Assert.assertEquals(Arrays.asList(new Integer[] {new Integer(1), new Integer(1), new Integer(1)}),
+			collector.taskBuffer.get(directStream));
+		
+		// no local receiver task
+		context = mockEmulatedContext(localOrShuffle, Arrays.asList(new Integer[] {new Integer(0), new Integer(1)}),
+			Arrays.asList(new Integer[] {new Integer(5)}));
+		collector = new TestBatchCollector(context, 2);
+		for(int i = 0; i < 4; ++i) {
+			collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(i)), null);
+		}
+		
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(new Integer[] {new Integer(0), new Integer(1)})),
+			new HashSet<Integer>(collector.taskBuffer.get(directStream)));
+	}
+	
+	@Test
+	public void testLocalBypass() {
+		final String directStream = BatchingOutputFieldsDeclarer.STREAM_PREFIX + Utils.DEFAULT_STREAM_ID;
+		
+		Grouping all = mock(Grouping.class);
+		when(new Boolean(all.is_set_all())).thenReturn(new Boolean(true));
+		TopologyContext context = mockEmulatedContext(all,
+			Arrays.asList(new Integer[] {new Integer(0), new Integer(1)}),
+			Arrays.asList(new Integer[] {new Integer(1)}));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 2);
+		collector.setLocalBypass(true);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(0)), "id0");
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(1)), "id1");
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(2)), null);
+		
+		// local task 1 gets single tuples; remote task 0 gets a batch
+		Assert.assertEquals(Arrays.asList(new Integer[] {new Integer(1), new Integer(1), new Integer(0),
+			new Integer(1)}), collector.taskBuffer.get(directStream));
+		List<Object> result = collector.resultBuffer.get(directStream);
+		Assert.assertEquals(new Values(new Integer(0)), result.get(0));
+		Assert.assertEquals(new Values(new Integer(1)), result.get(1));
+		Assert.assertEquals(2, ((Batch)result.get(2)).get(0).size());
+		Assert.assertEquals(new Values(new Integer(2)), result.get(3));
+		
+		// each tuple is acked after its single tuple and its batch got acked
+		List<Object> messageIds = collector.messageIdBuffer.get(directStream);
+		ISpout spout = mock(ISpout.class);
+		((BatchMessageId)messageIds.get(2)).ack(spout);
+		verify(spout, never()).ack("id0");
+		((BatchMessageId)messageIds.get(0)).ack(spout);
+		verify(spout).ack("id0");
+		verify(spout, never()).ack("id1");
+		Assert.assertNull(messageIds.get(3));
+		
+		// shuffle-grouping
+		TopologyContext shuffleContext = mockEmulatedContext(mock(Grouping.class),
+			Arrays.asList(new Integer[] {new Integer(0), new Integer(1)}),
+			Arrays.asList(new Integer[] {new Integer(0)}));
+		TestBatchCollector shuffleCollector = new TestBatchCollector(shuffleContext, 2);
+		shuffleCollector.setLocalBypass(true);
+		for(int i = 0; i < 4; ++i) {
+			shuffleCollector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(i)), null);
+		}
+		int batches = 0;
+		int tuples = 0;
+		for(Object tupleOrBatch : shuffleCollector.resultBuffer.get(directStream)) {
+			if(tupleOrBatch instanceof Batch) {
+				++batches;
+			} else {
+				++tuples;
+			}
+		}
+		Assert.assertEquals(1, batches);
+		Assert.assertEquals(2, tuples);
+		
+		// disabled bypass
+		collector = new TestBatchCollector(context, 2);
+		collector.setLocalBypass(true);
+		collector.setLocalBypass(false);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(0)), null);
+		Assert.assertNull(collector.resultBuffer.get(directStream));
+	}
+	
+	@Test
+	public void testCompression() {
+		final String otherStream = "other";
+		
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		targets.put(otherStream, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a", "b"));
+		when(context.getComponentOutputFields(null, otherStream)).thenReturn(new Fields("a"));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 1);
+		collector.setCompression(Utils.DEFAULT_STREAM_ID, CompressionCodec.LZF, 512);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(0), "a"), null);
+		collector.tupleEmit(otherStream, null, new Values(new Integer(0)), null);
+		
+		Batch batch = (Batch)collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(0);
+		for(int i = 0; i < 2; ++i) {
+			Assert.assertSame(CompressionCodec.LZF, batch.get(i).getCompressionCodec());
+			Assert.assertEquals(512, batch.get(i).getCompressionThreshold());
+		}
+		Assert.assertNull(((Batch)collector.resultBuffer.get(otherStream).get(0)).get(0).getCompressionCodec());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testCompressionNegativeThreshold() {
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(new HashMap<String, Map<String, Grouping>>());
+		
+		new TestBatchCollector(context, 1).setCompression(Utils.DEFAULT_STREAM_ID, CompressionCodec.LZF, -1);
+	}
+	
+	@Test
+	public void testBroadcastBatch() {
+		final String directStream = BatchingOutputFieldsDeclarer.STREAM_PREFIX + Utils.DEFAULT_STREAM_ID;
+		
+		Grouping all = mock(Grouping.class);
+		when(new Boolean(all.is_set_all())).thenReturn(new Boolean(true));
+		Grouping direct = mock(Grouping.class);
+		when(new Boolean(direct.is_set_direct())).thenReturn(new Boolean(true));
+		
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", all);
+		HashMap<String, Grouping> directConsumer = new HashMap<String, Grouping>();
+		directConsumer.put("receiver", direct);
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		targets.put(directStream, directConsumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		when(context.getComponentOutputFields(null, directStream)).thenReturn(new Fields("a"));
+		when(context.getComponentTasks("receiver")).thenReturn(
+			Arrays.asList(new Integer[] {new Integer(4), new Integer(5), new Integer(6)}));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 2);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(0)), "id0");
+		Assert.assertNull(collector.resultBuffer.get(directStream));
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(1)), "id1");
+		
+		// a single batch is built and emitted to all receiver tasks
+		Assert.assertEquals(Arrays.asList(new Integer[] {new Integer(4), new Integer(5), new Integer(6)}),
+			collector.taskBuffer.get(directStream));
+		List<Object> result = collector.resultBuffer.get(directStream);
+		Assert.assertEquals(3, result.size());
+		Batch batch = (Batch)result.get(0);
+		Assert.assertSame(batch, result.get(1));
+		Assert.assertSame(batch, result.get(2));
+		Assert.assertEquals(2, batch.get(0).size());
+		Assert.assertTrue(batch.get(0).isSerializationCached());
+		
+		List<Object> messageIds = collector.messageIdBuffer.get(directStream);
+		Assert.assertSame(messageIds.get(0), messageIds.get(1));
+		Assert.assertSame(messageIds.get(0), messageIds.get(2));
+		
+		ISpout spout = mock(ISpout.class);
+		((BatchMessageId)messageIds.get(0)).ack(spout);
+		((BatchMessageId)messageIds.get(1)).ack(spout);
+		verify(spout, never()).ack("id0");
+		((BatchMessageId)messageIds.get(2)).ack(spout);
+		verify(spout).ack("id0");
+		verify(spout).ack("id1");
+	}
+	
+	@Test
+	public void testAnchoredBatch() {
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		
+		Tuple a1 = mock(Tuple.class);
+		Tuple a2 = mock(Tuple.class);
+		Tuple a3 = mock(Tuple.class);
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 3);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, Arrays.asList(a1), new Values(new Integer(0)), null);
+		Assert.assertTrue(collector.deferAck(a1));
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, Arrays.asList(a1, a2), new Values(new Integer(1)), null);
+		Assert.assertFalse(collector.deferAck(a3));
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(2)), null);
+		
+		List<Collection<Tuple>> anchors = collector.anchorBuffer.get(Utils.DEFAULT_STREAM_ID);
+		Assert.assertEquals(1, anchors.size());
+		Assert.assertEquals(2, anchors.get(0).size());
+		Assert.assertTrue(anchors.get(0).contains(a1));
+		Assert.assertTrue(anchors.get(0).contains(a2));
+		
+		// a2 was not acked by the bolt
+		Assert.assertEquals(Arrays.asList(a1), collector.ackBuffer);
+		Assert.assertFalse(collector.deferAck(a2));
+		
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(3)), null);
+		collector.flush();
+		Assert.assertNull(anchors.get(1));
+	}
+	
+	@Test
+	public void testFailedAnchor() {
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		
+		Tuple a1 = mock(Tuple.class);
+		Tuple a2 = mock(Tuple.class);
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 3);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, Arrays.asList(a1), new Values(new Integer(0)), null);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, Arrays.asList(a1, a2), new Values(new Integer(1)), null);
+		
+		collector.removeFailedAnchor(a1);
+		// a failed input is not pending any longer
+		Assert.assertFalse(collector.deferAck(a1));
+		Assert.assertTrue(collector.deferAck(a2));
+		collector.removeFailedAnchor(a1);
+		
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(2)), null);
+		List<Collection<Tuple>> anchors = collector.anchorBuffer.get(Utils.DEFAULT_STREAM_ID);
+		Assert.assertEquals(1, anchors.size());
+		Assert.assertEquals(Arrays.asList(a2), new ArrayList<Tuple>(anchors.get(0)));
+		Assert.assertEquals(Arrays.asList(a2), collector.ackBuffer);
+		
+		// failing the only anchor leaves the batch unanchored
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, Arrays.asList(a1), new Values(new Integer(3)), null);
+		collector.removeFailedAnchor(a1);
+		collector.flush();
+		Assert.assertNull(anchors.get(1));
+		Assert.assertEquals(Arrays.asList(a2), collector.ackBuffer);
+	}
+	
+	@Test
+	public void testAnchoredBatchViaDirectEmit() {
+		final String directStream = BatchingOutputFieldsDeclarer.STREAM_PREFIX + Utils.DEFAULT_STREAM_ID;
+		
+		Grouping all = mock(Grouping.class);
+		when(new Boolean(all.is_set_all())).thenReturn(new Boolean(true));
+		Grouping direct = mock(Grouping.class);
+		when(new Boolean(direct.is_set_direct())).thenReturn(new Boolean(true));
+		
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", all);
+		HashMap<String, Grouping> directConsumer = new HashMap<String, Grouping>();
+		directConsumer.put("receiver", direct);
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		targets.put(directStream, directConsumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		when(context.getComponentOutputFields(null, directStream)).thenReturn(new Fields("a"));
+		when(context.getComponentTasks("receiver")).thenReturn(
+			Arrays.asList(new Integer[] {new Integer(0), new Integer(1)}));
+		
+		Tuple anchor = mock(Tuple.class);
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 2);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, Arrays.asList(anchor), new Values(new Integer(0)), null);
+		Assert.assertTrue(collector.deferAck(anchor));
+		collector.flush();
+		
+		List<Collection<Tuple>> anchors = collector.anchorBuffer.get(directStream);
+		Assert.assertEquals(2, anchors.size());
+		Assert.assertEquals(Arrays.asList(anchor), new ArrayList<Tuple>(anchors.get(0)));
+		Assert.assertEquals(Arrays.asList(anchor), new ArrayList<Tuple>(anchors.get(1)));
+		// acked only once after both batches got emitted
+		Assert.assertEquals(Arrays.asList(anchor), collector.ackBuffer);
+	}
+	
+	@Test
+	public void testMaxAnchors() {
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		
+		Tuple a1 = mock(Tuple.class);
+		Tuple a2 = mock(Tuple.class);
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 10);
+		collector.setMaxAnchors(2);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, Arrays.asList(a1), new Values(new Integer(0)), null);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, Arrays.asList(a1), new Values(new Integer(1)), null);
+		Assert.assertNull(collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID));
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, Arrays.asList(a2), new Values(new Integer(2)), null);
+		
+		List<Object> result = collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID);
+		Assert.assertEquals(1, result.size());
+		Assert.assertEquals(3, ((Batch)result.get(0)).getNumberOfTuples());
+	}
+	
+	@Test
+	public void testMaxBufferedTuples() {
+		final String directStream = "direct";
+		
+		HashMap<String, Grouping> directConsumer = new HashMap<String, Grouping>();
+		Grouping direct = mock(Grouping.class);
+		when(new Boolean(direct.is_set_direct())).thenReturn(new Boolean(true));
+		directConsumer.put("receiver", direct);
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(directStream, directConsumer);
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, directStream)).thenReturn(new Fields("a"));
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		when(context.getComponentTasks("receiver")).thenReturn(Arrays.asList(new Integer(5), new Integer(9)));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 10);
+		collector.setMaxBufferedTuples(5);
+		
+		for(int i = 0; i < 3; ++i) {
+			collector.tupleEmitDirect(5, directStream, null, new Values(new Integer(i)), null);
+		}
+		collector.tupleEmitDirect(9, directStream, null, new Values(new Integer(0)), null);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(0)), null);
+		Assert.assertEquals(5, collector.getNumberOfBufferedTuples());
+		Assert.assertNull(collector.resultBuffer.get(directStream));
+		
+		// exceeding the limit emits the largest buffers of the fullest streams until half of the limit is met
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(1)), null);
+		Assert.assertEquals(1, collector.getNumberOfBufferedTuples());
+		Assert.assertEquals(Arrays.asList(new Integer(5)), collector.taskBuffer.get(directStream));
+		Assert.assertEquals(3, ((Batch)collector.resultBuffer.get(directStream).get(0)).getNumberOfTuples());
+		Assert.assertEquals(1, collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).size());
+		Assert.assertEquals(2, ((Batch)collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(0)).getNumberOfTuples());
+		
+		// no further flushing until the limit is exceeded again
+		for(int i = 0; i < 4; ++i) {
+			collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(i)), null);
+		}
+		Assert.assertEquals(5, collector.getNumberOfBufferedTuples());
+		Assert.assertEquals(1, collector.resultBuffer.get(directStream).size());
+		Assert.assertEquals(1, collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).size());
+		
+		collector.setStatisticsEnabled(true);
+		List<Values> report = collector.reportStatistics(0);
+		Assert.assertTrue(report.contains(new Values(new Long(0), Utils.DEFAULT_STREAM_ID, "bufferedTuples",
+			new Double(4))));
+		Assert.assertTrue(report.contains(new Values(new Long(0), directStream, "bufferedTuples", new Double(1))));
+		
+		collector.flush();
+		Assert.assertEquals(0, collector.getNumberOfBufferedTuples());
+		report = collector.reportStatistics(1);
+		Assert.assertTrue(report.contains(new Values(new Long(1), directStream, "bufferedTuples", new Double(0))));
+	}
+	
+	@Test
+	public void testStatistics() {
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 4);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(0)), null);
+		collector.flush();
+		Assert.assertTrue(collector.getStatistics().isEmpty());
+		Assert.assertTrue(collector.reportStatistics(0).isEmpty());
+		
+		collector.setStatisticsEnabled(true);
+		for(int i = 0; i < 5; ++i) {
+			collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(i)), null);
+		}
+		collector.setMaxBufferedTuples(1);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(5)), null);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(6)), null);
+		collector.flush();
+		
+		BatchStatistics statistics = collector.getStatistics().get(Utils.DEFAULT_STREAM_ID);
+		Assert.assertEquals(3, statistics.getNumberOfBatches());
+		Assert.assertEquals(7, statistics.getNumberOfTuples());
+		Assert.assertEquals(7.0 / 12, statistics.getFillRatio(), 0.0001);
+		Assert.assertEquals(1, statistics.getNumberOfFlushes(FlushCause.FULL));
+		Assert.assertEquals(1, statistics.getNumberOfFlushes(FlushCause.BUFFER_LIMIT));
+		Assert.assertEquals(1, statistics.getNumberOfFlushes(FlushCause.FLUSH));
+		Assert.assertEquals(0, statistics.getNumberOfFlushes(FlushCause.LINGER));
+		
+		List<Values> report = collector.reportStatistics(42);
+		Assert.assertEquals(new Values(new Long(42), Utils.DEFAULT_STREAM_ID, "batches", new Double(3)), report.get(0));
+		Assert.assertEquals(0, statistics.getNumberOfBatches());
+		
+		// the time in buffer is measured with the collector's clock
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(7)), null);
+		collector.clockOffset = 60000;
+		collector.flush();
+		Assert.assertEquals(1, statistics.getTimeInBufferHistogram()[BatchStatistics.getBucket(60000)]);
+	}
+	
+	@Test
+	public void testTimestampIndex() {
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a", "ts"));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 3);
+		collector.setTimestampIndex(Utils.DEFAULT_STREAM_ID, 1);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values("x", new Long(8)), null);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values("y", new Long(2)), null);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values("z", new Long(5)), null);
+		
+		Batch emitted = (Batch)collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(0);
+		Assert.assertTrue(emitted.hasTimestampRange());
+		Assert.assertEquals(2, emitted.getMinTimestamp());
+		Assert.assertEquals(8, emitted.getMaxTimestamp());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testTimestampIndexOutOfRange() {
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		
+		new TestBatchCollector(context, 3).setTimestampIndex(Utils.DEFAULT_STREAM_ID, 1);
+	}
+	
+	@Test
+	public void testTuplesEmit() {
+		final String unbatchedStream = "unbatched";
+		
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		Grouping fields = mock(Grouping.class);
+		when(new Boolean(fields.is_set_fields())).thenReturn(new Boolean(true));
+		when(fields.get_fields()).thenReturn(Arrays.asList(new String[] {"a"}));
+		consumer.put("receiver", fields);
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		targets.put(unbatchedStream, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a", "b"));
+		when(context.getComponentTasks("receiver")).thenReturn(
+			Arrays.asList(new Integer[] {new Integer(0), new Integer(1)}));
+		
+		HashMap<String, Integer> batchSizes = new HashMap<String, Integer>();
+		batchSizes.put(Utils.DEFAULT_STREAM_ID, new Integer(2));
+		TestBatchCollector collector = new TestBatchCollector(context, batchSizes);
+		TestBatchCollector expectedCollector = new TestBatchCollector(context, batchSizes);
+		
+		List<Values> tuples = new ArrayList<Values>();
+		for(int i = 0; i < 10; ++i) {
+			tuples.add(new Values(new Integer(i % 3), new Integer(i)));
+		}
+		collector.tuplesEmit(Utils.DEFAULT_STREAM_ID, null, tuples);
+		for(Values t : tuples) {
+			expectedCollector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, t, null);
+		}
+		Assert.assertEquals(expectedCollector.resultBuffer, collector.resultBuffer);
+		Assert.assertEquals(expectedCollector.getNumberOfBufferedTuples(), collector.getNumberOfBufferedTuples());
+		
+		collector.flush();
+		expectedCollector.flush();
+		Assert.assertEquals(expectedCollector.resultBuffer, collector.resultBuffer);
+		
+		collector.tuplesEmit(unbatchedStream, null, tuples);
+		Assert.assertEquals(tuples, collector.resultBuffer.get(unbatchedStream));
+	}
+	
+	@Test
+	public void testPunctuationStream() {
+		final String punctuationStream = "punctuation";
+		
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		targets.put(punctuationStream, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		when(context.getComponentOutputFields(null, punctuationStream)).thenReturn(new Fields("ts"));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 3);
+		collector.setPunctuationStream(punctuationStream);
+		collector.setStatisticsEnabled(true);
+		
+		// no buffered tuples
+		Values punctuation = new Values(new Long(0));
+		collector.tupleEmit(punctuationStream, null, punctuation, null);
+		Assert.assertNull(collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID));
+		Assert.assertEquals(Arrays.asList(punctuation), collector.resultBuffer.get(punctuationStream));
+		
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(0)), null);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(1)), null);
+		Assert.assertNull(collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID));
+		
+		punctuation = new Values(new Long(1));
+		collector.tupleEmit(punctuationStream, null, punctuation, null);
+		Assert.assertEquals(0, collector.getNumberOfBufferedTuples());
+		Assert.assertEquals(1, collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).size());
+		Assert.assertEquals(2, ((Batch)collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(0)).getNumberOfTuples());
+		Assert.assertSame(punctuation, collector.resultBuffer.get(punctuationStream).get(1));
+		
+		BatchStatistics statistics = collector.getStatistics().get(Utils.DEFAULT_STREAM_ID);
+		Assert.assertEquals(1, statistics.getNumberOfFlushes(FlushCause.PUNCTUATION));
+		Assert.assertNull(collector.getStatistics().get(punctuationStream));
+	}
+	
+	@Test
+	public void testSharedOutputBuffers() {
+		final String[] receiverIds = new String[] {"a", "b", "c", "d", "e"};
+		final Fields schema = new Fields("x", "y");
+		
+		Grouping byX = mock(Grouping.class);
+		when(new Boolean(byX.is_set_fields())).thenReturn(new Boolean(true));
+		when(byX.get_fields()).thenReturn(Arrays.asList("x"));
+		Grouping byY = mock(Grouping.class);
+		when(new Boolean(byY.is_set_fields())).thenReturn(new Boolean(true));
+		when(byY.get_fields()).thenReturn(Arrays.asList("y"));
+		Grouping global = mock(Grouping.class);
+		when(new Boolean(global.is_set_fields())).thenReturn(new Boolean(true));
+		when(global.get_fields()).thenReturn(new ArrayList<String>());
+		
+		HashMap<String, Grouping> consumers = new HashMap<String, Grouping>();
+		consumers.put(receiverIds[0], byX);
+		consumers.put(receiverIds[1], byX);
+		consumers.put(receiverIds[2], byX);
+		consumers.put(receiverIds[3], byY);
+		consumers.put(receiverIds[4], global);
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumers);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(schema);
+		// a and b have the same dop and share buffers; c has a different dop
+		when(context.getComponentTasks(receiverIds[0])).thenReturn(Arrays.asList(new Integer(0), new Integer(1)));
+		when(context.getComponentTasks(receiverIds[1])).thenReturn(Arrays.asList(new Integer(2), new Integer(3)));
+		when(context.getComponentTasks(receiverIds[2])).thenReturn(
+			Arrays.asList(new Integer(4), new Integer(5), new Integer(6)));
+		when(context.getComponentTasks(receiverIds[3])).thenReturn(Arrays.asList(new Integer(7), new Integer(8)));
+		when(context.getComponentTasks(receiverIds[4])).thenReturn(Arrays.asList(new Integer(9), new Integer(10)));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 2);
+		
+		@SuppressWarnings("unchecked")
+		Map<String, StreamRoute> routes = (Map<String, StreamRoute>)Whitebox.getInternalState(collector, "routes");
+		Assert.assertEquals(2 * 3 * 2, routes.get(Utils.DEFAULT_STREAM_ID).buffers.length);
+		Assert.assertEquals(3, routes.get(Utils.DEFAULT_STREAM_ID).partitioners.length);
+		
+		// all tuples with equal values are routed to the same buffer
+		for(int i = 0; i < 4; ++i) {
+			collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(42), "v"), null);
+		}
+		Assert.assertEquals(2, collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).size());
+	}
+	
+	@Test
+	public void testEmitSparseDirectReceiverTasks() {
+		final String directStream = "direct";
+		
+		HashMap<String, Grouping> directConsumer = new HashMap<String, Grouping>();
+		Grouping direct = mock(Grouping.class);
+		when(new Boolean(direct.is_set_direct())).thenReturn(new Boolean(true));
+		directConsumer.put("receiver1", direct);
+		directConsumer.put("receiver2", direct);
+		
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(directStream, directConsumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, directStream)).thenReturn(new Fields("a"));
+		when(context.getComponentTasks("receiver1")).thenReturn(Arrays.asList(new Integer[] {new Integer(5)}));
+		when(context.getComponentTasks("receiver2")).thenReturn(
+			Arrays.asList(new Integer[] {new Integer(9), new Integer(10)}));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 2);
+		
+		for(int i = 0; i < 2; ++i) {
+			// stream IDs are compared by value
+			collector.tupleEmitDirect(5, new String(directStream), null, new Values(new Integer(i)), null);
+			collector.tupleEmitDirect(10, directStream, null, new Values(new Integer(i)), null);
+			// not a receiver task
+			collector.tupleEmitDirect(7, directStream, null, new Values(new Integer(i)), null);
+			collector.tupleEmitDirect(11, directStream, null, new Values(new Integer(i)), null);
+		}
+		
+		Assert.assertEquals(Arrays.asList(new Integer[] {new Integer(5), new Integer(10)}),
+			collector.taskBuffer.get(directStream));
+		Assert.assertEquals(2, collector.resultBuffer.get(directStream).size());
+		
+		collector.tupleEmitDirect(9, directStream, null, new Values(new Integer(0)), null);
+		collector.flush();
+		Assert.assertEquals(Arrays.asList(new Integer[] {new Integer(5), new Integer(10), new Integer(9)}),
+			collector.taskBuffer.get(directStream));
+	}
+	
+	@Test
+	public void testBatchRecycling() {
+		final String directStream = "direct";
+		
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		
+		HashMap<String, Grouping> directConsumer = new HashMap<String, Grouping>();
+		Grouping direct = mock(Grouping.class);
+		when(new Boolean(direct.is_set_direct())).thenReturn(new Boolean(true));
+		directConsumer.put("directReceiver", direct);
+		
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		targets.put(directStream, directConsumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a", "b"));
+		when(context.getComponentOutputFields(null, directStream)).thenReturn(new Fields("a", "b"));
+		when(context.getComponentTasks("directReceiver")).thenReturn(Arrays.asList(new Integer[] {new Integer(0)}));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 2);
+		collector.receiverTaskIds = Arrays.asList(new Integer[] {new Integer(0), new Integer(1)});
+		collector.setBatchRecycling(true);
+		
+		for(int i = 0; i < 2; ++i) {
+			collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(i), "v"), null);
+			collector.tupleEmitDirect(0, directStream, null, new Values(new Integer(i), "v"), null);
+		}
+		
+		Batch emitted = (Batch)collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(0);
+		Batch emittedDirect = (Batch)collector.resultBuffer.get(directStream).get(0);
+		
+		// released by first receiver task only
+		emitted.get(0).release();
+		emitted.get(1).release();
+		for(int i = 2; i < 4; ++i) {
+			collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(i), "v"), null);
+		}
+		Assert.assertNotSame(emitted, collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(1));
+		
+		// released by both receiver tasks
+		emitted.get(0).release();
+		emitted.get(1).release();
+		emittedDirect.get(0).release();
+		emittedDirect.get(1).release();
+		
+		// the buffer that was allocated after the first emit is emitted now; the recycled batch is used afterwards
+		for(int i = 4; i < 6; ++i) {
+			collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(i), "v"), null);
+			collector.tupleEmitDirect(0, directStream, null, new Values(new Integer(i), "v"), null);
+		}
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(6), "v"), null);
+		collector.tupleEmitDirect(0, directStream, null, new Values(new Integer(6), "v"), null);
+		collector.flush();
+		
+		Assert.assertSame(emitted, collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(3));
+		Assert.assertEquals(new Values(new Integer(6)), emitted.get(0));
+		Assert.assertEquals(new Values("v"), emitted.get(1));
+		Assert.assertSame(emittedDirect, collector.resultBuffer.get(directStream).get(2));
+		Assert.assertEquals(new Values(new Integer(6)), emittedDirect.get(0));
+	}
+	
+	@Test
+	public void testNoBatchRecyclingIfDeliveriesUnknown() {
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a"));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 1);
+		collector.setBatchRecycling(true);
+		
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(0)), null);
+		Batch emitted = (Batch)collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(0);
+		emitted.get(0).release();
+		
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(1)), null);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values(new Integer(2)), null);
+		
+		Assert.assertNotSame(emitted, collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(2));
+		Assert.assertEquals(new Values(new Integer(0)), emitted.get(0));
+	}
+	
 	@Test
 	public void testKryoRegistrations() {
 		Config stormConfig = mock(Config.class);
 		AbstractBatchCollector.registerKryoClasses(stormConfig);
 		
+		verify(stormConfig).registerSerialization(Batch.class, BatchSerializer.class);
+		verify(stormConfig).registerSerialization(BatchColumn.class, BatchColumnSerializer.class);
+		verify(stormConfig).registerSerialization(LongBatchColumn.class, BatchColumnSerializer.class);
+		verify(stormConfig).registerSerialization(IntBatchColumn.class, BatchColumnSerializer.class);
+		verify(stormConfig).registerSerialization(ShortBatchColumn.class, BatchColumnSerializer.class);
+		verify(stormConfig).registerSerialization(DoubleBatchColumn.class, BatchColumnSerializer.class);
+		verify(stormConfig).registerSerialization(StringBatchColumn.class, BatchColumnSerializer.class);
+	}
+	
+	@Test
+	public void testKryoRegistrationsDefaultSerializers() {
+		Config stormConfig = mock(Config.class);
+		AbstractBatchCollector.registerKryoClasses(stormConfig, false);
+		
 		verify(stormConfig).registerSerialization(Batch.class);
 		verify(stormConfig).registerSerialization(BatchColumn.class);
+		verify(stormConfig).registerSerialization(LongBatchColumn.class);
+		verify(stormConfig).registerSerialization(IntBatchColumn.class);
+		verify(stormConfig).registerSerialization(ShortBatchColumn.class);
+		verify(stormConfig).registerSerialization(DoubleBatchColumn.class);
+		verify(stormConfig).registerSerialization(StringBatchColumn.class);
+	}
+	
+	@Test
+	public void testProjection() {
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver1", mock(Grouping.class));
+		consumer.put("receiver2", mock(Grouping.class));
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		final String key = AbstractBatchCollector.getProjectionConfigKey(null, Utils.DEFAULT_STREAM_ID);
+		Map<String, Bolt> bolts = new HashMap<String, Bolt>();
+		bolts.put("receiver1", new Bolt(null, new ComponentCommon()));
+		bolts.get("receiver1").get_common().set_json_conf("{\"" + key + "\":[\"b\"]}");
+		bolts.put("receiver2", new Bolt(null, new ComponentCommon()));
+		bolts.get("receiver2").get_common().set_json_conf("{\"" + key + "\":[\"c\"]}");
+		StormTopology topology = mock(StormTopology.class);
+		when(topology.get_bolts()).thenReturn(bolts);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getRawTopology()).thenReturn(topology);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(
+			new Fields("a", "b", "c", "d"));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 2);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values("a0", "b0", "c0", "d0"), null);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values("a1", "b1", "c1", "d1"), null);
+		
+		List<?> emitted = (List<?>)collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(0);
+		Assert.assertEquals(4, emitted.size());
+		Assert.assertNull(emitted.get(0));
+		Assert.assertEquals(Arrays.asList("b0", "b1"), emitted.get(1));
+		Assert.assertEquals(Arrays.asList("c0", "c1"), emitted.get(2));
+		Assert.assertNull(emitted.get(3));
+	}
+	
+	@Test
+	public void testProjectionFieldsGrouping() {
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", Grouping.fields(Arrays.asList("a")));
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		Map<String, Bolt> bolts = new HashMap<String, Bolt>();
+		bolts.put("receiver", new Bolt(null, new ComponentCommon()));
+		bolts.get("receiver").get_common().set_json_conf(
+			"{\"" + AbstractBatchCollector.getProjectionConfigKey(null, Utils.DEFAULT_STREAM_ID) + "\":[\"b\"]}");
+		StormTopology topology = mock(StormTopology.class);
+		when(topology.get_bolts()).thenReturn(bolts);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getRawTopology()).thenReturn(topology);
+		when(context.getComponentTasks("receiver")).thenReturn(Arrays.asList(new Integer(0)));
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a", "b", "c"));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 2);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values("a0", "b0", "c0"), null);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values("a1", "b1", "c1"), null);
+		
+		// the grouping attribute "a" is not read by the receiver, but Storm needs it to partition the batch
+		List<?> emitted = (List<?>)collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(0);
+		Assert.assertEquals(3, emitted.size());
+		Assert.assertEquals(Arrays.asList("a0", "a1"), emitted.get(0));
+		Assert.assertEquals(Arrays.asList("b0", "b1"), emitted.get(1));
+		Assert.assertNull(emitted.get(2));
+	}
+	
+	@Test
+	public void testProjectionAllAttributes() {
+		HashMap<String, Grouping> consumer = new HashMap<String, Grouping>();
+		consumer.put("receiver", mock(Grouping.class));
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, consumer);
+		
+		Map<String, Bolt> bolts = new HashMap<String, Bolt>();
+		bolts.put("receiver", new Bolt(null, new ComponentCommon()));
+		bolts.get("receiver").get_common().set_json_conf(
+			"{\"" + AbstractBatchCollector.getProjectionConfigKey(null, Utils.DEFAULT_STREAM_ID) + "\":[\"b\",\"a\"]}");
+		StormTopology topology = mock(StormTopology.class);
+		when(topology.get_bolts()).thenReturn(bolts);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getRawTopology()).thenReturn(topology);
+		when(context.getComponentOutputFields(null, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("a", "b"));
+		
+		TestBatchCollector collector = new TestBatchCollector(context, 1);
+		collector.tupleEmit(Utils.DEFAULT_STREAM_ID, null, new Values("a0", "b0"), null);
+		
+		Assert.assertTrue(collector.resultBuffer.get(Utils.DEFAULT_STREAM_ID).get(0) instanceof Batch);
 	}
 	
 }
@@ -0,0 +1,101 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+
+
+
+/**
+ * @author Matthias J. Sax
+ */
+public class AdaptiveBatchSizeControllerTest {
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMinBatchSize() {
+		new AdaptiveBatchSizeController(0, 10, 100);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaxBatchSize() {
+		new AdaptiveBatchSizeController(10, 9, 100);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidTargetLatency() {
+		new AdaptiveBatchSizeController(1, 10, 0);
+	}
+	
+	@Test
+	public void testGrow() {
+		AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController(1, 1000, 100);
+		
+		// 10 tuples per ms -> 1000 tuples within target latency; limited to factor 2 per step
+		Assert.assertEquals(20, controller.computeBatchSize("stream", 10, 10, 1));
+	}
+	
+	@Test
+	public void testShrink() {
+		AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController(1, 1000, 100);
+		
+		// 0.1 tuples per ms -> 10 tuples within target latency; limited to factor 2 per step
+		Assert.assertEquals(50, controller.computeBatchSize("stream", 100, 100, 1000));
+	}
+	
+	@Test
+	public void testBounds() {
+		AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController(8, 15, 100);
+		
+		Assert.assertEquals(15, controller.computeBatchSize("stream-1", 10, 10, 1));
+		Assert.assertEquals(8, controller.computeBatchSize("stream-2", 10, 10, 1000));
+	}
+	
+	@Test
+	public void testStable() {
+		AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController(1, 1000, 100);
+		
+		Assert.assertEquals(100, controller.computeBatchSize("stream", 100, 100, 100));
+		Assert.assertEquals(100, controller.computeBatchSize("stream", 100, 100, 105));
+	}
+	
+	@Test
+	public void testConverge() {
+		AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController(1, 10000, 50);
+		
+		// constant rate of 4 tuples per ms -> 200 tuples within target latency
+		int batchSize = 1;
+		for(int i = 0; i < 50; ++i) {
+			batchSize = controller.computeBatchSize("stream", batchSize, batchSize, batchSize / 4);
+		}
+		Assert.assertTrue(Math.abs(batchSize - 200) <= 20);
+	}
+	
+	@Test
+	public void testStreamsAreIndependent() {
+		AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController(1, 1000, 100);
+		
+		Assert.assertEquals(20, controller.computeBatchSize("stream-1", 10, 10, 1));
+		Assert.assertEquals(5, controller.computeBatchSize("stream-2", 10, 10, 1000));
+		Assert.assertEquals(40, controller.computeBatchSize("stream-1", 20, 20, 1));
+	}
+	
+}
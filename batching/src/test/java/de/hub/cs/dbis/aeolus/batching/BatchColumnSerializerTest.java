@@ -0,0 +1,295 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import backtype.storm.Config;
+import backtype.storm.serialization.SerializationFactory;
+import backtype.storm.tuple.Values;
+import backtype.storm.utils.Utils;
+
+
+
+
+
+/**
+ * @author Matthias J. Sax
+ */
+public class BatchColumnSerializerTest {
+	private long seed;
+	private Random r;
+	
+	
+	@Before
+	public void prepare() {
+		this.seed = System.currentTimeMillis();
+		this.r = new Random(this.seed);
+		System.out.println("Test seed: " + this.seed);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Kryo getKryo(boolean useCustomSerializers) {
+		Config conf = new Config();
+		conf.putAll(Utils.readDefaultConfig());
+		AbstractBatchCollector.registerKryoClasses(conf, useCustomSerializers);
+		return SerializationFactory.getKryo(conf);
+	}
+	
+	private static byte[] serialize(Kryo kryo, Object object) {
+		Output output = new Output(1024, -1);
+		kryo.writeClassAndObject(output, object);
+		return output.toBytes();
+	}
+	
+	private static void assertRoundTrip(BatchColumn column) {
+		Kryo kryo = getKryo(true);
+		Object result = kryo.readClassAndObject(new Input(serialize(kryo, column)));
+		
+		Assert.assertSame(column.getClass(), result.getClass());
+		Assert.assertEquals(column, result);
+	}
+	
+	@Test
+	public void testEmptyColumns() {
+		assertRoundTrip(new BatchColumn());
+		assertRoundTrip(new LongBatchColumn());
+		assertRoundTrip(new IntBatchColumn());
+		assertRoundTrip(new ShortBatchColumn());
+		assertRoundTrip(new DoubleBatchColumn());
+		assertRoundTrip(new StringBatchColumn());
+	}
+	
+	@Test
+	public void testLongColumn() {
+		LongBatchColumn small = new LongBatchColumn(100);
+		LongBatchColumn large = new LongBatchColumn(100);
+		for(int i = 0; i < 100; ++i) {
+			small.addLong(this.r.nextInt(200) - 100);
+			large.addLong(this.r.nextLong());
+		}
+		large.addLong(Long.MIN_VALUE);
+		large.addLong(Long.MAX_VALUE);
+		
+		assertRoundTrip(small);
+		assertRoundTrip(large);
+	}
+	
+	@Test
+	public void testIntColumn() {
+		IntBatchColumn small = new IntBatchColumn(100);
+		IntBatchColumn large = new IntBatchColumn(100);
+		for(int i = 0; i < 100; ++i) {
+			small.addInt(this.r.nextInt(200) - 100);
+			large.addInt(this.r.nextInt());
+		}
+		large.addInt(Integer.MIN_VALUE);
+		large.addInt(Integer.MAX_VALUE);
+		
+		assertRoundTrip(small);
+		assertRoundTrip(large);
+	}
+	
+	@Test
+	public void testShortColumn() {
+		ShortBatchColumn small = new ShortBatchColumn(100);
+		ShortBatchColumn large = new ShortBatchColumn(100);
+		for(int i = 0; i < 100; ++i) {
+			small.addShort((short)(this.r.nextInt(100) - 50));
+			large.addShort((short)this.r.nextInt());
+		}
+		large.addShort(Short.MIN_VALUE);
+		large.addShort(Short.MAX_VALUE);
+		
+		assertRoundTrip(small);
+		assertRoundTrip(large);
+	}
+	
+	@Test
+	public void testDoubleColumn() {
+		DoubleBatchColumn column = new DoubleBatchColumn(100);
+		for(int i = 0; i < 100; ++i) {
+			column.addDouble(this.r.nextDouble());
+		}
+		
+		assertRoundTrip(column);
+	}
+	
+	@Test
+	public void testStringColumn() {
+		StringBatchColumn column = new StringBatchColumn(100);
+		for(int i = 0; i < 100; ++i) {
+			column.addString("value-" + this.r.nextInt(10));
+		}
+		
+		assertRoundTrip(column);
+	}
+	
+	@Test
+	public void testGenericColumn() {
+		BatchColumn uniform = new BatchColumn(100);
+		BatchColumn mixed = new BatchColumn(100);
+		for(int i = 0; i < 100; ++i) {
+			uniform.add(new Character((char)(this.r.nextInt(26) + 'a')));
+			mixed.add(this.r.nextBoolean() ? new Integer(this.r.nextInt()) : "" + this.r.nextInt());
+		}
+		mixed.add(null);
+		
+		assertRoundTrip(uniform);
+		assertRoundTrip(mixed);
+	}
+	
+	@Test
+	public void testCachedSerialization() {
+		LongBatchColumn column = new LongBatchColumn(100);
+		for(int i = 0; i < 100; ++i) {
+			column.addLong(this.r.nextLong());
+		}
+		Kryo kryo = getKryo(true);
+		final byte[] uncached = serialize(kryo, column);
+		Assert.assertNull(column.getSerializedValues());
+		
+		column.setSerializationCache(true);
+		final byte[] first = serialize(kryo, column);
+		final byte[] values = column.getSerializedValues();
+		Assert.assertNotNull(values);
+		final byte[] second = serialize(kryo, column);
+		Assert.assertSame(values, column.getSerializedValues());
+		
+		Assert.assertArrayEquals(uncached, first);
+		Assert.assertArrayEquals(uncached, second);
+		Assert.assertEquals(column, kryo.readClassAndObject(new Input(second)));
+		
+		// generic columns are never cached
+		BatchColumn generic = new BatchColumn(2);
+		generic.add("a");
+		generic.setSerializationCache(true);
+		serialize(kryo, generic);
+		Assert.assertNull(generic.getSerializedValues());
+	}
+	
+	@Test
+	public void testCompressedSerialization() {
+		StringBatchColumn column = new StringBatchColumn(1000);
+		for(int i = 0; i < 1000; ++i) {
+			column.addString("0," + i + ",42,60,0,1,0," + this.r.nextInt(100) + ",-1,-1,-1,-1,-1,-1");
+		}
+		Kryo kryo = getKryo(true);
+		final int uncompressedSize = serialize(kryo, column).length;
+		
+		for(CompressionCodec codec : CompressionCodec.values()) {
+			column.setCompression(codec, 1024);
+			final byte[] compressed = serialize(kryo, column);
+			Assert.assertTrue(compressed.length < uncompressedSize / 2);
+			Assert.assertEquals(column, kryo.readClassAndObject(new Input(compressed)));
+			
+			// below threshold
+			column.setCompression(codec, uncompressedSize);
+			Assert.assertEquals(uncompressedSize, serialize(kryo, column).length);
+		}
+		
+		// compression and cached serialization
+		column.setCompression(CompressionCodec.LZF, 0);
+		column.setSerializationCache(true);
+		final byte[] first = serialize(kryo, column);
+		Assert.assertArrayEquals(first, serialize(kryo, column));
+		Assert.assertEquals(column, kryo.readClassAndObject(new Input(first)));
+		
+		// generic columns
+		BatchColumn generic = new BatchColumn(100);
+		for(int i = 0; i < 100; ++i) {
+			generic.add(new Character('x'));
+		}
+		generic.setCompression(CompressionCodec.DEFLATE, 0);
+		Assert.assertEquals(generic, kryo.readClassAndObject(new Input(serialize(kryo, generic))));
+		
+		// incompressible values are not compressed
+		LongBatchColumn random = new LongBatchColumn(100);
+		for(int i = 0; i < 100; ++i) {
+			random.addLong(this.r.nextLong());
+		}
+		final int randomSize = serialize(kryo, random).length;
+		random.setCompression(CompressionCodec.LZF, 0);
+		Assert.assertEquals(randomSize, serialize(kryo, random).length);
+	}
+	
+	@Test
+	public void testTimestampRange() {
+		Kryo kryo = getKryo(true);
+		
+		LongBatchColumn column = new LongBatchColumn(100);
+		for(int i = 0; i < 100; ++i) {
+			final long ts = this.r.nextInt(1000) - 500;
+			column.addLong(ts);
+			column.addTimestamp(ts);
+		}
+		BatchColumn result = (BatchColumn)kryo.readClassAndObject(new Input(serialize(kryo, column)));
+		Assert.assertEquals(column, result);
+		Assert.assertTrue(result.hasTimestampRange());
+		Assert.assertEquals(column.getMinTimestamp(), result.getMinTimestamp());
+		Assert.assertEquals(column.getMaxTimestamp(), result.getMaxTimestamp());
+		
+		// compression and cached serialization
+		column.setCompression(CompressionCodec.DEFLATE, 0);
+		column.setSerializationCache(true);
+		result = (BatchColumn)kryo.readClassAndObject(new Input(serialize(kryo, column)));
+		Assert.assertEquals(column, result);
+		Assert.assertEquals(column.getMinTimestamp(), result.getMinTimestamp());
+		Assert.assertEquals(column.getMaxTimestamp(), result.getMaxTimestamp());
+		
+		// generic columns
+		BatchColumn generic = new BatchColumn(2);
+		generic.add(new Long(42));
+		generic.addTimestamp(42);
+		result = (BatchColumn)kryo.readClassAndObject(new Input(serialize(kryo, generic)));
+		Assert.assertEquals(generic, result);
+		Assert.assertEquals(42, result.getMinTimestamp());
+		Assert.assertEquals(42, result.getMaxTimestamp());
+		
+		// no range
+		generic.clearTimestampRange();
+		Assert.assertFalse(((BatchColumn)kryo.readClassAndObject(new Input(serialize(kryo, generic))))
+			.hasTimestampRange());
+	}
+	
+	@Test
+	public void testSmallerThanDefaultSerialization() {
+		final int numberOfAttributes = 5;
+		Batch b = new Batch(100, numberOfAttributes);
+		for(int i = 0; i < 100; ++i) {
+			b.addTuple(new Values(new Integer(this.r.nextInt(1000)), new Long(this.r.nextInt(1000)), new Short(
+				(short)this.r.nextInt(1000)), new Double(this.r.nextDouble()), "value-" + this.r.nextInt(10)));
+		}
+		
+		Kryo custom = getKryo(true);
+		Kryo standard = getKryo(false);
+		for(int i = 0; i < numberOfAttributes; ++i) {
+			Assert.assertTrue(serialize(custom, b.get(i)).length < serialize(standard, b.get(i)).length);
+		}
+	}
+	
+}
@@ -66,4 +66,108 @@ public class BatchColumnTest {
 		
 		Assert.assertEquals(first.hashCode(), bc.hashCode());
 	}
+	
+	@Test
+	public void testNewInstance() {
+		Assert.assertSame(LongBatchColumn.class, BatchColumn.newInstance(Long.class, 1).getClass());
+		Assert.assertSame(IntBatchColumn.class, BatchColumn.newInstance(Integer.class, 1).getClass());
+		Assert.assertSame(ShortBatchColumn.class, BatchColumn.newInstance(Short.class, 1).getClass());
+		Assert.assertSame(DoubleBatchColumn.class, BatchColumn.newInstance(Double.class, 1).getClass());
+		Assert.assertSame(StringBatchColumn.class, BatchColumn.newInstance(String.class, 1).getClass());
+		Assert.assertSame(BatchColumn.class, BatchColumn.newInstance(Character.class, 1).getClass());
+		Assert.assertSame(BatchColumn.class, BatchColumn.newInstance(null, 1).getClass());
+	}
+	
+	@Test
+	public void testSpecializedColumns() {
+		final int batchSize = 1 + this.r.nextInt(20);
+		final int numberOfTuples = 1 + this.r.nextInt(2 * batchSize);
+		
+		LongBatchColumn longColumn = new LongBatchColumn(batchSize);
+		IntBatchColumn intColumn = new IntBatchColumn(batchSize);
+		ShortBatchColumn shortColumn = new ShortBatchColumn(batchSize);
+		DoubleBatchColumn doubleColumn = new DoubleBatchColumn(batchSize);
+		StringBatchColumn stringColumn = new StringBatchColumn(batchSize);
+		
+		BatchColumn expectedLong = new BatchColumn(batchSize);
+		BatchColumn expectedInt = new BatchColumn(batchSize);
+		BatchColumn expectedShort = new BatchColumn(batchSize);
+		BatchColumn expectedDouble = new BatchColumn(batchSize);
+		BatchColumn expectedString = new BatchColumn(batchSize);
+		
+		for(int i = 0; i < numberOfTuples; ++i) {
+			Long l = new Long(this.r.nextLong());
+			Integer n = new Integer(this.r.nextInt());
+			Short s = new Short((short)this.r.nextInt());
+			Double d = new Double(this.r.nextDouble() + this.r.nextLong());
+			String str = "" + (char)(32 + this.r.nextInt(5));
+			
+			Assert.assertTrue(longColumn.append(l));
+			Assert.assertTrue(intColumn.add(n));
+			Assert.assertTrue(shortColumn.append(s));
+			Assert.assertTrue(doubleColumn.add(d));
+			Assert.assertTrue(stringColumn.append(str));
+			
+			expectedLong.add(l);
+			expectedInt.add(n);
+			expectedShort.add(s);
+			expectedDouble.add(d);
+			expectedString.add(str);
+			
+			Assert.assertEquals(l.longValue(), longColumn.getLong(i));
+			Assert.assertEquals(n.intValue(), intColumn.getInt(i));
+			Assert.assertEquals(s.shortValue(), shortColumn.getShort(i));
+			Assert.assertEquals(d.doubleValue(), doubleColumn.getDouble(i), 0);
+			Assert.assertEquals(str, stringColumn.getString(i));
+		}
+		
+		Assert.assertEquals(expectedLong, longColumn);
+		Assert.assertEquals(expectedInt, intColumn);
+		Assert.assertEquals(expectedShort, shortColumn);
+		Assert.assertEquals(expectedDouble, doubleColumn);
+		Assert.assertEquals(expectedString, stringColumn);
+		
+		Assert.assertEquals(expectedLong.hashCode(), longColumn.hashCode());
+		Assert.assertEquals(expectedInt.hashCode(), intColumn.hashCode());
+		Assert.assertEquals(expectedShort.hashCode(), shortColumn.hashCode());
+		Assert.assertEquals(expectedDouble.hashCode(), doubleColumn.hashCode());
+		Assert.assertEquals(expectedString.hashCode(), stringColumn.hashCode());
+		
+		Assert.assertTrue(stringColumn.getDictionarySize() <= 5);
+	}
+	
+	@Test
+	public void testTypeMismatch() {
+		Assert.assertFalse(new LongBatchColumn(1).append(new Integer(0)));
+		Assert.assertFalse(new IntBatchColumn(1).append(new Long(0)));
+		Assert.assertFalse(new ShortBatchColumn(1).append(null));
+		Assert.assertFalse(new DoubleBatchColumn(1).append(new Float(0)));
+		Assert.assertFalse(new StringBatchColumn(1).append(null));
+		Assert.assertTrue(new BatchColumn(1).append(null));
+	}
+	
+	@Test(expected = ClassCastException.class)
+	public void testAddInvalidType() {
+		new IntBatchColumn(1).add(new Long(0));
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetInvalidIndex() {
+		LongBatchColumn column = new LongBatchColumn(5);
+		column.addLong(0);
+		column.getLong(1);
+	}
+	
+	@Test
+	public void testClear() {
+		StringBatchColumn column = new StringBatchColumn(2);
+		column.addString("a");
+		column.addString("b");
+		column.clear();
+		
+		Assert.assertEquals(0, column.size());
+		Assert.assertEquals(0, column.getDictionarySize());
+		column.addString("b");
+		Assert.assertEquals("b", column.get(0));
+	}
 }
@@ -0,0 +1,137 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import backtype.storm.spout.ISpout;
+
+
+
+
+
+/**
+ * @author Matthias J. Sax
+ */
+public class BatchMessageIdTest {
+	private ISpout spoutMock;
+	
+	
+	
+	@Before
+	public void prepare() {
+		this.spoutMock = mock(ISpout.class);
+	}
+	
+	
+	
+	@Test
+	public void testAck() {
+		BatchMessageId id = new BatchMessageId(Arrays.asList(new Object[] {"a", "b", "a"}));
+		Assert.assertEquals(3, id.size());
+		
+		id.ack(this.spoutMock);
+		
+		verify(this.spoutMock, times(2)).ack("a");
+		verify(this.spoutMock).ack("b");
+		verify(this.spoutMock, never()).fail("a");
+	}
+	
+	@Test
+	public void testFail() {
+		BatchMessageId id = new BatchMessageId(Arrays.asList(new Object[] {"a", "b"}));
+		
+		id.fail(this.spoutMock);
+		
+		verify(this.spoutMock).fail("a");
+		verify(this.spoutMock).fail("b");
+		verify(this.spoutMock, never()).ack("a");
+	}
+	
+	@Test
+	public void testAckFanOut() {
+		FanOutMessageId fanOut = new FanOutMessageId("a");
+		fanOut.pending = 2;
+		
+		List<Object> ids = new ArrayList<Object>();
+		ids.add(fanOut);
+		BatchMessageId id1 = new BatchMessageId(ids);
+		BatchMessageId id2 = new BatchMessageId(ids);
+		
+		id1.ack(this.spoutMock);
+		verify(this.spoutMock, never()).ack("a");
+		
+		id2.ack(this.spoutMock);
+		verify(this.spoutMock).ack("a");
+	}
+	
+	@Test
+	public void testFailFanOut() {
+		FanOutMessageId fanOut = new FanOutMessageId("a");
+		fanOut.pending = 3;
+		
+		List<Object> ids = new ArrayList<Object>();
+		ids.add(fanOut);
+		
+		new BatchMessageId(ids).ack(this.spoutMock);
+		new BatchMessageId(ids).fail(this.spoutMock);
+		new BatchMessageId(ids).fail(this.spoutMock);
+		
+		verify(this.spoutMock).fail("a");
+		verify(this.spoutMock, never()).ack("a");
+	}
+	
+	@Test
+	public void testAckMultipleDeliveries() {
+		BatchMessageId id = new BatchMessageId(Arrays.asList(new Object[] {"a"}));
+		id.pendingDeliveries = 3;
+		
+		id.ack(this.spoutMock);
+		id.ack(this.spoutMock);
+		verify(this.spoutMock, never()).ack("a");
+		
+		id.ack(this.spoutMock);
+		verify(this.spoutMock).ack("a");
+	}
+	
+	@Test
+	public void testFailMultipleDeliveries() {
+		BatchMessageId id = new BatchMessageId(Arrays.asList(new Object[] {"a"}));
+		id.pendingDeliveries = 3;
+		
+		id.fail(this.spoutMock);
+		id.ack(this.spoutMock);
+		id.fail(this.spoutMock);
+		
+		verify(this.spoutMock).fail("a");
+		verify(this.spoutMock, never()).ack("a");
+	}
+	
+}
@@ -19,7 +19,9 @@
 package de.hub.cs.dbis.aeolus.batching;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -33,6 +35,7 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import backtype.storm.task.IOutputCollector;
 import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
 import backtype.storm.utils.Utils;
@@ -54,13 +57,14 @@ public class BatchOutputCollectorTest {
 	private static Tuple anchor = mock(Tuple.class);
 	private static List<Tuple> anchors = new LinkedList<Tuple>();
 	private static Values tuple = new Values();
+	private static List<Values> tuples = new LinkedList<Values>();
 	
 	
 	
 	@BeforeClass
 	public static void prepareTestStatic() {
 		anchors.add(anchor);
-		
+		tuples.add(tuple);
 	}
 	
 	@Before
@@ -161,6 +165,61 @@ public class BatchOutputCollectorTest {
 		verify(collectorMock).tupleEmitDirect(taskId, Utils.DEFAULT_STREAM_ID, null, tuple, null);
 	}
 	
+	@Test
+	public void testEmitAllFull() {
+		BatchOutputCollector collector = new BatchOutputCollector(null, null, 0);
+		collector.emitAll(streamId, anchors, tuples);
+		verify(collectorMock).tuplesEmit(streamId, anchors, tuples);
+	}
+	
+	@Test
+	public void testEmitAllStreamIdAnchorTuples() {
+		BatchOutputCollector collector = new BatchOutputCollector(null, null, 0);
+		collector.emitAll(streamId, anchor, tuples);
+		verify(collectorMock).tuplesEmit(streamId, anchors, tuples);
+	}
+	
+	@Test
+	public void testEmitAllStreamIdTuples() {
+		BatchOutputCollector collector = new BatchOutputCollector(null, null, 0);
+		collector.emitAll(streamId, tuples);
+		verify(collectorMock).tuplesEmit(streamId, null, tuples);
+	}
+	
+	@Test
+	public void testEmitAllTuples() {
+		BatchOutputCollector collector = new BatchOutputCollector(null, null, 0);
+		collector.emitAll(tuples);
+		verify(collectorMock).tuplesEmit(Utils.DEFAULT_STREAM_ID, null, tuples);
+	}
+	
+	@Test
+	public void testAck() {
+		IOutputCollector col = mock(IOutputCollector.class);
+		BatchOutputCollector collector = new BatchOutputCollector(null, col, 0);
+		collector.ack(anchor);
+		verify(collectorMock).deferAck(anchor);
+		verify(col).ack(anchor);
+	}
+	
+	@Test
+	public void testAckDeferred() {
+		IOutputCollector col = mock(IOutputCollector.class);
+		when(new Boolean(collectorMock.deferAck(anchor))).thenReturn(new Boolean(true));
+		BatchOutputCollector collector = new BatchOutputCollector(null, col, 0);
+		collector.ack(anchor);
+		verify(col, never()).ack(anchor);
+	}
+	
+	@Test
+	public void testFail() {
+		IOutputCollector col = mock(IOutputCollector.class);
+		BatchOutputCollector collector = new BatchOutputCollector(null, col, 0);
+		collector.fail(anchor);
+		verify(collectorMock).removeFailedAnchor(anchor);
+		verify(col).fail(anchor);
+	}
+	
 	@Test
 	public void testFlush() {
 		BatchOutputCollector collector = new BatchOutputCollector(null, null, 0);
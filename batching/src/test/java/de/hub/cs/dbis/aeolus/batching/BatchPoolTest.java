@@ -0,0 +1,67 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+
+
+
+/**
+ * @author Matthias J. Sax
+ */
+public class BatchPoolTest {
+	
+	@Test
+	public void testPollEmpty() {
+		Assert.assertNull(new BatchPool(1).poll());
+	}
+	
+	@Test
+	public void testRecycle() {
+		BatchPool pool = new BatchPool(2);
+		Batch b1 = new Batch(1, 1);
+		Batch b2 = new Batch(1, 1);
+		
+		pool.recycle(b1);
+		pool.recycle(b2);
+		Assert.assertEquals(2, pool.size());
+		
+		Assert.assertSame(b1, pool.poll());
+		Assert.assertSame(b2, pool.poll());
+		Assert.assertNull(pool.poll());
+		Assert.assertEquals(0, pool.size());
+	}
+	
+	@Test
+	public void testCapacity() {
+		BatchPool pool = new BatchPool(1);
+		Batch b1 = new Batch(1, 1);
+		
+		pool.recycle(b1);
+		pool.recycle(new Batch(1, 1));
+		Assert.assertEquals(1, pool.size());
+		
+		Assert.assertSame(b1, pool.poll());
+		Assert.assertNull(pool.poll());
+	}
+	
+}
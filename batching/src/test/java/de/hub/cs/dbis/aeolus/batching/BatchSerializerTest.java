@@ -0,0 +1,88 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import backtype.storm.Config;
+import backtype.storm.serialization.SerializationFactory;
+import backtype.storm.tuple.Values;
+import backtype.storm.utils.Utils;
+
+
+
+
+
+/**
+ * @author Matthias J. Sax
+ */
+public class BatchSerializerTest {
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRoundTrip() {
+		Config conf = new Config();
+		conf.putAll(Utils.readDefaultConfig());
+		AbstractBatchCollector.registerKryoClasses(conf);
+		Kryo kryo = SerializationFactory.getKryo(conf);
+		
+		Batch b = new Batch(3, 2);
+		b.addTuple(new Values(new Integer(1), "a"));
+		b.addTuple(new Values(new Integer(2), "b"));
+		
+		Output output = new Output(1024, -1);
+		kryo.writeClassAndObject(output, b);
+		Batch result = (Batch)kryo.readClassAndObject(new Input(output.toBytes()));
+		
+		Assert.assertEquals(b, result);
+		Assert.assertEquals(2, result.getNumberOfTuples());
+		Assert.assertFalse(result.isFull());
+		
+		result.addTuple(new Values(new Integer(3), "c"));
+		Assert.assertTrue(result.isFull());
+		Assert.assertEquals(3, result.get(0).getInt(2));
+		Assert.assertEquals("c", result.get(1).getString(2));
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testEmptyBatch() {
+		Config conf = new Config();
+		conf.putAll(Utils.readDefaultConfig());
+		AbstractBatchCollector.registerKryoClasses(conf);
+		Kryo kryo = SerializationFactory.getKryo(conf);
+		
+		Batch b = new Batch(3, 2);
+		
+		Output output = new Output(1024, -1);
+		kryo.writeClassAndObject(output, b);
+		Batch result = (Batch)kryo.readClassAndObject(new Input(output.toBytes()));
+		
+		Assert.assertTrue(result.isEmpty());
+		
+		result.addTuple(new Values(new Integer(1), "a"));
+		Assert.assertEquals(1, result.getNumberOfTuples());
+	}
+	
+}
@@ -0,0 +1,96 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import backtype.storm.tuple.Values;
+
+
+
+
+
+/**
+ * @author Matthias J. Sax
+ */
+public class BatchStatisticsTest {
+	
+	@Test
+	public void testDefaultStatsStream() {
+		Assert.assertFalse(BatchStatistics.DEFAULT_STATS_STREAM.startsWith(BatchingOutputFieldsDeclarer.STREAM_PREFIX));
+	}
+	
+	@Test
+	public void testGetBucket() {
+		Assert.assertEquals(0, BatchStatistics.getBucket(-1));
+		Assert.assertEquals(0, BatchStatistics.getBucket(0));
+		Assert.assertEquals(1, BatchStatistics.getBucket(1));
+		Assert.assertEquals(2, BatchStatistics.getBucket(2));
+		Assert.assertEquals(2, BatchStatistics.getBucket(3));
+		Assert.assertEquals(3, BatchStatistics.getBucket(4));
+		Assert.assertEquals(10, BatchStatistics.getBucket(1023));
+		Assert.assertEquals(11, BatchStatistics.getBucket(1024));
+		Assert.assertEquals(11, BatchStatistics.getBucket(Long.MAX_VALUE));
+	}
+	
+	@Test
+	public void testRecordAndReport() {
+		Batch full = new Batch(2, 1);
+		full.addTuple(new Values(new Integer(0)));
+		full.addTuple(new Values(new Integer(1)));
+		Batch partial = new Batch(2, 1);
+		partial.addTuple(new Values(new Integer(2)));
+		
+		BatchStatistics statistics = new BatchStatistics();
+		Assert.assertEquals(0, statistics.getFillRatio(), 0);
+		
+		statistics.record(full, FlushCause.FULL, full.getFirstInsertTimestamp());
+		statistics.record(partial, FlushCause.LINGER, partial.getFirstInsertTimestamp() + 5000);
+		statistics.setNumberOfBufferedTuples(7);
+		
+		Assert.assertEquals(2, statistics.getNumberOfBatches());
+		Assert.assertEquals(3, statistics.getNumberOfTuples());
+		Assert.assertEquals(0.75, statistics.getFillRatio(), 0);
+		Assert.assertEquals(1, statistics.getNumberOfFlushes(FlushCause.FULL));
+		Assert.assertEquals(1, statistics.getNumberOfFlushes(FlushCause.LINGER));
+		Assert.assertEquals(0, statistics.getNumberOfFlushes(FlushCause.FLUSH));
+		final long[] histogram = statistics.getTimeInBufferHistogram();
+		Assert.assertEquals(1, histogram[0]);
+		Assert.assertEquals(1, histogram[BatchStatistics.NUMBER_OF_BUCKETS - 1]);
+		
+		List<Values> report = new ArrayList<Values>();
+		statistics.report(42, "stream", report);
+		Assert.assertEquals(4 + FlushCause.values().length + BatchStatistics.NUMBER_OF_BUCKETS, report.size());
+		Assert.assertEquals(new Values(new Long(42), "stream", "batches", new Double(2)), report.get(0));
+		Assert.assertEquals(new Values(new Long(42), "stream", "fillRatio", new Double(0.75)), report.get(2));
+		Assert.assertEquals(new Values(new Long(42), "stream", "bufferedTuples", new Double(7)), report.get(3));
+		Assert.assertEquals(new Values(new Long(42), "stream", "flush.full", new Double(1)), report.get(4));
+		Assert.assertEquals(new Values(new Long(42), "stream", "timeInBuffer>=1024ms", new Double(1)),
+			report.get(report.size() - 1));
+		
+		Assert.assertEquals(0, statistics.getNumberOfBatches());
+		Assert.assertEquals(0, statistics.getNumberOfFlushes(FlushCause.FULL));
+		Assert.assertEquals(0, statistics.getTimeInBufferHistogram()[0]);
+	}
+	
+}
@@ -18,13 +18,26 @@
  */
 package de.hub.cs.dbis.aeolus.batching;
 
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import backtype.storm.Config;
+import backtype.storm.serialization.SerializationFactory;
+import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
+import backtype.storm.utils.Utils;
 
 
 
@@ -120,4 +133,242 @@ public class BatchTest {
 		b.addTuple(null);
 	}
 	
+	@Test
+	public void testColumnTypesFromFirstTuple() {
+		Batch b = new Batch(3, 4);
+		b.addTuple(new Values(new Integer(1), new Long(2), "3", null));
+		
+		Assert.assertSame(IntBatchColumn.class, b.get(0).getClass());
+		Assert.assertSame(LongBatchColumn.class, b.get(1).getClass());
+		Assert.assertSame(StringBatchColumn.class, b.get(2).getClass());
+		Assert.assertSame(BatchColumn.class, b.get(3).getClass());
+	}
+	
+	@Test
+	public void testColumnTypeMismatch() {
+		Batch b = new Batch(3, 2);
+		b.addTuple(new Values(new Integer(1), "a"));
+		b.addTuple(new Values(new Long(2), null));
+		b.addTuple(new Values(new Integer(3), "c"));
+		
+		Assert.assertSame(BatchColumn.class, b.get(0).getClass());
+		Assert.assertSame(BatchColumn.class, b.get(1).getClass());
+		Assert.assertEquals(Arrays.asList(new Object[] {new Integer(1), new Long(2), new Integer(3)}), b.get(0));
+		Assert.assertEquals(Arrays.asList(new Object[] {"a", null, "c"}), b.get(1));
+		Assert.assertTrue(b.isFull());
+	}
+	
+	@Test
+	public void testDeclaredColumnTypes() {
+		Batch b = new Batch(2, new Class<?>[] {Short.class, Double.class, Object.class});
+		
+		Assert.assertSame(ShortBatchColumn.class, b.get(0).getClass());
+		Assert.assertSame(DoubleBatchColumn.class, b.get(1).getClass());
+		Assert.assertSame(BatchColumn.class, b.get(2).getClass());
+		
+		b.addTuple(new Values(new Short((short)1), new Double(2), new Integer(3)));
+		b.addTuple(new Values(new Short((short)4), new Double(5), "6"));
+		
+		Assert.assertSame(ShortBatchColumn.class, b.get(0).getClass());
+		Assert.assertSame(DoubleBatchColumn.class, b.get(1).getClass());
+		Assert.assertEquals(4, b.get(0).getShort(1));
+		Assert.assertEquals(5, b.get(1).getDouble(1), 0);
+	}
+	
+	@Test
+	public void testTimestampRange() {
+		Batch b = new Batch(3, new Class<?>[] {Long.class, Object.class});
+		b.setTimestampIndex(0);
+		Assert.assertFalse(b.hasTimestampRange());
+		
+		b.addTuple(new Values(new Long(5), new Integer(0)));
+		b.addTuple(new Values(new Long(3), new Integer(1)));
+		b.addTuple(new Values(new Long(7), new Integer(2)));
+		Assert.assertTrue(b.hasTimestampRange());
+		Assert.assertEquals(3, b.getMinTimestamp());
+		Assert.assertEquals(7, b.getMaxTimestamp());
+		Assert.assertTrue(b.get(0).hasTimestampRange());
+		Assert.assertFalse(b.get(1).hasTimestampRange());
+		
+		b.reset(3);
+		Assert.assertFalse(b.hasTimestampRange());
+		Assert.assertFalse(b.get(0).hasTimestampRange());
+		
+		// type mismatch keeps the range
+		b.addTuple(new Values(new Long(5), new Integer(0)));
+		b.addTuple(new Values(new Integer(4), new Integer(1)));
+		Assert.assertSame(BatchColumn.class, b.get(0).getClass());
+		Assert.assertEquals(4, b.getMinTimestamp());
+		Assert.assertEquals(5, b.getMaxTimestamp());
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testKryoSerialization() {
+		Config conf = new Config();
+		conf.putAll(Utils.readDefaultConfig());
+		AbstractBatchCollector.registerKryoClasses(conf);
+		Kryo kryo = SerializationFactory.getKryo(conf);
+		
+		Batch b = new Batch(3, 5);
+		b.addTuple(new Values(new Integer(1), new Long(2), new Short((short)3), new Double(4), "5"));
+		b.addTuple(new Values(new Integer(6), new Long(7), new Short((short)8), new Double(9), "5"));
+		
+		Output output = new Output(1024, -1);
+		kryo.writeClassAndObject(output, b);
+		Object result = kryo.readClassAndObject(new Input(output.toBytes()));
+		
+		Assert.assertEquals(b, result);
+		for(int i = 0; i < b.size(); ++i) {
+			Assert.assertSame(b.get(i).getClass(), ((Batch)result).get(i).getClass());
+		}
+	}
+	
+	@Test
+	public void testResetDeclaredTypes() {
+		Batch b = new Batch(2, new Class<?>[] {Integer.class, String.class});
+		b.addTuple(new Values(new Integer(1), "a"));
+		b.addTuple(new Values("b", "b"));
+		Assert.assertSame(BatchColumn.class, b.get(0).getClass());
+		
+		b.reset(3);
+		
+		Assert.assertTrue(b.isEmpty());
+		Assert.assertSame(IntBatchColumn.class, b.get(0).getClass());
+		Assert.assertSame(StringBatchColumn.class, b.get(1).getClass());
+		Assert.assertEquals(0, b.get(1).size());
+		
+		b.addTuple(new Values(new Integer(1), "a"));
+		b.addTuple(new Values(new Integer(2), "b"));
+		b.addTuple(new Values(new Integer(3), "c"));
+		Assert.assertTrue(b.isFull());
+	}
+	
+	@Test
+	public void testResetUndeclaredTypes() {
+		Batch b = new Batch(1, 2);
+		b.addTuple(new Values(new Integer(1), "a"));
+		final BatchColumn stringColumn = b.get(1);
+		
+		b.reset(1);
+		b.addTuple(new Values(new Long(1), "b"));
+		
+		Assert.assertSame(LongBatchColumn.class, b.get(0).getClass());
+		Assert.assertSame(stringColumn, b.get(1));
+		Assert.assertEquals(new Values(new Long(1)), b.get(0));
+		Assert.assertEquals(new Values("b"), b.get(1));
+	}
+	
+	@Test
+	public void testRelease() {
+		BatchPool pool = new BatchPool(1);
+		Batch b = new Batch(1, 2);
+		b.addTuple(new Values(new Integer(1), "a"));
+		
+		b.prepareRelease(pool);
+		// consumer releases before number of deliveries is known
+		b.get(0).release();
+		b.get(1).release();
+		b.setNumberOfDeliveries(2);
+		Assert.assertEquals(0, pool.size());
+		
+		b.get(0).release();
+		Assert.assertEquals(0, pool.size());
+		b.get(1).release();
+		Assert.assertSame(b, pool.poll());
+	}
+	
+	@Test
+	public void testReleaseUnknownDeliveries() {
+		BatchPool pool = new BatchPool(1);
+		Batch b = new Batch(1, 1);
+		b.addTuple(new Values(new Integer(1)));
+		
+		b.prepareRelease(pool);
+		b.setNumberOfDeliveries(0);
+		b.get(0).release();
+		
+		Assert.assertEquals(0, pool.size());
+	}
+	
+	@Test
+	public void testReleaseUntracked() {
+		Batch b = new Batch(1, 1);
+		b.addTuple(new Values(new Integer(1)));
+		
+		b.get(0).release(); // no effect
+		Assert.assertEquals(1, b.getNumberOfTuples());
+	}
+	
+	@Test
+	public void testMessageIds() {
+		Batch b = new Batch(3, 1);
+		Assert.assertNull(b.removeMessageIds());
+		
+		b.addTuple(new Values(new Integer(1)));
+		b.addMessageId("id1");
+		b.addTuple(new Values(new Integer(2)));
+		b.addTuple(new Values(new Integer(3)));
+		b.addMessageId("id3");
+		
+		Assert.assertEquals(Arrays.asList("id1", "id3"), b.removeMessageIds());
+		Assert.assertNull(b.removeMessageIds());
+		
+		b.addMessageId("id4");
+		b.reset(3);
+		Assert.assertNull(b.removeMessageIds());
+	}
+	
+	@Test
+	public void testAnchors() {
+		Batch b = new Batch(3, 1);
+		Assert.assertEquals(0, b.getNumberOfAnchors());
+		Assert.assertNull(b.removeAnchors());
+		
+		Tuple a1 = mock(Tuple.class);
+		Tuple a2 = mock(Tuple.class);
+		Assert.assertTrue(b.addAnchor(a1));
+		Assert.assertTrue(b.addAnchor(a2));
+		Assert.assertFalse(b.addAnchor(a1));
+		Assert.assertEquals(2, b.getNumberOfAnchors());
+		
+		Collection<Tuple> anchors = b.removeAnchors();
+		Assert.assertEquals(2, anchors.size());
+		Assert.assertTrue(anchors.contains(a1));
+		Assert.assertTrue(anchors.contains(a2));
+		Assert.assertNull(b.removeAnchors());
+		
+		b.addAnchor(a1);
+		b.addAnchor(a2);
+		Assert.assertTrue(b.removeAnchor(a1));
+		Assert.assertFalse(b.removeAnchor(a1));
+		Assert.assertEquals(Arrays.asList(a2), new ArrayList<Tuple>(b.removeAnchors()));
+		Assert.assertFalse(b.removeAnchor(a2));
+		
+		b.addAnchor(a1);
+		Assert.assertTrue(b.removeAnchor(a1));
+		Assert.assertNull(b.removeAnchors());
+		
+		b.addAnchor(a1);
+		b.reset(3);
+		Assert.assertEquals(0, b.getNumberOfAnchors());
+	}
+	
+	@Test
+	public void testPrepareBroadcast() {
+		Batch b = new Batch(3, 2);
+		b.addTuple(new Values(new Integer(1), "a"));
+		Assert.assertFalse(b.get(0).isSerializationCached());
+		
+		b.prepareBroadcast();
+		Assert.assertTrue(b.get(0).isSerializationCached());
+		Assert.assertTrue(b.get(1).isSerializationCached());
+		
+		b.get(0).setSerializedValues(new byte[] {1});
+		b.reset(3);
+		Assert.assertFalse(b.get(0).isSerializationCached());
+		Assert.assertFalse(b.get(1).isSerializationCached());
+		Assert.assertNull(b.get(0).getSerializedValues());
+	}
+	
 }
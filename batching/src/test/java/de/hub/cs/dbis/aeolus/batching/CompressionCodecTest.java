@@ -0,0 +1,105 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+
+
+
+/**
+ * @author Matthias J. Sax
+ */
+public class CompressionCodecTest {
+	private Random r;
+	
+	
+	
+	@Before
+	public void prepare() {
+		final long seed = System.currentTimeMillis();
+		this.r = new Random(seed);
+		System.out.println("Test seed: " + seed);
+	}
+	
+	
+	
+	private static void assertRoundTrip(CompressionCodec codec, byte[] data) {
+		final byte[] compressed = codec.compress(data);
+		Assert.assertArrayEquals(data, codec.decompress(compressed, data.length));
+	}
+	
+	@Test
+	public void testRandomData() {
+		for(CompressionCodec codec : CompressionCodec.values()) {
+			assertRoundTrip(codec, new byte[0]);
+			assertRoundTrip(codec, new byte[] {42});
+			
+			for(int i = 0; i < 10; ++i) {
+				final byte[] data = new byte[this.r.nextInt(20000)];
+				this.r.nextBytes(data);
+				assertRoundTrip(codec, data);
+			}
+		}
+	}
+	
+	@Test
+	public void testRepetitiveData() {
+		final StringBuilder lines = new StringBuilder();
+		for(int i = 0; i < 1000; ++i) {
+			lines.append("0," + this.r.nextInt(10800) + "," + this.r.nextInt(1000) + ",60,0,1,0,"
+				+ this.r.nextInt(100) + "," + this.r.nextInt(528000) + ",-1,-1,-1,-1,-1,-1\n");
+		}
+		final byte[] data = lines.toString().getBytes();
+		
+		for(CompressionCodec codec : CompressionCodec.values()) {
+			assertRoundTrip(codec, data);
+			Assert.assertTrue(codec.compress(data).length < data.length / 2);
+		}
+		
+		final byte[] zeros = new byte[10000];
+		for(CompressionCodec codec : CompressionCodec.values()) {
+			assertRoundTrip(codec, zeros);
+			Assert.assertTrue(codec.compress(zeros).length < 200);
+		}
+	}
+	
+	@Test
+	public void testCorruptedData() {
+		final byte[] data = new byte[1000];
+		Arrays.fill(data, (byte)7);
+		
+		for(CompressionCodec codec : CompressionCodec.values()) {
+			final byte[] compressed = codec.compress(data);
+			try {
+				codec.decompress(Arrays.copyOf(compressed, compressed.length / 2), data.length);
+				Assert.fail();
+			} catch(IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,161 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import backtype.storm.generated.Grouping;
+import backtype.storm.task.WorkerTopologyContext;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Values;
+
+
+
+
+
+/**
+ * @author Matthias J. Sax
+ */
+public class FieldsGroupingPartitionerTest {
+	private final static String producerId = "producer";
+	private final static String receiverId = "receiver";
+	private final static String streamId = "stream";
+	private final static Fields schema = new Fields("a", "b", "c");
+	
+	private Random r;
+	
+	
+	
+	@Before
+	public void prepareTest() {
+		final long seed = System.currentTimeMillis();
+		this.r = new Random(seed);
+		System.out.println("Test seed: " + seed);
+	}
+	
+	
+	
+	@Test
+	public void testSingleField() {
+		List<Integer> tasks = Arrays.asList(new Integer[] {new Integer(7), new Integer(5), new Integer(6)});
+		FieldsGroupingPartitioner partitioner = new FieldsGroupingPartitioner(schema, Arrays.asList("b"), tasks);
+		
+		Assert.assertEquals(3, partitioner.getNumberOfTasks());
+		for(int i = -10; i < 10; ++i) {
+			Values tuple = new Values("x", new Integer(i), null);
+			// Storm uses the sorted task IDs
+			int index = Arrays.asList(new Object[] {new Integer(i)}).hashCode() % 3;
+			if(index < 0) {
+				index += 3;
+			}
+			Assert.assertEquals(index, partitioner.getTaskIndex(tuple));
+			Assert.assertEquals(5 + index, partitioner.getTaskId(tuple));
+		}
+	}
+	
+	@Test
+	public void testGlobalGrouping() {
+		List<Integer> tasks = Arrays.asList(new Integer[] {new Integer(9), new Integer(3), new Integer(4)});
+		FieldsGroupingPartitioner partitioner = new FieldsGroupingPartitioner(schema, new ArrayList<String>(), tasks);
+		
+		for(int i = 0; i < 10; ++i) {
+			Values tuple = new Values(new Integer(this.r.nextInt()), "y", new Long(i));
+			Assert.assertEquals(0, partitioner.getTaskIndex(tuple));
+			Assert.assertEquals(3, partitioner.getTaskId(tuple));
+		}
+	}
+	
+	@Test
+	public void testIsEquivalent() {
+		List<Integer> tasks = Arrays.asList(new Integer[] {new Integer(1), new Integer(2)});
+		List<Integer> otherTasks = Arrays.asList(new Integer[] {new Integer(7), new Integer(8)});
+		List<Integer> moreTasks = Arrays.asList(new Integer[] {new Integer(7), new Integer(8), new Integer(9)});
+		
+		FieldsGroupingPartitioner partitioner = new FieldsGroupingPartitioner(schema, Arrays.asList("a", "b"), tasks);
+		Assert.assertEquals(2, partitioner.getNumberOfPartitions());
+		
+		Assert.assertTrue(partitioner.isEquivalent(new FieldsGroupingPartitioner(schema, Arrays.asList("a", "b"),
+			otherTasks)));
+		Assert.assertFalse(partitioner.isEquivalent(new FieldsGroupingPartitioner(schema, Arrays.asList("b", "a"),
+			otherTasks)));
+		Assert.assertFalse(partitioner.isEquivalent(new FieldsGroupingPartitioner(schema, Arrays.asList("a"), tasks)));
+		Assert.assertFalse(partitioner.isEquivalent(new FieldsGroupingPartitioner(schema, Arrays.asList("a", "b"),
+			moreTasks)));
+		
+		FieldsGroupingPartitioner global = new FieldsGroupingPartitioner(schema, new ArrayList<String>(), tasks);
+		Assert.assertEquals(1, global.getNumberOfPartitions());
+		Assert.assertTrue(global.isEquivalent(new FieldsGroupingPartitioner(schema, new ArrayList<String>(), moreTasks)));
+	}
+	
+	@Test
+	public void testCrossCheckFieldsGroupingWithStorm() {
+		this.runCrossCheck(Arrays.asList("a"));
+		this.runCrossCheck(Arrays.asList("c", "a"));
+		this.runCrossCheck(Arrays.asList("a", "b", "c"));
+	}
+	
+	@Test
+	public void testCrossCheckGlobalGroupingWithStorm() {
+		this.runCrossCheck(new ArrayList<String>());
+	}
+	
+	private void runCrossCheck(List<String> groupingFields) {
+		final int numberOfTasks = 1 + this.r.nextInt(10);
+		final List<Integer> tasks = new ArrayList<Integer>();
+		for(int i = 0; i < numberOfTasks; ++i) {
+			tasks.add(new Integer(3 + 2 * i));
+		}
+		Collections.shuffle(tasks, this.r);
+		
+		Map<String, Grouping> receivers = new HashMap<String, Grouping>();
+		receivers.put(receiverId, Grouping.fields(groupingFields));
+		Map<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(streamId, receivers);
+		
+		WorkerTopologyContext context = mock(WorkerTopologyContext.class);
+		when(context.getTargets(producerId)).thenReturn(targets);
+		when(context.getComponentOutputFields(producerId, streamId)).thenReturn(schema);
+		when(context.getComponentTasks(receiverId)).thenReturn(tasks);
+		
+		FieldsGroupingPartitioner partitioner = new FieldsGroupingPartitioner(schema, groupingFields, tasks);
+		
+		for(int i = 0; i < 1000; ++i) {
+			Values tuple = new Values(new Integer(this.r.nextInt()), new Long(this.r.nextLong()),
+				this.r.nextInt(10) == 0 ? null : "v" + this.r.nextInt(100));
+			
+			Assert.assertEquals(
+				StormConnector.getFieldsGroupingReceiverTaskId(context, producerId, streamId, receiverId, tuple),
+				new Integer(partitioner.getTaskId(tuple)));
+		}
+	}
+	
+}
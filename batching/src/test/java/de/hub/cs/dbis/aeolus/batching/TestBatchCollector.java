@@ -39,6 +39,15 @@ public class TestBatchCollector extends AbstractBatchCollector {
 	public final Map<String, List<Collection<Tuple>>> anchorBuffer = new HashMap<String, List<Collection<Tuple>>>();
 	public final Map<String, List<Object>> resultBuffer = new HashMap<String, List<Object>>();
 	public final Map<String, List<Object>> messageIdBuffer = new HashMap<String, List<Object>>();
+	public final List<Tuple> ackBuffer = new LinkedList<Tuple>();
+	/**
+	 * The receiver task IDs that are returned by {@link #doEmit(String, Collection, Object, Object)}.
+	 */
+	public List<Integer> receiverTaskIds = null;
+	/**
+	 * The offset (in milliseconds) that is added to the system time by {@link #currentTimeMillis()}.
+	 */
+	public long clockOffset = 0;
 	
 	
 	
@@ -55,7 +64,7 @@ public class TestBatchCollector extends AbstractBatchCollector {
 	@Override
 	protected List<Integer> doEmit(String streamId, Collection<Tuple> anchors, Object tupleOrBatch, Object messageId) {
 		this.setListMembers(-1, streamId, anchors, tupleOrBatch, messageId);
-		return null;
+		return this.receiverTaskIds;
 	}
 	
 	@Override
@@ -64,6 +73,16 @@ public class TestBatchCollector extends AbstractBatchCollector {
 		
 	}
 	
+	@Override
+	protected void doAck(Tuple input) {
+		this.ackBuffer.add(input);
+	}
+	
+	@Override
+	long currentTimeMillis() {
+		return System.currentTimeMillis() + this.clockOffset;
+	}
+	
 	private void setListMembers(int taskId, String streamId, Collection<Tuple> anchors, Object tupleOrBatch, Object messageId) {
 		if(taskId != -1) {
 			List<Integer> taksList = this.taskBuffer.get(streamId);
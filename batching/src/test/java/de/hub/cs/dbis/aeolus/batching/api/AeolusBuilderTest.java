@@ -18,24 +18,29 @@
  */
 package de.hub.cs.dbis.aeolus.batching.api;
 
-import static org.mockito.Mockito.mock;
-
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.json.simple.JSONValue;
 
 import backtype.storm.Config;
 import backtype.storm.LocalCluster;
 import backtype.storm.generated.StormTopology;
+import backtype.storm.topology.BasicBoltExecutor;
 import backtype.storm.topology.BoltDeclarer;
 import backtype.storm.topology.IBasicBolt;
 import backtype.storm.topology.IRichBolt;
 import backtype.storm.topology.IRichSpout;
 import backtype.storm.topology.TopologyBuilder;
+import backtype.storm.tuple.Fields;
 import backtype.storm.utils.Utils;
+import de.hub.cs.dbis.aeolus.batching.AbstractBatchCollector;
+import de.hub.cs.dbis.aeolus.batching.AdaptiveBatchSizeController;
 import de.hub.cs.dbis.aeolus.batching.BatchingOutputFieldsDeclarer;
 
 
@@ -155,14 +160,95 @@ public class AeolusBuilderTest {
 		Assert.assertEquals(this.topologyBuilder.createTopology(), this.aeolusBuilder.createTopology());
 	}
 	
-	@Test(expected = UnsupportedOperationException.class)
+	@Test
+	public void testSetAdaptiveBolt() {
+		IRichBolt userBolt = new TestBolt();
+		final Integer dop = new Integer(1 + this.r.nextInt(5));
+		
+		this.topologyBuilder.setBolt(this.bolt1,
+			new BoltOutputBatcher(new InputDebatcher(userBolt), 2)
+				.setBatchSizeController(new AdaptiveBatchSizeController(2, 100, 50)).setMaxLinger(50), dop);
+		this.aeolusBuilder.setAdaptiveBolt(this.bolt1, userBolt, dop, new AdaptiveBatchSizeController(2, 100, 50));
+		
+		Assert.assertEquals(this.topologyBuilder.createTopology(), this.aeolusBuilder.createTopology());
+	}
+	
+	@Test
+	public void testSetBoltPunctuationStream() {
+		IRichBolt userBolt = new TestBolt();
+		final Integer dop = new Integer(1 + this.r.nextInt(5));
+		
+		this.topologyBuilder.setBolt(this.bolt1,
+			new BoltOutputBatcher(new InputDebatcher(userBolt), 5).setPunctuationStream("punctuation"), dop);
+		this.aeolusBuilder.setPunctuationStream("punctuation").setBolt(this.bolt1, userBolt, dop, 5);
+		
+		Assert.assertEquals(this.topologyBuilder.createTopology(), this.aeolusBuilder.createTopology());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetPunctuationStreamNull() {
+		this.aeolusBuilder.setPunctuationStream(null);
+	}
+	
+	@Test
 	public void testSetBasicBoltSimple() {
-		this.aeolusBuilder.setBolt(null, mock(IBasicBolt.class));
+		IBasicBolt userBolt = new TestBasicBolt();
+		
+		this.topologyBuilder.setBolt(this.bolt1, new BoltOutputBatcher(new InputDebatcher(new BasicBoltExecutor(
+			userBolt)), this.noBatching));
+		this.aeolusBuilder.setBolt(this.bolt1, userBolt);
+		
+		Assert.assertEquals(this.topologyBuilder.createTopology(), this.aeolusBuilder.createTopology());
 	}
 	
-	@Test(expected = UnsupportedOperationException.class)
+	@Test
+	public void testSetBasicBoltBatchSize() {
+		IBasicBolt userBolt = new TestBasicBolt();
+		final int batchSize = 1 + this.r.nextInt(10);
+		
+		this.topologyBuilder.setBolt(this.bolt1, new BoltOutputBatcher(new InputDebatcher(new BasicBoltExecutor(
+			userBolt)), batchSize));
+		this.aeolusBuilder.setBolt(this.bolt1, userBolt, batchSize);
+		
+		Assert.assertEquals(this.topologyBuilder.createTopology(), this.aeolusBuilder.createTopology());
+	}
+	
+	@Test
+	public void testSetBasicBoltBatchSizes() {
+		IBasicBolt userBolt = new TestBasicBolt();
+		HashMap<String, Integer> batchSizes = new HashMap<String, Integer>();
+		batchSizes.put(Utils.DEFAULT_STREAM_ID, new Integer(1 + this.r.nextInt(10)));
+		
+		this.topologyBuilder.setBolt(this.bolt1, new BoltOutputBatcher(new InputDebatcher(new BasicBoltExecutor(
+			userBolt)), batchSizes));
+		this.aeolusBuilder.setBolt(this.bolt1, userBolt, batchSizes);
+		
+		Assert.assertEquals(this.topologyBuilder.createTopology(), this.aeolusBuilder.createTopology());
+	}
+	
+	@Test
 	public void testSetBasicBoltParallelism() {
-		this.aeolusBuilder.setBolt(null, mock(IBasicBolt.class), null);
+		IBasicBolt userBolt = new TestBasicBolt();
+		final Integer dop = new Integer(1 + this.r.nextInt(5));
+		
+		this.topologyBuilder.setBolt(this.bolt1, new BoltOutputBatcher(new InputDebatcher(new BasicBoltExecutor(
+			userBolt)), this.noBatching), dop);
+		this.aeolusBuilder.setBolt(this.bolt1, userBolt, dop);
+		
+		Assert.assertEquals(this.topologyBuilder.createTopology(), this.aeolusBuilder.createTopology());
+	}
+	
+	@Test
+	public void testSetBasicBoltParallelismBatchSize() {
+		IBasicBolt userBolt = new TestBasicBolt();
+		final Integer dop = new Integer(1 + this.r.nextInt(5));
+		final int batchSize = 1 + this.r.nextInt(10);
+		
+		this.topologyBuilder.setBolt(this.bolt1, new BoltOutputBatcher(new InputDebatcher(new BasicBoltExecutor(
+			userBolt)), batchSize), dop);
+		this.aeolusBuilder.setBolt(this.bolt1, userBolt, dop, batchSize);
+		
+		Assert.assertEquals(this.topologyBuilder.createTopology(), this.aeolusBuilder.createTopology());
 	}
 	
 	@Test
@@ -240,6 +326,67 @@ public class AeolusBuilderTest {
 		Assert.assertEquals(this.topologyBuilder.createTopology(), this.aeolusBuilder.createTopology());
 	}
 	
+	@Test
+	public void testSetSpoutPunctuationStream() {
+		IRichSpout userSpout = new TestSpout();
+		final Integer dop = new Integer(1 + this.r.nextInt(5));
+		
+		this.topologyBuilder.setSpout(this.spout1, new SpoutOutputBatcher(userSpout, 5)
+			.setPunctuationStream("punctuation"), dop);
+		this.aeolusBuilder.setPunctuationStream("punctuation").setSpout(this.spout1, userSpout, dop, 5);
+		
+		Assert.assertEquals(this.topologyBuilder.createTopology(), this.aeolusBuilder.createTopology());
+	}
+	
+	@Test
+	public void testSetAdaptiveSpout() {
+		IRichSpout userSpout = new TestSpout();
+		final Integer dop = new Integer(1 + this.r.nextInt(5));
+		
+		this.topologyBuilder.setSpout(this.spout1,
+			new SpoutOutputBatcher(userSpout, 2).setBatchSizeController(new AdaptiveBatchSizeController(2, 100, 50))
+				.setMaxLinger(50), dop);
+		this.aeolusBuilder.setAdaptiveSpout(this.spout1, userSpout, dop, new AdaptiveBatchSizeController(2, 100, 50));
+		
+		Assert.assertEquals(this.topologyBuilder.createTopology(), this.aeolusBuilder.createTopology());
+	}
+	
+	@Test
+	public void testProjectFields() {
+		this.aeolusBuilder.setBolt(this.bolt1, new TestBolt()).projectFields(this.spout1, new Fields("a", "b"));
+		
+		Map<?, ?> conf = (Map<?, ?>)JSONValue.parse(this.aeolusBuilder.createTopology().get_bolts().get(this.bolt1)
+			.get_common().get_json_conf());
+		Assert.assertEquals(Arrays.asList("a", "b"),
+			conf.get(AbstractBatchCollector.getProjectionConfigKey(this.spout1, Utils.DEFAULT_STREAM_ID)));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testProjectFieldsEmpty() {
+		this.aeolusBuilder.setBolt(this.bolt1, new TestBolt()).projectFields(this.spout1, new Fields());
+	}
+	
+	@Test
+	public void testFieldsGroupingStream() {
+		IRichBolt userBolt = new TestBolt();
+		
+		this.topologyBuilder.setBolt(this.bolt1, new BoltOutputBatcher(new InputDebatcher(userBolt), this.noBatching))
+			.fieldsGrouping(this.spout1, "stream", new Fields("a"))
+			.directGrouping(this.spout1, BatchingOutputFieldsDeclarer.STREAM_PREFIX + "stream");
+		this.aeolusBuilder.setBolt(this.bolt1, userBolt).fieldsGrouping(this.spout1, "stream", new Fields("a"));
+		
+		Assert.assertEquals(this.topologyBuilder.createTopology(), this.aeolusBuilder.createTopology());
+	}
+	
+	@Test
+	public void testAddConfiguration() {
+		this.aeolusBuilder.setBolt(this.bolt1, new TestBolt()).addConfiguration("key", "value");
+		
+		Map<?, ?> conf = (Map<?, ?>)JSONValue.parse(this.aeolusBuilder.createTopology().get_bolts().get(this.bolt1)
+			.get_common().get_json_conf());
+		Assert.assertEquals("value", conf.get("key"));
+	}
+	
 	@Test(expected = UnsupportedOperationException.class)
 	public void testSetStateSpout() {
 		this.aeolusBuilder.setStateSpout(null, null);
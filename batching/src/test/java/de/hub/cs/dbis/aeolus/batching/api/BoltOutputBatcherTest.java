@@ -19,11 +19,16 @@
 package de.hub.cs.dbis.aeolus.batching.api;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -36,13 +41,19 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import backtype.storm.Config;
+import backtype.storm.Constants;
+import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.IRichBolt;
 import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.tuple.Fields;
 import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
 import de.hub.cs.dbis.aeolus.batching.Batch;
 import de.hub.cs.dbis.aeolus.batching.BatchColumn;
+import de.hub.cs.dbis.aeolus.batching.BatchColumnSerializer;
 import de.hub.cs.dbis.aeolus.batching.BatchOutputCollector;
+import de.hub.cs.dbis.aeolus.batching.BatchSerializer;
 import de.hub.cs.dbis.aeolus.batching.BatchingOutputFieldsDeclarer;
 
 
@@ -126,13 +137,122 @@ public class BoltOutputBatcherTest {
 		Assert.assertSame(result, conf);
 	}
 	
+	@Test
+	public void testGetComponentConfigurationMaxLinger() {
+		BoltOutputBatcher bolt = new BoltOutputBatcher(this.boltMock, this.noBatching).setMaxLinger(1500);
+		
+		final Map<String, Object> conf = new HashMap<String, Object>();
+		conf.put("key", "value");
+		when(this.boltMock.getComponentConfiguration()).thenReturn(conf);
+		
+		Map<String, Object> result = bolt.getComponentConfiguration();
+		
+		Assert.assertEquals("value", result.get("key"));
+		Assert.assertEquals(new Integer(2), result.get(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS));
+		Assert.assertNull(conf.get(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS));
+	}
+	
+	@Test
+	public void testGetComponentConfigurationMaxLingerUserTicks() {
+		BoltOutputBatcher bolt = new BoltOutputBatcher(this.boltMock, this.noBatching).setMaxLinger(1500);
+		
+		final Map<String, Object> conf = new HashMap<String, Object>();
+		conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, new Integer(10));
+		when(this.boltMock.getComponentConfiguration()).thenReturn(conf);
+		
+		Assert.assertSame(conf, bolt.getComponentConfiguration());
+	}
+	
+	@Test
+	public void testExecuteMaxLinger() throws Exception {
+		BoltOutputBatcher bolt = new BoltOutputBatcher(this.boltMock, this.noBatching).setMaxLinger(100);
+		
+		BatchOutputCollector collectorMock = mock(BatchOutputCollector.class);
+		PowerMockito.whenNew(BatchOutputCollector.class).withAnyArguments().thenReturn(collectorMock);
+		
+		bolt.prepare(null, null, null);
+		verify(collectorMock).setMaxLinger(100);
+		
+		Tuple input = mock(Tuple.class);
+		bolt.execute(input);
+		
+		verify(this.boltMock).execute(input);
+		verify(collectorMock).flushExpired();
+		
+		Tuple tick = mock(Tuple.class);
+		when(tick.getSourceComponent()).thenReturn(Constants.SYSTEM_COMPONENT_ID);
+		when(tick.getSourceStreamId()).thenReturn(Constants.SYSTEM_TICK_STREAM_ID);
+		bolt.execute(tick);
+		
+		verify(this.boltMock, never()).execute(tick);
+		verify(collectorMock, times(2)).flushExpired();
+	}
+	
+	@Test
+	public void testExecuteMaxLingerForwardTicks() throws Exception {
+		BoltOutputBatcher bolt = new BoltOutputBatcher(this.boltMock, this.noBatching).setMaxLinger(100);
+		
+		final Map<String, Object> conf = new HashMap<String, Object>();
+		conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, new Integer(1));
+		when(this.boltMock.getComponentConfiguration()).thenReturn(conf);
+		
+		BatchOutputCollector collectorMock = mock(BatchOutputCollector.class);
+		PowerMockito.whenNew(BatchOutputCollector.class).withAnyArguments().thenReturn(collectorMock);
+		
+		bolt.prepare(null, null, null);
+		
+		Tuple tick = mock(Tuple.class);
+		when(tick.getSourceComponent()).thenReturn(Constants.SYSTEM_COMPONENT_ID);
+		when(tick.getSourceStreamId()).thenReturn(Constants.SYSTEM_TICK_STREAM_ID);
+		bolt.execute(tick);
+		
+		verify(this.boltMock).execute(tick);
+	}
+	
+	@Test
+	public void testStatisticsReporting() throws Exception {
+		BoltOutputBatcher bolt = new BoltOutputBatcher(this.boltMock, this.noBatching).setStatisticsReporting(1,
+			"stats");
+		
+		Map<String, Object> conf = bolt.getComponentConfiguration();
+		Assert.assertEquals(new Integer(1), conf.get(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS));
+		
+		OutputFieldsDeclarer declarer = mock(OutputFieldsDeclarer.class);
+		bolt.declareOutputFields(declarer);
+		verify(declarer).declareStream(eq("stats"), any(Fields.class));
+		
+		BatchOutputCollector collectorMock = mock(BatchOutputCollector.class);
+		PowerMockito.whenNew(BatchOutputCollector.class).withAnyArguments().thenReturn(collectorMock);
+		final Values statsTuple = new Values(new Long(0), "default", "batches", new Double(1));
+		when(collectorMock.reportStatistics(anyLong())).thenReturn(Arrays.asList(statsTuple));
+		OutputCollector collector = mock(OutputCollector.class);
+		
+		bolt.prepare(null, null, collector);
+		verify(collectorMock).setStatisticsEnabled(true);
+		
+		Thread.sleep(2);
+		bolt.execute(mock(Tuple.class));
+		verify(collector).emit("stats", statsTuple);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testStatisticsReportingInvalidInterval() {
+		new BoltOutputBatcher(this.boltMock, this.noBatching).setStatisticsReporting(0);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testStatisticsReportingReservedStream() {
+		new BoltOutputBatcher(this.boltMock, this.noBatching).setStatisticsReporting(1,
+			BatchingOutputFieldsDeclarer.STREAM_PREFIX + "stats");
+	}
+	
 	@Test
 	public void testKryoRegistrations() {
 		Config stormConfig = mock(Config.class);
 		BoltOutputBatcher.registerKryoClasses(stormConfig);
 		
-		verify(stormConfig).registerSerialization(Batch.class);
-		verify(stormConfig).registerSerialization(BatchColumn.class);
+		verify(stormConfig).registerSerialization(Batch.class, BatchSerializer.class);
+		verify(stormConfig).registerSerialization(BatchColumn.class, BatchColumnSerializer.class);
 	}
 	
 }
@@ -0,0 +1,116 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching.api;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
+import de.hub.cs.dbis.aeolus.batching.Batch;
+
+
+
+
+
+/**
+ * @author Matthias J. Sax
+ */
+public class DebatchedTupleTest {
+	private DebatchedTuple tuple;
+	private Batch batch;
+	
+	
+	
+	@Before
+	public void prepare() {
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getComponentOutputFields(any(String.class), any(String.class))).thenReturn(new Fields("a", "b"));
+		
+		this.batch = new Batch(3, 2);
+		this.batch.addTuple(new Values(new Long(1), "x"));
+		this.batch.addTuple(new Values(new Long(2), "y"));
+		this.batch.addTuple(new Values(new Long(3), "x"));
+		
+		this.tuple = new DebatchedTuple(context, 2, 0, "stream");
+		this.tuple.setColumn(0, this.batch.get(0));
+		this.tuple.setColumn(1, this.batch.get(1));
+	}
+	
+	@Test
+	public void testSetRow() {
+		Assert.assertEquals(2, this.tuple.size());
+		
+		for(int i = 0; i < 3; ++i) {
+			this.tuple.setRow(i);
+			Assert.assertEquals(new Long(i + 1), this.tuple.getLong(0));
+			Assert.assertEquals(i == 1 ? "y" : "x", this.tuple.getString(1));
+			Assert.assertEquals(new Long(i + 1), this.tuple.getValueByField("a"));
+		}
+	}
+	
+	@Test
+	public void testGetValues() {
+		this.tuple.setRow(0);
+		List<Object> values = this.tuple.getValues();
+		
+		this.tuple.setRow(1);
+		
+		Assert.assertEquals(new Values(new Long(1), "x"), values);
+		Assert.assertEquals(new Values(new Long(2), "y"), this.tuple.getValues());
+	}
+	
+	@Test
+	public void testCopy() {
+		this.tuple.setRow(2);
+		Tuple copy = this.tuple.copy();
+		
+		this.tuple.setRow(0);
+		
+		Assert.assertNotSame(this.tuple, copy);
+		Assert.assertEquals(new Values(new Long(3), "x"), copy.getValues());
+		Assert.assertEquals(0, copy.getSourceTask());
+		Assert.assertEquals("stream", copy.getSourceStreamId());
+		Assert.assertSame(this.tuple.getMessageId(), copy.getMessageId());
+	}
+	
+	@Test
+	public void testGetPendingBatch() {
+		Assert.assertNull(DebatchedTuple.getPendingBatch(this.tuple));
+		Assert.assertNull(DebatchedTuple.getPendingBatch(mock(Tuple.class)));
+		
+		PendingBatch pendingBatch = new PendingBatch(mock(Tuple.class), 3);
+		this.tuple.setPendingBatch(pendingBatch);
+		Tuple copy = this.tuple.copy();
+		
+		this.tuple.setPendingBatch(null);
+		
+		Assert.assertSame(pendingBatch, DebatchedTuple.getPendingBatch(copy));
+	}
+	
+}
@@ -0,0 +1,203 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.batching.api;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import backtype.storm.task.IOutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
+import backtype.storm.utils.Utils;
+import de.hub.cs.dbis.aeolus.batching.Batch;
+import de.hub.cs.dbis.aeolus.batching.BatchOutputCollector;
+
+
+
+
+
+/**
+ * @author Matthias J. Sax
+ */
+public class DebatchingOutputCollectorTest {
+	private IOutputCollector collectorMock;
+	private DebatchingOutputCollector collector;
+	private DebatchedTuple tuple;
+	private Tuple input;
+	
+	
+	
+	@Before
+	public void prepare() {
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getComponentOutputFields(any(String.class), any(String.class))).thenReturn(new Fields("a"));
+		
+		this.collectorMock = mock(IOutputCollector.class);
+		this.collector = new DebatchingOutputCollector(this.collectorMock);
+		this.input = mock(Tuple.class);
+		Batch batch = new Batch(3, 1);
+		for(int i = 0; i < 3; ++i) {
+			batch.addTuple(new Values(new Integer(i)));
+		}
+		
+		this.tuple = new DebatchedTuple(context, 1, 0, "stream");
+		this.tuple.setColumn(0, batch.get(0));
+		this.tuple.setPendingBatch(new PendingBatch(this.input, 3));
+	}
+	
+	
+	
+	@Test
+	public void testAckRegularTuple() {
+		Tuple regular = mock(Tuple.class);
+		
+		this.collector.ack(regular);
+		verify(this.collectorMock).ack(regular);
+		
+		this.collector.fail(regular);
+		verify(this.collectorMock).fail(regular);
+	}
+	
+	@Test
+	public void testAckBatch() {
+		this.tuple.setRow(0);
+		this.collector.ack(this.tuple);
+		this.tuple.setRow(1);
+		this.collector.ack(this.tuple.copy());
+		verify(this.collectorMock, never()).ack(this.input);
+		
+		this.tuple.setRow(2);
+		this.collector.ack(this.tuple);
+		verify(this.collectorMock).ack(this.input);
+		verify(this.collectorMock, never()).fail(this.input);
+	}
+	
+	@Test
+	public void testFailBatch() {
+		this.tuple.setRow(0);
+		this.collector.ack(this.tuple);
+		this.tuple.setRow(1);
+		this.collector.fail(this.tuple);
+		verify(this.collectorMock, never()).fail(this.input);
+		
+		this.tuple.setRow(2);
+		this.collector.ack(this.tuple);
+		verify(this.collectorMock).fail(this.input);
+		verify(this.collectorMock, never()).ack(this.input);
+	}
+	
+	@Test
+	public void testRepeatedAckAndFail() {
+		this.tuple.setRow(0);
+		this.collector.ack(this.tuple);
+		this.collector.ack(this.tuple);
+		this.collector.fail(this.tuple.copy());
+		this.tuple.setRow(1);
+		this.collector.fail(this.tuple);
+		this.collector.fail(this.tuple);
+		verify(this.collectorMock, never()).ack(this.input);
+		verify(this.collectorMock, never()).fail(this.input);
+		
+		this.tuple.setRow(2);
+		this.collector.ack(this.tuple);
+		this.collector.ack(this.tuple);
+		verify(this.collectorMock).fail(this.input);
+		verify(this.collectorMock, never()).ack(this.input);
+	}
+	
+	@Test
+	public void testEmitRegularAnchors() {
+		List<Tuple> anchors = Arrays.asList(mock(Tuple.class), mock(Tuple.class));
+		Values output = new Values(new Integer(0));
+		
+		this.collector.emit("stream", anchors, output);
+		verify(this.collectorMock).emit("stream", anchors, output);
+		
+		this.collector.emit("stream", (Collection<Tuple>)null, output);
+		verify(this.collectorMock).emit("stream", null, output);
+	}
+	
+	@Test
+	public void testEmitSingleAnchor() {
+		Values output = new Values(new Integer(0));
+		
+		this.collector.emit("stream", Arrays.asList((Tuple)this.tuple), output);
+		verify(this.collectorMock).emit("stream", Arrays.asList(this.input), output);
+		
+		this.collector.emitDirect(1, "stream", Arrays.asList(this.tuple.copy()), output);
+		verify(this.collectorMock).emitDirect(1, "stream", Arrays.asList(this.input), output);
+	}
+	
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	@Test
+	public void testEmitMultipleAnchors() {
+		Tuple regular = mock(Tuple.class);
+		Values output = new Values(new Integer(0));
+		
+		this.collector.emit("stream", Arrays.asList(regular, this.tuple, this.tuple.copy()), output);
+		
+		ArgumentCaptor<Collection> anchors = ArgumentCaptor.forClass(Collection.class);
+		verify(this.collectorMock).emit(any(String.class), anchors.capture(), any(List.class));
+		Assert.assertEquals(Arrays.asList(regular, this.input), new ArrayList<Tuple>(anchors.getValue()));
+	}
+	
+	@Test
+	public void testEmitAll() {
+		List<Values> output = Arrays.asList(new Values(new Integer(0)), new Values(new Integer(1)));
+		
+		this.collector.emitAll("stream", this.tuple, output);
+		verify(this.collectorMock).emit("stream", Arrays.asList(this.input), output.get(0));
+		verify(this.collectorMock).emit("stream", Arrays.asList(this.input), output.get(1));
+		
+		this.collector.emitAll("stream", output);
+		verify(this.collectorMock).emit("stream", null, output.get(0));
+		verify(this.collectorMock).emit("stream", null, output.get(1));
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testEmitAllBatchOutputCollector() {
+		BatchOutputCollector batchCollectorMock = mock(BatchOutputCollector.class);
+		DebatchingOutputCollector batchCollector = new DebatchingOutputCollector(batchCollectorMock);
+		List<Values> output = Arrays.asList(new Values(new Integer(0)), new Values(new Integer(1)));
+		
+		batchCollector.emitAll("stream", this.tuple, output);
+		verify(batchCollectorMock).emitAll("stream", Arrays.asList(this.input), output);
+		
+		batchCollector.emitAll(output);
+		verify(batchCollectorMock).emitAll(Utils.DEFAULT_STREAM_ID, (Collection<Tuple>)null, output);
+		verify(batchCollectorMock, never()).emit(any(String.class), any(Collection.class), any(List.class));
+	}
+	
+}
@@ -19,11 +19,16 @@
 package de.hub.cs.dbis.aeolus.batching.api;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -33,10 +38,15 @@ import java.util.Random;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import backtype.storm.Config;
+import backtype.storm.task.IOutputCollector;
 import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
+import backtype.storm.topology.BasicBoltExecutor;
 import backtype.storm.topology.IRichBolt;
 import backtype.storm.topology.OutputFieldsDeclarer;
 import backtype.storm.tuple.Fields;
@@ -45,7 +55,9 @@ import backtype.storm.tuple.Values;
 import backtype.storm.utils.Utils;
 import de.hub.cs.dbis.aeolus.batching.Batch;
 import de.hub.cs.dbis.aeolus.batching.BatchColumn;
+import de.hub.cs.dbis.aeolus.batching.BatchColumnSerializer;
 import de.hub.cs.dbis.aeolus.batching.BatchOutputCollector;
+import de.hub.cs.dbis.aeolus.batching.BatchSerializer;
 import de.hub.cs.dbis.aeolus.testUtils.ForwardBolt;
 import de.hub.cs.dbis.aeolus.testUtils.TestOutputCollector;
 
@@ -156,6 +168,182 @@ public class InputDebatcherTest {
 		Assert.assertEquals(expectedResult, collector.output.get(Utils.DEFAULT_STREAM_ID));
 	}
 	
+	@Test
+	public void testExecuteReusesTuple() {
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getComponentOutputFields(any(String.class), any(String.class))).thenReturn(new Fields("a"));
+		
+		IRichBolt boltMock = mock(IRichBolt.class);
+		InputDebatcher bolt = new InputDebatcher(boltMock);
+		bolt.prepare(null, context, null);
+		
+		Batch inputBatch = new Batch(2, 1);
+		inputBatch.addTuple(new Values(new Integer(0)));
+		inputBatch.addTuple(new Values(new Integer(1)));
+		
+		Tuple input = mock(Tuple.class);
+		when(new Integer(input.size())).thenReturn(new Integer(1));
+		when(input.getValue(0)).thenReturn(inputBatch.get(0));
+		when(input.getSourceStreamId()).thenReturn("stream");
+		
+		bolt.execute(input);
+		bolt.execute(input);
+		
+		ArgumentCaptor<Tuple> captor = ArgumentCaptor.forClass(Tuple.class);
+		verify(boltMock, times(4)).execute(captor.capture());
+		
+		final Tuple tuple = captor.getAllValues().get(0);
+		Assert.assertTrue(tuple instanceof DebatchedTuple);
+		for(Tuple t : captor.getAllValues()) {
+			Assert.assertSame(tuple, t);
+		}
+	}
+	
+	@Test
+	public void testAckBatch() {
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getComponentOutputFields(any(String.class), any(String.class))).thenReturn(new Fields("a"));
+		
+		IRichBolt boltMock = mock(IRichBolt.class);
+		InputDebatcher bolt = new InputDebatcher(boltMock);
+		IOutputCollector collectorMock = mock(IOutputCollector.class);
+		bolt.prepare(null, context, new OutputCollector(collectorMock));
+		
+		ArgumentCaptor<OutputCollector> collector = ArgumentCaptor.forClass(OutputCollector.class);
+		verify(boltMock).prepare(any(Map.class), same(context), collector.capture());
+		
+		Batch inputBatch = new Batch(2, 1);
+		inputBatch.addTuple(new Values(new Integer(0)));
+		inputBatch.addTuple(new Values(new Integer(1)));
+		
+		Tuple input = mock(Tuple.class);
+		when(new Integer(input.size())).thenReturn(new Integer(1));
+		when(input.getValue(0)).thenReturn(inputBatch.get(0));
+		
+		final List<Tuple> copies = new LinkedList<Tuple>();
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				copies.add(((DebatchedTuple)invocation.getArguments()[0]).copy());
+				return null;
+			}
+		}).when(boltMock).execute(any(Tuple.class));
+		
+		bolt.execute(input);
+		Assert.assertEquals(2, copies.size());
+		
+		collector.getValue().emit(copies.get(0), new Values(new Integer(0)));
+		verify(collectorMock).emit(Utils.DEFAULT_STREAM_ID, Arrays.asList(input), new Values(new Integer(0)));
+		
+		collector.getValue().ack(copies.get(0));
+		collector.getValue().ack(copies.get(0));
+		verify(collectorMock, never()).ack(input);
+		collector.getValue().ack(copies.get(1));
+		verify(collectorMock).ack(input);
+	}
+	
+	@Test
+	public void testBasicBolt() {
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getComponentOutputFields(any(String.class), any(String.class))).thenReturn(new Fields("a"));
+		
+		InputDebatcher bolt = new InputDebatcher(new BasicBoltExecutor(new TestBasicBolt()));
+		IOutputCollector collectorMock = mock(IOutputCollector.class);
+		bolt.prepare(null, context, new OutputCollector(collectorMock));
+		
+		Batch inputBatch = new Batch(2, 1);
+		inputBatch.addTuple(new Values(new Integer(0)));
+		inputBatch.addTuple(new Values(new Integer(1)));
+		
+		Tuple input = mock(Tuple.class);
+		when(new Integer(input.size())).thenReturn(new Integer(1));
+		when(input.getValue(0)).thenReturn(inputBatch.get(0));
+		
+		bolt.execute(input);
+		
+		verify(collectorMock).emit(Utils.DEFAULT_STREAM_ID, Arrays.asList(input), new Values(new Integer(0)));
+		verify(collectorMock).emit(Utils.DEFAULT_STREAM_ID, Arrays.asList(input), new Values(new Integer(1)));
+		verify(collectorMock, times(1)).ack(input);
+		verify(collectorMock, never()).fail(any(Tuple.class));
+	}
+	
+	@Test
+	public void testExecuteBatchBolt() {
+		IBatchBolt boltMock = mock(IBatchBolt.class);
+		InputDebatcher bolt = new InputDebatcher(boltMock);
+		bolt.prepare(null, mock(TopologyContext.class), null);
+		
+		Batch inputBatch = new Batch(3, 2);
+		inputBatch.addTuple(new Values(new Integer(0), "a"));
+		inputBatch.addTuple(new Values(new Integer(1), "b"));
+		
+		Tuple input = mock(Tuple.class);
+		when(new Integer(input.size())).thenReturn(new Integer(2));
+		when(input.getValue(0)).thenReturn(inputBatch.get(0));
+		when(input.getValue(1)).thenReturn(inputBatch.get(1));
+		
+		bolt.execute(input);
+		
+		verify(boltMock).executeBatch(same(input),
+			eq(new BatchColumn[] {inputBatch.get(0), inputBatch.get(1)}), eq(2));
+		verify(boltMock, never()).execute(any(Tuple.class));
+		
+		Tuple regularInput = mock(Tuple.class);
+		when(new Integer(regularInput.size())).thenReturn(new Integer(1));
+		when(regularInput.getValue(0)).thenReturn(new Integer(42));
+		
+		bolt.execute(regularInput);
+		
+		verify(boltMock).execute(regularInput);
+	}
+	
+	@Test
+	public void testExecuteReleasesColumns() {
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getComponentOutputFields(any(String.class), any(String.class))).thenReturn(new Fields("a", "b"));
+		
+		InputDebatcher bolt = new InputDebatcher(mock(IRichBolt.class));
+		bolt.prepare(null, context, null);
+		
+		BatchColumn column1 = mock(BatchColumn.class);
+		BatchColumn column2 = mock(BatchColumn.class);
+		when(new Integer(column1.size())).thenReturn(new Integer(1));
+		
+		Tuple input = mock(Tuple.class);
+		when(new Integer(input.size())).thenReturn(new Integer(2));
+		when(input.getValue(0)).thenReturn(column1);
+		when(input.getValue(1)).thenReturn(column2);
+		
+		bolt.execute(input);
+		
+		verify(column1).release();
+		verify(column2).release();
+	}
+	
+	@Test
+	public void testExecuteProjectedBatch() {
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getComponentOutputFields(any(String.class), any(String.class))).thenReturn(
+			new Fields("a", "b", "c"));
+		
+		InputDebatcher bolt = new InputDebatcher(new ForwardBolt(new Fields("dummy")));
+		TestOutputCollector collector = new TestOutputCollector();
+		bolt.prepare(null, context, new OutputCollector(collector));
+		
+		Batch inputBatch = new Batch(2, 3);
+		inputBatch.addTuple(new Values(new Integer(0), "x", new Long(0)));
+		inputBatch.addTuple(new Values(new Integer(1), "y", new Long(1)));
+		
+		Tuple input = mock(Tuple.class);
+		when(new Integer(input.size())).thenReturn(new Integer(3));
+		when(input.getValue(1)).thenReturn(inputBatch.get(1));
+		
+		bolt.execute(input);
+		
+		Assert.assertEquals(Arrays.asList(new Values(null, "x", null), new Values(null, "y", null)),
+			collector.output.get(Utils.DEFAULT_STREAM_ID));
+	}
+	
 	@Test
 	public void testCleanup() {
 		IRichBolt boltMock = mock(IRichBolt.class);
@@ -196,8 +384,8 @@ public class InputDebatcherTest {
 		Config stormConfig = mock(Config.class);
 		InputDebatcher.registerKryoClasses(stormConfig);
 		
-		verify(stormConfig).registerSerialization(Batch.class);
-		verify(stormConfig).registerSerialization(BatchColumn.class);
+		verify(stormConfig).registerSerialization(Batch.class, BatchSerializer.class);
+		verify(stormConfig).registerSerialization(BatchColumn.class, BatchColumnSerializer.class);
 	}
 	
 }
@@ -19,12 +19,15 @@
 package de.hub.cs.dbis.aeolus.batching.api;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
@@ -32,20 +35,26 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import backtype.storm.Config;
 import backtype.storm.generated.Grouping;
+import backtype.storm.spout.ISpoutOutputCollector;
 import backtype.storm.spout.SpoutOutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.IRichSpout;
 import backtype.storm.topology.OutputFieldsDeclarer;
 import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Values;
 import backtype.storm.utils.Utils;
 import de.hub.cs.dbis.aeolus.batching.Batch;
 import de.hub.cs.dbis.aeolus.batching.BatchColumn;
+import de.hub.cs.dbis.aeolus.batching.BatchColumnSerializer;
+import de.hub.cs.dbis.aeolus.batching.BatchSerializer;
 import de.hub.cs.dbis.aeolus.batching.BatchSpoutOutputCollector;
 import de.hub.cs.dbis.aeolus.batching.BatchingOutputFieldsDeclarer;
 import de.hub.cs.dbis.aeolus.testUtils.IncSpout;
@@ -146,6 +155,43 @@ public class SpoutOutputBatcherTest {
 		verify(this.spoutMock).fail(messageId);
 	}
 	
+	@Test
+	public void testAckAndFailBatch() {
+		final String sourceId = "sourceId";
+		
+		Map<String, Grouping> receiver = new HashMap<String, Grouping>();
+		receiver.put("receiverId", mock(Grouping.class));
+		HashMap<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(Utils.DEFAULT_STREAM_ID, receiver);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisComponentId()).thenReturn(sourceId);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(sourceId, Utils.DEFAULT_STREAM_ID)).thenReturn(new Fields("dummy"));
+		
+		SpoutOutputBatcher spout = new SpoutOutputBatcher(this.spoutMock, 2);
+		ISpoutOutputCollector collectorMock = mock(ISpoutOutputCollector.class);
+		spout.open(null, context, new SpoutOutputCollector(collectorMock));
+		
+		ArgumentCaptor<SpoutOutputCollector> batchCollector = ArgumentCaptor.forClass(SpoutOutputCollector.class);
+		verify(this.spoutMock).open(Matchers.<Map<String, Object>> any(), same(context), batchCollector.capture());
+		for(int i = 0; i < 4; ++i) {
+			batchCollector.getValue().emit(new Values(new Integer(i)), new Integer(i));
+		}
+		
+		ArgumentCaptor<Object> batchMessageIds = ArgumentCaptor.forClass(Object.class);
+		verify(collectorMock, times(2)).emit(eq(Utils.DEFAULT_STREAM_ID), Matchers.<List<Object>> any(),
+			batchMessageIds.capture());
+		
+		spout.ack(batchMessageIds.getAllValues().get(0));
+		verify(this.spoutMock).ack(new Integer(0));
+		verify(this.spoutMock).ack(new Integer(1));
+		
+		spout.fail(batchMessageIds.getAllValues().get(1));
+		verify(this.spoutMock).fail(new Integer(2));
+		verify(this.spoutMock).fail(new Integer(3));
+	}
+	
 	@Test
 	public void testDeclareOutputFields() {
 		SpoutOutputBatcher spout = new SpoutOutputBatcher(this.spoutMock, this.noBatching);
@@ -234,13 +280,105 @@ public class SpoutOutputBatcherTest {
 		Assert.assertEquals(1, collector.output.get(Utils.DEFAULT_STREAM_ID).size());
 	}
 	
+	@Test
+	public void testNextTupleNoFilling() {
+		final int batchSize = 2 + this.r.nextInt(9);
+		final String streamId = Utils.DEFAULT_STREAM_ID;
+		final String sourceId = "sourceId";
+		
+		Map<String, Grouping> receiver = new HashMap<String, Grouping>();
+		receiver.put("receiverId", mock(Grouping.class));
+		
+		HashMap<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(streamId, receiver);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisComponentId()).thenReturn(sourceId);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(sourceId, streamId)).thenReturn(new Fields("dummy"));
+		
+		RandomSpout userSpout = new RandomSpout(1, 1000, new String[] {Utils.DEFAULT_STREAM_ID}, this.seed);
+		SpoutOutputBatcher batcher = new SpoutOutputBatcher(userSpout, batchSize).setBatchFilling(false);
+		
+		TestSpoutOutputCollector collector = new TestSpoutOutputCollector();
+		batcher.open(null, context, new SpoutOutputCollector(collector));
+		
+		for(int i = 1; i < batchSize; ++i) {
+			batcher.nextTuple();
+			Assert.assertNull(collector.output.get(Utils.DEFAULT_STREAM_ID));
+		}
+		batcher.nextTuple();
+		
+		Assert.assertEquals(1, collector.output.get(Utils.DEFAULT_STREAM_ID).size());
+	}
+	
+	@Test(timeout = 1000)
+	public void testNextTupleMaxFillTime() {
+		final int batchSize = 2 + this.r.nextInt(9);
+		final String streamId = Utils.DEFAULT_STREAM_ID;
+		final String sourceId = "sourceId";
+		
+		Map<String, Grouping> receiver = new HashMap<String, Grouping>();
+		receiver.put("receiverId", mock(Grouping.class));
+		
+		HashMap<String, Map<String, Grouping>> targets = new HashMap<String, Map<String, Grouping>>();
+		targets.put(streamId, receiver);
+		
+		TopologyContext context = mock(TopologyContext.class);
+		when(context.getThisComponentId()).thenReturn(sourceId);
+		when(context.getThisTargets()).thenReturn(targets);
+		when(context.getComponentOutputFields(sourceId, streamId)).thenReturn(new Fields("dummy"));
+		
+		RandomSpout userSpout = new RandomSpout(1, 1000, new String[] {Utils.DEFAULT_STREAM_ID}, this.seed) {
+			private final static long serialVersionUID = 3418957106242285963L;
+			
+			@Override
+			public void nextTuple() {
+				super.nextTuple();
+				Utils.sleep(1);
+			}
+		};
+		SpoutOutputBatcher batcher = new SpoutOutputBatcher(userSpout, batchSize).setMaxFillTime(100);
+		
+		TestSpoutOutputCollector collector = new TestSpoutOutputCollector();
+		batcher.open(null, context, new SpoutOutputCollector(collector));
+		
+		for(int i = 1; i < batchSize; ++i) {
+			batcher.nextTuple();
+			Assert.assertNull(collector.output.get(Utils.DEFAULT_STREAM_ID));
+		}
+		batcher.nextTuple();
+		
+		Assert.assertEquals(1, collector.output.get(Utils.DEFAULT_STREAM_ID).size());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetMaxFillTimeInvalid() {
+		new SpoutOutputBatcher(this.spoutMock, 1).setMaxFillTime(0);
+	}
+	
+	@Test(timeout = 1000)
+	public void testNextTupleMaxLinger() throws Exception {
+		BatchSpoutOutputCollector collectorMock = mock(BatchSpoutOutputCollector.class);
+		PowerMockito.whenNew(BatchSpoutOutputCollector.class).withAnyArguments().thenReturn(collectorMock);
+		
+		SpoutOutputBatcher spout = new SpoutOutputBatcher(this.spoutMock, this.noBatching).setMaxLinger(100);
+		spout.open(null, null, null);
+		verify(collectorMock).setMaxLinger(100);
+		
+		spout.nextTuple();
+		
+		verify(this.spoutMock).nextTuple();
+		verify(collectorMock).flushExpired();
+	}
+	
 	@Test
 	public void testKryoRegistrations() {
 		Config stormConfig = mock(Config.class);
 		SpoutOutputBatcher.registerKryoClasses(stormConfig);
 		
-		verify(stormConfig).registerSerialization(Batch.class);
-		verify(stormConfig).registerSerialization(BatchColumn.class);
+		verify(stormConfig).registerSerialization(Batch.class, BatchSerializer.class);
+		verify(stormConfig).registerSerialization(BatchColumn.class, BatchColumnSerializer.class);
 	}
 	
 }
@@ -0,0 +1,86 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backtype.storm.tuple.Values;
+import de.hub.cs.dbis.aeolus.batching.Batch;
+
+
+
+
+
+/**
+ * Measures the time to fill a {@link Batch} via {@link Batch#addTuple(java.util.List)}. Each invocation fills a new
+ * batch with {@code batchSize} tuples.
+ * 
+ * @author Matthias J. Sax
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchAddTupleBenchmark {
+	/** The number of attributes of each tuple. */
+	@Param({"1", "4", "16"})
+	public int width;
+	/** The number of tuples per batch. */
+	@Param({"10", "100", "1000"})
+	public int batchSize;
+	/** If {@code true}, the batch is created with declared column types. */
+	@Param({"false", "true"})
+	public boolean typedColumns;
+	
+	private Values[] tuples;
+	private Class<?>[] columnTypes;
+	
+	
+	
+	@Setup
+	public void setup() {
+		this.tuples = BenchmarkUtils.createTuples(this.batchSize, this.width);
+		this.columnTypes = this.typedColumns ? BenchmarkUtils.createColumnTypes(this.width) : null;
+	}
+	
+	@Benchmark
+	public Batch addTuple() {
+		final Batch batch = this.columnTypes != null ? new Batch(this.batchSize, this.columnTypes) : new Batch(
+			this.batchSize, this.width);
+		for(Values tuple : this.tuples) {
+			batch.addTuple(tuple);
+		}
+		return batch;
+	}
+	
+}
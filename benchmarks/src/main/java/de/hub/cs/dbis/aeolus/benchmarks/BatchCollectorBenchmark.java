@@ -0,0 +1,112 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Values;
+import de.hub.cs.dbis.aeolus.batching.AbstractBatchCollector;
+import de.hub.cs.dbis.aeolus.batching.BatchOutputCollector;
+import de.hub.cs.dbis.aeolus.testUtils.TestOutputCollector;
+
+
+
+
+
+/**
+ * Measures the time to emit tuples through {@link BatchOutputCollector} (ie,
+ * {@link AbstractBatchCollector#tupleEmit(String, java.util.Collection, List, Object)} and
+ * {@link AbstractBatchCollector#tupleEmitDirect(int, String, java.util.Collection, List, Object)}) for different
+ * connection patterns. Each invocation emits {@code batchSize} tuples to the default output stream; emitted batches are
+ * collected by a {@link TestOutputCollector} and dropped afterwards.
+ * 
+ * @author Matthias J. Sax
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchCollectorBenchmark {
+	/** The number of attributes of each tuple. */
+	@Param({"1", "4", "16"})
+	public int width;
+	/** The number of tuples per batch. */
+	@Param({"10", "100", "1000"})
+	public int batchSize;
+	/** The connection pattern to the receiver. */
+	@Param({"SHUFFLE", "FIELDS", "ALL", "LOCAL_OR_SHUFFLE", "DIRECT"})
+	public ReceiverGrouping grouping;
+	/** If {@code true}, the connection pattern is emulated via a direct output stream. */
+	@Param({"false", "true"})
+	public boolean emulated;
+	
+	private Values[] tuples;
+	private int[] receiverTasks;
+	private TestOutputCollector testCollector;
+	private BatchOutputCollector collector;
+	
+	
+	
+	@Setup
+	public void setup() {
+		final TopologyContext context = BenchmarkUtils.createContext(
+			BenchmarkUtils.createTopology(this.width, this.grouping, this.emulated), BenchmarkUtils.PRODUCER_ID);
+		
+		final List<Integer> tasks = context.getComponentTasks(BenchmarkUtils.RECEIVER_ID);
+		this.receiverTasks = new int[tasks.size()];
+		for(int i = 0; i < this.receiverTasks.length; ++i) {
+			this.receiverTasks[i] = tasks.get(i).intValue();
+		}
+		
+		this.tuples = BenchmarkUtils.createTuples(this.batchSize, this.width);
+		this.testCollector = new TestOutputCollector();
+		this.collector = new BatchOutputCollector(context, this.testCollector, this.batchSize);
+	}
+	
+	@Benchmark
+	public void emit() {
+		if(this.grouping == ReceiverGrouping.DIRECT) {
+			for(int i = 0; i < this.tuples.length; ++i) {
+				this.collector.emitDirect(this.receiverTasks[i % this.receiverTasks.length], this.tuples[i]);
+			}
+		} else {
+			for(Values tuple : this.tuples) {
+				this.collector.emit(tuple);
+			}
+		}
+		this.testCollector.output.clear();
+	}
+	
+}
@@ -0,0 +1,111 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import backtype.storm.Config;
+import backtype.storm.serialization.SerializationFactory;
+import backtype.storm.tuple.Values;
+import backtype.storm.utils.Utils;
+import de.hub.cs.dbis.aeolus.batching.AbstractBatchCollector;
+import de.hub.cs.dbis.aeolus.batching.Batch;
+
+
+
+
+
+/**
+ * Measures a Kryo round-trip (serialization and deserialization) of a full {@link Batch}. Each invocation serializes
+ * and deserializes one batch with {@code batchSize} tuples. The {@link Kryo} instance is
+ * configured the same way as Storm does it for a topology that registered the batching classes via
+ * {@link AbstractBatchCollector#registerKryoClasses(Config, boolean)}.
+ * 
+ * @author Matthias J. Sax
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchSerializationBenchmark {
+	/** The number of attributes of each tuple. */
+	@Param({"1", "4", "16"})
+	public int width;
+	/** The number of tuples per batch. */
+	@Param({"10", "100", "1000"})
+	public int batchSize;
+	/** If {@code true}, the batch is created with declared column types. */
+	@Param({"false", "true"})
+	public boolean typedColumns;
+	/** If {@code true}, the custom batch serializers are used; otherwise, Kryo's default serializers are used. */
+	@Param({"true", "false"})
+	public boolean customSerializers;
+	
+	private Kryo kryo;
+	private Batch batch;
+	private Output output;
+	private Input input;
+	
+	
+	
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		final Config conf = new Config();
+		conf.putAll(Utils.readDefaultConfig());
+		AbstractBatchCollector.registerKryoClasses(conf, this.customSerializers);
+		this.kryo = SerializationFactory.getKryo(conf);
+		
+		this.batch = this.typedColumns ? new Batch(this.batchSize, BenchmarkUtils.createColumnTypes(this.width))
+			: new Batch(this.batchSize, this.width);
+		for(Values tuple : BenchmarkUtils.createTuples(this.batchSize, this.width)) {
+			this.batch.addTuple(tuple);
+		}
+		
+		this.output = new Output(4096, -1);
+		this.input = new Input();
+	}
+	
+	@Benchmark
+	public Batch roundTrip() {
+		this.output.clear();
+		this.kryo.writeClassAndObject(this.output, this.batch);
+		this.input.setBuffer(this.output.getBuffer(), 0, this.output.position());
+		return (Batch)this.kryo.readClassAndObject(this.input);
+	}
+	
+}
@@ -0,0 +1,224 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import backtype.storm.generated.Bolt;
+import backtype.storm.generated.ComponentCommon;
+import backtype.storm.generated.SpoutSpec;
+import backtype.storm.generated.StormTopology;
+import backtype.storm.generated.StreamInfo;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.topology.TopologyBuilder;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Values;
+import clojure.lang.Atom;
+import de.hub.cs.dbis.aeolus.batching.api.AeolusBuilder;
+import de.hub.cs.dbis.aeolus.testUtils.ForwardBolt;
+
+
+
+
+
+/**
+ * {@link BenchmarkUtils} provides the input tuples and topology contexts for all benchmarks. Instead of mocking the
+ * runtime environment, the benchmarked components are set up with a real {@link TopologyContext} of a small
+ * producer-receiver topology.
+ * 
+ * @author Matthias J. Sax
+ */
+final class BenchmarkUtils {
+	/** The ID of the producer (ie, the benchmarked component). */
+	final static String PRODUCER_ID = "producer";
+	/** The ID of the receiver. */
+	final static String RECEIVER_ID = "receiver";
+	/** The parallelism of the receiver. */
+	final static int RECEIVER_DOP = 4;
+	
+	
+	
+	private BenchmarkUtils() {}
+	
+	
+	
+	/**
+	 * Returns a schema with {@code width} attributes {@code a0}, {@code a1}, ...
+	 * 
+	 * @param width
+	 *            The number of attributes.
+	 * 
+	 * @return the schema
+	 */
+	static Fields createSchema(int width) {
+		final List<String> attributes = new ArrayList<String>(width);
+		for(int i = 0; i < width; ++i) {
+			attributes.add("a" + i);
+		}
+		return new Fields(attributes);
+	}
+	
+	/**
+	 * Returns the column types of tuples created by {@link #createTuples(int, int)}.
+	 * 
+	 * @param width
+	 *            The number of attributes.
+	 * 
+	 * @return the column types
+	 */
+	static Class<?>[] createColumnTypes(int width) {
+		final Class<?>[] types = new Class<?>[width];
+		for(int i = 0; i < width; ++i) {
+			switch(i % 4) {
+			case 0:
+				types[i] = Integer.class;
+				break;
+			case 1:
+				types[i] = Long.class;
+				break;
+			case 2:
+				types[i] = Double.class;
+				break;
+			default:
+				types[i] = String.class;
+			}
+		}
+		return types;
+	}
+	
+	/**
+	 * Creates {@code numberOfTuples} random tuples with {@code width} attributes of type {@link Integer},
+	 * {@link Long}, {@link Double}, and {@link String} (round robin). The tuples are the same for each call.
+	 * 
+	 * @param numberOfTuples
+	 *            The number of tuples to be created.
+	 * @param width
+	 *            The number of attributes of each tuple.
+	 * 
+	 * @return the created tuples
+	 */
+	static Values[] createTuples(int numberOfTuples, int width) {
+		final Random r = new Random(42);
+		final Class<?>[] types = createColumnTypes(width);
+		
+		final Values[] tuples = new Values[numberOfTuples];
+		for(int i = 0; i < numberOfTuples; ++i) {
+			final Values tuple = new Values();
+			for(int j = 0; j < width; ++j) {
+				if(types[j] == Integer.class) {
+					tuple.add(new Integer(r.nextInt()));
+				} else if(types[j] == Long.class) {
+					tuple.add(new Long(r.nextLong()));
+				} else if(types[j] == Double.class) {
+					tuple.add(new Double(r.nextDouble()));
+				} else {
+					tuple.add("value-" + r.nextInt(1000));
+				}
+			}
+			tuples[i] = tuple;
+		}
+		return tuples;
+	}
+	
+	/**
+	 * Creates a topology with a producer bolt (without inputs) and a receiver bolt (with parallelism
+	 * {@link #RECEIVER_DOP}) that consumes the default output stream of the producer. Both bolts are
+	 * {@link ForwardBolt}s with the given schema.
+	 * 
+	 * @param width
+	 *            The number of attributes of the producer's output schema.
+	 * @param grouping
+	 *            The connection pattern between producer and receiver.
+	 * @param emulated
+	 *            If {@code true}, the topology is built with {@link AeolusBuilder}; ie, the connection pattern is
+	 *            emulated via an additional direct output stream.
+	 * 
+	 * @return the topology
+	 */
+	static StormTopology createTopology(int width, ReceiverGrouping grouping, boolean emulated) {
+		final Fields schema = createSchema(width);
+		final TopologyBuilder builder = emulated ? new AeolusBuilder() : new TopologyBuilder();
+		
+		builder.setBolt(PRODUCER_ID, new ForwardBolt(schema));
+		grouping.connect(builder.setBolt(RECEIVER_ID, new ForwardBolt(schema), new Integer(RECEIVER_DOP)),
+			PRODUCER_ID, schema);
+		
+		return builder.createTopology();
+	}
+	
+	/**
+	 * Creates a {@link TopologyContext} for the first task of the given component. Task IDs are assigned in
+	 * lexicographical order of the component IDs (starting at {@code 1}) and all tasks are assumed to run in the same
+	 * worker.
+	 * 
+	 * @param topology
+	 *            The topology.
+	 * @param componentId
+	 *            The ID of the component the context is created for.
+	 * 
+	 * @return the context
+	 */
+	static TopologyContext createContext(StormTopology topology, String componentId) {
+		final Map<String, ComponentCommon> components = new TreeMap<String, ComponentCommon>();
+		for(Entry<String, SpoutSpec> spout : topology.get_spouts().entrySet()) {
+			components.put(spout.getKey(), spout.getValue().get_common());
+		}
+		for(Entry<String, Bolt> bolt : topology.get_bolts().entrySet()) {
+			components.put(bolt.getKey(), bolt.getValue().get_common());
+		}
+		
+		final Map<Integer, String> taskToComponent = new HashMap<Integer, String>();
+		final Map<String, List<Integer>> componentToSortedTasks = new HashMap<String, List<Integer>>();
+		final Map<String, Map<String, Fields>> componentToStreamToFields = new HashMap<String, Map<String, Fields>>();
+		final List<Integer> allTasks = new ArrayList<Integer>();
+		
+		int taskId = 1;
+		for(Entry<String, ComponentCommon> component : components.entrySet()) {
+			final ComponentCommon common = component.getValue();
+			final int dop = common.is_set_parallelism_hint() ? common.get_parallelism_hint() : 1;
+			
+			final List<Integer> tasks = new ArrayList<Integer>(dop);
+			for(int i = 0; i < dop; ++i) {
+				final Integer id = new Integer(taskId++);
+				taskToComponent.put(id, component.getKey());
+				tasks.add(id);
+			}
+			componentToSortedTasks.put(component.getKey(), tasks);
+			allTasks.addAll(tasks);
+			
+			final Map<String, Fields> streams = new HashMap<String, Fields>();
+			for(Entry<String, StreamInfo> stream : common.get_streams().entrySet()) {
+				streams.put(stream.getKey(), new Fields(stream.getValue().get_output_fields()));
+			}
+			componentToStreamToFields.put(component.getKey(), streams);
+		}
+		
+		return new TopologyContext(topology, new HashMap<Object, Object>(), taskToComponent, componentToSortedTasks,
+			componentToStreamToFields, "benchmark", null, null, componentToSortedTasks.get(componentId).get(0),
+			new Integer(6700), allTasks, new HashMap<String, Object>(), new HashMap<String, Object>(),
+			new HashMap<String, Object>(), new HashMap<Object, Object>(), new Atom(Boolean.FALSE));
+	}
+	
+}
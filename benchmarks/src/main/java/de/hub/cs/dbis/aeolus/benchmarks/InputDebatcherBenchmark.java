@@ -0,0 +1,105 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backtype.storm.generated.StormTopology;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.TupleImpl;
+import backtype.storm.tuple.Values;
+import backtype.storm.utils.Utils;
+import de.hub.cs.dbis.aeolus.batching.Batch;
+import de.hub.cs.dbis.aeolus.batching.api.InputDebatcher;
+import de.hub.cs.dbis.aeolus.testUtils.ForwardBolt;
+import de.hub.cs.dbis.aeolus.testUtils.TestOutputCollector;
+
+
+
+
+
+/**
+ * Measures the time to debatch an input batch via {@link InputDebatcher#execute(Tuple)}. The wrapped bolt is a
+ * {@link ForwardBolt} that emits and acks each debatched tuple. Each invocation processes one input batch with
+ * {@code batchSize} tuples.
+ * 
+ * @author Matthias J. Sax
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputDebatcherBenchmark {
+	/** The number of attributes of each tuple. */
+	@Param({"1", "4", "16"})
+	public int width;
+	/** The number of tuples per batch. */
+	@Param({"10", "100", "1000"})
+	public int batchSize;
+	
+	private Tuple input;
+	private TestOutputCollector testCollector;
+	private InputDebatcher debatcher;
+	
+	
+	
+	@Setup
+	public void setup() {
+		final StormTopology topology = BenchmarkUtils.createTopology(this.width, ReceiverGrouping.SHUFFLE, false);
+		final TopologyContext producerContext = BenchmarkUtils.createContext(topology, BenchmarkUtils.PRODUCER_ID);
+		final TopologyContext receiverContext = BenchmarkUtils.createContext(topology, BenchmarkUtils.RECEIVER_ID);
+		
+		final Batch batch = new Batch(this.batchSize, this.width);
+		for(Values tuple : BenchmarkUtils.createTuples(this.batchSize, this.width)) {
+			batch.addTuple(tuple);
+		}
+		this.input = new TupleImpl(receiverContext, new ArrayList<Object>(batch), producerContext.getThisTaskId(),
+			Utils.DEFAULT_STREAM_ID);
+		
+		this.testCollector = new TestOutputCollector();
+		this.debatcher = new InputDebatcher(new ForwardBolt(BenchmarkUtils.createSchema(this.width)));
+		this.debatcher.prepare(new HashMap<Object, Object>(), receiverContext, new OutputCollector(this.testCollector));
+	}
+	
+	@Benchmark
+	public void execute() {
+		this.debatcher.execute(this.input);
+		this.testCollector.output.clear();
+		this.testCollector.acked.clear();
+	}
+	
+}
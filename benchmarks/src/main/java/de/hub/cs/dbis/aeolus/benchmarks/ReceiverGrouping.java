@@ -0,0 +1,83 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.benchmarks;
+
+import backtype.storm.topology.BoltDeclarer;
+import backtype.storm.tuple.Fields;
+
+
+
+
+
+/**
+ * {@link ReceiverGrouping} defines the connection pattern between producer and receiver of a benchmark topology (see
+ * {@link BenchmarkUtils#createTopology(int, ReceiverGrouping, boolean)}).
+ * 
+ * @author Matthias J. Sax
+ */
+public enum ReceiverGrouping {
+	/** Shuffle grouping. */
+	SHUFFLE {
+		@Override
+		void connect(BoltDeclarer receiver, String producerId, Fields schema) {
+			receiver.shuffleGrouping(producerId);
+		}
+	},
+	/** Fields grouping on the first attribute. */
+	FIELDS {
+		@Override
+		void connect(BoltDeclarer receiver, String producerId, Fields schema) {
+			receiver.fieldsGrouping(producerId, new Fields(schema.get(0)));
+		}
+	},
+	/** All grouping. */
+	ALL {
+		@Override
+		void connect(BoltDeclarer receiver, String producerId, Fields schema) {
+			receiver.allGrouping(producerId);
+		}
+	},
+	/** Local-or-shuffle grouping. */
+	LOCAL_OR_SHUFFLE {
+		@Override
+		void connect(BoltDeclarer receiver, String producerId, Fields schema) {
+			receiver.localOrShuffleGrouping(producerId);
+		}
+	},
+	/** Direct grouping. */
+	DIRECT {
+		@Override
+		void connect(BoltDeclarer receiver, String producerId, Fields schema) {
+			receiver.directGrouping(producerId);
+		}
+	};
+	
+	/**
+	 * Connects the given receiver to the default output stream of the given producer.
+	 * 
+	 * @param receiver
+	 *            The declarer of the receiver.
+	 * @param producerId
+	 *            The ID of the producer.
+	 * @param schema
+	 *            The output schema of the producer.
+	 */
+	abstract void connect(BoltDeclarer receiver, String producerId, Fields schema);
+	
+}
@@ -8,6 +8,8 @@ batchSizes="0 1 2 3 4 5 6 7 8 9 10"
 # runtime: sampleInterval * numberOfSamples
 sampleInterval=1 # in seconds
 numberOfSamples=30
+# use custom Kryo serializers for batches (set to "false" to use Kryo's default serializers)
+customSerializers=true
 
 
 
@@ -29,6 +31,7 @@ do
                 -Daeolus.microbenchmarks.reportingInterval=$((sampleInterval * 1000)) \
                 -Daeolus.microbenchmarks.dataRate=$outputRate \
                 -Daeolus.microbenchmarks.batchSize=$batchSize \
+                -Daeolus.microbenchmarks.customSerializers=$customSerializers \
                 de.hub.cs.dbis.aeolus.monitoring.microbenchmarks.MeasureOutputDataRate"
 
     # run benchmark
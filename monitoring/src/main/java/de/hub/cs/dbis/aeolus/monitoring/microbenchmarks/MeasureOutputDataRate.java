@@ -186,6 +186,9 @@ public class MeasureOutputDataRate {
 			final double dataRate = Double.parseDouble(System.getProperty("aeolus.microbenchmarks.dataRate"));
 			final int batchSize = Integer.parseInt(System.getProperty("aeolus.microbenchmarks.batchSize"));
 			final int interval = Integer.parseInt(System.getProperty("aeolus.microbenchmarks.reportingInterval"));
+			// use custom batch serializers by default; set to "false" to compare with Kryo's default serializers
+			final boolean customSerializers = !"false".equals(System
+				.getProperty("aeolus.microbenchmarks.customSerializers"));
 			
 			TopologyBuilder builder = new TopologyBuilder();
 			
@@ -219,7 +222,7 @@ public class MeasureOutputDataRate {
 			// stormConfig.put(Config.STORM_THRIFT_TRANSPORT_PLUGIN,
 			// "backtype.storm.security.auth.SimpleTransportPlugin");
 			// stormConfig.put("storm.thrift.transport", "backtype.storm.security.auth.SimpleTransportPlugin");
-			SpoutOutputBatcher.registerKryoClasses(stormConfig);
+			SpoutOutputBatcher.registerKryoClasses(stormConfig, customSerializers);
 			StormSubmitter.submitTopology(topologyId, stormConfig, builder.createTopology());
 			// LocalCluster c = new LocalCluster();
 			// c.submitTopology(topologyId, stormConfig, builder.createTopology());
@@ -252,6 +255,7 @@ public class MeasureOutputDataRate {
 			System.out.println("Aeolus.MeasureOutputDataRate.spoutStatsFile=" + spoutStatsFile);
 			System.out.println("Aeolus.MeasureOutputDataRate.sinkStatsHost=" + sinkStatsHost);
 			System.out.println("Aeolus.MeasureOutputDataRate.sinkStatsFile=" + sinkStatsFile);
+			System.out.println("Aeolus.MeasureOutputDataRate.customSerializers=" + customSerializers);
 			// c.killTopology(topologyId);
 			// Utils.sleep(1000);
 			// c.shutdown();
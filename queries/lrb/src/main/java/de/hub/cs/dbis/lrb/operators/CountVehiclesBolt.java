@@ -18,8 +18,10 @@
  */
 package de.hub.cs.dbis.lrb.operators;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -34,11 +36,15 @@ import backtype.storm.topology.base.BaseRichBolt;
 import backtype.storm.tuple.Fields;
 import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
+import de.hub.cs.dbis.aeolus.batching.BatchColumn;
+import de.hub.cs.dbis.aeolus.batching.api.IBatchBolt;
+import de.hub.cs.dbis.aeolus.batching.api.IBatchOutputCollector;
 import de.hub.cs.dbis.aeolus.utils.TimestampMerger;
 import de.hub.cs.dbis.lrb.queries.utils.TopologyControl;
 import de.hub.cs.dbis.lrb.types.PositionReport;
 import de.hub.cs.dbis.lrb.types.internal.CountTuple;
 import de.hub.cs.dbis.lrb.types.util.SegmentIdentifier;
+import de.hub.cs.dbis.lrb.util.Time;
 
 
 
@@ -53,12 +59,16 @@ import de.hub.cs.dbis.lrb.types.util.SegmentIdentifier;
  * The car count is a "count distinct", ie, if a car issue multiple {@link PositionReport}s within a single segment, the
  * car is only counted once.<br />
  * <br />
+ * If {@link CountVehiclesBolt} receives batched input (see {@link IBatchBolt}), it reads the required attribute columns
+ * of each input batch directly instead of processing one {@link PositionReport} at a time. If its output collector is
+ * an {@link IBatchOutputCollector}, all counts of a minute are emitted at once.<br />
+ * <br />
  * <strong>Input schema:</strong> {@link PositionReport}<br />
  * <strong>Output schema:</strong> {@link CountTuple} (stream: {@link TopologyControl#CAR_COUNTS_STREAM_ID})
  * 
  * @author mjsax
  */
-public class CountVehiclesBolt extends BaseRichBolt {
+public class CountVehiclesBolt extends BaseRichBolt implements IBatchBolt {
 	private static final long serialVersionUID = 6158421247331445466L;
 	private static final Logger LOGGER = LoggerFactory.getLogger(CountVehiclesBolt.class);
 	
@@ -86,10 +96,7 @@ public class CountVehiclesBolt extends BaseRichBolt {
 	@Override
 	public void execute(Tuple input) {
 		if(input.getSourceStreamId().equals(TimestampMerger.FLUSH_STREAM_ID)) {
-			if(input.getValue(0) == null) {
-				this.flushBuffer();
-				this.collector.emit(TimestampMerger.FLUSH_STREAM_ID, new Values((Object)null));
-			}
+			this.processFlush(input.getValue(0));
 			this.collector.ack(input);
 			return;
 		}
@@ -98,9 +105,60 @@ public class CountVehiclesBolt extends BaseRichBolt {
 		this.inputPositionReport.addAll(input.getValues());
 		LOGGER.trace(this.inputPositionReport.toString());
 		
-		short minute = this.inputPositionReport.getMinuteNumber();
 		this.segment.set(this.inputPositionReport);
+		this.count(this.inputPositionReport.getMinuteNumber(), this.inputPositionReport.getVid());
+		
+		this.collector.ack(input);
+	}
+	
+	@Override
+	public void executeBatch(Tuple input, BatchColumn[] columns, int numberOfTuples) {
+		if(input.getSourceStreamId().equals(TimestampMerger.FLUSH_STREAM_ID)) {
+			for(int i = 0; i < numberOfTuples; ++i) {
+				this.processFlush(columns[0].get(i));
+			}
+			this.collector.ack(input);
+			return;
+		}
+		
+		final BatchColumn timeColumn = columns[PositionReport.TIME_IDX];
+		final BatchColumn vidColumn = columns[PositionReport.VID_IDX];
+		final BatchColumn xwayColumn = columns[PositionReport.XWAY_IDX];
+		final BatchColumn segmentColumn = columns[PositionReport.SEG_IDX];
+		final BatchColumn directionColumn = columns[PositionReport.DIR_IDX];
 		
+		for(int i = 0; i < numberOfTuples; ++i) {
+			this.segment.set(xwayColumn.getInt(i), segmentColumn.getShort(i), directionColumn.getShort(i));
+			this.count(Time.getMinute(timeColumn.getShort(i)), new Integer(vidColumn.getInt(i)));
+		}
+		
+		this.collector.ack(input);
+	}
+	
+	/**
+	 * Processes a tuple of the flush stream. A {@code null} value indicates the end of the input stream; thus, all
+	 * buffered counts are emitted and the flush tuple is forwarded.
+	 * 
+	 * @param ts
+	 *            The timestamp value of the flush tuple.
+	 */
+	private void processFlush(Object ts) {
+		if(ts == null) {
+			this.flushBuffer();
+			this.collector.emit(TimestampMerger.FLUSH_STREAM_ID, new Values((Object)null));
+		}
+	}
+	
+	/**
+	 * Counts the given car for the segment that is currently set in {@link #segment}. If a new minute starts, the
+	 * counts of the last minute are emitted first.
+	 * 
+	 * @param minute
+	 *            The 'minute number' of the position report.
+	 * @param vid
+	 *            The vehicle ID of the position report.
+	 */
+	private void count(short minute, Integer vid) {
 		assert (minute >= this.currentMinute);
 		
 		if(minute > this.currentMinute) {
@@ -117,23 +175,29 @@ public class CountVehiclesBolt extends BaseRichBolt {
 		Set<Integer> segCnt = this.countsMap.get(this.segment);
 		if(segCnt == null) {
 			segCnt = new HashSet<Integer>();
-			segCnt.add(this.inputPositionReport.getVid());
+			segCnt.add(vid);
 			this.countsMap.put(this.segment.copy(), segCnt);
 		} else {
-			segCnt.add(this.inputPositionReport.getVid());
+			segCnt.add(vid);
 		}
-		
-		this.collector.ack(input);
 	}
 	
 	private void flushBuffer() {
+		final List<CountTuple> counts = new ArrayList<CountTuple>(this.countsMap.size());
 		for(Entry<SegmentIdentifier, Set<Integer>> entry : this.countsMap.entrySet()) {
 			SegmentIdentifier segId = entry.getKey();
 			
 			// Minute-Number, X-Way, Segment, Direction, Avg(speed)
-			this.collector.emit(TopologyControl.CAR_COUNTS_STREAM_ID, new CountTuple(new Short(
-				(short)((this.currentMinute * 60) - 1)), segId.getXWay(), segId.getSegment(), segId.getDirection(),
-				new Integer(entry.getValue().size())));
+			counts.add(new CountTuple(new Short((short)((this.currentMinute * 60) - 1)), segId.getXWay(), segId
+				.getSegment(), segId.getDirection(), new Integer(entry.getValue().size())));
+		}
+		
+		if(this.collector instanceof IBatchOutputCollector) {
+			((IBatchOutputCollector)this.collector).emitAll(TopologyControl.CAR_COUNTS_STREAM_ID, counts);
+		} else {
+			for(CountTuple count : counts) {
+				this.collector.emit(TopologyControl.CAR_COUNTS_STREAM_ID, count);
+			}
 		}
 	}
 	
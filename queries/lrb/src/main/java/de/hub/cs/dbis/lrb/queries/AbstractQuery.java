@@ -36,11 +36,13 @@ import backtype.storm.generated.StormTopology;
 import backtype.storm.topology.IRichSpout;
 import backtype.storm.topology.TopologyBuilder;
 import backtype.storm.utils.Utils;
+import de.hub.cs.dbis.aeolus.batching.api.BoltOutputBatcher;
 import de.hub.cs.dbis.aeolus.spouts.DataDrivenStreamRateDriverSpout;
 import de.hub.cs.dbis.aeolus.spouts.DataDrivenStreamRateDriverSpout.TimeUnit;
 import de.hub.cs.dbis.aeolus.utils.TimestampMerger;
 import de.hub.cs.dbis.lrb.operators.DispatcherBolt;
 import de.hub.cs.dbis.lrb.operators.FileReaderSpout;
+import de.hub.cs.dbis.lrb.queries.utils.BatchedTopologyBuilder;
 import de.hub.cs.dbis.lrb.queries.utils.TopologyControl;
 
 
@@ -58,7 +60,7 @@ abstract class AbstractQuery {
 	private final static OptionSpec<Void> realtimeOption, localOption;
 	private final static OptionSpec<Long> runtimeOption;
 	private final static OptionSpec<String> inputOption;
-	private final static OptionSpec<Integer> highwaysOption;
+	private final static OptionSpec<Integer> highwaysOption, batchSizeOption;
 	
 	
 	
@@ -76,6 +78,10 @@ abstract class AbstractQuery {
 				"Number of highways to process (L factor). "
 					+ "If not specified, --input defines a single file; otherwise, --input defines file-prefix.")
 			.withRequiredArg().describedAs("num").ofType(Integer.class);
+		batchSizeOption = parser
+			.accepts("batch-size",
+				"Output batch size of all Spouts and Bolts. If not specified, tuples are not batched.")
+			.withRequiredArg().describedAs("num").ofType(Integer.class);
 	}
 	
 	
@@ -94,7 +100,12 @@ abstract class AbstractQuery {
 	 * Partial topology set up (adding spout and dispatcher bolt).
 	 */
 	private final StormTopology createTopology(OptionSet options, boolean realtime) {
-		TopologyBuilder builder = new TopologyBuilder();
+		final TopologyBuilder builder;
+		if(options.has(batchSizeOption)) {
+			builder = new BatchedTopologyBuilder(options.valueOf(batchSizeOption).intValue());
+		} else {
+			builder = new TopologyBuilder();
+		}
 		
 		IRichSpout spout = new FileReaderSpout();
 		if(realtime) {
@@ -145,6 +156,10 @@ abstract class AbstractQuery {
 		final Config config = new Config();
 		config.put(FileReaderSpout.INPUT_FILE_NAME, options.valueOf(inputOption));
 		
+		if(options.has(batchSizeOption)) {
+			BoltOutputBatcher.registerKryoClasses(config);
+		}
+		
 		
 		
 		if(options.has(highwaysOption)) {
@@ -0,0 +1,70 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.lrb.queries.utils;
+
+import backtype.storm.topology.IRichBolt;
+import backtype.storm.topology.IRichSpout;
+import backtype.storm.topology.SpoutDeclarer;
+import de.hub.cs.dbis.aeolus.batching.api.AeolusBuilder;
+import de.hub.cs.dbis.aeolus.batching.api.BatchedDeclarer;
+import de.hub.cs.dbis.aeolus.utils.TimestampMerger;
+
+
+
+
+
+/**
+ * {@link BatchedTopologyBuilder} adds all Spouts and Bolts of a Linear Road query with the same output batch size.
+ * {@link TimestampMerger#FLUSH_STREAM_ID} is declared as punctuation stream; thus, flush tuples are never batched and
+ * partially filled batches are emitted before them, such that downstream {@link TimestampMerger}s can advance.
+ * 
+ * @author mjsax
+ */
+public class BatchedTopologyBuilder extends AeolusBuilder {
+	/** The output batch size of all Spouts and Bolts. */
+	private final int batchSize;
+	
+	
+	
+	/**
+	 * Instantiates a new {@link BatchedTopologyBuilder}.
+	 * 
+	 * @param batchSize
+	 *            The batch size to be used for all output streams of all Spouts and Bolts (must not be negative).
+	 */
+	public BatchedTopologyBuilder(int batchSize) {
+		assert (batchSize >= 0);
+		
+		this.batchSize = batchSize;
+		this.setPunctuationStream(TimestampMerger.FLUSH_STREAM_ID);
+	}
+	
+	
+	
+	@Override
+	public BatchedDeclarer setBolt(String id, IRichBolt bolt, Number parallelismHint) {
+		return this.setBolt(id, bolt, parallelismHint, this.batchSize);
+	}
+	
+	@Override
+	public SpoutDeclarer setSpout(String id, IRichSpout spout, Number parallelismHint) {
+		return this.setSpout(id, spout, parallelismHint, this.batchSize);
+	}
+	
+}
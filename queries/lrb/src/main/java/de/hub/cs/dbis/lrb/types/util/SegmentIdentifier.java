@@ -148,6 +148,29 @@ public class SegmentIdentifier implements ISegmentIdentifier {
 		this.direction = record.getDirection();
 	}
 	
+	/**
+	 * Set express way ID, segment number, and direction from the given primitive values. Only values that differ from
+	 * the current ones are boxed.
+	 * 
+	 * @param xWay
+	 *            the xway of the segment
+	 * @param segment
+	 *            the segment id
+	 * @param direction
+	 *            the direction
+	 */
+	public void set(int xWay, short segment, short direction) {
+		if(this.xway == null || this.xway.intValue() != xWay) {
+			this.xway = new Integer(xWay);
+		}
+		if(this.segment == null || this.segment.shortValue() != segment) {
+			this.segment = new Short(segment);
+		}
+		if(this.direction == null || this.direction.shortValue() != direction) {
+			this.direction = new Short(direction);
+		}
+	}
+	
 	/**
 	 * Return a copy of this {@link SegmentIdentifier}.
 	 * 
@@ -18,7 +18,12 @@
  */
 package de.hub.cs.dbis.lrb.operators;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.HashMap;
@@ -32,12 +37,16 @@ import java.util.Set;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.stubbing.OngoingStubbing;
 
 import backtype.storm.task.OutputCollector;
 import backtype.storm.tuple.Fields;
 import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
+import de.hub.cs.dbis.aeolus.batching.Batch;
+import de.hub.cs.dbis.aeolus.batching.BatchColumn;
+import de.hub.cs.dbis.aeolus.batching.BatchOutputCollector;
 import de.hub.cs.dbis.aeolus.testUtils.TestDeclarer;
 import de.hub.cs.dbis.aeolus.testUtils.TestOutputCollector;
 import de.hub.cs.dbis.aeolus.utils.TimestampMerger;
@@ -154,6 +163,106 @@ public class CountVehiclesBoltTest {
 		Assert.assertEquals(expectedFlushs, collector.output.get(TimestampMerger.FLUSH_STREAM_ID));
 	}
 	
+	@Test
+	public void testExecuteBatch() {
+		final int batchSize = 1 + this.r.nextInt(10);
+		
+		List<PositionReport> input = new LinkedList<PositionReport>();
+		final int startMinute = 1 + this.r.nextInt(5);
+		for(int m = startMinute; m < startMinute + 3; ++m) {
+			final int numberOfTuplesMinute = 20 + this.r.nextInt(20);
+			for(int i = 0; i < numberOfTuplesMinute; ++i) {
+				input.add(new PositionReport(new Short((short)((m - 1) * 60)), new Integer(this.r.nextInt(10)),
+					new Integer(this.r.nextInt(Constants.NUMBER_OF_SPEEDS)), new Integer(this.r.nextInt(2)), new Short(
+						(short)this.r.nextInt(5)), new Short((short)this.r.nextInt(2)), new Short((short)this.r
+						.nextInt(3)), new Integer(0)));
+			}
+		}
+		
+		CountVehiclesBolt expectedBolt = new CountVehiclesBolt();
+		TestOutputCollector expectedCollector = new TestOutputCollector();
+		expectedBolt.prepare(null, null, new OutputCollector(expectedCollector));
+		
+		CountVehiclesBolt bolt = new CountVehiclesBolt();
+		TestOutputCollector collector = new TestOutputCollector();
+		bolt.prepare(null, null, new OutputCollector(collector));
+		
+		Tuple tuple = mock(Tuple.class);
+		when(tuple.getSourceStreamId()).thenReturn("streamId");
+		
+		Batch batch = new Batch(batchSize, PositionReport.getSchema().size());
+		for(PositionReport report : input) {
+			when(tuple.getValues()).thenReturn(report);
+			expectedBolt.execute(tuple);
+			
+			batch.addTuple(report);
+			if(batch.isFull()) {
+				bolt.executeBatch(tuple, getColumns(batch), batch.getNumberOfTuples());
+				batch = new Batch(batchSize, PositionReport.getSchema().size());
+			}
+		}
+		if(!batch.isEmpty()) {
+			bolt.executeBatch(tuple, getColumns(batch), batch.getNumberOfTuples());
+		}
+		
+		Tuple flushTuple = mock(Tuple.class);
+		when(flushTuple.getSourceStreamId()).thenReturn(TimestampMerger.FLUSH_STREAM_ID);
+		expectedBolt.execute(flushTuple);
+		Batch flushBatch = new Batch(1, 1);
+		flushBatch.addTuple(new Values((Object)null));
+		bolt.executeBatch(flushTuple, getColumns(flushBatch), 1);
+		
+		Assert.assertEquals(expectedCollector.output, collector.output);
+		Assert.assertEquals(input.size() / batchSize + (input.size() % batchSize == 0 ? 1 : 2), collector.acked.size());
+	}
+	
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	@Test
+	public void testEmitAll() {
+		CountVehiclesBolt expectedBolt = new CountVehiclesBolt();
+		TestOutputCollector expectedCollector = new TestOutputCollector();
+		expectedBolt.prepare(null, null, new OutputCollector(expectedCollector));
+		
+		CountVehiclesBolt bolt = new CountVehiclesBolt();
+		BatchOutputCollector collector = mock(BatchOutputCollector.class);
+		bolt.prepare(null, null, collector);
+		
+		Tuple tuple = mock(Tuple.class);
+		when(tuple.getSourceStreamId()).thenReturn("streamId");
+		
+		final int startMinute = 1 + this.r.nextInt(5);
+		for(int m = startMinute; m < startMinute + 3; ++m) {
+			final int numberOfTuplesMinute = 20 + this.r.nextInt(20);
+			for(int i = 0; i < numberOfTuplesMinute; ++i) {
+				when(tuple.getValues()).thenReturn(
+					new PositionReport(new Short((short)((m - 1) * 60)), new Integer(this.r.nextInt(10)), new Integer(
+						this.r.nextInt(Constants.NUMBER_OF_SPEEDS)), new Integer(this.r.nextInt(2)), new Short(
+						(short)this.r.nextInt(5)), new Short((short)this.r.nextInt(2)), new Short((short)this.r
+						.nextInt(3)), new Integer(0)));
+				expectedBolt.execute(tuple);
+				bolt.execute(tuple);
+			}
+		}
+		
+		ArgumentCaptor<List> counts = ArgumentCaptor.forClass(List.class);
+		verify(collector, never()).emit(eq(TopologyControl.CAR_COUNTS_STREAM_ID), any(List.class));
+		verify(collector, times(2)).emitAll(eq(TopologyControl.CAR_COUNTS_STREAM_ID), counts.capture());
+		
+		List<Object> result = new LinkedList<Object>();
+		for(List<?> c : counts.getAllValues()) {
+			result.addAll(c);
+		}
+		Assert.assertEquals(expectedCollector.output.get(TopologyControl.CAR_COUNTS_STREAM_ID), result);
+	}
+	
+	private static BatchColumn[] getColumns(Batch batch) {
+		final BatchColumn[] columns = new BatchColumn[batch.size()];
+		for(int i = 0; i < columns.length; ++i) {
+			columns[i] = batch.get(i);
+		}
+		return columns;
+	}
+	
 	@Test
 	public void testDeclareOutputFields() {
 		AverageSpeedBolt bolt = new AverageSpeedBolt();
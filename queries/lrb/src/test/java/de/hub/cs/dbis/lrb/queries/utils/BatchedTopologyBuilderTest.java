@@ -0,0 +1,68 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.lrb.queries.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import backtype.storm.topology.TopologyBuilder;
+import de.hub.cs.dbis.aeolus.batching.api.BoltOutputBatcher;
+import de.hub.cs.dbis.aeolus.batching.api.InputDebatcher;
+import de.hub.cs.dbis.aeolus.batching.api.SpoutOutputBatcher;
+import de.hub.cs.dbis.aeolus.utils.TimestampMerger;
+import de.hub.cs.dbis.lrb.operators.DispatcherBolt;
+import de.hub.cs.dbis.lrb.operators.FileReaderSpout;
+
+
+
+
+
+/**
+ * @author mjsax
+ */
+public class BatchedTopologyBuilderTest {
+	private final static int batchSize = 10;
+	private final static Integer dop = new Integer(2);
+	
+	@Test
+	public void testSetBolt() {
+		TopologyBuilder expectedBuilder = new TopologyBuilder();
+		expectedBuilder.setBolt(TopologyControl.SPLIT_STREAM_BOLT_NAME,
+			new BoltOutputBatcher(new InputDebatcher(new TimestampMerger(new DispatcherBolt(), 0)), batchSize)
+				.setPunctuationStream(TimestampMerger.FLUSH_STREAM_ID), dop);
+		
+		TopologyBuilder builder = new BatchedTopologyBuilder(batchSize);
+		builder.setBolt(TopologyControl.SPLIT_STREAM_BOLT_NAME, new TimestampMerger(new DispatcherBolt(), 0), dop);
+		
+		Assert.assertEquals(expectedBuilder.createTopology(), builder.createTopology());
+	}
+	
+	@Test
+	public void testSetSpout() {
+		TopologyBuilder expectedBuilder = new TopologyBuilder();
+		expectedBuilder.setSpout(TopologyControl.SPOUT_NAME, new SpoutOutputBatcher(new FileReaderSpout(), batchSize)
+			.setPunctuationStream(TimestampMerger.FLUSH_STREAM_ID), dop);
+		
+		TopologyBuilder builder = new BatchedTopologyBuilder(batchSize);
+		builder.setSpout(TopologyControl.SPOUT_NAME, new FileReaderSpout(), dop);
+		
+		Assert.assertEquals(expectedBuilder.createTopology(), builder.createTopology());
+	}
+	
+}
@@ -0,0 +1,111 @@
+/*
+ * #!
+ * %
+ * Copyright (C) 2014 - 2016 Humboldt-Universität zu Berlin
+ * %
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #_
+ */
+package de.hub.cs.dbis.aeolus.utils;
+
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
+import de.hub.cs.dbis.aeolus.batching.BatchColumn;
+
+
+
+
+
+/**
+ * {@link BatchSlice} is a consecutive range of rows of an input that is released by
+ * {@link StreamMerger#getNextBatch()}. The input is either a single tuple or a batch (ie, a {@link Tuple} or
+ * {@link Values} object that contains a {@link BatchColumn} for each attribute). Type {@code T} is expected to be
+ * either {@link Tuple} (for usage in bolts) or {@link Values} (for usage in spouts).
+ * 
+ * @author Matthias J. Sax
+ */
+public class BatchSlice<T> {
+	/** The input the released rows belong to. */
+	private final T input;
+	
+	/** The index of the first released row. */
+	private final int from;
+	
+	/** The index after the last released row. */
+	private final int to;
+	
+	/** {@code true} if the input is a batch; {@code false} if it is a single tuple. */
+	private final boolean isBatch;
+	
+	
+	
+	BatchSlice(T input, int from, int to, boolean isBatch) {
+		assert (input != null);
+		assert (0 <= from && from < to);
+		assert (isBatch || to == 1);
+		
+		this.input = input;
+		this.from = from;
+		this.to = to;
+		this.isBatch = isBatch;
+	}
+	
+	
+	
+	/**
+	 * Returns the input the released rows belong to.
+	 * 
+	 * @return the input
+	 */
+	public T getInput() {
+		return this.input;
+	}
+	
+	/**
+	 * Returns the index of the first released row.
+	 * 
+	 * @return the index of the first released row
+	 */
+	public int getFrom() {
+		return this.from;
+	}
+	
+	/**
+	 * Returns the index after the last released row.
+	 * 
+	 * @return the (exclusive) index of the last released row
+	 */
+	public int getTo() {
+		return this.to;
+	}
+	
+	/**
+	 * Returns the number of released rows.
+	 * 
+	 * @return the number of released rows
+	 */
+	public int size() {
+		return this.to - this.from;
+	}
+	
+	/**
+	 * Returns {@code true} if the input is a batch. Otherwise, the input is a single tuple and {@link #getFrom()} and
+	 * {@link #getTo()} are {@code 0} and {@code 1}, respectively.
+	 * 
+	 * @return {@code true} if the input is a batch; {@code false} otherwise
+	 */
+	public boolean isBatch() {
+		return this.isBatch;
+	}
+	
+}
@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory;
 
 import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
+import de.hub.cs.dbis.aeolus.batching.BatchColumn;
 
 
 
@@ -38,7 +39,13 @@ import backtype.storm.tuple.Values;
 
 /**
  * {@link StreamMerger} merges multiple sub-stream in ascending timestamp order. Type {@code T} is expected to be either
- * {@link Tuple} (for usage in bolts) or {@link Values} (for usage in spouts).
+ * {@link Tuple} (for usage in bolts) or {@link Values} (for usage in spouts).<br />
+ * <br />
+ * Inserted inputs can also be batches (ie, an input that contains a {@link BatchColumn} for each attribute, as emitted
+ * by a batching producer). Batches must be extracted via {@link #getNextBatch()} that releases whole batches or batch
+ * slices instead of single tuples. If the timestamp column of a batch carries its timestamp range (see
+ * {@link BatchColumn#hasTimestampRange()}), the merger does not need to inspect single timestamps to release whole
+ * batches. Batches are only supported if the timestamp attribute is specified by index or name.
  * 
  * @author Matthias J. Sax
  */
@@ -58,6 +65,9 @@ public class StreamMerger<T> {
 	/** Input tuple buffer for merging. Contains a list of input tuples for each producer task. */
 	private final HashMap<Integer, LinkedList<T>> mergeBuffer = new HashMap<Integer, LinkedList<T>>();
 	
+	/** The number of already released rows of the first (batch) input of each partition (if not zero). */
+	private final HashMap<Integer, Integer> headOffsets = new HashMap<Integer, Integer>();
+	
 	/** Contains a ID of all disabled partitions. */
 	private final HashSet<Integer> disabledPartitions = new HashSet<Integer>();
 	
@@ -145,7 +155,8 @@ public class StreamMerger<T> {
 		LinkedList<T> partitionBuffer = this.mergeBuffer.get(partitionNumber);
 		assert (partitionBuffer != null);
 		
-		assert (partitionBuffer.size() == 0 || this.getTsValue(partitionBuffer.getLast()) <= this.getTsValue(t));
+		assert (partitionBuffer.size() == 0 || this.getMaxTsValue(partitionBuffer.getLast()) <= this.getMinTsValue(t,
+			0));
 		
 		partitionBuffer.addLast(t);
 	}
@@ -153,7 +164,9 @@ public class StreamMerger<T> {
 	/**
 	 * Returns the next tuple from the internal merging buffer. A tuple can be returned, if it has the same timestamp as
 	 * the last extracted tuple. If all tuples have a larger timestamp than the last returned tuple, the tuple with the
-	 * smallest timestamp is returned iff at least one tuple is present in each buffer.
+	 * smallest timestamp is returned iff at least one tuple is present in each buffer.<br />
+	 * <br />
+	 * Must not be used if batches are inserted (see {@link #getNextBatch()}).
 	 * 
 	 * @return The next tuple in ascending timestamp order -- {@code null} if no tuple could be extracted.
 	 */
@@ -204,6 +217,176 @@ public class StreamMerger<T> {
 		return null;
 	}
 	
+	/**
+	 * Returns the next rows from the internal merging buffer. In contrast to {@link #getNextTuple()}, whole batches or
+	 * batch slices are returned. Rows with the same timestamp as the last extracted row can always be returned.
+	 * Otherwise, rows of the partition with the smallest head timestamp are returned iff at least one input is present
+	 * in each buffer: if the largest timestamp of the head input does not exceed the smallest head timestamp of all
+	 * other partitions (ie, the merge frontier), the whole (remaining) input is returned; otherwise, all rows up to the
+	 * frontier are returned as a batch slice. Single tuples are returned as slices of size one.
+	 * 
+	 * @return The next rows in ascending timestamp order -- {@code null} if no row could be extracted.
+	 */
+	public BatchSlice<T> getNextBatch() {
+		long minTsFound = Long.MAX_VALUE;
+		long frontier = Long.MAX_VALUE;
+		boolean eachBufferFilled = true;
+		Integer minTsPartitionNumber = null;
+		
+		Iterator<Entry<Integer, LinkedList<T>>> it = this.mergeBuffer.entrySet().iterator();
+		while(it.hasNext()) {
+			Entry<Integer, LinkedList<T>> partition = it.next();
+			LinkedList<T> partitionBuffer = partition.getValue();
+			if(partitionBuffer.isEmpty()) {
+				if(this.disabledPartitions.contains(partition.getKey())) {
+					logger.trace("Closing empty and disabled parition: {}", partition.getKey());
+					it.remove();
+				} else {
+					logger.trace("Found empty parition: {}", partition.getKey());
+					eachBufferFilled = false;
+					// no BREAK: we stay in the loop, because we still might find rows with equal ts value as last
+					// returned row
+				}
+				continue;
+			}
+			
+			long ts = this.getMinTsValue(partitionBuffer.getFirst(), this.getHeadOffset(partition.getKey()));
+			assert (ts >= this.latestTs);
+			
+			if(ts == this.latestTs) {
+				logger.trace("Extract rows with same timestamp (partition): {}", partition.getKey());
+				return this.releaseHead(partition.getKey(), ts);
+			}
+			
+			if(ts < minTsFound) {
+				frontier = minTsFound;
+				minTsFound = ts;
+				minTsPartitionNumber = partition.getKey();
+			} else if(ts < frontier) {
+				frontier = ts;
+			}
+		}
+		
+		if(eachBufferFilled && minTsPartitionNumber != null) {
+			logger.trace("Extract rows up to frontier (ts, frontier, partition): {}, {}, {}", new Long(minTsFound),
+				new Long(frontier), minTsPartitionNumber);
+			return this.releaseHead(minTsPartitionNumber, frontier);
+		}
+		
+		logger.trace("Could not extract rows.");
+		return null;
+	}
+	
+	/**
+	 * Releases all rows of the first input of the given partition with a timestamp that does not exceed
+	 * {@code frontier}. The first remaining row of the input must not exceed {@code frontier}.
+	 */
+	private BatchSlice<T> releaseHead(Integer partitionNumber, long frontier) {
+		final LinkedList<T> partitionBuffer = this.mergeBuffer.get(partitionNumber);
+		final T head = partitionBuffer.getFirst();
+		final BatchColumn tsColumn = this.getTsColumn(head);
+		
+		if(tsColumn == null) {
+			this.latestTs = this.getTsValue(head);
+			return new BatchSlice<T>(partitionBuffer.removeFirst(), 0, 1, false);
+		}
+		
+		final int from = this.getHeadOffset(partitionNumber);
+		final int size = tsColumn.size();
+		int to;
+		if(this.getMaxTsValue(head) <= frontier) {
+			to = size;
+		} else {
+			// binary search for the first row with a larger timestamp than the frontier
+			int low = from + 1;
+			to = size - 1;
+			while(low < to) {
+				final int mid = (low + to) >>> 1;
+				if(tsColumn.getLong(mid) <= frontier) {
+					low = mid + 1;
+				} else {
+					to = mid;
+				}
+			}
+		}
+		
+		this.latestTs = tsColumn.getLong(to - 1);
+		if(to == size) {
+			partitionBuffer.removeFirst();
+			this.headOffsets.remove(partitionNumber);
+		} else {
+			this.headOffsets.put(partitionNumber, new Integer(to));
+		}
+		return new BatchSlice<T>(head, from, to, true);
+	}
+	
+	private int getHeadOffset(Integer partitionNumber) {
+		final Integer offset = this.headOffsets.get(partitionNumber);
+		if(offset == null) {
+			return 0;
+		}
+		return offset.intValue();
+	}
+	
+	/**
+	 * Returns the timestamp column of the given input, or {@code null} if the input is not a batch.
+	 */
+	private BatchColumn getTsColumn(T input) {
+		final Object value;
+		if(input instanceof Tuple) {
+			Tuple t = (Tuple)input;
+			
+			if(t.getSourceStreamId().equals(TimestampMerger.FLUSH_STREAM_ID)) {
+				return null;
+			}
+			
+			if(this.tsIndex != -1) {
+				value = t.getValue(this.tsIndex);
+			} else if(this.tsAttributeName != null) {
+				value = t.getValueByField(this.tsAttributeName);
+			} else {
+				return null;
+			}
+		} else {
+			assert (input instanceof Values);
+			value = ((Values)input).get(this.tsIndex);
+		}
+		
+		if(value instanceof BatchColumn) {
+			return (BatchColumn)value;
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the timestamp of row {@code offset} of the given input (ie, the smallest timestamp of all remaining
+	 * rows).
+	 */
+	private long getMinTsValue(T input, int offset) {
+		final BatchColumn tsColumn = this.getTsColumn(input);
+		if(tsColumn == null) {
+			return this.getTsValue(input);
+		}
+		if(offset == 0 && tsColumn.hasTimestampRange()) {
+			return tsColumn.getMinTimestamp();
+		}
+		return tsColumn.getLong(offset);
+	}
+	
+	/**
+	 * Returns the largest timestamp of the given input.
+	 */
+	private long getMaxTsValue(T input) {
+		final BatchColumn tsColumn = this.getTsColumn(input);
+		if(tsColumn == null) {
+			return this.getTsValue(input);
+		}
+		if(tsColumn.hasTimestampRange()) {
+			return tsColumn.getMaxTimestamp();
+		}
+		return tsColumn.getLong(tsColumn.size() - 1);
+	}
+	
 	private long getTsValue(T tuple) {
 		if(tuple instanceof Tuple) {
 			Tuple t = (Tuple)tuple;
@@ -18,6 +18,7 @@
  */
 package de.hub.cs.dbis.aeolus.utils;
 
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -32,6 +33,10 @@ import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.IRichBolt;
 import backtype.storm.topology.OutputFieldsDeclarer;
 import backtype.storm.tuple.Tuple;
+import de.hub.cs.dbis.aeolus.batching.BatchColumn;
+import de.hub.cs.dbis.aeolus.batching.api.DebatchedTuple;
+import de.hub.cs.dbis.aeolus.batching.api.IBatchBolt;
+import de.hub.cs.dbis.aeolus.batching.api.InputDebatcher;
 
 
 
@@ -44,10 +49,15 @@ import backtype.storm.tuple.Tuple;
  * <p>
  * The internal buffer can be flushed by sending an <strong>ID less</strong> zero-attribute tuple via stream
  * {@link #FLUSH_STREAM_ID}.
+ * <p>
+ * If {@link TimestampMerger} is wrapped by an {@link InputDebatcher}, input batches are buffered as a whole instead of
+ * tuple by tuple (see {@link StreamMerger#getNextBatch()}). Buffered batches are retained (see
+ * {@link BatchColumn#retain()}) until all their tuples got handed over to the wrapped bolt. If a
+ * {@link TimeStampExtractor} is used, input batches are buffered tuple by tuple.
  * 
  * @author Matthias J. Sax
  */
-public class TimestampMerger implements IRichBolt {
+public class TimestampMerger implements IBatchBolt {
 	private final static long serialVersionUID = -6930627449574381467L;
 	private final static Logger logger = LoggerFactory.getLogger(TimestampMerger.class);
 	
@@ -69,6 +79,12 @@ public class TimestampMerger implements IRichBolt {
 	/** Input tuple buffer for merging. */
 	private StreamMerger<Tuple> merger;
 	
+	/** The current runtime environment. */
+	private TopologyContext context;
+	
+	/** The views of all buffered input batches. */
+	private final IdentityHashMap<Tuple, BufferedBatch> bufferedBatches = new IdentityHashMap<Tuple, BufferedBatch>();
+	
 	
 	
 	/**
@@ -153,6 +169,7 @@ public class TimestampMerger implements IRichBolt {
 			this.merger = new StreamMerger<Tuple>(taskIds, this.tsExtractor);
 		}
 		
+		this.context = arg1;
 		this.wrappedBolt.prepare(arg0, arg1, arg2);
 	}
 	
@@ -165,11 +182,7 @@ public class TimestampMerger implements IRichBolt {
 			this.merger.addTuple(new Integer(tuple.getSourceTask()), tuple);
 		}
 		
-		Tuple t;
-		while((t = this.merger.getNextTuple()) != null) {
-			logger.trace("Extrated tuple from internal buffer for processing: {}", tuple);
-			this.wrappedBolt.execute(t);
-		}
+		this.processBufferedTuples();
 		
 		if(this.merger.getNumberOpenPartitions() == 0) {
 			assert (tuple.getSourceStreamId().equals(TimestampMerger.FLUSH_STREAM_ID));
@@ -177,6 +190,70 @@ public class TimestampMerger implements IRichBolt {
 		}
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The input batch is buffered as a whole and its columns are retained until all its tuples got handed over to the
+	 * wrapped bolt. Batches of the flush stream are processed tuple by tuple. If a timestamp extractor is used, all
+	 * batches are processed tuple by tuple, because the extractor cannot be applied to a whole batch.
+	 */
+	@Override
+	public void executeBatch(Tuple input, BatchColumn[] columns, int numberOfTuples) {
+		final DebatchedTuple view = new DebatchedTuple(this.context, input, columns, numberOfTuples);
+		
+		if(this.tsExtractor != null || input.getSourceStreamId().equals(TimestampMerger.FLUSH_STREAM_ID)) {
+			for(int i = 0; i < numberOfTuples; ++i) {
+				view.setRow(i);
+				this.execute(view.copy());
+			}
+			return;
+		}
+		
+		for(int i = 0; i < columns.length; ++i) {
+			if(columns[i] != null) {
+				columns[i].retain();
+			}
+		}
+		this.bufferedBatches.put(input, new BufferedBatch(view, columns, numberOfTuples));
+		
+		logger.trace("Adding batch to internal buffer: {}", input);
+		this.merger.addTuple(new Integer(input.getSourceTask()), input);
+		
+		this.processBufferedTuples();
+	}
+	
+	/**
+	 * Hands over all tuples that can be extracted from the internal buffer to the wrapped bolt. Buffered batches are
+	 * released after their last tuple got handed over.
+	 */
+	private void processBufferedTuples() {
+		BatchSlice<Tuple> slice;
+		while((slice = this.merger.getNextBatch()) != null) {
+			if(!slice.isBatch()) {
+				logger.trace("Extracted tuple from internal buffer for processing: {}", slice.getInput());
+				this.wrappedBolt.execute(slice.getInput());
+				continue;
+			}
+			
+			logger.trace("Extracted batch slice from internal buffer for processing: {} [{}, {})", slice.getInput(),
+				new Integer(slice.getFrom()), new Integer(slice.getTo()));
+			final BufferedBatch batch = this.bufferedBatches.get(slice.getInput());
+			for(int i = slice.getFrom(); i < slice.getTo(); ++i) {
+				batch.view.setRow(i);
+				this.wrappedBolt.execute(batch.view);
+			}
+			
+			if(slice.getTo() == batch.numberOfTuples) {
+				this.bufferedBatches.remove(slice.getInput());
+				for(int i = 0; i < batch.columns.length; ++i) {
+					if(batch.columns[i] != null) {
+						batch.columns[i].release();
+					}
+				}
+			}
+		}
+	}
+	
 	@Override
 	public void declareOutputFields(OutputFieldsDeclarer arg0) {
 		this.wrappedBolt.declareOutputFields(arg0);
@@ -192,4 +269,25 @@ public class TimestampMerger implements IRichBolt {
 		this.wrappedBolt.cleanup();
 	}
 	
+	
+	
+	/**
+	 * {@link BufferedBatch} is an input batch that is buffered by the {@link StreamMerger}.
+	 */
+	private static class BufferedBatch {
+		/** The view that hands over the tuples of the batch to the wrapped bolt. */
+		final DebatchedTuple view;
+		/** The retained columns of the batch. */
+		final BatchColumn[] columns;
+		/** The number of tuples in the batch. */
+		final int numberOfTuples;
+		
+		BufferedBatch(DebatchedTuple view, BatchColumn[] columns, int numberOfTuples) {
+			this.view = view;
+			this.columns = columns;
+			this.numberOfTuples = numberOfTuples;
+		}
+		
+	}
+	
 }
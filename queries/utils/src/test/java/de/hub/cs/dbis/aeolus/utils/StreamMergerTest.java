@@ -43,6 +43,8 @@ import backtype.storm.tuple.Fields;
 import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.TupleImpl;
 import backtype.storm.tuple.Values;
+import de.hub.cs.dbis.aeolus.batching.BatchColumn;
+import de.hub.cs.dbis.aeolus.batching.LongBatchColumn;
 import de.hub.cs.dbis.aeolus.testUtils.TimestampComperator;
 
 
@@ -300,6 +302,63 @@ public class StreamMergerTest {
 		}
 	}
 	
+	private static Values createBatch(long... timestamps) {
+		LongBatchColumn tsColumn = new LongBatchColumn(timestamps.length);
+		BatchColumn valueColumn = new BatchColumn(timestamps.length);
+		for(long ts : timestamps) {
+			tsColumn.addLong(ts);
+			valueColumn.add(new Long(ts));
+		}
+		return new Values(tsColumn, valueColumn);
+	}
+	
+	private static void assertSlice(BatchSlice<Values> slice, Values expectedInput, int from, int to) {
+		Assert.assertSame(expectedInput, slice.getInput());
+		Assert.assertEquals(from, slice.getFrom());
+		Assert.assertEquals(to, slice.getTo());
+		Assert.assertEquals(to - from, slice.size());
+	}
+	
+	@Test
+	public void testBatches() {
+		StreamMerger<Values> merger = new StreamMerger<Values>(Arrays.asList(new Integer(0), new Integer(1)), 0);
+		
+		Values b1 = createBatch(1, 2, 3, 5, 8, 9);
+		merger.addTuple(new Integer(0), b1);
+		Assert.assertNull(merger.getNextBatch());
+		
+		// b1 is released up to the frontier
+		Values b2 = createBatch(4, 5, 6);
+		merger.addTuple(new Integer(1), b2);
+		BatchSlice<Values> slice = merger.getNextBatch();
+		Assert.assertTrue(slice.isBatch());
+		assertSlice(slice, b1, 0, 3);
+		
+		// b2 is released up to the frontier (same timestamp of remaining b1 row is released)
+		assertSlice(merger.getNextBatch(), b2, 0, 2);
+		assertSlice(merger.getNextBatch(), b1, 3, 4);
+		assertSlice(merger.getNextBatch(), b2, 2, 3);
+		Assert.assertNull(merger.getNextBatch());
+		
+		// single tuple
+		Values t = new Values(new Long(7), new Long(7));
+		merger.addTuple(new Integer(1), t);
+		slice = merger.getNextBatch();
+		Assert.assertFalse(slice.isBatch());
+		assertSlice(slice, t, 0, 1);
+		Assert.assertNull(merger.getNextBatch());
+		
+		// whole batch is released
+		Values b3 = createBatch(10, 11);
+		merger.addTuple(new Integer(1), b3);
+		assertSlice(merger.getNextBatch(), b1, 4, 6);
+		Assert.assertNull(merger.getNextBatch());
+		
+		merger.disablePartition(new Integer(0));
+		assertSlice(merger.getNextBatch(), b3, 0, 2);
+		Assert.assertNull(merger.getNextBatch());
+	}
+	
 	@Test
 	public void testFlush() {
 		StreamMerger<Tuple> merger = new StreamMerger<Tuple>(Arrays.asList(new Integer(0), new Integer(1)), 0);
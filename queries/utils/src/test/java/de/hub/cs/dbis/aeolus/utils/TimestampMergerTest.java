@@ -23,6 +23,7 @@ import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -43,6 +44,8 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.mockito.stubbing.OngoingStubbing;
 import org.powermock.modules.junit4.PowerMockRunner;
 
@@ -58,6 +61,8 @@ import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.TupleImpl;
 import backtype.storm.tuple.Values;
 import backtype.storm.utils.Utils;
+import de.hub.cs.dbis.aeolus.batching.BatchColumn;
+import de.hub.cs.dbis.aeolus.batching.api.InputDebatcher;
 import de.hub.cs.dbis.aeolus.testUtils.ForwardBolt;
 import de.hub.cs.dbis.aeolus.testUtils.TestOutputCollector;
 import de.hub.cs.dbis.aeolus.testUtils.TimestampOrderChecker;
@@ -355,6 +360,73 @@ public class TimestampMergerTest {
 		Assert.assertTrue(collector.failed.size() == 0);
 	}
 	
+	@Test
+	public void testExecuteBatchRetainsBufferedColumns() {
+		IRichBolt boltMock = mock(IRichBolt.class);
+		this.testExecuteBatch(boltMock, new TimestampMerger(boltMock, 0), true);
+	}
+	
+	@Test
+	public void testExecuteBatchTsExtractor() {
+		IRichBolt boltMock = mock(IRichBolt.class);
+		this.testExecuteBatch(boltMock, new TimestampMerger(boltMock, new TimeStampExtractor<Tuple>() {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			public long getTs(Tuple tuple) {
+				return tuple.getLong(0).longValue();
+			}
+		}), false);
+	}
+	
+	private void testExecuteBatch(IRichBolt boltMock, TimestampMerger merger, boolean buffersBatches) {
+		this.mockInputs(2, 1, true, 1, 1);
+		when(this.topologyContextMock.getComponentId(anyInt())).thenReturn(bolt + 0);
+		when(this.topologyContextMock.getComponentOutputFields(anyString(), anyString())).thenReturn(new Fields("ts"));
+		
+		final List<Long> timestamps = new LinkedList<Long>();
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				Tuple t = (Tuple)invocation.getArguments()[0];
+				if(!t.getSourceStreamId().equals(TimestampMerger.FLUSH_STREAM_ID)) {
+					timestamps.add(t.getLong(0));
+				}
+				return null;
+			}
+		}).when(boltMock).execute(any(Tuple.class));
+		
+		InputDebatcher debatcher = new InputDebatcher(merger);
+		debatcher.prepare(null, this.topologyContextMock, new OutputCollector(new TestOutputCollector()));
+		
+		TrackingColumn[] columns = new TrackingColumn[] {new TrackingColumn(0, 2, 4), new TrackingColumn(1, 3),
+			new TrackingColumn(6, 8), new TrackingColumn(5, 7, 9)};
+		int[] producerTasks = new int[] {0, 1, 0, 1};
+		
+		for(int i = 0; i < columns.length; ++i) {
+			debatcher.execute(new TupleImpl(this.contextMock, new Values(columns[i]), producerTasks[i], "streamId"));
+		}
+		
+		List<Long> expectedResult = new LinkedList<Long>();
+		for(long ts = 0; ts < 9; ++ts) {
+			expectedResult.add(new Long(ts));
+		}
+		Assert.assertEquals(expectedResult, timestamps);
+		Assert.assertEquals(0, columns[0].references);
+		Assert.assertEquals(0, columns[1].references);
+		Assert.assertEquals(0, columns[2].references);
+		Assert.assertEquals(buffersBatches ? 1 : 0, columns[3].references);
+		
+		for(int i = 0; i < 2; ++i) {
+			debatcher.execute(new TupleImpl(this.contextMock, new Values((Object)null), i,
+				TimestampMerger.FLUSH_STREAM_ID));
+		}
+		
+		expectedResult.add(new Long(9));
+		Assert.assertEquals(expectedResult, timestamps);
+		Assert.assertEquals(0, columns[3].references);
+	}
+	
 	@Test
 	public void testCleanup() {
 		checker.cleanup();
@@ -385,4 +457,41 @@ public class TimestampMergerTest {
 		verify(boltMockStatic, atMost(1)).prepare(config, context, collector);
 	}
 	
+	
+	
+	/**
+	 * {@link TrackingColumn} counts its references and fails if it is accessed after it got released.
+	 */
+	private static class TrackingColumn extends BatchColumn {
+		private final static long serialVersionUID = 1L;
+		
+		/** The number of consumers that did not release the column yet. */
+		int references = 1;
+		
+		TrackingColumn(long... timestamps) {
+			for(long ts : timestamps) {
+				this.add(new Long(ts));
+			}
+		}
+		
+		@Override
+		public Object get(int index) {
+			Assert.assertTrue(this.references > 0);
+			return super.get(index);
+		}
+		
+		@Override
+		public void retain() {
+			Assert.assertTrue(this.references > 0);
+			++this.references;
+		}
+		
+		@Override
+		public void release() {
+			Assert.assertTrue(this.references > 0);
+			--this.references;
+		}
+		
+	}
+	
 }
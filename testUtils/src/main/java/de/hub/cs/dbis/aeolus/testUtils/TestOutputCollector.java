@@ -56,9 +56,8 @@ public class TestOutputCollector implements IOutputCollector {
 	}
 	
 	@Override
-	// TODO
 	public void emitDirect(int taskId, String streamId, Collection<Tuple> anchors, List<Object> tuple) {
-		throw new UnsupportedOperationException("Not implemented yet.");
+		this.emit(streamId, anchors, tuple);
 	}
 	
 	@Override
@@ -53,6 +53,19 @@ public class TestOutputCollectorTest {
 		Assert.assertEquals(result, collector.output.get(null));
 	}
 	
+	@Test
+	public void testEmitDirect() {
+		TestOutputCollector collector = new TestOutputCollector();
+		
+		Values tuple = mock(Values.class);
+		collector.emitDirect(0, null, null, tuple);
+		
+		LinkedList<Values> result = new LinkedList<Values>();
+		result.add(tuple);
+		
+		Assert.assertEquals(result, collector.output.get(null));
+	}
+	
 	@Test
 	public void testAck() {
 		TestOutputCollector collector = new TestOutputCollector();